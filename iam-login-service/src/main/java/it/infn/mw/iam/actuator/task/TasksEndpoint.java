@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.actuator.task;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import it.infn.mw.iam.core.task.IamTaskScheduler;
+import it.infn.mw.iam.core.task.ManagedTask;
+import it.infn.mw.iam.core.task.TaskStatus;
+
+/**
+ * Lists the IAM background tasks, and lets operators trigger, pause or resume them at runtime.
+ */
+@Endpoint(id = TasksEndpoint.ID)
+public class TasksEndpoint {
+
+  public static final String ID = "tasks";
+
+  public enum TaskAction {
+    TRIGGER,
+    PAUSE,
+    RESUME
+  }
+
+  private final IamTaskScheduler scheduler;
+
+  public TasksEndpoint(IamTaskScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  @ReadOperation
+  public List<TaskStatus> tasks() {
+    return scheduler.getTasks()
+      .stream()
+      .map(ManagedTask::getStatus)
+      .collect(Collectors.toList());
+  }
+
+  @ReadOperation
+  public TaskStatus task(@Selector String name) {
+    return scheduler.findTask(name).map(ManagedTask::getStatus).orElse(null);
+  }
+
+  @WriteOperation
+  public TaskStatus updateTask(@Selector String name, TaskAction action) {
+    return scheduler.findTask(name).map(t -> {
+      switch (action) {
+        case PAUSE:
+          t.pause();
+          break;
+        case RESUME:
+          t.resume();
+          break;
+        case TRIGGER:
+        default:
+          scheduler.trigger(t);
+      }
+      return t.getStatus();
+    }).orElse(null);
+  }
+}
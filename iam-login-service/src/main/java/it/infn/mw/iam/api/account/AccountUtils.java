@@ -17,6 +17,7 @@ package it.infn.mw.iam.api.account;
 
 import static java.util.Objects.isNull;
 
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,7 +26,15 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import com.google.common.collect.Maps;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import it.infn.mw.iam.authn.util.Authorities;
 import it.infn.mw.iam.persistence.model.IamAccount;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
@@ -33,11 +42,71 @@ import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 @SuppressWarnings("deprecation")
 @Component
 public class AccountUtils {
+
+  public static final String LOOKUPS_METRIC = "iam.authenticated_account.lookups";
+
+  static final String ACCOUNTS_ATTRIBUTE = AccountUtils.class.getName() + ".accounts";
+
   IamAccountRepository accountRepo;
 
+  private Counter cachedLookups;
+  private Counter repositoryLookups;
+
   @Autowired
   public AccountUtils(IamAccountRepository accountRepo) {
     this.accountRepo = accountRepo;
+    setMeterRegistry(Metrics.globalRegistry);
+  }
+
+  @Autowired(required = false)
+  public void setMeterRegistry(MeterRegistry registry) {
+    cachedLookups = Counter.builder(LOOKUPS_METRIC)
+      .description("Authenticated account lookups served from the request cache")
+      .tag("source", "request")
+      .register(registry);
+
+    repositoryLookups = Counter.builder(LOOKUPS_METRIC)
+      .description("Authenticated account lookups served from the database")
+      .tag("source", "repository")
+      .register(registry);
+  }
+
+  /**
+   * Resolves the account for the given username, memoizing the result in the current request.
+   * 
+   * Lookups done outside of a request, or inside a transaction, always hit the repository, so that
+   * callers that modify the account get an entity attached to their persistence context.
+   */
+  @SuppressWarnings("unchecked")
+  private Optional<IamAccount> findAccountByUsername(String username) {
+
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+
+    if (request == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+      repositoryLookups.increment();
+      return accountRepo.findByUsername(username);
+    }
+
+    Map<String, Optional<IamAccount>> accounts = (Map<String, Optional<IamAccount>>) request
+      .getAttribute(ACCOUNTS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+    if (accounts == null) {
+      accounts = Maps.newConcurrentMap();
+      request.setAttribute(ACCOUNTS_ATTRIBUTE, accounts, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    Optional<IamAccount> account = accounts.get(username);
+
+    if (account != null) {
+      cachedLookups.increment();
+      return account;
+    }
+
+    repositoryLookups.increment();
+    account = accountRepo.findByUsername(username);
+    accounts.put(username, account);
+
+    return account;
   }
 
   public boolean isRegisteredUser(Authentication auth) {
@@ -81,7 +150,7 @@ public class AccountUtils {
       userAuthn = oauth.getUserAuthentication();
     }
 
-    return accountRepo.findByUsername(userAuthn.getName());
+    return findAccountByUsername(userAuthn.getName());
 
   }
 
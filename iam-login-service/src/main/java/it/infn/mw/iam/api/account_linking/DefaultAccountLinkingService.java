@@ -140,20 +140,23 @@ public class DefaultAccountLinkingService
 
     IamAccount userAccount = findAccount(authenticatedUser);
 
-    iamAccountRepository.findByCertificateSubject(x509Credential.getSubject())
-      .ifPresent(linkedAccount -> {
-        if (!linkedAccount.getUuid().equals(userAccount.getUuid())) {
-          throw new AccountAlreadyLinkedError(
-              format("X.509 credential with subject '%s' is already linked to another user",
-                  x509Credential.getSubject()));
-        }
-      });
-
     Optional<IamX509Certificate> linkedCert = userAccount.getX509Certificates()
       .stream()
       .filter(c -> c.getSubjectDn().equals(x509Credential.getSubject()))
       .findAny();
 
+    if (!linkedCert.isPresent()) {
+      IamAccount probe = new IamAccount();
+      probe.setUuid(userAccount.getUuid());
+      probe.getX509Certificates().add(x509Credential.asIamX509Certificate());
+
+      if (!iamAccountRepository.findCredentialConflicts(probe).isEmpty()) {
+        throw new AccountAlreadyLinkedError(
+            format("X.509 credential with subject '%s' is already linked to another user",
+                x509Credential.getSubject()));
+      }
+    }
+
     if (linkedCert.isPresent()) {
 
       linkedCert.ifPresent(c -> {
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.audit;
+
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import it.infn.mw.iam.api.audit.service.AuditEventsService;
+import it.infn.mw.iam.api.common.ErrorDTO;
+import it.infn.mw.iam.persistence.repository.IamAuditEventFilter;
+
+@RestController
+@RequestMapping(value = AuditEventsController.BASE_RESOURCE)
+@PreAuthorize("hasRole('ADMIN')")
+@ConditionalOnProperty(name = "audit.store.enabled", havingValue = "true")
+public class AuditEventsController {
+
+  public static final String BASE_RESOURCE = "/iam/api/audit/events";
+
+  private final AuditEventsService service;
+
+  @Autowired
+  public AuditEventsController(AuditEventsService service) {
+    this.service = service;
+  }
+
+  @RequestMapping(method = GET)
+  public AuditEventsPageDTO findEvents(@RequestParam(required = false) String principal,
+      @RequestParam(required = false) String target, @RequestParam(required = false) String type,
+      @RequestParam(required = false) String category,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Date from,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Date to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer count) {
+
+    IamAuditEventFilter filter = new IamAuditEventFilter();
+    filter.setPrincipal(principal);
+    filter.setTarget(target);
+    filter.setType(type);
+    filter.setCategory(category);
+    filter.setFrom(from);
+    filter.setTo(to);
+
+    return service.findEvents(filter, cursor, count);
+  }
+
+  @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(InvalidAuditEventsQueryError.class)
+  public ErrorDTO invalidQuery(Exception ex) {
+    return ErrorDTO.fromString(ex.getMessage());
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.audit;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A page of audit events. When more events match the query, {@code nextCursor} holds the value to
+ * pass as the cursor parameter to fetch the next page.
+ */
+@JsonInclude(Include.NON_NULL)
+public class AuditEventsPageDTO {
+
+  private final List<AuditEventDTO> events;
+  private final String nextCursor;
+
+  public AuditEventsPageDTO(List<AuditEventDTO> events, String nextCursor) {
+    this.events = events;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<AuditEventDTO> getEvents() {
+    return events;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
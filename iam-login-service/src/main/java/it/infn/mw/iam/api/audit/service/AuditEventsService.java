@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.audit.service;
+
+import it.infn.mw.iam.api.audit.AuditEventsPageDTO;
+import it.infn.mw.iam.persistence.repository.IamAuditEventFilter;
+
+public interface AuditEventsService {
+
+  /**
+   * Returns a page of stored audit events matching the filter, most recent first
+   * 
+   * @param filter the filter (its beforeId is ignored, the cursor is used instead)
+   * @param cursor the cursor returned with the previous page, or null for the first page
+   * @param count the maximum number of events to return, or null for the default page size
+   */
+  AuditEventsPageDTO findEvents(IamAuditEventFilter filter, String cursor, Integer count);
+
+}
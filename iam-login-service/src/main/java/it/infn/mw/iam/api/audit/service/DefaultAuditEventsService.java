@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.audit.service;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import it.infn.mw.iam.api.audit.AuditEventDTO;
+import it.infn.mw.iam.api.audit.AuditEventsPageDTO;
+import it.infn.mw.iam.api.audit.InvalidAuditEventsQueryError;
+import it.infn.mw.iam.config.audit.AuditStoreProperties;
+import it.infn.mw.iam.persistence.model.IamAuditEvent;
+import it.infn.mw.iam.persistence.repository.IamAuditEventFilter;
+import it.infn.mw.iam.persistence.repository.IamAuditEventRepository;
+
+@Service
+@Transactional(readOnly = true)
+public class DefaultAuditEventsService implements AuditEventsService {
+
+  private final IamAuditEventRepository repo;
+  private final AuditStoreProperties properties;
+  private final ObjectMapper mapper;
+
+  @Autowired
+  public DefaultAuditEventsService(IamAuditEventRepository repo, AuditStoreProperties properties,
+      ObjectMapper mapper) {
+    this.repo = repo;
+    this.properties = properties;
+    this.mapper = mapper;
+  }
+
+  static String encodeCursor(Long id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(US_ASCII));
+  }
+
+  static Long decodeCursor(String cursor) {
+    try {
+      return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), US_ASCII));
+    } catch (IllegalArgumentException e) {
+      throw new InvalidAuditEventsQueryError("Invalid cursor: " + cursor);
+    }
+  }
+
+  private JsonNode parseData(String data) {
+    try {
+      return mapper.readTree(data);
+    } catch (IOException e) {
+      return TextNode.valueOf(data);
+    }
+  }
+
+  private AuditEventDTO toDto(IamAuditEvent event) {
+    AuditEventDTO dto = new AuditEventDTO();
+    dto.setId(event.getId());
+    dto.setTimestamp(event.getEventTime());
+    dto.setCategory(event.getCategory());
+    dto.setType(event.getType());
+    dto.setPrincipal(event.getPrincipal());
+    dto.setTarget(event.getTarget());
+    dto.setMessage(event.getMessage());
+    dto.setData(parseData(event.getData()));
+    return dto;
+  }
+
+  @Override
+  public AuditEventsPageDTO findEvents(IamAuditEventFilter filter, String cursor,
+      Integer count) {
+
+    int pageSize = properties.getMaxPageSize();
+
+    if (count != null) {
+      if (count < 1) {
+        throw new InvalidAuditEventsQueryError("Invalid count: " + count);
+      }
+      pageSize = Math.min(count, properties.getMaxPageSize());
+    }
+
+    filter.setBeforeId(cursor == null ? null : decodeCursor(cursor));
+
+    // One extra event is fetched to know whether a next page exists
+    List<IamAuditEvent> events = repo.findEvents(filter, pageSize + 1);
+
+    String nextCursor = null;
+
+    if (events.size() > pageSize) {
+      events = events.subList(0, pageSize);
+      nextCursor = encodeCursor(events.get(pageSize - 1).getId());
+    }
+
+    return new AuditEventsPageDTO(events.stream().map(this::toDto).collect(Collectors.toList()),
+        nextCursor);
+  }
+}
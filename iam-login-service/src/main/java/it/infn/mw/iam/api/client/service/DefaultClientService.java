@@ -21,8 +21,6 @@ import java.util.Optional;
 import java.util.function.Supplier;
 
 import org.mitre.oauth2.model.ClientDetailsEntity;
-import org.mitre.oauth2.model.OAuth2AccessTokenEntity;
-import org.mitre.oauth2.service.OAuth2TokenEntityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
@@ -33,6 +31,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import it.infn.mw.iam.audit.events.client.ClientCreatedEvent;
 import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcherOAuthRequestValidator;
+import it.infn.mw.iam.core.oauth.token.BulkTokenRevocationService;
 import it.infn.mw.iam.persistence.model.IamAccount;
 import it.infn.mw.iam.persistence.model.IamAccountClient;
 import it.infn.mw.iam.persistence.repository.client.ClientSpecs;
@@ -54,18 +53,19 @@ public class DefaultClientService implements ClientService {
 
   private OAuth2RequestValidator requestValidator;
 
-  private OAuth2TokenEntityService tokenService;
+  private BulkTokenRevocationService tokenRevocationService;
 
   @Autowired
   public DefaultClientService(Clock clock, IamClientRepository clientRepo,
       IamAccountClientRepository accountClientRepo, ApplicationEventPublisher eventPublisher,
-      OAuth2RequestValidator requestValidator, OAuth2TokenEntityService tokenService) {
+      OAuth2RequestValidator requestValidator,
+      BulkTokenRevocationService tokenRevocationService) {
     this.clock = clock;
     this.clientRepo = clientRepo;
     this.accountClientRepo = accountClientRepo;
     this.eventPublisher = eventPublisher;
     this.requestValidator = requestValidator;
-    this.tokenService = tokenService;
+    this.tokenRevocationService = tokenRevocationService;
   }
 
   @Override
@@ -134,29 +134,10 @@ public class DefaultClientService implements ClientService {
   @Override
   public void deleteClient(ClientDetailsEntity client) {
     accountClientRepo.deleteByClientId(client.getId());
-    deleteTokensByClient(client);
+    tokenRevocationService.revokeTokensForClient(client);
     clientRepo.delete(client);
   }
 
-  private boolean isValidAccessToken(OAuth2AccessTokenEntity a) {
-    return !(a.getAuthenticationHolder().getScope().contains("registration-token")
-        || a.getAuthenticationHolder().getScope().contains("resource-token"));
-  }
-
-  private void deleteTokensByClient(ClientDetailsEntity client) {
-    // delete all valid access tokens (exclude registration and resource tokens)
-    tokenService.getAccessTokensForClient(client)
-      .stream()
-      .filter(at -> isValidAccessToken(at))
-      .forEach(at -> {
-        tokenService.revokeAccessToken(at);
-      });
-    // delete all valid refresh tokens
-    tokenService.getRefreshTokensForClient(client).forEach(rt -> {
-      tokenService.revokeRefreshToken(rt);
-    });
-  }
-
   @Override
   public Page<ClientDetailsEntity> findAll(Pageable page) {
     return clientRepo.findAll(page);
@@ -106,6 +106,13 @@ public class GroupController {
     return converter.dtoFromEntity(entity);  
   }
   
+  @RequestMapping(value = "/iam/group/{id}/subtree", method = DELETE)
+  @PreAuthorize("hasRole('ADMIN')")
+  @ResponseStatus(value = HttpStatus.NO_CONTENT)
+  public void deleteGroupSubtree(@PathVariable String id) {
+    groupService.deleteGroupSubtreeByUuid(id);
+  }
+
   @RequestMapping(value = "/iam/group/{id}/attributes", method=RequestMethod.GET)
   @PreAuthorize("hasRole('ADMIN') or #iam.isGroupManager(#id)")
   public List<AttributeDTO> getAttributes(@PathVariable String id){
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.imports;
+
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import it.infn.mw.iam.api.common.ErrorDTO;
+import it.infn.mw.iam.api.imports.service.BulkImportService;
+
+@RestController
+@RequestMapping(value = BulkImportController.BASE_RESOURCE)
+@PreAuthorize("hasRole('ADMIN')")
+public class BulkImportController {
+
+  public static final String BASE_RESOURCE = "/iam/api/import";
+  public static final String USERS_RESOURCE = BASE_RESOURCE + "/users";
+  public static final String GROUPS_RESOURCE = BASE_RESOURCE + "/groups";
+
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  private final BulkImportService importService;
+
+  @Autowired
+  public BulkImportController(BulkImportService importService) {
+    this.importService = importService;
+  }
+
+  @RequestMapping(value = "/users", method = POST, consumes = NDJSON_CONTENT_TYPE)
+  public BulkImportReport importUsers(HttpServletRequest request) throws IOException {
+    return importService.importUsers(request.getReader());
+  }
+
+  @RequestMapping(value = "/groups", method = POST, consumes = NDJSON_CONTENT_TYPE)
+  public BulkImportReport importGroups(HttpServletRequest request) throws IOException {
+    return importService.importGroups(request.getReader());
+  }
+
+  @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(BulkImportError.class)
+  public ErrorDTO importError(Exception ex) {
+    return ErrorDTO.fromString(ex.getMessage());
+  }
+
+}
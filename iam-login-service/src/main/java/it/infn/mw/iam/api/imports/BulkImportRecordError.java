@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.imports;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+@JsonInclude(Include.NON_NULL)
+public class BulkImportRecordError {
+
+  private final long line;
+  private final String identifier;
+  private final String message;
+
+  public BulkImportRecordError(long line, String identifier, String message) {
+    this.line = line;
+    this.identifier = identifier;
+    this.message = message;
+  }
+
+  public long getLine() {
+    return line;
+  }
+
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public class BulkImportReport {
+
+  private final int maxReportedErrors;
+
+  private long processed = 0;
+  private long imported = 0;
+  private long failed = 0;
+
+  private final List<BulkImportRecordError> errors = new ArrayList<>();
+
+  public BulkImportReport(int maxReportedErrors) {
+    this.maxReportedErrors = maxReportedErrors;
+  }
+
+  public void recordProcessed() {
+    processed++;
+  }
+
+  public void recordImported(long count) {
+    imported += count;
+  }
+
+  public void recordError(long line, String identifier, String message) {
+    failed++;
+    if (errors.size() < maxReportedErrors) {
+      errors.add(new BulkImportRecordError(line, identifier, message));
+    }
+  }
+
+  public long getProcessed() {
+    return processed;
+  }
+
+  public long getImported() {
+    return imported;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+
+  public boolean isErrorListTruncated() {
+    return failed > errors.size();
+  }
+
+  public List<BulkImportRecordError> getErrors() {
+    return errors;
+  }
+
+  @JsonIgnore
+  public int getMaxReportedErrors() {
+    return maxReportedErrors;
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.imports.service;
+
+import java.io.Reader;
+
+import it.infn.mw.iam.api.imports.BulkImportReport;
+
+public interface BulkImportService {
+
+  /**
+   * Imports the SCIM users read, one per line, from the reader. Groups referenced by the users
+   * must already exist.
+   */
+  BulkImportReport importUsers(Reader reader);
+
+  /**
+   * Imports the SCIM groups read, one per line, from the reader. Parent groups must already exist
+   * or precede their children in the stream.
+   */
+  BulkImportReport importGroups(Reader reader);
+
+}
@@ -0,0 +1,683 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.imports.service;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static it.infn.mw.iam.core.group.DefaultIamGroupService.GROUP_MANAGER_AUTHORITY_TEMPLATE;
+import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.joining;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Suppliers;
+
+import it.infn.mw.iam.api.imports.BulkImportError;
+import it.infn.mw.iam.api.imports.BulkImportRecordError;
+import it.infn.mw.iam.api.imports.BulkImportReport;
+import it.infn.mw.iam.api.scim.converter.UserConverter;
+import it.infn.mw.iam.api.scim.exception.IllegalArgumentException;
+import it.infn.mw.iam.api.scim.model.ScimGroup;
+import it.infn.mw.iam.api.scim.model.ScimGroupRef;
+import it.infn.mw.iam.api.scim.model.ScimLabel;
+import it.infn.mw.iam.api.scim.model.ScimUser;
+import it.infn.mw.iam.api.scim.provisioning.GroupNames;
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent.IamEventCategory;
+import it.infn.mw.iam.audit.events.imports.BulkImportEvent;
+import it.infn.mw.iam.config.imports.BulkImportProperties;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamAccountGroupMembership;
+import it.infn.mw.iam.persistence.model.IamAuthority;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.persistence.model.IamLabel;
+import it.infn.mw.iam.persistence.model.IamOidcId;
+import it.infn.mw.iam.persistence.model.IamSamlId;
+import it.infn.mw.iam.persistence.model.IamSshKey;
+import it.infn.mw.iam.persistence.model.IamX509Certificate;
+import it.infn.mw.iam.persistence.repository.IamAccountRepository;
+import it.infn.mw.iam.persistence.repository.IamAuthoritiesRepository;
+import it.infn.mw.iam.persistence.repository.IamGroupRepository;
+
+/**
+ * Imports accounts and groups from newline-delimited JSON streams of SCIM resources.
+ *
+ * Records are processed in chunks: each chunk is checked for uniqueness violations with a fixed
+ * number of set-based queries and then persisted in a single transaction. Invalid records are
+ * reported and skipped, without affecting the other records in the chunk.
+ */
+@Service
+public class DefaultBulkImportService implements BulkImportService {
+
+  public static final Logger LOG = LoggerFactory.getLogger(DefaultBulkImportService.class);
+
+  private final Clock clock;
+  private final ObjectMapper mapper;
+  private final Validator validator;
+  private final UserConverter userConverter;
+  private final IamAccountRepository accountRepo;
+  private final IamGroupRepository groupRepo;
+  private final IamAuthoritiesRepository authoritiesRepo;
+  private final PasswordEncoder passwordEncoder;
+  private final TransactionTemplate txTemplate;
+  private final BulkImportProperties properties;
+  private final ApplicationEventPublisher eventPublisher;
+
+  static class ImportRecord<T> {
+    final long line;
+    final T resource;
+    final String identifier;
+
+    ImportRecord(long line, T resource, String identifier) {
+      this.line = line;
+      this.resource = resource;
+      this.identifier = identifier;
+    }
+  }
+
+  static class AccountRecord {
+    final ImportRecord<ScimUser> record;
+    final IamAccount account;
+
+    AccountRecord(ImportRecord<ScimUser> record, IamAccount account) {
+      this.record = record;
+      this.account = account;
+    }
+  }
+
+  @FunctionalInterface
+  interface ChunkImporter<T> {
+    void importChunk(List<ImportRecord<T>> chunk, BulkImportReport report);
+  }
+
+  @Autowired
+  public DefaultBulkImportService(Clock clock, ObjectMapper mapper, Validator validator,
+      UserConverter userConverter, IamAccountRepository accountRepo, IamGroupRepository groupRepo,
+      IamAuthoritiesRepository authoritiesRepo, PasswordEncoder passwordEncoder,
+      PlatformTransactionManager txManager, BulkImportProperties properties,
+      ApplicationEventPublisher eventPublisher) {
+    this.clock = clock;
+    this.mapper = mapper;
+    this.validator = validator;
+    this.userConverter = userConverter;
+    this.accountRepo = accountRepo;
+    this.groupRepo = groupRepo;
+    this.authoritiesRepo = authoritiesRepo;
+    this.passwordEncoder = passwordEncoder;
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.properties = properties;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @Override
+  public BulkImportReport importUsers(Reader reader) {
+    BulkImportReport report = importStream(reader, ScimUser.class, ScimUser::getUserName,
+        ScimUser.NewUserValidation.class, this::importUserChunk);
+
+    eventPublisher.publishEvent(new BulkImportEvent(IamEventCategory.ACCOUNT, this,
+        report.getProcessed(), report.getImported(), report.getFailed(),
+        String.format("Bulk import: %d accounts imported, %d records rejected",
+            report.getImported(), report.getFailed())));
+
+    return report;
+  }
+
+  @Override
+  public BulkImportReport importGroups(Reader reader) {
+    BulkImportReport report = importStream(reader, ScimGroup.class, ScimGroup::getDisplayName,
+        Default.class, this::importGroupChunk);
+
+    eventPublisher.publishEvent(new BulkImportEvent(IamEventCategory.GROUP, this,
+        report.getProcessed(), report.getImported(), report.getFailed(),
+        String.format("Bulk import: %d groups imported, %d records rejected",
+            report.getImported(), report.getFailed())));
+
+    return report;
+  }
+
+  private <T> BulkImportReport importStream(Reader reader, Class<T> resourceClass,
+      Function<T, String> identifierFn, Class<?> validationGroup, ChunkImporter<T> importer) {
+
+    BulkImportReport report = new BulkImportReport(properties.getMaxReportedErrors());
+    List<ImportRecord<T>> chunk = new ArrayList<>(properties.getChunkSize());
+
+    try (BufferedReader br = new BufferedReader(reader)) {
+      String line;
+      long lineNumber = 0;
+
+      while ((line = br.readLine()) != null) {
+        lineNumber++;
+
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+
+        report.recordProcessed();
+        parseRecord(lineNumber, line, resourceClass, identifierFn, validationGroup, report)
+          .ifPresent(chunk::add);
+
+        if (chunk.size() >= properties.getChunkSize()) {
+          importer.importChunk(chunk, report);
+          chunk.clear();
+        }
+      }
+
+      if (!chunk.isEmpty()) {
+        importer.importChunk(chunk, report);
+      }
+
+    } catch (IOException e) {
+      throw new BulkImportError("Error reading import stream: " + e.getMessage(), e);
+    }
+
+    LOG.info("Bulk import of {} resources completed: processed: {}, imported: {}, failed: {}",
+        resourceClass.getSimpleName(), report.getProcessed(), report.getImported(),
+        report.getFailed());
+
+    return report;
+  }
+
+  private <T> Optional<ImportRecord<T>> parseRecord(long lineNumber, String line,
+      Class<T> resourceClass, Function<T, String> identifierFn, Class<?> validationGroup,
+      BulkImportReport report) {
+
+    T resource;
+
+    try {
+      resource = mapper.readValue(line, resourceClass);
+    } catch (JsonProcessingException e) {
+      report.recordError(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+      return Optional.empty();
+    }
+
+    String identifier = identifierFn.apply(resource);
+    Set<ConstraintViolation<T>> violations = validator.validate(resource, validationGroup);
+
+    if (!violations.isEmpty()) {
+      report.recordError(lineNumber, identifier, violations.stream()
+        .map(v -> String.format("%s: %s", v.getPropertyPath(), v.getMessage()))
+        .collect(joining(", ")));
+      return Optional.empty();
+    }
+
+    return Optional.of(new ImportRecord<>(lineNumber, resource, identifier));
+  }
+
+  private void importUserChunk(List<ImportRecord<ScimUser>> chunk, BulkImportReport report) {
+
+    List<AccountRecord> candidates = new ArrayList<>(chunk.size());
+
+    for (ImportRecord<ScimUser> r : chunk) {
+      try {
+        candidates.add(new AccountRecord(r, userConverter.entityFromDto(r.resource)));
+      } catch (RuntimeException e) {
+        report.recordError(r.line, r.identifier, e.getMessage());
+      }
+    }
+
+    List<BulkImportRecordError> rejected = new ArrayList<>();
+
+    try {
+      Integer imported = txTemplate.execute(status -> persistAccounts(candidates, rejected));
+      report.recordImported(imported);
+      rejected.forEach(e -> report.recordError(e.getLine(), e.getIdentifier(), e.getMessage()));
+    } catch (RuntimeException e) {
+      LOG.error("Error persisting import chunk: {}", e.getMessage(), e);
+      candidates.forEach(c -> report.recordError(c.record.line, c.record.identifier,
+          "Chunk rolled back: " + e.getMessage()));
+    }
+  }
+
+  private Integer persistAccounts(List<AccountRecord> candidates,
+      List<BulkImportRecordError> rejected) {
+
+    AccountConflictChecker checker = new AccountConflictChecker(candidates);
+
+    Map<String, IamGroup> groups = new HashMap<>();
+    groupRepo.findByUuidIn(checker.groupUuids).forEach(g -> groups.put(g.getUuid(), g));
+
+    IamAuthority roleUser = authoritiesRepo.findByAuthority("ROLE_USER")
+      .orElseThrow(
+          () -> new IllegalStateException("ROLE_USER not found in database. This is a bug"));
+
+    // Accounts imported without a password get a random one, as in account creation. Hashing
+    // is the most expensive step of account creation, so a single random value is encoded per
+    // chunk
+    Supplier<String> randomPassword =
+        Suppliers.memoize(() -> passwordEncoder.encode(UUID.randomUUID().toString()));
+
+    final Instant now = clock.instant();
+    List<IamAccount> accounts = new ArrayList<>(candidates.size());
+
+    for (AccountRecord c : candidates) {
+
+      Optional<String> conflict = findMissingGroup(c, groups);
+
+      if (!conflict.isPresent()) {
+        conflict = checker.findConflict(c);
+      }
+
+      if (conflict.isPresent()) {
+        rejected
+          .add(new BulkImportRecordError(c.record.line, c.record.identifier, conflict.get()));
+        continue;
+      }
+
+      checker.reserve(c.account);
+      addGroupMemberships(c, groups, now);
+      prepareAccount(c.account, roleUser, Date.from(now), randomPassword);
+      accounts.add(c.account);
+    }
+
+    accountRepo.saveAll(accounts);
+    return accounts.size();
+  }
+
+  private Optional<String> findMissingGroup(AccountRecord c, Map<String, IamGroup> groups) {
+
+    if (isNull(c.record.resource.getGroups())) {
+      return Optional.empty();
+    }
+
+    return c.record.resource.getGroups()
+      .stream()
+      .filter(ref -> !groups.containsKey(ref.getValue()))
+      .findFirst()
+      .map(ref -> String.format("Group '%s' not found", ref.getValue()));
+  }
+
+  private void addGroupMemberships(AccountRecord c, Map<String, IamGroup> groups, Instant now) {
+
+    if (isNull(c.record.resource.getGroups())) {
+      return;
+    }
+
+    for (ScimGroupRef ref : c.record.resource.getGroups()) {
+      c.account.getGroups()
+        .add(IamAccountGroupMembership.forAccountAndGroup(now, c.account,
+            groups.get(ref.getValue())));
+    }
+  }
+
+  private void prepareAccount(IamAccount account, IamAuthority roleUser, Date now,
+      Supplier<String> randomPassword) {
+
+    account.setCreationTime(now);
+    account.setLastUpdateTime(now);
+
+    if (isNull(account.getUuid())) {
+      account.setUuid(UUID.randomUUID().toString());
+    }
+
+    account.getUserInfo().setEmailVerified(true);
+
+    if (isNullOrEmpty(account.getPassword())) {
+      account.setPassword(randomPassword.get());
+    } else {
+      account.setPassword(passwordEncoder.encode(account.getPassword()));
+    }
+
+    account.getAuthorities().add(roleUser);
+
+    account.getX509Certificates().forEach(cert -> {
+      cert.setCreationTime(now);
+      cert.setLastUpdateTime(now);
+    });
+
+    account.getSshKeys().forEach(k -> {
+      k.setCreationTime(now);
+      k.setLastUpdateTime(now);
+    });
+
+    if (account.getX509Certificates().stream().noneMatch(IamX509Certificate::isPrimary)) {
+      account.getX509Certificates().stream().findFirst().ifPresent(cert -> cert.setPrimary(true));
+    }
+
+    if (account.getSshKeys().stream().noneMatch(IamSshKey::isPrimary)) {
+      account.getSshKeys().stream().findFirst().ifPresent(k -> k.setPrimary(true));
+    }
+  }
+
+  /**
+   * Detects uniqueness violations for a chunk of accounts, both against the database (with one
+   * set-based query per credential type) and among the records of the chunk itself.
+   */
+  class AccountConflictChecker {
+
+    final Set<String> uuids = new HashSet<>();
+    final Set<String> usernames = new HashSet<>();
+    final Set<String> emails = new HashSet<>();
+    final Set<IamOidcId> oidcIds = new HashSet<>();
+    final Set<IamSamlId> samlIds = new HashSet<>();
+    final Set<String> sshKeys = new HashSet<>();
+    final Set<String> certSubjects = new HashSet<>();
+    final Set<String> groupUuids = new HashSet<>();
+
+    AccountConflictChecker(List<AccountRecord> candidates) {
+
+      Set<String> chunkUuids = new HashSet<>();
+      Set<String> chunkUsernames = new HashSet<>();
+      Set<String> chunkEmails = new HashSet<>();
+      Set<String> chunkOidcSubjects = new HashSet<>();
+      Set<String> chunkSamlUserIds = new HashSet<>();
+      Set<String> chunkSshKeys = new HashSet<>();
+      Set<String> chunkCertSubjects = new HashSet<>();
+
+      for (AccountRecord c : candidates) {
+        IamAccount a = c.account;
+
+        if (!isNull(a.getUuid())) {
+          chunkUuids.add(a.getUuid());
+        }
+
+        chunkUsernames.add(a.getUsername());
+        chunkEmails.add(a.getUserInfo().getEmail());
+        a.getOidcIds().forEach(o -> chunkOidcSubjects.add(o.getSubject()));
+        a.getSamlIds().forEach(s -> chunkSamlUserIds.add(s.getUserId()));
+        a.getSshKeys().forEach(k -> chunkSshKeys.add(k.getValue()));
+        a.getX509Certificates().forEach(x -> chunkCertSubjects.add(x.getSubjectDn()));
+
+        if (!isNull(c.record.resource.getGroups())) {
+          c.record.resource.getGroups().forEach(g -> groupUuids.add(g.getValue()));
+        }
+      }
+
+      if (!chunkUuids.isEmpty()) {
+        uuids.addAll(accountRepo.findExistingUuids(chunkUuids));
+      }
+
+      usernames.addAll(accountRepo.findExistingUsernames(chunkUsernames));
+      emails.addAll(accountRepo.findExistingEmails(chunkEmails));
+
+      if (!chunkOidcSubjects.isEmpty()) {
+        oidcIds.addAll(accountRepo.findExistingOidcIdsBySubject(chunkOidcSubjects));
+      }
+
+      if (!chunkSamlUserIds.isEmpty()) {
+        samlIds.addAll(accountRepo.findExistingSamlIdsByUserId(chunkSamlUserIds));
+      }
+
+      if (!chunkSshKeys.isEmpty()) {
+        sshKeys.addAll(accountRepo.findExistingSshKeyValues(chunkSshKeys));
+      }
+
+      if (!chunkCertSubjects.isEmpty()) {
+        certSubjects.addAll(accountRepo.findExistingCertificateSubjects(chunkCertSubjects));
+      }
+    }
+
+    /**
+     * Returns a description of the first conflict found for the record, if any. The identifiers
+     * of accepted records must be reserved with {@link #reserve(IamAccount)}, so that later
+     * records in the same chunk using them are rejected.
+     */
+    Optional<String> findConflict(AccountRecord c) {
+      IamAccount a = c.account;
+
+      if (!isNull(a.getUuid()) && uuids.contains(a.getUuid())) {
+        return Optional.of(String.format("A user with id '%s' already exists", a.getUuid()));
+      }
+
+      if (usernames.contains(a.getUsername())) {
+        return Optional
+          .of(String.format("A user with username '%s' already exists", a.getUsername()));
+      }
+
+      if (emails.contains(a.getUserInfo().getEmail())) {
+        return Optional.of(String.format("A user linked with email '%s' already exists",
+            a.getUserInfo().getEmail()));
+      }
+
+      for (IamOidcId o : a.getOidcIds()) {
+        if (oidcIds.contains(o)) {
+          return Optional.of(String.format("OIDC id '%s,%s' is already bound to a user",
+              o.getIssuer(), o.getSubject()));
+        }
+      }
+
+      for (IamSamlId s : a.getSamlIds()) {
+        if (samlIds.contains(s)) {
+          return Optional.of(String.format("SAML id '%s,%s,%s' already bound to a user",
+              s.getIdpId(), s.getAttributeId(), s.getUserId()));
+        }
+      }
+
+      for (IamSshKey k : a.getSshKeys()) {
+        if (sshKeys.contains(k.getValue())) {
+          return Optional.of(String.format("SSH key '%s' already bound to a user", k.getValue()));
+        }
+      }
+
+      for (IamX509Certificate x : a.getX509Certificates()) {
+        if (certSubjects.contains(x.getSubjectDn())) {
+          return Optional.of(String.format(
+              "X509 certificate with subject '%s' is already bound to another user",
+              x.getSubjectDn()));
+        }
+      }
+
+      return Optional.empty();
+    }
+
+    void reserve(IamAccount a) {
+      if (!isNull(a.getUuid())) {
+        uuids.add(a.getUuid());
+      }
+      usernames.add(a.getUsername());
+      emails.add(a.getUserInfo().getEmail());
+      oidcIds.addAll(a.getOidcIds());
+      samlIds.addAll(a.getSamlIds());
+      a.getSshKeys().forEach(k -> sshKeys.add(k.getValue()));
+      a.getX509Certificates().forEach(x -> certSubjects.add(x.getSubjectDn()));
+    }
+  }
+
+  private void importGroupChunk(List<ImportRecord<ScimGroup>> chunk, BulkImportReport report) {
+    List<BulkImportRecordError> rejected = new ArrayList<>();
+
+    try {
+      Integer imported = txTemplate.execute(status -> persistGroups(chunk, rejected));
+      report.recordImported(imported);
+      rejected.forEach(e -> report.recordError(e.getLine(), e.getIdentifier(), e.getMessage()));
+    } catch (RuntimeException e) {
+      LOG.error("Error persisting import chunk: {}", e.getMessage(), e);
+      chunk.forEach(r -> report.recordError(r.line, r.identifier,
+          "Chunk rolled back: " + e.getMessage()));
+    }
+  }
+
+  private Integer persistGroups(List<ImportRecord<ScimGroup>> chunk,
+      List<BulkImportRecordError> rejected) {
+
+    Set<String> chunkUuids = new HashSet<>();
+    Set<String> parentUuids = new HashSet<>();
+
+    for (ImportRecord<ScimGroup> r : chunk) {
+      if (!isNullOrEmpty(r.resource.getId())) {
+        chunkUuids.add(r.resource.getId());
+      }
+      parentRef(r.resource).ifPresent(p -> parentUuids.add(p.getValue()));
+    }
+
+    Set<String> uuids = new HashSet<>();
+    if (!chunkUuids.isEmpty()) {
+      uuids.addAll(groupRepo.findExistingUuids(chunkUuids));
+    }
+
+    Map<String, IamGroup> parents = new HashMap<>();
+    if (!parentUuids.isEmpty()) {
+      groupRepo.findByUuidIn(parentUuids).forEach(g -> parents.put(g.getUuid(), g));
+    }
+
+    Set<String> names = new HashSet<>();
+    Set<String> chunkNames = candidateGroupNames(chunk, parents);
+    if (!chunkNames.isEmpty()) {
+      names.addAll(groupRepo.findExistingNames(chunkNames));
+    }
+
+    final Date now = Date.from(clock.instant());
+    List<IamGroup> groups = new ArrayList<>(chunk.size());
+    List<IamAuthority> authorities = new ArrayList<>(chunk.size());
+
+    for (ImportRecord<ScimGroup> r : chunk) {
+      ScimGroup sg = r.resource;
+      String uuid = isNullOrEmpty(sg.getId()) ? UUID.randomUUID().toString() : sg.getId();
+
+      if (uuids.contains(uuid)) {
+        rejected.add(new BulkImportRecordError(r.line, r.identifier,
+            String.format("A group with id '%s' already exists", uuid)));
+        continue;
+      }
+
+      Optional<ScimGroupRef> parentRef = parentRef(sg);
+      IamGroup parent = null;
+
+      if (parentRef.isPresent()) {
+        parent = parents.get(parentRef.get().getValue());
+        if (isNull(parent)) {
+          rejected.add(new BulkImportRecordError(r.line, r.identifier,
+              String.format("Parent group '%s' not found", parentRef.get().getValue())));
+          continue;
+        }
+      }
+
+      String name;
+      try {
+        name = GroupNames.fullName(parent, sg.getDisplayName());
+      } catch (IllegalArgumentException e) {
+        rejected.add(new BulkImportRecordError(r.line, r.identifier, e.getMessage()));
+        continue;
+      }
+
+      if (names.contains(name)) {
+        rejected.add(new BulkImportRecordError(r.line, r.identifier,
+            String.format("A group with name '%s' already exists", name)));
+        continue;
+      }
+
+      IamGroup g = new IamGroup();
+      g.setUuid(uuid);
+      g.setName(name);
+      g.setCreationTime(now);
+      g.setLastUpdateTime(now);
+
+      if (!isNull(sg.getIndigoGroup())) {
+        g.setDescription(sg.getIndigoGroup().getDescription());
+
+        if (!isNull(sg.getIndigoGroup().getLabels())) {
+          for (ScimLabel l : sg.getIndigoGroup().getLabels()) {
+            g.getLabels()
+              .add(IamLabel.builder()
+                .prefix(l.getPrefix())
+                .name(l.getName())
+                .value(l.getValue())
+                .build());
+          }
+        }
+      }
+
+      if (!isNull(parent)) {
+        g.setParentGroup(parent);
+        parent.getChildrenGroups().add(g);
+      }
+
+      uuids.add(uuid);
+      names.add(g.getName());
+      parents.put(uuid, g);
+
+      groups.add(g);
+      authorities.add(new IamAuthority(String.format(GROUP_MANAGER_AUTHORITY_TEMPLATE, uuid)));
+    }
+
+    groupRepo.saveAll(groups);
+    authoritiesRepo.saveAll(authorities);
+    return groups.size();
+  }
+
+  /**
+   * Computes the full names the chunk records would get, so that name clashes with existing groups
+   * can be looked up with a single query. Records whose name is invalid or whose parent is unknown
+   * are skipped here and rejected when the chunk is persisted.
+   */
+  private Set<String> candidateGroupNames(List<ImportRecord<ScimGroup>> chunk,
+      Map<String, IamGroup> parents) {
+
+    Map<String, String> groupNames = new HashMap<>();
+    parents.forEach((uuid, g) -> groupNames.put(uuid, g.getName()));
+
+    Set<String> names = new HashSet<>();
+
+    for (ImportRecord<ScimGroup> r : chunk) {
+      ScimGroup sg = r.resource;
+      Optional<ScimGroupRef> parentRef = parentRef(sg);
+      String parentName = null;
+
+      if (parentRef.isPresent()) {
+        parentName = groupNames.get(parentRef.get().getValue());
+        if (isNull(parentName)) {
+          continue;
+        }
+      }
+
+      try {
+        String name = GroupNames.fullName(parentName, sg.getDisplayName());
+        names.add(name);
+        if (!isNullOrEmpty(sg.getId())) {
+          groupNames.putIfAbsent(sg.getId(), name);
+        }
+      } catch (IllegalArgumentException e) {
+        // the record is rejected when the chunk is persisted
+      }
+    }
+
+    return names;
+  }
+
+  private Optional<ScimGroupRef> parentRef(ScimGroup group) {
+    if (isNull(group.getIndigoGroup())) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(group.getIndigoGroup().getParentGroup());
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.api.scim.provisioning;
+
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+
+import com.google.common.base.Strings;
+
+import it.infn.mw.iam.api.scim.exception.IllegalArgumentException;
+import it.infn.mw.iam.persistence.model.IamGroup;
+
+/**
+ * Group name validation and composition rules shared by every path that creates groups (SCIM
+ * provisioning, bulk import).
+ */
+public final class GroupNames {
+
+  public static final int GROUP_NAME_MAX_LENGTH = 50;
+  public static final int GROUP_FULLNAME_MAX_LENGTH = 512;
+
+  private GroupNames() {
+    // prevent instantiation
+  }
+
+  public static void displayNameSanityChecks(String displayName) {
+    if (Strings.isNullOrEmpty(displayName)) {
+      throw new IllegalArgumentException("Group displayName cannot be empty");
+    }
+
+    if (displayName.contains("/")) {
+      throw new IllegalArgumentException("Group displayName cannot contain a slash character");
+    }
+
+    if (displayName.length() > GROUP_NAME_MAX_LENGTH) {
+      throw new IllegalArgumentException(
+          format("Group name length cannot exceed %d characters", GROUP_NAME_MAX_LENGTH));
+    }
+  }
+
+  /**
+   * Validates the display name and composes the full name of a group, i.e.
+   * {@code parent.getName() + "/" + displayName} for nested groups.
+   *
+   * @param parent the parent group, or {@code null} for a root group
+   * @param displayName the group display name
+   * @return the full group name
+   * @throws IllegalArgumentException if the display name or the full name are not valid
+   */
+  public static String fullName(IamGroup parent, String displayName) {
+    return fullName(isNull(parent) ? null : parent.getName(), displayName);
+  }
+
+  public static String fullName(String parentName, String displayName) {
+    displayNameSanityChecks(displayName);
+
+    if (isNull(parentName)) {
+      return displayName;
+    }
+
+    String fullName = format("%s/%s", parentName, displayName);
+
+    if (fullName.length() > GROUP_FULLNAME_MAX_LENGTH) {
+      throw new IllegalArgumentException(format(
+          "Group displayName length cannot exceed %d characters", GROUP_FULLNAME_MAX_LENGTH));
+    }
+
+    return fullName;
+  }
+}
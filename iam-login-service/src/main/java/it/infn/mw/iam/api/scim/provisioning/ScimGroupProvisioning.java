@@ -16,6 +16,7 @@
 package it.infn.mw.iam.api.scim.provisioning;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static it.infn.mw.iam.api.scim.provisioning.GroupNames.GROUP_FULLNAME_MAX_LENGTH;
 import static java.lang.String.format;
 
 import java.time.Clock;
@@ -30,8 +31,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
-import com.google.common.base.Strings;
-
 import it.infn.mw.iam.api.common.OffsetPageable;
 import it.infn.mw.iam.api.requests.service.GroupRequestsService;
 import it.infn.mw.iam.api.scim.converter.GroupConverter;
@@ -59,9 +58,6 @@ import it.infn.mw.iam.persistence.model.IamGroupRequest;
 @Transactional
 public class ScimGroupProvisioning implements ScimProvisioning<ScimGroup, List<ScimMemberRef>> {
 
-  private static final int GROUP_NAME_MAX_LENGTH = 50;
-  private static final int GROUP_FULLNAME_MAX_LENGTH = 512;
-
   private final IamGroupService groupService;
   private final IamAccountService accountService;
   private final GroupConverter converter;
@@ -103,7 +99,7 @@ public class ScimGroupProvisioning implements ScimProvisioning<ScimGroup, List<S
   @Override
   public ScimGroup create(ScimGroup group) {
 
-    displayNameSanityChecks(group.getDisplayName());
+    GroupNames.displayNameSanityChecks(group.getDisplayName());
 
     IamGroup iamGroup = new IamGroup();
     String uuid = UUID.randomUUID().toString();
@@ -142,21 +138,6 @@ public class ScimGroupProvisioning implements ScimProvisioning<ScimGroup, List<S
     groupService.deleteGroupByUuid(id);
   }
 
-  private void displayNameSanityChecks(String displayName) {
-    if (Strings.isNullOrEmpty(displayName)) {
-      throw new IllegalArgumentException("Group displayName cannot be empty");
-    }
-
-    if (displayName.contains("/")) {
-      throw new IllegalArgumentException("Group displayName cannot contain a slash character");
-    }
-
-    if (displayName.length() > GROUP_NAME_MAX_LENGTH) {
-      throw new IllegalArgumentException(
-          format("Group name length cannot exceed %d characters", GROUP_NAME_MAX_LENGTH));
-    }
-  }
-
   private void executePatchOperation(IamGroup group, ScimPatchOperation<List<ScimMemberRef>> op) {
 
     patchOperationSanityChecks(op);
@@ -247,7 +228,7 @@ public class ScimGroupProvisioning implements ScimProvisioning<ScimGroup, List<S
     IamGroup oldGroup = groupService.findByUuid(id).orElseThrow(noGroupMappedToId(id));
 
     String displayName = scimItemToBeReplaced.getDisplayName();
-    displayNameSanityChecks(displayName);
+    GroupNames.displayNameSanityChecks(displayName);
 
     if (!isGroupNameAvailable(displayName, id)) {
       throw new ScimResourceExistsException(displayName + " is already mapped to another group");
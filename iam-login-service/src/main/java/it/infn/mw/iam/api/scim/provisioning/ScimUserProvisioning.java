@@ -66,6 +66,9 @@ import it.infn.mw.iam.core.user.IamAccountService;
 import it.infn.mw.iam.core.user.exception.CredentialAlreadyBoundException;
 import it.infn.mw.iam.core.user.exception.UserAlreadyExistsException;
 import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamSshKey;
+import it.infn.mw.iam.persistence.model.IamX509Certificate;
+import it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.registration.validation.UsernameValidator;
 
@@ -131,6 +134,26 @@ public class ScimUserProvisioning
         String.format("email %s already assigned to another user", email));
   }
 
+  private ScimResourceExistsException credentialConflict(IamAccountCredentialConflict conflict) {
+    switch (conflict.getType()) {
+      case USERNAME:
+        return usernameAlreadyAssigned((String) conflict.getCredential());
+      case EMAIL:
+        return emailAlreadyAssigned((String) conflict.getCredential());
+      case X509_CERTIFICATE:
+        return new ScimResourceExistsException(
+            String.format("X.509 certificate %s already bound to another user",
+                ((IamX509Certificate) conflict.getCredential()).getSubjectDn()));
+      case SSH_KEY:
+        return new ScimResourceExistsException(String.format(
+            "SSH key %s already bound to another user",
+            ((IamSshKey) conflict.getCredential()).getFingerprint()));
+      default:
+        return new ScimResourceExistsException(
+            String.format("%s already bound to another user", conflict.getCredential()));
+    }
+  }
+
   private ScimPatchOperationNotSupported notSupportedPatchOp(String op) {
     return new ScimPatchOperationNotSupported(String.format("%s not supported", op));
   }
@@ -204,22 +227,18 @@ public class ScimUserProvisioning
     IamAccount existingAccount =
         accountRepository.findByUuid(uuid).orElseThrow(() -> noUserMappedToId(uuid));
 
-    // username must be available
-    final String username = scimItemToBeUpdated.getUserName();
-    if (accountRepository.findByUsernameWithDifferentUUID(username, uuid).isPresent()) {
-      throw usernameAlreadyAssigned(username);
-    }
-
-    // email must be unique
-    final String updatedEmail = scimItemToBeUpdated.getEmails().get(0).getValue();
-    if (accountRepository.findByEmailWithDifferentUUID(updatedEmail, uuid).isPresent()) {
-      throw emailAlreadyAssigned(updatedEmail);
-    }
-
     IamAccount updatedAccount = userConverter.entityFromDto(scimItemToBeUpdated);
 
     updatedAccount.setId(existingAccount.getId());
     updatedAccount.setUuid(existingAccount.getUuid());
+
+    // username, email and credentials must not be bound to another user
+    accountRepository.findCredentialConflicts(updatedAccount)
+      .stream()
+      .findFirst()
+      .ifPresent(c -> {
+        throw credentialConflict(c);
+      });
     updatedAccount.setCreationTime(existingAccount.getCreationTime());
 
     // If the active field was not provided in the input scim user,
@@ -15,6 +15,8 @@
  */
 package it.infn.mw.iam.api.tokens.service;
 
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.ACCESS;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -31,6 +33,7 @@ import it.infn.mw.iam.api.tokens.converter.TokensConverter;
 import it.infn.mw.iam.api.tokens.exception.TokenNotFoundException;
 import it.infn.mw.iam.api.tokens.model.AccessToken;
 import it.infn.mw.iam.api.tokens.service.paging.TokensPageRequest;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
 import it.infn.mw.iam.persistence.repository.IamOAuthAccessTokenRepository;
 
 @Service
@@ -45,6 +48,9 @@ public class DefaultAccessTokenService extends AbstractTokenService<AccessToken>
   @Autowired
   private IamOAuthAccessTokenRepository tokenRepository;
 
+  @Autowired
+  private TokenCounters tokenCounters;
+
   @Override
   public AccessToken getTokenById(Long id) {
 
@@ -74,7 +80,8 @@ public class DefaultAccessTokenService extends AbstractTokenService<AccessToken>
 
   private long countAllValidTokens() {
 
-    return tokenRepository.countValidAccessTokens(new Date());
+    return tokenCounters.count(ACCESS)
+      .orElseGet(() -> tokenRepository.countValidAccessTokens(new Date()));
   }
 
   private Page<OAuth2AccessTokenEntity> getAllValidTokensForUser(String userId, OffsetPageable op) {
@@ -84,7 +91,8 @@ public class DefaultAccessTokenService extends AbstractTokenService<AccessToken>
 
   private long countAllValidTokensForUser(String userId) {
 
-    return tokenRepository.countValidAccessTokensForUser(userId, new Date());
+    return tokenCounters.countForUser(ACCESS, userId)
+      .orElseGet(() -> tokenRepository.countValidAccessTokensForUser(userId, new Date()));
   }
 
   private Page<OAuth2AccessTokenEntity> getAllValidTokensForClient(String clientId,
@@ -95,7 +103,8 @@ public class DefaultAccessTokenService extends AbstractTokenService<AccessToken>
 
   private long countAllValidTokensForClient(String clientId) {
 
-    return tokenRepository.countValidAccessTokensForClient(clientId, new Date());
+    return tokenCounters.countForClient(ACCESS, clientId)
+      .orElseGet(() -> tokenRepository.countValidAccessTokensForClient(clientId, new Date()));
   }
 
   private Page<OAuth2AccessTokenEntity> getAllValidTokensForUserAndClient(String userId,
@@ -15,6 +15,8 @@
  */
 package it.infn.mw.iam.api.tokens.service;
 
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.REFRESH;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -31,6 +33,7 @@ import it.infn.mw.iam.api.tokens.converter.TokensConverter;
 import it.infn.mw.iam.api.tokens.exception.TokenNotFoundException;
 import it.infn.mw.iam.api.tokens.model.RefreshToken;
 import it.infn.mw.iam.api.tokens.service.paging.TokensPageRequest;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
 import it.infn.mw.iam.persistence.repository.IamOAuthRefreshTokenRepository;
 
 @Service
@@ -45,6 +48,9 @@ public class DefaultRefreshTokenService extends AbstractTokenService<RefreshToke
   @Autowired
   private IamOAuthRefreshTokenRepository tokenRepository;
 
+  @Autowired
+  private TokenCounters tokenCounters;
+
   @Override
   public RefreshToken getTokenById(Long id) {
 
@@ -74,7 +80,8 @@ public class DefaultRefreshTokenService extends AbstractTokenService<RefreshToke
 
   private long countAllValidTokens() {
 
-    return tokenRepository.countValidRefreshTokens(new Date());
+    return tokenCounters.count(REFRESH)
+      .orElseGet(() -> tokenRepository.countValidRefreshTokens(new Date()));
   }
 
   private Page<OAuth2RefreshTokenEntity> getAllValidTokensForUser(String userId,
@@ -85,7 +92,8 @@ public class DefaultRefreshTokenService extends AbstractTokenService<RefreshToke
 
   private long countAllValidTokensForUser(String userId) {
 
-    return tokenRepository.countValidRefreshTokensForUser(userId, new Date());
+    return tokenCounters.countForUser(REFRESH, userId)
+      .orElseGet(() -> tokenRepository.countValidRefreshTokensForUser(userId, new Date()));
   }
 
   private Page<OAuth2RefreshTokenEntity> getAllValidTokensForClient(String clientId,
@@ -96,7 +104,8 @@ public class DefaultRefreshTokenService extends AbstractTokenService<RefreshToke
 
   private long countAllValidTokensForClient(String clientId) {
 
-    return tokenRepository.countValidRefreshTokensForClient(clientId, new Date());
+    return tokenCounters.countForClient(REFRESH, clientId)
+      .orElseGet(() -> tokenRepository.countValidRefreshTokensForClient(clientId, new Date()));
   }
 
   private Page<OAuth2RefreshTokenEntity> getAllValidTokensForUserAndClient(String userId,
@@ -15,6 +15,8 @@
  */
 package it.infn.mw.iam.audit;
 
+import java.util.Optional;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -23,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
+import it.infn.mw.iam.audit.pipeline.AsyncAuditEventPipeline;
 
 @Component
 public class IamAuditEventLogger implements AuditEventLogger {
@@ -32,17 +35,30 @@ public class IamAuditEventLogger implements AuditEventLogger {
   
   public static final Logger LOG = LoggerFactory.getLogger(AUDIT_MARKER_STRING);
   final AuditDataSerializer serializer;
+  final Optional<AsyncAuditEventPipeline> pipeline;
   
   private IamAuditApplicationEvent lastEvent;
   
-  @Autowired
   public IamAuditEventLogger(AuditDataSerializer serializer) {
+    this(serializer, Optional.empty());
+  }
+
+  @Autowired
+  public IamAuditEventLogger(AuditDataSerializer serializer,
+      Optional<AsyncAuditEventPipeline> pipeline) {
     this.serializer = serializer;
+    this.pipeline = pipeline;
   }
 
   @Override
   public void logAuditEvent(IamAuditApplicationEvent event) {
     lastEvent = event;
+
+    if (pipeline.isPresent()) {
+      pipeline.get().submit(event);
+      return;
+    }
+
     if (LOG.isInfoEnabled()){
       final String serializedEvent = serializer.serialize(event);
       LOG.info(AUDIT_MARKER, serializedEvent);
@@ -98,4 +98,13 @@ public abstract class IamAuditApplicationEvent extends ApplicationEvent {
   public String getSourceClass(){
     return super.getSource().getClass().getSimpleName();
   }
+
+  /**
+   * The identifier of the resource this event refers to (e.g. an account or group uuid), used to
+   * index events in the audit event store; null if the event has no specific target
+   */
+  @JsonIgnore
+  public String getTargetId() {
+    return null;
+  }
 }
@@ -15,6 +15,7 @@
  */
 package it.infn.mw.iam.audit.events.account;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
@@ -36,5 +37,11 @@ public abstract class AccountEvent extends IamAuditApplicationEvent {
   public IamAccount getAccount() {
     return account;
   }
+
+  @JsonIgnore
+  @Override
+  public String getTargetId() {
+    return account == null ? null : account.getUuid();
+  }
   
 }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.events.account;
+
+import it.infn.mw.iam.core.oauth.token.TokenRevocationSummary;
+import it.infn.mw.iam.persistence.model.IamAccount;
+
+public class AccountTokensRevokedEvent extends AccountEvent {
+
+  private static final long serialVersionUID = 3712804405310829514L;
+
+  private final int revokedAccessTokens;
+  private final int revokedRefreshTokens;
+  private final int removedAuthenticationHolders;
+  private final int removedApprovedSites;
+
+  public AccountTokensRevokedEvent(Object source, IamAccount account,
+      TokenRevocationSummary summary) {
+    super(source, account, "Revoked tokens for user " + account.getUsername());
+    this.revokedAccessTokens = summary.getAccessTokens();
+    this.revokedRefreshTokens = summary.getRefreshTokens();
+    this.removedAuthenticationHolders = summary.getAuthenticationHolders();
+    this.removedApprovedSites = summary.getApprovedSites();
+  }
+
+  public int getRevokedAccessTokens() {
+    return revokedAccessTokens;
+  }
+
+  public int getRevokedRefreshTokens() {
+    return revokedRefreshTokens;
+  }
+
+  public int getRemovedAuthenticationHolders() {
+    return removedAuthenticationHolders;
+  }
+
+  public int getRemovedApprovedSites() {
+    return removedApprovedSites;
+  }
+}
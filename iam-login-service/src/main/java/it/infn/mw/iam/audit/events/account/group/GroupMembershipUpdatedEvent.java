@@ -15,6 +15,8 @@
  */
 package it.infn.mw.iam.audit.events.account.group;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import it.infn.mw.iam.api.scim.updater.UpdaterType;
 import it.infn.mw.iam.audit.events.account.AccountUpdatedEvent;
 import it.infn.mw.iam.persistence.model.IamAccount;
@@ -36,6 +38,12 @@ public abstract class GroupMembershipUpdatedEvent extends AccountUpdatedEvent {
     return group;
   }
 
+  @JsonIgnore
+  @Override
+  public String getTargetId() {
+    return group == null ? null : group.getUuid();
+  }
+
 
   protected static String buildMessage(UpdaterType t, IamAccount account,
       IamGroup group) {
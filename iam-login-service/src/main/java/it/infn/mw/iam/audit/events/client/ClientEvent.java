@@ -17,6 +17,7 @@ package it.infn.mw.iam.audit.events.client;
 
 import org.mitre.oauth2.model.ClientDetailsEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
@@ -37,4 +38,10 @@ public abstract class ClientEvent extends IamAuditApplicationEvent {
   public ClientDetailsEntity getClient() {
     return client;
   }
+
+  @JsonIgnore
+  @Override
+  public String getTargetId() {
+    return client == null ? null : client.getClientId();
+  }
 }
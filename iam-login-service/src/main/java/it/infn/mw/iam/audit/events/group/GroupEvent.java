@@ -15,6 +15,7 @@
  */
 package it.infn.mw.iam.audit.events.group;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
@@ -37,5 +38,11 @@ public abstract class GroupEvent extends IamAuditApplicationEvent {
   public IamGroup getGroup() {
     return group;
   }
+
+  @JsonIgnore
+  @Override
+  public String getTargetId() {
+    return group == null ? null : group.getUuid();
+  }
   
 }
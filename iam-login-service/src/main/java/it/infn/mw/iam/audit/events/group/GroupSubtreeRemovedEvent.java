@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.events.group;
+
+import java.util.List;
+
+import it.infn.mw.iam.persistence.model.IamGroup;
+
+public class GroupSubtreeRemovedEvent extends GroupEvent {
+
+  private static final long serialVersionUID = -5630187429761254913L;
+
+  private final List<String> removedGroups;
+  private final int removedMemberships;
+  private final int revokedManagerGrants;
+  private final int removedScopePolicies;
+  private final int removedLabels;
+  private final int removedAttributes;
+  private final int removedGroupRequests;
+
+  public GroupSubtreeRemovedEvent(Object source, IamGroup group, String message,
+      List<String> removedGroups, int removedMemberships, int revokedManagerGrants,
+      int removedScopePolicies, int removedLabels, int removedAttributes,
+      int removedGroupRequests) {
+    super(source, group, message);
+    this.removedGroups = removedGroups;
+    this.removedMemberships = removedMemberships;
+    this.revokedManagerGrants = revokedManagerGrants;
+    this.removedScopePolicies = removedScopePolicies;
+    this.removedLabels = removedLabels;
+    this.removedAttributes = removedAttributes;
+    this.removedGroupRequests = removedGroupRequests;
+  }
+
+  public List<String> getRemovedGroups() {
+    return removedGroups;
+  }
+
+  public int getRemovedMemberships() {
+    return removedMemberships;
+  }
+
+  public int getRevokedManagerGrants() {
+    return revokedManagerGrants;
+  }
+
+  public int getRemovedScopePolicies() {
+    return removedScopePolicies;
+  }
+
+  public int getRemovedLabels() {
+    return removedLabels;
+  }
+
+  public int getRemovedAttributes() {
+    return removedAttributes;
+  }
+
+  public int getRemovedGroupRequests() {
+    return removedGroupRequests;
+  }
+}
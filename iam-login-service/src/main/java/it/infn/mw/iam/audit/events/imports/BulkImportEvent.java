@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.events.imports;
+
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
+
+public class BulkImportEvent extends IamAuditApplicationEvent {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long processed;
+  private final long imported;
+  private final long failed;
+
+  public BulkImportEvent(IamEventCategory category, Object source, long processed, long imported,
+      long failed, String message) {
+    super(category, source, message);
+    this.processed = processed;
+    this.imported = imported;
+    this.failed = failed;
+  }
+
+  public long getProcessed() {
+    return processed;
+  }
+
+  public long getImported() {
+    return imported;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.audit.AuditDataSerializer;
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties.BackPressurePolicy;
+
+/**
+ * Decouples audit event delivery from the thread that publishes the event.
+ * 
+ * Events are serialized on the publishing thread, while the entities they reference are still in
+ * the state the event describes, and stored in a bounded buffer. A single worker thread drains
+ * the buffer in batches and hands each batch to the configured sinks. When the buffer is full,
+ * the configured {@link BackPressurePolicy} decides whether the publishing thread waits or the
+ * event is dropped.
+ */
+public class AsyncAuditEventPipeline {
+
+  public static final Logger LOG = LoggerFactory.getLogger(AsyncAuditEventPipeline.class);
+
+  public static final String METRIC_PREFIX = "iam.audit.pipeline";
+  public static final String QUEUE_DEPTH_METRIC = METRIC_PREFIX + ".queue.depth";
+  public static final String DROPPED_EVENTS_METRIC = METRIC_PREFIX + ".events.dropped";
+  public static final String PROCESSED_EVENTS_METRIC = METRIC_PREFIX + ".events.processed";
+  public static final String SERIALIZATION_ERRORS_METRIC = METRIC_PREFIX + ".serialization.errors";
+  public static final String SINK_ERRORS_METRIC = METRIC_PREFIX + ".sink.errors";
+
+  private static final long POLL_TIMEOUT_MSEC = 250;
+  private static final long SHUTDOWN_TIMEOUT_MSEC = 10000;
+
+  private final AuditPipelineProperties properties;
+  private final AuditDataSerializer serializer;
+  private final List<AuditEventSink> sinks;
+  private final BlockingQueue<SerializedAuditEvent> queue;
+  private final int samplingThreshold;
+
+  private final AtomicLong sampleCounter = new AtomicLong();
+  private final AtomicLong droppedEvents = new AtomicLong();
+
+  private final Counter droppedFull;
+  private final Counter droppedSampled;
+  private final Counter processed;
+  private final Counter serializationErrors;
+  private final MeterRegistry registry;
+
+  private volatile boolean running;
+  private Thread worker;
+
+  public AsyncAuditEventPipeline(AuditPipelineProperties properties,
+      AuditDataSerializer serializer, List<AuditEventSink> sinks, MeterRegistry registry) {
+    this.properties = properties;
+    this.serializer = serializer;
+    this.sinks = sinks;
+    this.registry = registry;
+    this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+    this.samplingThreshold =
+        (int) ((long) properties.getCapacity() * properties.getSamplingThresholdPercent() / 100);
+
+    Gauge.builder(QUEUE_DEPTH_METRIC, queue, BlockingQueue::size)
+      .description("Number of audit events waiting to be processed")
+      .register(registry);
+
+    droppedFull = Counter.builder(DROPPED_EVENTS_METRIC)
+      .description("Audit events dropped by the back-pressure policy")
+      .tag("reason", "full")
+      .register(registry);
+
+    droppedSampled = Counter.builder(DROPPED_EVENTS_METRIC)
+      .description("Audit events dropped by the back-pressure policy")
+      .tag("reason", "sampled")
+      .register(registry);
+
+    processed = Counter.builder(PROCESSED_EVENTS_METRIC)
+      .description("Audit events delivered to the sinks")
+      .register(registry);
+
+    serializationErrors = Counter.builder(SERIALIZATION_ERRORS_METRIC)
+      .description("Audit events that could not be serialized")
+      .register(registry);
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    worker = new Thread(this::run, "iam-audit-pipeline");
+    worker.setDaemon(true);
+    worker.start();
+
+    LOG.info("Audit pipeline started: capacity={}, policy={}, sinks={}", properties.getCapacity(),
+        properties.getBackPressurePolicy(), properties.getSinks());
+  }
+
+  /**
+   * Stops accepting events, waits for the worker to deliver the buffered ones and closes the
+   * sinks.
+   */
+  public synchronized void shutdown() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+
+    try {
+      worker.join(SHUTDOWN_TIMEOUT_MSEC);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (worker.isAlive()) {
+      LOG.warn("Audit pipeline worker did not terminate in time, {} events not delivered",
+          queue.size());
+      worker.interrupt();
+    }
+
+    for (AuditEventSink sink : sinks) {
+      if (sink instanceof Closeable) {
+        try {
+          ((Closeable) sink).close();
+        } catch (IOException e) {
+          LOG.warn("Error closing audit sink {}: {}", sink.getName(), e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Submits an event to the pipeline, applying the configured back-pressure policy.
+   * 
+   * @param event the event
+   * @return true if the event was accepted, false if it was dropped
+   */
+  public boolean submit(IamAuditApplicationEvent event) {
+
+    if (!running) {
+      return drop(droppedFull);
+    }
+
+    BackPressurePolicy policy = properties.getBackPressurePolicy();
+
+    if (BackPressurePolicy.SAMPLE.equals(policy) && queue.size() >= samplingThreshold
+        && sampleCounter.incrementAndGet() % properties.getSampleRate() != 0) {
+      return drop(droppedSampled);
+    }
+
+    SerializedAuditEvent serializedEvent;
+
+    try {
+      serializedEvent = new SerializedAuditEvent(event, serializer.serialize(event));
+    } catch (RuntimeException e) {
+      serializationErrors.increment();
+      LOG.error("Error serializing audit event {}: {}", event.getClass().getSimpleName(),
+          e.getMessage());
+      return false;
+    }
+
+    boolean accepted;
+
+    if (BackPressurePolicy.BLOCK.equals(policy)) {
+      try {
+        accepted = queue.offer(serializedEvent, properties.getBlockTimeoutMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        accepted = false;
+      }
+    } else {
+      accepted = queue.offer(serializedEvent);
+    }
+
+    if (!accepted) {
+      return drop(droppedFull);
+    }
+
+    return true;
+  }
+
+  private boolean drop(Counter counter) {
+    counter.increment();
+    long dropped = droppedEvents.incrementAndGet();
+
+    if (dropped == 1 || dropped % properties.getCapacity() == 0) {
+      LOG.warn("Audit pipeline is dropping events, {} dropped so far", dropped);
+    }
+
+    return false;
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getDroppedEvents() {
+    return droppedEvents.get();
+  }
+
+  private void run() {
+    List<SerializedAuditEvent> batch = new ArrayList<>(properties.getBatchSize());
+
+    while (running || !queue.isEmpty()) {
+      try {
+        SerializedAuditEvent first = queue.poll(POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+
+        if (first == null) {
+          continue;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, properties.getBatchSize() - 1);
+        process(batch);
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        LOG.error("Unexpected error processing audit events: {}", e.getMessage(), e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void process(List<SerializedAuditEvent> batch) {
+    for (AuditEventSink sink : sinks) {
+      try {
+        sink.write(batch);
+      } catch (RuntimeException e) {
+        registry.counter(SINK_ERRORS_METRIC, "sink", sink.getName()).increment();
+        LOG.error("Error writing {} audit events to sink {}: {}", batch.size(),
+            sink.getName(), e.getMessage());
+      }
+    }
+
+    processed.increment(batch.size());
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.pipeline;
+
+import static it.infn.mw.iam.persistence.model.IamAuditEvent.partitionKeyFor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+
+/**
+ * Stores audit events in the audit event store (the iam_audit_event table), with one JDBC batch
+ * insert per pipeline batch.
+ */
+public class JdbcAuditEventSink implements AuditEventSink {
+
+  public static final String INSERT_SQL =
+      "INSERT INTO iam_audit_event (event_time, partition_key, category, type, principal, target, "
+          + "message, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  public static final int MAX_IDENTIFIER_LENGTH = 256;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public JdbcAuditEventSink(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public String getName() {
+    return "database";
+  }
+
+  @Override
+  public void write(List<SerializedAuditEvent> events) {
+
+    jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+
+      @Override
+      public void setValues(PreparedStatement ps, int i) throws SQLException {
+        SerializedAuditEvent e = events.get(i);
+
+        ps.setTimestamp(1, new Timestamp(e.getTimestamp()));
+        ps.setInt(2, partitionKeyFor(Instant.ofEpochMilli(e.getTimestamp())));
+        ps.setString(3, e.getCategory().name());
+        ps.setString(4, e.getType());
+        ps.setString(5, truncate(e.getPrincipal()));
+        ps.setString(6, truncate(e.getTargetId()));
+        ps.setString(7, e.getMessage());
+        ps.setString(8, e.getJson());
+      }
+
+      @Override
+      public int getBatchSize() {
+        return events.size();
+      }
+    });
+  }
+
+  private static String truncate(String value) {
+    if (value == null || value.length() <= MAX_IDENTIFIER_LENGTH) {
+      return value;
+    }
+    return value.substring(0, MAX_IDENTIFIER_LENGTH);
+  }
+}
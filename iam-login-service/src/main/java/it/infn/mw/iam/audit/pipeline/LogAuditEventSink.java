@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.pipeline;
+
+import static it.infn.mw.iam.audit.IamAuditEventLogger.AUDIT_MARKER;
+import static it.infn.mw.iam.audit.IamAuditEventLogger.LOG;
+
+import java.util.List;
+
+public class LogAuditEventSink implements AuditEventSink {
+
+  @Override
+  public String getName() {
+    return "log";
+  }
+
+  @Override
+  public void write(List<SerializedAuditEvent> events) {
+    if (LOG.isInfoEnabled()) {
+      for (SerializedAuditEvent e : events) {
+        LOG.info(AUDIT_MARKER, e.getJson());
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.pipeline;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import it.infn.mw.iam.config.audit.AuditPipelineProperties.FileSinkProperties;
+
+/**
+ * Appends audit events, one JSON document per line, to a file that is rolled over when it exceeds
+ * the configured size. Rolled files are named after the active file with a numeric suffix
+ * (audit.ndjson.1 being the most recent), and at most max-history of them are kept.
+ */
+public class NdjsonFileAuditEventSink implements AuditEventSink, Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte[] NEWLINE = "\n".getBytes(UTF_8);
+
+  private final Path path;
+  private final long maxFileSizeBytes;
+  private final int maxHistory;
+
+  private OutputStream out;
+  private long currentSize;
+
+  public NdjsonFileAuditEventSink(FileSinkProperties properties) {
+    this.path = Paths.get(properties.getPath());
+    this.maxFileSizeBytes = properties.getMaxFileSizeBytes();
+    this.maxHistory = properties.getMaxHistory();
+  }
+
+  @Override
+  public String getName() {
+    return "file";
+  }
+
+  @Override
+  public synchronized void write(List<SerializedAuditEvent> events) {
+    try {
+      for (SerializedAuditEvent e : events) {
+        byte[] line = e.getJson().getBytes(UTF_8);
+
+        if (out == null) {
+          open();
+        }
+
+        if (currentSize > 0 && currentSize + line.length + NEWLINE.length > maxFileSizeBytes) {
+          rollOver();
+        }
+
+        out.write(line);
+        out.write(NEWLINE);
+        currentSize += line.length + NEWLINE.length;
+      }
+
+      if (out != null) {
+        out.flush();
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void open() throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    out = new BufferedOutputStream(Files.newOutputStream(path, CREATE, APPEND), BUFFER_SIZE);
+    currentSize = Files.size(path);
+  }
+
+  private Path rolledFile(int index) {
+    return path.resolveSibling(path.getFileName() + "." + index);
+  }
+
+  private void rollOver() throws IOException {
+    out.close();
+    out = null;
+
+    if (maxHistory == 0) {
+      Files.delete(path);
+    } else {
+      Files.deleteIfExists(rolledFile(maxHistory));
+      for (int i = maxHistory - 1; i >= 1; i--) {
+        Path rolled = rolledFile(i);
+        if (Files.exists(rolled)) {
+          Files.move(rolled, rolledFile(i + 1), REPLACE_EXISTING);
+        }
+      }
+      Files.move(path, rolledFile(1), REPLACE_EXISTING);
+    }
+
+    open();
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException e) {
+      // ignore, the sink will try to reopen the file on next write
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (out != null) {
+      try {
+        out.close();
+      } finally {
+        out = null;
+      }
+    }
+  }
+}
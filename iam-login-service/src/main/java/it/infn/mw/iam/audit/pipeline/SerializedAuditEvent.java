@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.pipeline;
+
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent.IamEventCategory;
+
+/**
+ * A snapshot of an audit event, taken on the publishing thread: it does not keep a reference to
+ * the event, which may point to entities that change or are detached after publication.
+ */
+public class SerializedAuditEvent {
+
+  private final long timestamp;
+  private final IamEventCategory category;
+  private final String type;
+  private final String principal;
+  private final String targetId;
+  private final String message;
+  private final String json;
+
+  public SerializedAuditEvent(IamAuditApplicationEvent event, String json) {
+    this.timestamp = event.getTimestamp();
+    this.category = event.getCategory();
+    this.type = event.getClass().getSimpleName();
+    this.principal = event.getPrincipal();
+    this.targetId = event.getTargetId();
+    this.message = event.getMessage();
+    this.json = json;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public IamEventCategory getCategory() {
+    return category;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getPrincipal() {
+    return principal;
+  }
+
+  public String getTargetId() {
+    return targetId;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public String getJson() {
+    return json;
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.audit.store;
+
+import static it.infn.mw.iam.persistence.model.IamAuditEvent.partitionKeyFor;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import it.infn.mw.iam.config.audit.AuditStoreProperties;
+import it.infn.mw.iam.config.audit.AuditStoreProperties.PartitionGranularity;
+
+/**
+ * Keeps the audit event store partitions in shape.
+ * 
+ * On MySQL, where the iam_audit_event table is range-partitioned on the partition key, the task
+ * splits upcoming day or month partitions off the catch-all p_max partition, and drops the
+ * partitions whose events are all older than the retention period. On other databases, expired
+ * events are deleted by partition key.
+ */
+@Component
+public class AuditEventStoreMaintenanceTask implements Runnable {
+
+  public static final Logger LOG = LoggerFactory.getLogger(AuditEventStoreMaintenanceTask.class);
+
+  public static final String TABLE_NAME = "iam_audit_event";
+  public static final String CATCH_ALL_PARTITION = "p_max";
+
+  private static final String PARTITIONS_QUERY =
+      "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+          + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL";
+
+  private static final String DELETE_EXPIRED_EVENTS =
+      "DELETE FROM " + TABLE_NAME + " WHERE partition_key < ?";
+
+  private final Clock clock;
+  private final AuditStoreProperties properties;
+  private final JdbcTemplate jdbcTemplate;
+
+  private Boolean partitioningSupported;
+
+  @Autowired
+  public AuditEventStoreMaintenanceTask(Clock clock, AuditStoreProperties properties,
+      JdbcTemplate jdbcTemplate) {
+    this.clock = clock;
+    this.properties = properties;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  private boolean isPartitioningSupported() {
+    if (partitioningSupported == null) {
+      String productName = jdbcTemplate.execute(
+          (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+      partitioningSupported = productName != null
+          && (productName.contains("MySQL") || productName.contains("MariaDB"));
+    }
+    return partitioningSupported;
+  }
+
+  /**
+   * @return the existing range partitions, as a map from upper bound (exclusive) to partition
+   *         name, or null if the table is not partitioned; the catch-all partition is not included
+   */
+  private NavigableMap<Integer, String> listPartitions() {
+    NavigableMap<Integer, String> partitions = new TreeMap<>();
+    List<String> names = new ArrayList<>();
+
+    jdbcTemplate.query(PARTITIONS_QUERY, rs -> {
+      String name = rs.getString(1);
+      String description = rs.getString(2);
+      names.add(name);
+      if (!CATCH_ALL_PARTITION.equals(name) && description != null
+          && !"MAXVALUE".equalsIgnoreCase(description)) {
+        partitions.put(Integer.valueOf(description.trim()), name);
+      }
+    }, TABLE_NAME);
+
+    if (!names.contains(CATCH_ALL_PARTITION)) {
+      return null;
+    }
+
+    return partitions;
+  }
+
+  private LocalDate periodStart(LocalDate day) {
+    if (PartitionGranularity.DAY.equals(properties.getPartitionGranularity())) {
+      return day;
+    }
+    return day.withDayOfMonth(1);
+  }
+
+  private LocalDate nextPeriodStart(LocalDate periodStart) {
+    if (PartitionGranularity.DAY.equals(properties.getPartitionGranularity())) {
+      return periodStart.plusDays(1);
+    }
+    return periodStart.plusMonths(1);
+  }
+
+  private static int key(LocalDate day) {
+    return partitionKeyFor(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+  }
+
+  void createPartitions(NavigableMap<Integer, String> existing) {
+    int highestBound = existing.isEmpty() ? 0 : existing.lastKey();
+
+    LocalDate start = periodStart(LocalDate.now(clock.withZone(ZoneOffset.UTC)));
+    List<String> newPartitions = new ArrayList<>();
+
+    for (int i = 0; i <= properties.getPartitionsAhead(); i++) {
+      LocalDate end = nextPeriodStart(start);
+      int upperBound = key(end);
+
+      if (upperBound > highestBound) {
+        newPartitions.add(
+            String.format("PARTITION p%d VALUES LESS THAN (%d)", key(start), upperBound));
+      }
+      start = end;
+    }
+
+    if (newPartitions.isEmpty()) {
+      return;
+    }
+
+    newPartitions.add(
+        String.format("PARTITION %s VALUES LESS THAN MAXVALUE", CATCH_ALL_PARTITION));
+
+    LOG.info("Creating {} audit event store partitions", newPartitions.size() - 1);
+    jdbcTemplate.execute(String.format("ALTER TABLE %s REORGANIZE PARTITION %s INTO (%s)",
+        TABLE_NAME, CATCH_ALL_PARTITION, String.join(", ", newPartitions)));
+  }
+
+  void dropExpiredPartitions(NavigableMap<Integer, String> existing, int cutoffKey) {
+    List<String> expired = new ArrayList<>(existing.headMap(cutoffKey, true).values());
+
+    if (expired.isEmpty()) {
+      return;
+    }
+
+    LOG.info("Dropping expired audit event store partitions: {}", expired);
+    jdbcTemplate.execute(
+        String.format("ALTER TABLE %s DROP PARTITION %s", TABLE_NAME, String.join(", ", expired)));
+  }
+
+  int cutoffKey() {
+    Instant cutoff = clock.instant().minus(properties.getRetentionDays(), ChronoUnit.DAYS);
+    return partitionKeyFor(cutoff);
+  }
+
+  @Override
+  public void run() {
+    try {
+      final boolean retentionEnabled = properties.getRetentionDays() > 0;
+
+      NavigableMap<Integer, String> partitions =
+          isPartitioningSupported() ? listPartitions() : null;
+
+      if (partitions != null) {
+
+        if (retentionEnabled) {
+          dropExpiredPartitions(partitions, cutoffKey());
+        }
+
+        createPartitions(listPartitions());
+
+      } else if (retentionEnabled) {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_EVENTS, cutoffKey());
+        LOG.info("Deleted {} expired audit events", deleted);
+      }
+    } catch (DataAccessException e) {
+      LOG.error("Audit event store maintenance failed: {}", e.getMessage(), e);
+    }
+  }
+}
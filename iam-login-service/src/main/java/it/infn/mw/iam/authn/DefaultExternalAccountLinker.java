@@ -42,35 +42,47 @@ public class DefaultExternalAccountLinker implements ExternalAccountLinker {
     this.samlUserIdResolver = resolver;
   }
 
+  /**
+   * Returns an empty account carrying only the uuid of the target account, to which the credential
+   * to be linked is added before checking it for conflicts against other accounts
+   */
+  private static IamAccount credentialsProbe(IamAccount targetAccount) {
+    IamAccount probe = new IamAccount();
+    probe.setUuid(targetAccount.getUuid());
+    return probe;
+  }
+
   @Override
   public void linkToIamAccount(IamAccount targetAccount, OidcExternalAuthenticationToken token) {
 
     final String oidcSubject = token.getExternalAuthentication().getSub();
     final String oidcIssuer = token.getExternalAuthentication().getIssuer();
 
-    repo.findByOidcId(oidcIssuer, oidcSubject).ifPresent(found -> {
+    IamOidcId oidcId = new IamOidcId();
+    oidcId.setIssuer(oidcIssuer);
+    oidcId.setSubject(oidcSubject);
 
-      if (found.equals(targetAccount)) {
+    if (targetAccount.getOidcIds().contains(oidcId)) {
 
-        String errorMsg =
-            String.format("OpenID connect account '[%s] %s' is already linked to user '%s'",
-                oidcIssuer, oidcSubject, found.getUsername());
+      String errorMsg =
+          String.format("OpenID connect account '[%s] %s' is already linked to user '%s'",
+              oidcIssuer, oidcSubject, targetAccount.getUsername());
 
-        throw new AccountAlreadyLinkedError(errorMsg);
+      throw new AccountAlreadyLinkedError(errorMsg);
+    }
 
-      } else {
+    IamAccount probe = credentialsProbe(targetAccount);
+    probe.getOidcIds().add(oidcId);
 
-        String errorMsg =
-            String.format("OpenID connect account '[%s] %s' is already linked to another user",
-                oidcIssuer, oidcSubject);
+    if (!repo.findCredentialConflicts(probe).isEmpty()) {
 
-        throw new AccountAlreadyLinkedError(errorMsg);
-      }
-    });
+      String errorMsg =
+          String.format("OpenID connect account '[%s] %s' is already linked to another user",
+              oidcIssuer, oidcSubject);
+
+      throw new AccountAlreadyLinkedError(errorMsg);
+    }
 
-    IamOidcId oidcId = new IamOidcId();
-    oidcId.setIssuer(oidcIssuer);
-    oidcId.setSubject(oidcSubject);
     oidcId.setAccount(targetAccount);
     targetAccount.getOidcIds().add(oidcId);
     repo.save(targetAccount);
@@ -87,25 +99,26 @@ public class DefaultExternalAccountLinker implements ExternalAccountLinker {
       .orElseThrow(() -> new UsernameNotFoundException(
           "Could not extract a user identifier from the SAML assertion"));
 
-    repo.findBySamlId(iamSamlId).ifPresent(found -> {
+    if (targetAccount.getSamlIds().contains(iamSamlId)) {
 
-      if (found.equals(targetAccount)) {
+      String errorMsg = String.format(
+          "SAML account '[%s] (%s = %s)' is already linked to user '%s'", iamSamlId.getIdpId(),
+          iamSamlId.getAttributeId(), iamSamlId.getUserId(), targetAccount.getUsername());
 
-        String errorMsg = String.format(
-            "SAML account '[%s] (%s = %s)' is already linked to user '%s'", iamSamlId.getIdpId(),
-            iamSamlId.getAttributeId(), iamSamlId.getUserId(), found.getUsername());
+      throw new AccountAlreadyLinkedError(errorMsg);
+    }
 
-        throw new AccountAlreadyLinkedError(errorMsg);
-      } else {
+    IamAccount probe = credentialsProbe(targetAccount);
+    probe.getSamlIds().add(iamSamlId);
 
-        String errorMsg =
-            String.format("SAML account '[%s] (%s = %s)' is already linked to another user",
-                iamSamlId.getIdpId(), iamSamlId.getAttributeId(), iamSamlId.getUserId());
+    if (!repo.findCredentialConflicts(probe).isEmpty()) {
 
-        throw new AccountAlreadyLinkedError(errorMsg);
-      }
+      String errorMsg =
+          String.format("SAML account '[%s] (%s = %s)' is already linked to another user",
+              iamSamlId.getIdpId(), iamSamlId.getAttributeId(), iamSamlId.getUserId());
 
-    });
+      throw new AccountAlreadyLinkedError(errorMsg);
+    }
 
     iamSamlId.setAccount(targetAccount);
     targetAccount.getSamlIds().add(iamSamlId);
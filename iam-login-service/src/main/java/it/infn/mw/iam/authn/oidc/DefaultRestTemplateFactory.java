@@ -20,13 +20,17 @@ import org.springframework.web.client.RestTemplate;
 
 public class DefaultRestTemplateFactory implements RestTemplateFactory {
 
-  private ClientHttpRequestFactory httpRequestFactory;
+  private final ClientHttpRequestFactory httpRequestFactory;
 
   public DefaultRestTemplateFactory(ClientHttpRequestFactory httpRequestFactory) {
 
     this.httpRequestFactory = httpRequestFactory;
   }
 
+  /**
+   * Returns a new RestTemplate on each call, since callers may customize it (e.g. by adding
+   * interceptors). The connection pool lives in the shared request factory.
+   */
   @Override
   public RestTemplate newRestTemplate() {
 
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.authn.oidc;
+
+import static java.util.Collections.singletonList;
+
+import org.mitre.openid.connect.client.UserInfoFetcher;
+import org.mitre.openid.connect.config.ServerConfiguration;
+import org.mitre.openid.connect.model.DefaultUserInfo;
+import org.mitre.openid.connect.model.PendingOIDCAuthenticationToken;
+import org.mitre.openid.connect.model.UserInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClientException;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A {@link UserInfoFetcher} that queries the userinfo endpoint through the IAM
+ * {@link RestTemplateFactory}, so that userinfo requests reuse the pooled outbound connections
+ * instead of opening a new HTTP client (and TLS session) for each login.
+ */
+public class RestTemplateUserInfoFetcher extends UserInfoFetcher {
+
+  public static final Logger LOG = LoggerFactory.getLogger(RestTemplateUserInfoFetcher.class);
+
+  private final RestTemplateFactory rtf;
+
+  public RestTemplateUserInfoFetcher(RestTemplateFactory rtf) {
+    this.rtf = rtf;
+  }
+
+  @Override
+  public UserInfo loadUserInfo(PendingOIDCAuthenticationToken token) {
+
+    ServerConfiguration serverConfiguration = token.getServerConfiguration();
+
+    if (serverConfiguration == null
+        || Strings.isNullOrEmpty(serverConfiguration.getUserInfoUri())) {
+      LOG.warn("No userinfo endpoint known for issuer {}", token.getIssuer());
+      return null;
+    }
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setBearerAuth(token.getAccessTokenValue());
+    headers.setAccept(singletonList(MediaType.APPLICATION_JSON));
+
+    try {
+      String response = rtf.newRestTemplate()
+        .exchange(serverConfiguration.getUserInfoUri(), HttpMethod.GET, new HttpEntity<>(headers),
+            String.class)
+        .getBody();
+
+      if (Strings.isNullOrEmpty(response)) {
+        LOG.warn("Empty userinfo response from {}", serverConfiguration.getUserInfoUri());
+        return null;
+      }
+
+      JsonElement json = JsonParser.parseString(response);
+
+      if (!json.isJsonObject()) {
+        LOG.warn("Userinfo response from {} is not a JSON object",
+            serverConfiguration.getUserInfoUri());
+        return null;
+      }
+
+      return DefaultUserInfo.fromJson(json.getAsJsonObject());
+
+    } catch (RestClientException | JsonParseException e) {
+      LOG.warn("Error fetching userinfo from {}: {}", serverConfiguration.getUserInfoUri(),
+          e.getMessage());
+      return null;
+    }
+  }
+}
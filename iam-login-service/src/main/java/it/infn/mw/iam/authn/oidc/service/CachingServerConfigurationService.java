@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.authn.oidc.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mitre.openid.connect.client.service.ServerConfigurationService;
+import org.mitre.openid.connect.config.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import it.infn.mw.iam.authn.oidc.RestTemplateFactory;
+import it.infn.mw.iam.config.oidc.OidcDiscoveryProperties;
+import it.infn.mw.iam.persistence.model.IamOidcProviderMetadata;
+import it.infn.mw.iam.persistence.repository.IamOidcProviderMetadataRepository;
+
+/**
+ * Resolves the configuration of external OpenID Connect providers from their discovery document.
+ * 
+ * Configurations are cached and refreshed in the background once older than the configured
+ * refresh interval, so that logins are not delayed by discovery requests. When a refresh fails
+ * the cached configuration keeps being used until the next refresh attempt. The last document
+ * successfully fetched from each provider is also stored in the database, and is used when the
+ * provider cannot be reached and no cached configuration is available (e.g. after a restart).
+ * 
+ * Discovery documents that do not declare the expected issuer, or that lack the authorization,
+ * token or JWK set endpoints, are rejected like failed requests: they are neither cached nor
+ * stored.
+ */
+public class CachingServerConfigurationService implements ServerConfigurationService {
+
+  public static final Logger LOG = LoggerFactory.getLogger(CachingServerConfigurationService.class);
+
+  public static final String WELL_KNOWN_CONFIGURATION_PATH = "/.well-known/openid-configuration";
+
+  private final RestTemplateFactory rtf;
+  private final IamOidcProviderMetadataRepository repo;
+  private final ObjectMapper mapper;
+  private final Clock clock;
+  private final boolean persistMetadata;
+  private final ExecutorService refreshExecutor;
+  private final LoadingCache<String, ServerConfiguration> servers;
+
+  public CachingServerConfigurationService(RestTemplateFactory rtf,
+      IamOidcProviderMetadataRepository repo, ObjectMapper mapper, Clock clock,
+      OidcDiscoveryProperties properties) {
+    this(rtf, repo, mapper, clock, properties,
+        Executors.newFixedThreadPool(properties.getRefreshThreads(), new ThreadFactoryBuilder()
+          .setNameFormat("iam-oidc-discovery-%d")
+          .setDaemon(true)
+          .build()));
+  }
+
+  public CachingServerConfigurationService(RestTemplateFactory rtf,
+      IamOidcProviderMetadataRepository repo, ObjectMapper mapper, Clock clock,
+      OidcDiscoveryProperties properties, ExecutorService refreshExecutor) {
+    this.rtf = rtf;
+    this.repo = repo;
+    this.mapper = mapper;
+    this.clock = clock;
+    this.persistMetadata = properties.isPersistMetadata();
+    this.refreshExecutor = refreshExecutor;
+
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return MILLISECONDS.toNanos(clock.millis());
+      }
+    };
+
+    this.servers = CacheBuilder.newBuilder()
+      .ticker(ticker)
+      .refreshAfterWrite(properties.getRefreshIntervalSecs(), SECONDS)
+      .maximumSize(properties.getMaxCacheSize())
+      .build(new ServerConfigurationLoader());
+  }
+
+  @Override
+  public ServerConfiguration getServerConfiguration(String issuer) {
+    try {
+      return servers.getUnchecked(issuer);
+    } catch (UncheckedExecutionException e) {
+      LOG.error("Could not resolve configuration for OpenID Connect provider {}: {}", issuer,
+          e.getMessage());
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Could not resolve configuration for OpenID Connect provider {}", issuer, e);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Resolves the configuration of the given providers in the background, so that the first login
+   * against each of them does not wait for discovery
+   */
+  public void prefetch(Collection<String> issuers) {
+    issuers.forEach(issuer -> refreshExecutor.execute(() -> getServerConfiguration(issuer)));
+  }
+
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private ServerConfiguration fetch(String issuer) throws JsonProcessingException {
+
+    String discoveryUri = stripTrailingSlashes(issuer) + WELL_KNOWN_CONFIGURATION_PATH;
+    String metadata = rtf.newRestTemplate().getForObject(discoveryUri, String.class);
+
+    if (Strings.isNullOrEmpty(metadata)) {
+      throw new IllegalStateException("Empty discovery document returned from " + discoveryUri);
+    }
+
+    ServerConfiguration conf = parse(metadata);
+    validate(issuer, conf);
+
+    if (persistMetadata) {
+      storeMetadata(issuer, metadata);
+    }
+
+    return conf;
+  }
+
+  private ServerConfiguration lastKnownGood(String issuer, Exception fetchError)
+      throws Exception {
+
+    Optional<IamOidcProviderMetadata> stored =
+        persistMetadata ? repo.findById(issuer) : Optional.empty();
+
+    if (!stored.isPresent()) {
+      throw fetchError;
+    }
+
+    LOG.warn("Discovery for OpenID Connect provider {} failed ({}), using metadata stored at {}",
+        issuer, fetchError.getMessage(), stored.get().getLastUpdateTime());
+
+    ServerConfiguration conf = parse(stored.get().getMetadata());
+    validate(issuer, conf);
+    return conf;
+  }
+
+  private static String stripTrailingSlashes(String uri) {
+    return uri.replaceAll("/+$", "");
+  }
+
+  private static void requireEndpoint(String issuer, String field, String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      throw new IllegalStateException(
+          String.format("Discovery document for %s does not declare the %s", issuer, field));
+    }
+  }
+
+  private void validate(String issuer, ServerConfiguration conf) {
+
+    if (Strings.isNullOrEmpty(conf.getIssuer())) {
+      throw new IllegalStateException("Discovery document for " + issuer + " has no issuer");
+    }
+
+    // trailing slashes are ignored, as they are when building the discovery URI
+    if (!stripTrailingSlashes(issuer).equals(stripTrailingSlashes(conf.getIssuer()))) {
+      throw new IllegalStateException(String.format(
+          "Discovery document for %s declares a different issuer: %s", issuer, conf.getIssuer()));
+    }
+
+    requireEndpoint(issuer, "authorization_endpoint", conf.getAuthorizationEndpointUri());
+    requireEndpoint(issuer, "token_endpoint", conf.getTokenEndpointUri());
+    requireEndpoint(issuer, "jwks_uri", conf.getJwksUri());
+  }
+
+  private void storeMetadata(String issuer, String metadata) {
+    try {
+      IamOidcProviderMetadata stored = repo.findById(issuer).orElseGet(() -> {
+        IamOidcProviderMetadata m = new IamOidcProviderMetadata();
+        m.setIssuer(issuer);
+        return m;
+      });
+
+      if (metadata.equals(stored.getMetadata())) {
+        return;
+      }
+
+      stored.setMetadata(metadata);
+      stored.setLastUpdateTime(new Date(clock.millis()));
+      repo.save(stored);
+    } catch (RuntimeException e) {
+      LOG.warn("Could not store discovery metadata for OpenID Connect provider {}: {}", issuer,
+          e.getMessage());
+    }
+  }
+
+  private ServerConfiguration parse(String metadata) throws JsonProcessingException {
+
+    JsonNode node = mapper.readTree(metadata);
+
+    ServerConfiguration conf = new ServerConfiguration();
+    conf.setIssuer(text(node, "issuer"));
+    conf.setAuthorizationEndpointUri(text(node, "authorization_endpoint"));
+    conf.setTokenEndpointUri(text(node, "token_endpoint"));
+    conf.setJwksUri(text(node, "jwks_uri"));
+    conf.setUserInfoUri(text(node, "userinfo_endpoint"));
+    conf.setRegistrationEndpointUri(text(node, "registration_endpoint"));
+    conf.setIntrospectionEndpointUri(text(node, "introspection_endpoint"));
+    conf.setRevocationEndpointUri(text(node, "revocation_endpoint"));
+    conf.setEndSessionEndpoint(text(node, "end_session_endpoint"));
+
+    return conf;
+  }
+
+  private static String text(JsonNode node, String field) {
+    JsonNode value = node.get(field);
+    return value == null || value.isNull() ? null : value.asText();
+  }
+
+  private class ServerConfigurationLoader extends CacheLoader<String, ServerConfiguration> {
+
+    @Override
+    public ServerConfiguration load(String issuer) throws Exception {
+      try {
+        return fetch(issuer);
+      } catch (Exception e) {
+        return lastKnownGood(issuer, e);
+      }
+    }
+
+    @Override
+    public ListenableFuture<ServerConfiguration> reload(String issuer,
+        ServerConfiguration oldValue) {
+      ListenableFutureTask<ServerConfiguration> task = ListenableFutureTask.create(() -> {
+        try {
+          return fetch(issuer);
+        } catch (Exception e) {
+          // Keeping the current configuration also postpones the next attempt by a refresh interval
+          LOG.warn("Refresh of discovery metadata for OpenID Connect provider {} failed: {}",
+              issuer, e.getMessage());
+          return oldValue;
+        }
+      });
+      refreshExecutor.execute(task);
+      return task;
+    }
+  }
+}
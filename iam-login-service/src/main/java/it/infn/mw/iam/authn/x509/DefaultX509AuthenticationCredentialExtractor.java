@@ -32,6 +32,8 @@ import org.springframework.stereotype.Component;
 
 import com.google.common.base.Strings;
 
+import it.infn.mw.iam.config.security.X509AuthenticationCacheProperties;
+
 @Component
 public class DefaultX509AuthenticationCredentialExtractor
     implements X509AuthenticationCredentialExtractor {
@@ -61,14 +63,20 @@ public class DefaultX509AuthenticationCredentialExtractor
   public static final Logger LOG =
       LoggerFactory.getLogger(DefaultX509AuthenticationCredentialExtractor.class);
 
-  private final X509CertificateChainParser certChainParser;
+  private final X509CertificateChainCache certChainCache;
 
   protected static final EnumSet<Headers> HEADERS_REQUIRED =
       EnumSet.complementOf(EnumSet.of(Headers.SERVER_NAME));
 
-  @Autowired
   public DefaultX509AuthenticationCredentialExtractor(X509CertificateChainParser chainParser) {
-    this.certChainParser = chainParser;
+    this.certChainCache = new X509CertificateChainCache(chainParser);
+  }
+
+  @Autowired
+  public DefaultX509AuthenticationCredentialExtractor(X509CertificateChainParser chainParser,
+      X509AuthenticationCacheProperties cacheProperties) {
+    this.certChainCache = new X509CertificateChainCache(chainParser,
+        cacheProperties.getChainCacheSize(), cacheProperties.getChainCacheTtlSecs());
   }
   
   private String getHeader(HttpServletRequest request, Headers header){
@@ -122,7 +130,7 @@ public class DefaultX509AuthenticationCredentialExtractor
     String pemCertificateString = clientCertHeaderContent.replace('\t', '\n');
     
     X509CertificateChainParsingResult chain =
-        certChainParser.parseChainFromString(pemCertificateString);
+        certChainCache.parseChainFromString(pemCertificateString);
     
     IamX509AuthenticationCredential.Builder credBuilder =
         new IamX509AuthenticationCredential.Builder();
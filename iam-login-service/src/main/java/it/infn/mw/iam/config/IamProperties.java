@@ -290,6 +290,37 @@ public class IamProperties {
 
   }
 
+  public static class JWKRolloverProperties {
+
+    boolean enabled = false;
+    long keystoreCheckPeriodSecs = 60;
+    long activationDelaySecs = 86400;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getKeystoreCheckPeriodSecs() {
+      return keystoreCheckPeriodSecs;
+    }
+
+    public void setKeystoreCheckPeriodSecs(long keystoreCheckPeriodSecs) {
+      this.keystoreCheckPeriodSecs = keystoreCheckPeriodSecs;
+    }
+
+    public long getActivationDelaySecs() {
+      return activationDelaySecs;
+    }
+
+    public void setActivationDelaySecs(long activationDelaySecs) {
+      this.activationDelaySecs = activationDelaySecs;
+    }
+  }
+
   public static class JWKProperties {
     String keystoreLocation;
     String defaultKeyId = "rsa1";
@@ -300,6 +331,8 @@ public class IamProperties {
     String defaultJweDecryptKeyId = "rsa1";
     String defaultJweEncryptKeyId = "rsa1";
 
+    JWKRolloverProperties rollover = new JWKRolloverProperties();
+
     public String getKeystoreLocation() {
       return keystoreLocation;
     }
@@ -347,6 +380,14 @@ public class IamProperties {
     public void setDefaultJweEncryptKeyId(String defaultJweEncryptKeyId) {
       this.defaultJweEncryptKeyId = defaultJweEncryptKeyId;
     }
+
+    public JWKRolloverProperties getRollover() {
+      return rollover;
+    }
+
+    public void setRollover(JWKRolloverProperties rollover) {
+      this.rollover = rollover;
+    }
   }
 
   public static class JWTProfile {
@@ -22,6 +22,7 @@ import javax.sql.DataSource;
 
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaBaseConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
@@ -52,6 +53,9 @@ public class JpaConfig extends JpaBaseConfiguration {
   @Autowired
   DataSource dataSource;
 
+  @Value("${iam.jpa.batch-writing-size:0}")
+  int batchWritingSize;
+
   @Override
   protected AbstractJpaVendorAdapter createJpaVendorAdapter() {
 
@@ -68,6 +72,11 @@ public class JpaConfig extends JpaBaseConfiguration {
     map.put(ECLIPSELINK_LOGGING_LEVEL_SQL, "OFF");
     map.put("eclipselink.cache.shared.default", "false");
 
+    if (batchWritingSize > 0) {
+      map.put("eclipselink.jdbc.batch-writing", "JDBC");
+      map.put("eclipselink.jdbc.batch-writing.size", String.valueOf(batchWritingSize));
+    }
+
     if (System.getProperty("iam.show_sql") != null) {
       map.put(ECLIPSELINK_LOGGING_LEVEL, "FINE");
       map.put(ECLIPSELINK_LOGGING_LEVEL_SQL, "FINE");
@@ -15,9 +15,9 @@
  */
 package it.infn.mw.iam.config;
 
+import java.time.Clock;
 import java.util.Locale;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 import org.mitre.jwt.assertion.AssertionValidator;
 import org.mitre.jwt.assertion.impl.SelfAssertionValidator;
@@ -79,6 +79,7 @@ import org.springframework.security.web.authentication.Http403ForbiddenEntryPoin
 import com.google.common.collect.Sets;
 
 import it.infn.mw.iam.authn.oidc.RestTemplateFactory;
+import it.infn.mw.iam.config.crypto.JWKSetCacheProperties;
 import it.infn.mw.iam.core.client.ClientUserDetailsService;
 import it.infn.mw.iam.core.client.IAMClientUserDetailsService;
 import it.infn.mw.iam.core.jwk.IamJWKSetCacheService;
@@ -297,10 +298,11 @@ public class MitreServicesConfig {
     return new SymmetricKeyJWTValidatorCacheService();
   }
 
-  @Bean
-  JWKSetCacheService defaultCacheService(RestTemplateFactory rtf) {
+  @Bean(destroyMethod = "shutdown")
+  JWKSetCacheService defaultCacheService(RestTemplateFactory rtf,
+      JWKSetCacheProperties jwkSetCacheProperties, Clock clock) {
 
-    return new IamJWKSetCacheService(rtf, 100, 1, TimeUnit.HOURS);
+    return new IamJWKSetCacheService(rtf, jwkSetCacheProperties, clock);
   }
 
   @Bean
@@ -15,6 +15,15 @@
  */
 package it.infn.mw.iam.config;
 
+import static it.infn.mw.iam.core.task.TaskGroup.HOUSEKEEPING;
+import static it.infn.mw.iam.core.task.TaskGroup.MAINTENANCE;
+import static it.infn.mw.iam.core.task.TaskGroup.NOTIFICATION;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -29,13 +38,29 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.actuator.task.TasksEndpoint;
+import it.infn.mw.iam.audit.store.AuditEventStoreMaintenanceTask;
+import it.infn.mw.iam.config.IamProperties.JWKRolloverProperties;
+import it.infn.mw.iam.config.audit.AuditStoreProperties;
 import it.infn.mw.iam.config.lifecycle.LifecycleProperties;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.config.task.TaskProperties.LeaseProperties;
+import it.infn.mw.iam.config.task.TaskProperties.OrphanedTokenReaperProperties;
+import it.infn.mw.iam.config.task.TaskProperties.TokenCountersProperties;
+import it.infn.mw.iam.core.jwk.JWKKeystoreRolloverTask;
 import it.infn.mw.iam.core.lifecycle.ExpiredAccountsHandler;
+import it.infn.mw.iam.core.oauth.token.OrphanedTokenReaper;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
+import it.infn.mw.iam.core.task.IamTaskScheduler;
+import it.infn.mw.iam.core.task.JdbcTaskLeaseManager;
+import it.infn.mw.iam.core.task.LocalTaskLeaseManager;
+import it.infn.mw.iam.core.task.TaskLeaseManager;
 import it.infn.mw.iam.core.user.IamAccountService;
 import it.infn.mw.iam.notification.NotificationDelivery;
 import it.infn.mw.iam.notification.NotificationDeliveryTask;
@@ -56,6 +81,17 @@ public class TaskConfig implements SchedulingConfigurer {
   public static final long ONE_HOUR_MSEC = 60 * ONE_MINUTE_MSEC;
   public static final long ONE_DAY_MSEC = 24 * ONE_HOUR_MSEC;
 
+  public static final String TOKEN_CLEANUP_TASK = "token-cleanup";
+  public static final String APPROVED_SITE_CLEANUP_TASK = "approved-site-cleanup";
+  public static final String NOTIFICATION_CLEANUP_TASK = "notification-cleanup";
+  public static final String DEVICE_CODE_CLEANUP_TASK = "device-code-cleanup";
+  public static final String NOTIFICATION_DELIVERY_TASK = "notification-delivery";
+  public static final String EXPIRED_ACCOUNTS_TASK = "expired-accounts";
+  public static final String AUDIT_STORE_MAINTENANCE_TASK = "audit-store-maintenance";
+  public static final String JWK_ROLLOVER_TASK = "jwk-keystore-rollover";
+  public static final String ORPHANED_TOKEN_REAPER_TASK = OrphanedTokenReaper.TASK_NAME;
+  public static final String TOKEN_COUNTERS_RECOUNT_TASK = "token-counters-recount";
+
   @Autowired
   OAuth2TokenEntityService tokenEntityService;
 
@@ -83,43 +119,140 @@ public class TaskConfig implements SchedulingConfigurer {
   @Autowired
   ExpiredAccountsHandler expiredAccountsHandler;
 
+  @Autowired
+  AuditStoreProperties auditStoreProperties;
+
+  @Autowired
+  AuditEventStoreMaintenanceTask auditEventStoreMaintenanceTask;
+
+  @Autowired
+  IamProperties iamProperties;
+
+  @Autowired
+  JWKKeystoreRolloverTask jwkKeystoreRolloverTask;
+
+  @Autowired
+  OrphanedTokenReaper orphanedTokenReaper;
+
+  @Autowired
+  TokenCounters tokenCounters;
+
+  @Autowired
+  TaskProperties taskProperties;
+
+  @Autowired
+  Clock clock;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
   @Value("${notification.disable}")
   boolean notificationDisabled;
 
   @Value("${notification.taskDelay}")
   long notificationTaskPeriodMsec;
 
+  @Value("${task.tokenCleanupPeriodMsec}")
+  long tokenCleanupPeriodMsec;
 
+  @Value("${task.approvalCleanupPeriodMsec}")
+  long approvalCleanupPeriodMsec;
+
+  @Value("${task.deviceCodeCleanupPeriodMsec}")
+  long deviceCodeCleanupPeriodMsec;
+
+  /**
+   * Runs the tasks registered through Spring scheduling support (e.g. {@code @Scheduled} methods
+   * and other {@link SchedulingConfigurer}s). IAM background tasks run on the
+   * {@link IamTaskScheduler} pools instead.
+   */
   @Bean(destroyMethod = "shutdown")
   public ScheduledExecutorService taskScheduler() {
     return Executors.newSingleThreadScheduledExecutor();
   }
 
-  @Scheduled(fixedDelayString = "${task.tokenCleanupPeriodMsec}", initialDelay = TEN_MINUTES_MSEC)
-  public void clearExpiredTokens() {
+  private String leaseOwner(LeaseProperties lease) {
+    if (lease.getOwner() != null && !lease.getOwner().trim().isEmpty()) {
+      return lease.getOwner().trim();
+    }
 
-    tokenEntityService.clearExpiredTokens();
+    String hostname;
+    try {
+      hostname = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      hostname = "unknown";
+    }
+
+    return hostname + "-" + UUID.randomUUID().toString().substring(0, 8);
   }
 
-  @Scheduled(fixedDelayString = "${task.approvalCleanupPeriodMsec}",
-      initialDelay = TEN_MINUTES_MSEC)
-  public void clearExpiredSites() {
+  @Bean
+  public TaskLeaseManager taskLeaseManager() {
+    LeaseProperties lease = taskProperties.getLease();
+
+    if (!lease.isEnabled()) {
+      LOG.info("Task leases are disabled, background tasks run on every instance");
+      return new LocalTaskLeaseManager();
+    }
 
-    approvedSiteService.clearExpiredSites();
+    return new JdbcTaskLeaseManager(jdbcTemplate, clock, leaseOwner(lease),
+        Duration.ofSeconds(lease.getDurationSecs()), meterRegistry);
   }
 
-  @Scheduled(fixedDelay = THIRTY_SECONDS_MSEC, initialDelay = TEN_MINUTES_MSEC)
-  public void clearExpiredNotifications() {
-    notificationStoreService.clearExpiredNotifications();
+  @Bean(destroyMethod = "shutdown")
+  public IamTaskScheduler iamTaskScheduler() {
+    return new IamTaskScheduler(taskProperties, taskLeaseManager(), clock, meterRegistry);
+  }
+
+  @Bean
+  public TasksEndpoint tasksEndpoint() {
+    return new TasksEndpoint(iamTaskScheduler());
+  }
+
+  public void scheduleHousekeepingTasks(final IamTaskScheduler scheduler) {
+
+    scheduler.scheduleWithFixedDelay(TOKEN_CLEANUP_TASK, HOUSEKEEPING,
+        tokenEntityService::clearExpiredTokens, TEN_MINUTES_MSEC, tokenCleanupPeriodMsec);
+
+    scheduler.scheduleWithFixedDelay(APPROVED_SITE_CLEANUP_TASK, HOUSEKEEPING,
+        approvedSiteService::clearExpiredSites, TEN_MINUTES_MSEC, approvalCleanupPeriodMsec);
+
+    scheduler.scheduleWithFixedDelay(NOTIFICATION_CLEANUP_TASK, HOUSEKEEPING,
+        notificationStoreService::clearExpiredNotifications, TEN_MINUTES_MSEC,
+        THIRTY_SECONDS_MSEC);
+
+    scheduler.scheduleWithFixedDelay(DEVICE_CODE_CLEANUP_TASK, HOUSEKEEPING,
+        deviceCodeService::clearExpiredDeviceCodes, TEN_MINUTES_MSEC,
+        deviceCodeCleanupPeriodMsec);
   }
 
-  @Scheduled(fixedDelayString = "${task.deviceCodeCleanupPeriodMsec}",
-      initialDelay = TEN_MINUTES_MSEC)
-  public void clearExpiredDeviceCodes() {
-    deviceCodeService.clearExpiredDeviceCodes();
+  public void scheduleOrphanedTokenReaper(final IamTaskScheduler scheduler) {
+    OrphanedTokenReaperProperties reaper = taskProperties.getOrphanedTokenReaper();
+
+    if (!reaper.isEnabled()) {
+      LOG.info("Orphaned token reaper is disabled");
+    } else {
+      scheduler.scheduleWithFixedDelay(ORPHANED_TOKEN_REAPER_TASK, HOUSEKEEPING,
+          orphanedTokenReaper, TEN_MINUTES_MSEC, reaper.getPeriodMsec());
+    }
   }
 
-  public void schedulePendingNotificationsDelivery(final ScheduledTaskRegistrar taskRegistrar) {
+  public void scheduleTokenCountersRecount(final IamTaskScheduler scheduler) {
+    TokenCountersProperties counters = taskProperties.getTokenCounters();
+
+    if (!counters.isEnabled()) {
+      LOG.info("Token counters are disabled, token counts are computed by the database");
+    } else {
+      // The counters are kept in memory, so every instance recounts its own
+      scheduler.scheduleLocalWithFixedDelay(TOKEN_COUNTERS_RECOUNT_TASK, HOUSEKEEPING,
+          tokenCounters, 0, TimeUnit.SECONDS.toMillis(counters.getRecountPeriodSecs()));
+    }
+  }
+
+  public void schedulePendingNotificationsDelivery(final IamTaskScheduler scheduler) {
 
     if (notificationTaskPeriodMsec < 0) {
       LOG.info("Period notification delivery task will NOT be scheduled, since "
@@ -130,25 +263,60 @@ public class TaskConfig implements SchedulingConfigurer {
     LOG.info("Scheduling pending notification delivery task to run every {} sec",
         TimeUnit.MILLISECONDS.toSeconds(notificationTaskPeriodMsec));
 
-    taskRegistrar.addFixedRateTask(deliveryTask, notificationTaskPeriodMsec);
+    scheduler.scheduleAtFixedRate(NOTIFICATION_DELIVERY_TASK, NOTIFICATION, deliveryTask, 0,
+        notificationTaskPeriodMsec);
   }
 
-  public void scheduledExpiredAccountsTask(final ScheduledTaskRegistrar taskRegistrar) {
+  public void scheduledExpiredAccountsTask(final IamTaskScheduler scheduler) {
     if (!lifecycleProperties.getAccount().getExpiredAccountsTask().isEnabled()) {
       LOG.info("Expired accounts task is disabled");
     } else {
       final String cronSchedule =
           lifecycleProperties.getAccount().getExpiredAccountsTask().getCronSchedule();
       LOG.info("Scheduling expired accounts handler task with schedule: {}", cronSchedule);
-      taskRegistrar.addCronTask(expiredAccountsHandler, cronSchedule);
+      scheduler.scheduleCron(EXPIRED_ACCOUNTS_TASK, MAINTENANCE, expiredAccountsHandler,
+          cronSchedule);
+    }
+  }
+
+  public void scheduleAuditEventStoreMaintenanceTask(final IamTaskScheduler scheduler) {
+    if (!auditStoreProperties.isEnabled()) {
+      LOG.info("Audit event store is disabled, maintenance task will NOT be scheduled");
+    } else {
+      final String cronSchedule = auditStoreProperties.getMaintenanceCronSchedule();
+      LOG.info("Scheduling audit event store maintenance task with schedule: {}", cronSchedule);
+      scheduler.scheduleCron(AUDIT_STORE_MAINTENANCE_TASK, MAINTENANCE,
+          auditEventStoreMaintenanceTask, cronSchedule);
+    }
+  }
+
+  public void scheduleJwkKeystoreRolloverTask(final IamTaskScheduler scheduler) {
+    JWKRolloverProperties rollover = iamProperties.getJwk().getRollover();
+
+    if (!rollover.isEnabled()) {
+      LOG.info("JWK key rollover is disabled, keystore changes require a restart");
+    } else {
+      LOG.info("Scheduling JWK keystore check every {} sec, key activation delay: {} sec",
+          rollover.getKeystoreCheckPeriodSecs(), rollover.getActivationDelaySecs());
+      // the rollover updates the signing keys held by this instance, so it runs on every instance
+      scheduler.scheduleLocalWithFixedDelay(JWK_ROLLOVER_TASK, MAINTENANCE,
+          jwkKeystoreRolloverTask, 0,
+          TimeUnit.SECONDS.toMillis(rollover.getKeystoreCheckPeriodSecs()));
     }
   }
 
   @Override
   public void configureTasks(final ScheduledTaskRegistrar taskRegistrar) {
     taskRegistrar.setScheduler(taskScheduler());
-    schedulePendingNotificationsDelivery(taskRegistrar);
-    scheduledExpiredAccountsTask(taskRegistrar);
+
+    IamTaskScheduler scheduler = iamTaskScheduler();
+    scheduleHousekeepingTasks(scheduler);
+    scheduleOrphanedTokenReaper(scheduler);
+    scheduleTokenCountersRecount(scheduler);
+    schedulePendingNotificationsDelivery(scheduler);
+    scheduledExpiredAccountsTask(scheduler);
+    scheduleAuditEventStoreMaintenanceTask(scheduler);
+    scheduleJwkKeystoreRolloverTask(scheduler);
   }
 
 }
@@ -29,9 +29,8 @@ import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.italiangrid.voms.util.CertificateValidatorBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -41,7 +40,10 @@ import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 
 import eu.emi.security.authn.x509.X509CertChainValidatorExt;
 import eu.emi.security.authn.x509.impl.SocketFactoryCreator;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.config.http.OutboundHttpProperties;
 import it.infn.mw.iam.core.error.StartupError;
+import it.infn.mw.iam.core.http.OutboundHttpClientFactory;
 
 @Configuration
 @Profile("canl")
@@ -56,6 +58,12 @@ public class X509TrustConfig {
   @Value("${x509.tlsVersion}")
   String tlsVersion;
 
+  @Autowired
+  OutboundHttpProperties outboundHttpProperties;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
   X509CertChainValidatorExt certificateValidator() {
 
     return new CertificateValidatorBuilder().lazyAnchorsLoading(false)
@@ -92,15 +100,8 @@ public class X509TrustConfig {
           .register("http", PlainConnectionSocketFactory.getSocketFactory())
           .build();
 
-    PoolingHttpClientConnectionManager connectionManager =
-        new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-    connectionManager.setMaxTotal(10);
-    connectionManager.setDefaultMaxPerRoute(10);
-
-    return HttpClientBuilder.create()
-      .setConnectionManager(connectionManager)
-      .disableAuthCaching()
-      .build();
+    return OutboundHttpClientFactory.newHttpClient("canl", outboundHttpProperties,
+        socketFactoryRegistry, meterRegistry);
   }
 
   @Bean(name = "canlRequestFactory")
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.audit;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.audit.AuditDataSerializer;
+import it.infn.mw.iam.audit.pipeline.AsyncAuditEventPipeline;
+import it.infn.mw.iam.audit.pipeline.AuditEventSink;
+import it.infn.mw.iam.audit.pipeline.JdbcAuditEventSink;
+import it.infn.mw.iam.audit.pipeline.LogAuditEventSink;
+import it.infn.mw.iam.audit.pipeline.NdjsonFileAuditEventSink;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties.SinkType;
+
+@Configuration
+@ConditionalOnExpression("${audit.pipeline.enabled:false} or ${audit.store.enabled:false}")
+public class AuditPipelineConfig {
+
+  @Autowired
+  AuditPipelineProperties properties;
+
+  @Autowired
+  AuditStoreProperties storeProperties;
+
+  @Bean(initMethod = "start", destroyMethod = "shutdown")
+  AsyncAuditEventPipeline asyncAuditEventPipeline(AuditDataSerializer serializer,
+      JdbcTemplate jdbcTemplate, MeterRegistry registry) {
+
+    List<AuditEventSink> sinks = new ArrayList<>();
+
+    Set<SinkType> sinkTypes = EnumSet.copyOf(properties.getSinks());
+
+    // The audit store is fed by the database sink
+    if (storeProperties.isEnabled()) {
+      sinkTypes.add(SinkType.DATABASE);
+    }
+
+    for (SinkType type : sinkTypes) {
+      switch (type) {
+        case LOG:
+          sinks.add(new LogAuditEventSink());
+          break;
+        case FILE:
+          sinks.add(new NdjsonFileAuditEventSink(properties.getFile()));
+          break;
+        case DATABASE:
+          sinks.add(new JdbcAuditEventSink(jdbcTemplate));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported audit sink: " + type);
+      }
+    }
+
+    return new AsyncAuditEventPipeline(properties, serializer, sinks, registry);
+  }
+}
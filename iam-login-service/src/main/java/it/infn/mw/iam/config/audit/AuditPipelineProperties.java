@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.audit;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("audit.pipeline")
+@Configuration
+@Validated
+public class AuditPipelineProperties {
+
+  public enum BackPressurePolicy {
+    /**
+     * The publishing thread waits for free space in the buffer, up to the configured block timeout
+     * (after which the event is dropped)
+     */
+    BLOCK,
+    /**
+     * Events are dropped when the buffer is full
+     */
+    DROP,
+    /**
+     * When the buffer is above the sampling threshold, only one event every sample-rate events is
+     * kept; events are dropped when the buffer is full
+     */
+    SAMPLE
+  }
+
+  public enum SinkType {
+    LOG,
+    FILE,
+    DATABASE
+  }
+
+  public static class FileSinkProperties {
+
+    @NotEmpty
+    String path = "/var/log/iam/audit.ndjson";
+
+    @Min(1)
+    long maxFileSizeBytes = 100L * 1024 * 1024;
+
+    @Min(0)
+    int maxHistory = 10;
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public long getMaxFileSizeBytes() {
+      return maxFileSizeBytes;
+    }
+
+    public void setMaxFileSizeBytes(long maxFileSizeBytes) {
+      this.maxFileSizeBytes = maxFileSizeBytes;
+    }
+
+    public int getMaxHistory() {
+      return maxHistory;
+    }
+
+    public void setMaxHistory(int maxHistory) {
+      this.maxHistory = maxHistory;
+    }
+  }
+
+  /**
+   * When disabled, audit events are serialized and logged synchronously on the publishing thread
+   */
+  boolean enabled = false;
+
+  /**
+   * Number of events the buffer can hold
+   */
+  @Min(1)
+  int capacity = 8192;
+
+  /**
+   * Maximum number of events handed to the sinks in one go
+   */
+  @Min(1)
+  int batchSize = 256;
+
+  @NotNull
+  BackPressurePolicy backPressurePolicy = BackPressurePolicy.BLOCK;
+
+  /**
+   * How long a publishing thread waits for buffer space with the BLOCK policy
+   */
+  @Min(0)
+  long blockTimeoutMillis = 1000;
+
+  /**
+   * Buffer fill ratio, in percent, above which the SAMPLE policy starts discarding events
+   */
+  @Min(0)
+  int samplingThresholdPercent = 75;
+
+  /**
+   * With the SAMPLE policy, one event every sample-rate events is kept above the threshold
+   */
+  @Min(1)
+  int sampleRate = 10;
+
+  @NotEmpty
+  Set<SinkType> sinks = EnumSet.of(SinkType.LOG);
+
+  @Valid
+  FileSinkProperties file = new FileSinkProperties();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public BackPressurePolicy getBackPressurePolicy() {
+    return backPressurePolicy;
+  }
+
+  public void setBackPressurePolicy(BackPressurePolicy backPressurePolicy) {
+    this.backPressurePolicy = backPressurePolicy;
+  }
+
+  public long getBlockTimeoutMillis() {
+    return blockTimeoutMillis;
+  }
+
+  public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+    this.blockTimeoutMillis = blockTimeoutMillis;
+  }
+
+  public int getSamplingThresholdPercent() {
+    return samplingThresholdPercent;
+  }
+
+  public void setSamplingThresholdPercent(int samplingThresholdPercent) {
+    this.samplingThresholdPercent = samplingThresholdPercent;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  public void setSampleRate(int sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  public Set<SinkType> getSinks() {
+    return sinks;
+  }
+
+  public void setSinks(Set<SinkType> sinks) {
+    this.sinks = sinks;
+  }
+
+  public FileSinkProperties getFile() {
+    return file;
+  }
+
+  public void setFile(FileSinkProperties file) {
+    this.file = file;
+  }
+}
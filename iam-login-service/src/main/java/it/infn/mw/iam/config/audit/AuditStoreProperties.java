@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.audit;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("audit.store")
+@Configuration
+@Validated
+public class AuditStoreProperties {
+
+  public enum PartitionGranularity {
+    DAY,
+    MONTH
+  }
+
+  /**
+   * When enabled, audit events are persisted (through the audit pipeline database sink) and can be
+   * queried with the audit events API
+   */
+  boolean enabled = false;
+
+  @NotNull
+  PartitionGranularity partitionGranularity = PartitionGranularity.MONTH;
+
+  /**
+   * Number of partitions created ahead of the current one
+   */
+  @Min(1)
+  int partitionsAhead = 2;
+
+  /**
+   * Events older than this are dropped, together with the partitions that hold them. Zero disables
+   * retention.
+   */
+  @Min(0)
+  int retentionDays = 365;
+
+  @NotEmpty
+  String maintenanceCronSchedule = "0 17 3 * * *";
+
+  /**
+   * Maximum number of events returned in a single page by the audit events API
+   */
+  @Min(1)
+  @Max(1000)
+  int maxPageSize = 100;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public PartitionGranularity getPartitionGranularity() {
+    return partitionGranularity;
+  }
+
+  public void setPartitionGranularity(PartitionGranularity partitionGranularity) {
+    this.partitionGranularity = partitionGranularity;
+  }
+
+  public int getPartitionsAhead() {
+    return partitionsAhead;
+  }
+
+  public void setPartitionsAhead(int partitionsAhead) {
+    this.partitionsAhead = partitionsAhead;
+  }
+
+  public int getRetentionDays() {
+    return retentionDays;
+  }
+
+  public void setRetentionDays(int retentionDays) {
+    this.retentionDays = retentionDays;
+  }
+
+  public String getMaintenanceCronSchedule() {
+    return maintenanceCronSchedule;
+  }
+
+  public void setMaintenanceCronSchedule(String maintenanceCronSchedule) {
+    this.maintenanceCronSchedule = maintenanceCronSchedule;
+  }
+
+  public int getMaxPageSize() {
+    return maxPageSize;
+  }
+
+  public void setMaxPageSize(int maxPageSize) {
+    this.maxPageSize = maxPageSize;
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.crypto;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("jwk-set-cache")
+@Configuration
+@Validated
+public class JWKSetCacheProperties {
+
+  @Min(1)
+  private int maxCacheSize = 100;
+
+  @Min(1)
+  private long refreshIntervalSecs = 3600;
+
+  @Min(0)
+  private long minRefreshIntervalSecs = 60;
+
+  @Min(1)
+  private long maxStalenessSecs = 86400;
+
+  private boolean honourCacheControl = true;
+
+  @Min(1)
+  private int refreshThreads = 2;
+
+  public int getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  public void setMaxCacheSize(int maxCacheSize) {
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public long getRefreshIntervalSecs() {
+    return refreshIntervalSecs;
+  }
+
+  public void setRefreshIntervalSecs(long refreshIntervalSecs) {
+    this.refreshIntervalSecs = refreshIntervalSecs;
+  }
+
+  public long getMinRefreshIntervalSecs() {
+    return minRefreshIntervalSecs;
+  }
+
+  public void setMinRefreshIntervalSecs(long minRefreshIntervalSecs) {
+    this.minRefreshIntervalSecs = minRefreshIntervalSecs;
+  }
+
+  public long getMaxStalenessSecs() {
+    return maxStalenessSecs;
+  }
+
+  public void setMaxStalenessSecs(long maxStalenessSecs) {
+    this.maxStalenessSecs = maxStalenessSecs;
+  }
+
+  public boolean isHonourCacheControl() {
+    return honourCacheControl;
+  }
+
+  public void setHonourCacheControl(boolean honourCacheControl) {
+    this.honourCacheControl = honourCacheControl;
+  }
+
+  public int getRefreshThreads() {
+    return refreshThreads;
+  }
+
+  public void setRefreshThreads(int refreshThreads) {
+    this.refreshThreads = refreshThreads;
+  }
+
+  @AssertTrue(message = "The minimum refresh interval cannot exceed the refresh interval")
+  public boolean isRefreshIntervalRangeValid() {
+    return minRefreshIntervalSecs <= refreshIntervalSecs;
+  }
+
+  @AssertTrue(message = "The refresh interval must be shorter than the maximum staleness")
+  public boolean isMaxStalenessValid() {
+    return refreshIntervalSecs < maxStalenessSecs;
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.crypto;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import eu.emi.security.authn.x509.helpers.proxy.ProxyGeneratorHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.rcauth.x509.KeyPairPool;
+import it.infn.mw.iam.rcauth.x509.KeyPairProvider;
+
+@Configuration
+public class KeyPairPoolConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "shutdown")
+  @ConditionalOnProperty(name = "key-pair-pool.enabled", havingValue = "true",
+      matchIfMissing = true)
+  KeyPairPool keyPairPool(KeyPairPoolProperties properties, MeterRegistry registry) {
+    return new KeyPairPool(properties, registry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "key-pair-pool.enabled", havingValue = "false")
+  KeyPairProvider inlineKeyPairProvider() {
+    return ProxyGeneratorHelper::generateKeyPair;
+  }
+}
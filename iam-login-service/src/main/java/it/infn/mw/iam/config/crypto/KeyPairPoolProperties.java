@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.crypto;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("key-pair-pool")
+@Configuration
+@Validated
+public class KeyPairPoolProperties {
+
+  private boolean enabled = true;
+
+  @Min(512)
+  private int keySize = 2048;
+
+  @Min(0)
+  private int lowWatermark = 8;
+
+  @Min(1)
+  private int highWatermark = 32;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getKeySize() {
+    return keySize;
+  }
+
+  public void setKeySize(int keySize) {
+    this.keySize = keySize;
+  }
+
+  public int getLowWatermark() {
+    return lowWatermark;
+  }
+
+  public void setLowWatermark(int lowWatermark) {
+    this.lowWatermark = lowWatermark;
+  }
+
+  public int getHighWatermark() {
+    return highWatermark;
+  }
+
+  public void setHighWatermark(int highWatermark) {
+    this.highWatermark = highWatermark;
+  }
+
+  @AssertTrue(message = "The low watermark cannot exceed the high watermark")
+  public boolean isWatermarkRangeValid() {
+    return lowWatermark <= highWatermark;
+  }
+}
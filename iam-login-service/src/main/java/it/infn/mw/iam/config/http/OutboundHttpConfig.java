@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.http;
+
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.core.http.OutboundHttpClientFactory;
+
+@Configuration
+public class OutboundHttpConfig {
+
+  public static final String OUTBOUND_HTTP_CLIENT = "outboundHttpClient";
+
+  @Bean(name = OUTBOUND_HTTP_CLIENT)
+  @Profile("!canl")
+  public CloseableHttpClient outboundHttpClient(OutboundHttpProperties properties,
+      MeterRegistry registry) {
+
+    return OutboundHttpClientFactory.newHttpClient("outbound", properties,
+        RegistryBuilder.<ConnectionSocketFactory>create()
+          .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+          .register("http", PlainConnectionSocketFactory.getSocketFactory())
+          .build(),
+        registry);
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.http;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("outbound-http")
+@Configuration
+@Validated
+public class OutboundHttpProperties {
+
+  @Min(1)
+  private int maxConnections = 100;
+
+  @Min(1)
+  private int maxConnectionsPerHost = 20;
+
+  /**
+   * Per-host connection limits overriding maxConnectionsPerHost, keyed by base URL (e.g.
+   * https://login.example.org)
+   */
+  private Map<String, Integer> hostConnectionLimits = new HashMap<>();
+
+  @Min(0)
+  private int connectTimeoutMillis = 5000;
+
+  @Min(0)
+  private int readTimeoutMillis = 10000;
+
+  @Min(0)
+  private int connectionRequestTimeoutMillis = 5000;
+
+  @Min(1)
+  private long keepAliveSecs = 60;
+
+  @Min(1)
+  private long idleConnectionTimeoutSecs = 30;
+
+  @Min(0)
+  private int maxRetries = 2;
+
+  @Min(1)
+  private long retryInitialBackoffMillis = 100;
+
+  @Min(1)
+  private long retryMaxBackoffMillis = 2000;
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  public Map<String, Integer> getHostConnectionLimits() {
+    return hostConnectionLimits;
+  }
+
+  public void setHostConnectionLimits(Map<String, Integer> hostConnectionLimits) {
+    this.hostConnectionLimits = hostConnectionLimits;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  public void setReadTimeoutMillis(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  public int getConnectionRequestTimeoutMillis() {
+    return connectionRequestTimeoutMillis;
+  }
+
+  public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+    this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+  }
+
+  public long getKeepAliveSecs() {
+    return keepAliveSecs;
+  }
+
+  public void setKeepAliveSecs(long keepAliveSecs) {
+    this.keepAliveSecs = keepAliveSecs;
+  }
+
+  public long getIdleConnectionTimeoutSecs() {
+    return idleConnectionTimeoutSecs;
+  }
+
+  public void setIdleConnectionTimeoutSecs(long idleConnectionTimeoutSecs) {
+    this.idleConnectionTimeoutSecs = idleConnectionTimeoutSecs;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  public long getRetryInitialBackoffMillis() {
+    return retryInitialBackoffMillis;
+  }
+
+  public void setRetryInitialBackoffMillis(long retryInitialBackoffMillis) {
+    this.retryInitialBackoffMillis = retryInitialBackoffMillis;
+  }
+
+  public long getRetryMaxBackoffMillis() {
+    return retryMaxBackoffMillis;
+  }
+
+  public void setRetryMaxBackoffMillis(long retryMaxBackoffMillis) {
+    this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+  }
+
+  @AssertTrue(message = "The per-host connection limit cannot exceed the total connection limit")
+  public boolean isPerHostLimitValid() {
+    return maxConnectionsPerHost <= maxConnections;
+  }
+
+  @AssertTrue(message = "The initial retry backoff cannot exceed the maximum retry backoff")
+  public boolean isRetryBackoffRangeValid() {
+    return retryInitialBackoffMillis <= retryMaxBackoffMillis;
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.imports;
+
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("bulk-import")
+@Configuration
+@Validated
+public class BulkImportProperties {
+
+  /**
+   * Number of records validated and persisted in a single transaction
+   */
+  @Min(1)
+  int chunkSize = 500;
+
+  /**
+   * Maximum number of per-record errors included in an import report
+   */
+  @Min(0)
+  int maxReportedErrors = 1000;
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  public int getMaxReportedErrors() {
+    return maxReportedErrors;
+  }
+
+  public void setMaxReportedErrors(int maxReportedErrors) {
+    this.maxReportedErrors = maxReportedErrors;
+  }
+}
@@ -94,6 +94,8 @@ public class LifecycleProperties {
     TaskProperties expiredAccountsTask = new TaskProperties();
     
     boolean readOnlyEndTime  = false;
+
+    boolean revokeTokensOnSuspension = false;
     
     public Integer getAccountLifetimeDays() {
       return accountLifetimeDays;
@@ -126,6 +128,14 @@ public class LifecycleProperties {
     public void setReadOnlyEndTime(boolean readOnlyEndTime) {
       this.readOnlyEndTime = readOnlyEndTime;
     }
+
+    public boolean isRevokeTokensOnSuspension() {
+      return revokeTokensOnSuspension;
+    }
+
+    public void setRevokeTokensOnSuspension(boolean revokeTokensOnSuspension) {
+      this.revokeTokensOnSuspension = revokeTokensOnSuspension;
+    }
     
   }
 
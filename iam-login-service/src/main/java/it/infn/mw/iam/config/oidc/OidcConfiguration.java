@@ -19,6 +19,7 @@ import java.time.Clock;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.apache.http.client.HttpClient;
 import org.mitre.jwt.signer.service.impl.JWKSetCacheService;
@@ -30,7 +31,6 @@ import org.mitre.openid.connect.client.service.AuthRequestUrlBuilder;
 import org.mitre.openid.connect.client.service.ClientConfigurationService;
 import org.mitre.openid.connect.client.service.IssuerService;
 import org.mitre.openid.connect.client.service.ServerConfigurationService;
-import org.mitre.openid.connect.client.service.impl.DynamicServerConfigurationService;
 import org.mitre.openid.connect.client.service.impl.PlainAuthRequestUrlBuilder;
 import org.mitre.openid.connect.client.service.impl.StaticAuthRequestOptionsService;
 import org.mitre.openid.connect.client.service.impl.StaticClientConfigurationService;
@@ -68,12 +68,16 @@ import it.infn.mw.iam.authn.oidc.OidcClientFilter;
 import it.infn.mw.iam.authn.oidc.OidcExceptionMessageHelper;
 import it.infn.mw.iam.authn.oidc.OidcTokenRequestor;
 import it.infn.mw.iam.authn.oidc.RestTemplateFactory;
+import it.infn.mw.iam.authn.oidc.RestTemplateUserInfoFetcher;
+import it.infn.mw.iam.authn.oidc.service.CachingServerConfigurationService;
 import it.infn.mw.iam.authn.oidc.service.DefaultOidcUserDetailsService;
 import it.infn.mw.iam.authn.oidc.service.NullClientConfigurationService;
 import it.infn.mw.iam.authn.oidc.service.OidcUserDetailsService;
 import it.infn.mw.iam.authn.util.SessionTimeoutHelper;
+import it.infn.mw.iam.config.http.OutboundHttpConfig;
 import it.infn.mw.iam.core.IamThirdPartyIssuerService;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
+import it.infn.mw.iam.persistence.repository.IamOidcProviderMetadataRepository;
 import it.infn.mw.iam.service.aup.AUPSignatureCheckService;
 
 @Configuration
@@ -129,9 +133,10 @@ public class OidcConfiguration {
 
   @Bean
   @Profile("!canl")
-  public RestTemplateFactory restTemplateFactory() {
+  public RestTemplateFactory restTemplateFactory(
+      @Qualifier(OutboundHttpConfig.OUTBOUND_HTTP_CLIENT) HttpClient client) {
 
-    return new DefaultRestTemplateFactory(new HttpComponentsClientHttpRequestFactory());
+    return new DefaultRestTemplateFactory(new HttpComponentsClientHttpRequestFactory(client));
   }
 
   @Bean
@@ -185,19 +190,22 @@ public class OidcConfiguration {
     return new IamThirdPartyIssuerService();
   }
 
-  @Bean
-  @Profile("!canl")
-  public ServerConfigurationService dynamicServerConfiguration() {
+  @Bean(destroyMethod = "shutdown")
+  public ServerConfigurationService dynamicServerConfiguration(RestTemplateFactory rtf,
+      IamOidcProviderMetadataRepository metadataRepo, ObjectMapper mapper, Clock clock,
+      OidcDiscoveryProperties discoveryProperties, OidcValidatedProviders providers) {
 
-    return new DynamicServerConfigurationService();
-  }
+    CachingServerConfigurationService service = new CachingServerConfigurationService(rtf,
+        metadataRepo, mapper, clock, discoveryProperties);
 
-  @Bean
-  @Profile("canl")
-  public ServerConfigurationService canlDynamicServerConfiguration(
-      @Qualifier("canlHttpClient") HttpClient client) {
+    if (discoveryProperties.isPrefetchProviders()) {
+      service.prefetch(providers.getValidatedProviders()
+        .stream()
+        .map(OidcProvider::getIssuer)
+        .collect(Collectors.toList()));
+    }
 
-    return new DynamicServerConfigurationService(client);
+    return service;
   }
 
   public boolean configuredProvider(OidcProvider provider) {
@@ -250,8 +258,8 @@ public class OidcConfiguration {
   }
 
   @Bean
-  public UserInfoFetcher userInfoFetcher() {
-    return new UserInfoFetcher();
+  public UserInfoFetcher userInfoFetcher(RestTemplateFactory restTemplateFactory) {
+    return new RestTemplateUserInfoFetcher(restTemplateFactory);
   }
 
   @Bean
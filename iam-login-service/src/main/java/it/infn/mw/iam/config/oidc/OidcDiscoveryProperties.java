@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.oidc;
+
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@Configuration
+@ConfigurationProperties(prefix = "oidc-discovery")
+@Validated
+public class OidcDiscoveryProperties {
+
+  @Min(1)
+  private int maxCacheSize = 50;
+
+  @Min(1)
+  private long refreshIntervalSecs = 3600;
+
+  private boolean persistMetadata = true;
+
+  private boolean prefetchProviders = true;
+
+  @Min(1)
+  private int refreshThreads = 1;
+
+  public int getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  public void setMaxCacheSize(int maxCacheSize) {
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public long getRefreshIntervalSecs() {
+    return refreshIntervalSecs;
+  }
+
+  public void setRefreshIntervalSecs(long refreshIntervalSecs) {
+    this.refreshIntervalSecs = refreshIntervalSecs;
+  }
+
+  public boolean isPersistMetadata() {
+    return persistMetadata;
+  }
+
+  public void setPersistMetadata(boolean persistMetadata) {
+    this.persistMetadata = persistMetadata;
+  }
+
+  public boolean isPrefetchProviders() {
+    return prefetchProviders;
+  }
+
+  public void setPrefetchProviders(boolean prefetchProviders) {
+    this.prefetchProviders = prefetchProviders;
+  }
+
+  public int getRefreshThreads() {
+    return refreshThreads;
+  }
+
+  public void setRefreshThreads(int refreshThreads) {
+    this.refreshThreads = refreshThreads;
+  }
+}
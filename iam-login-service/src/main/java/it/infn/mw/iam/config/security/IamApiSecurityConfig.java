@@ -37,6 +37,7 @@ import org.springframework.security.oauth2.provider.error.OAuth2AccessDeniedHand
 import org.springframework.security.oauth2.provider.error.OAuth2AuthenticationEntryPoint;
 import org.springframework.security.web.context.SecurityContextPersistenceFilter;
 
+import it.infn.mw.iam.actuator.task.TasksEndpoint;
 import it.infn.mw.iam.api.proxy.ProxyCertificatesApiController;
 import it.infn.mw.iam.config.IamProperties;
 import it.infn.mw.iam.core.oauth.FormClientCredentialsAuthenticationFilter;
@@ -169,10 +170,16 @@ public class IamApiSecurityConfig {
 
     @Override
     protected void configure(final HttpSecurity http) throws Exception {
-      http.requestMatcher(EndpointRequest.to(HealthEndpoint.class, InfoEndpoint.class))
+      http
+        .requestMatcher(
+            EndpointRequest.to(HealthEndpoint.class, InfoEndpoint.class, TasksEndpoint.class))
         .httpBasic()
         .and()
-        .authorizeRequests(r -> r.anyRequest().permitAll())
+        .authorizeRequests(r -> r.requestMatchers(EndpointRequest.to(TasksEndpoint.class))
+          .hasRole("ACTUATOR")
+          .anyRequest()
+          .permitAll())
+        .csrf(c -> c.ignoringRequestMatchers(EndpointRequest.to(TasksEndpoint.class)))
         .sessionManagement()
         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
         .and()
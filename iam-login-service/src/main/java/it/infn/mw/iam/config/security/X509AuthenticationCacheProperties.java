@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.security;
+
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties("x509.cache")
+@Configuration
+@Validated
+public class X509AuthenticationCacheProperties {
+
+  @Min(1)
+  private long chainCacheSize = 1000;
+
+  @Min(1)
+  private long chainCacheTtlSecs = 3600;
+
+  public long getChainCacheSize() {
+    return chainCacheSize;
+  }
+
+  public void setChainCacheSize(long chainCacheSize) {
+    this.chainCacheSize = chainCacheSize;
+  }
+
+  public long getChainCacheTtlSecs() {
+    return chainCacheTtlSecs;
+  }
+
+  public void setChainCacheTtlSecs(long chainCacheTtlSecs) {
+    this.chainCacheTtlSecs = chainCacheTtlSecs;
+  }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.config.task;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import it.infn.mw.iam.core.task.TaskGroup;
+
+@ConfigurationProperties("task")
+@Configuration
+@Validated
+public class TaskProperties {
+
+  public static class LeaseProperties {
+
+    /**
+     * When enabled, instances sharing the database coordinate through task leases, so that each
+     * background task runs on a single instance at a time
+     */
+    boolean enabled = false;
+
+    /**
+     * Time after which the lease of an instance that stopped renewing it can be taken over
+     */
+    @Min(5)
+    long durationSecs = 120;
+
+    /**
+     * Identifier of this instance in the lease table. Defaults to the host name followed by a
+     * random suffix
+     */
+    String owner;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getDurationSecs() {
+      return durationSecs;
+    }
+
+    public void setDurationSecs(long durationSecs) {
+      this.durationSecs = durationSecs;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+
+    public void setOwner(String owner) {
+      this.owner = owner;
+    }
+  }
+
+  public static class OrphanedTokenReaperProperties {
+
+    /**
+     * When enabled, tokens whose user no longer has an account are deleted in the background
+     */
+    boolean enabled = false;
+
+    @Min(1000)
+    long periodMsec = 60000;
+
+    /**
+     * Number of authentication holders examined at each step of the walk
+     */
+    @Min(1)
+    int scanSize = 5000;
+
+    /**
+     * Number of tokens deleted in a single transaction
+     */
+    @Min(1)
+    int chunkSize = 500;
+
+    /**
+     * Maximum number of tokens deleted per second
+     */
+    @Min(1)
+    int maxTokensPerSec = 1000;
+
+    /**
+     * Maximum duration of a single run; the walk resumes from where it stopped at the next run
+     */
+    @Min(1)
+    long maxRunTimeSecs = 300;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getPeriodMsec() {
+      return periodMsec;
+    }
+
+    public void setPeriodMsec(long periodMsec) {
+      this.periodMsec = periodMsec;
+    }
+
+    public int getScanSize() {
+      return scanSize;
+    }
+
+    public void setScanSize(int scanSize) {
+      this.scanSize = scanSize;
+    }
+
+    public int getChunkSize() {
+      return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    public int getMaxTokensPerSec() {
+      return maxTokensPerSec;
+    }
+
+    public void setMaxTokensPerSec(int maxTokensPerSec) {
+      this.maxTokensPerSec = maxTokensPerSec;
+    }
+
+    public long getMaxRunTimeSecs() {
+      return maxRunTimeSecs;
+    }
+
+    public void setMaxRunTimeSecs(long maxRunTimeSecs) {
+      this.maxRunTimeSecs = maxRunTimeSecs;
+    }
+  }
+
+  public static class TokenCountersProperties {
+
+    /**
+     * When enabled, the tokens API counts are served from in-memory counters instead of being
+     * computed by the database at each request
+     */
+    boolean enabled = false;
+
+    /**
+     * Period of the exact recount that rebuilds the counters from the database
+     */
+    @Min(10)
+    long recountPeriodSecs = 300;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getRecountPeriodSecs() {
+      return recountPeriodSecs;
+    }
+
+    public void setRecountPeriodSecs(long recountPeriodSecs) {
+      this.recountPeriodSecs = recountPeriodSecs;
+    }
+  }
+
+  /**
+   * Threads running the token, approved site, notification and device code cleanup tasks
+   */
+  @Min(1)
+  int housekeepingPoolSize = 2;
+
+  /**
+   * Threads running the notification delivery task
+   */
+  @Min(1)
+  int notificationPoolSize = 1;
+
+  /**
+   * Threads running the account lifecycle, audit store and key rollover tasks
+   */
+  @Min(1)
+  int maintenancePoolSize = 1;
+
+  @Valid
+  LeaseProperties lease = new LeaseProperties();
+
+  @Valid
+  OrphanedTokenReaperProperties orphanedTokenReaper = new OrphanedTokenReaperProperties();
+
+  @Valid
+  TokenCountersProperties tokenCounters = new TokenCountersProperties();
+
+  public int getHousekeepingPoolSize() {
+    return housekeepingPoolSize;
+  }
+
+  public void setHousekeepingPoolSize(int housekeepingPoolSize) {
+    this.housekeepingPoolSize = housekeepingPoolSize;
+  }
+
+  public int getNotificationPoolSize() {
+    return notificationPoolSize;
+  }
+
+  public void setNotificationPoolSize(int notificationPoolSize) {
+    this.notificationPoolSize = notificationPoolSize;
+  }
+
+  public int getMaintenancePoolSize() {
+    return maintenancePoolSize;
+  }
+
+  public void setMaintenancePoolSize(int maintenancePoolSize) {
+    this.maintenancePoolSize = maintenancePoolSize;
+  }
+
+  public LeaseProperties getLease() {
+    return lease;
+  }
+
+  public void setLease(LeaseProperties lease) {
+    this.lease = lease;
+  }
+
+  public OrphanedTokenReaperProperties getOrphanedTokenReaper() {
+    return orphanedTokenReaper;
+  }
+
+  public void setOrphanedTokenReaper(OrphanedTokenReaperProperties orphanedTokenReaper) {
+    this.orphanedTokenReaper = orphanedTokenReaper;
+  }
+
+  public TokenCountersProperties getTokenCounters() {
+    return tokenCounters;
+  }
+
+  public void setTokenCounters(TokenCountersProperties tokenCounters) {
+    this.tokenCounters = tokenCounters;
+  }
+
+  public int getPoolSize(TaskGroup group) {
+    switch (group) {
+      case NOTIFICATION:
+        return notificationPoolSize;
+      case MAINTENANCE:
+        return maintenancePoolSize;
+      case HOUSEKEEPING:
+      default:
+        return housekeepingPoolSize;
+    }
+  }
+}
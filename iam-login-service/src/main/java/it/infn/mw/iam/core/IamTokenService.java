@@ -15,9 +15,13 @@
  */
 package it.infn.mw.iam.core;
 
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.ACCESS;
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.REFRESH;
+
 import java.util.Date;
 import java.util.Set;
 
+import org.mitre.oauth2.model.AuthenticationHolderEntity;
 import org.mitre.oauth2.model.OAuth2AccessTokenEntity;
 import org.mitre.oauth2.model.OAuth2RefreshTokenEntity;
 import org.mitre.oauth2.service.impl.DefaultOAuth2ProviderTokenService;
@@ -25,10 +29,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.TokenRequest;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Sets;
 
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
+import it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType;
 import it.infn.mw.iam.persistence.repository.IamOAuthAccessTokenRepository;
 import it.infn.mw.iam.persistence.repository.IamOAuthRefreshTokenRepository;
 
@@ -40,14 +48,98 @@ public class IamTokenService extends DefaultOAuth2ProviderTokenService {
 
   private final IamOAuthAccessTokenRepository accessTokenRepo;
   private final IamOAuthRefreshTokenRepository refreshTokenRepo;
+  private final TokenCounters tokenCounters;
 
 
   @Autowired
   public IamTokenService(IamOAuthAccessTokenRepository atRepo,
-      IamOAuthRefreshTokenRepository rtRepo) {
+      IamOAuthRefreshTokenRepository rtRepo, TokenCounters tokenCounters) {
 
     this.accessTokenRepo = atRepo;
     this.refreshTokenRepo = rtRepo;
+    this.tokenCounters = tokenCounters;
+  }
+
+  private void tokenIssued(TokenType type, AuthenticationHolderEntity holder, Date expiration) {
+    if (holder != null) {
+      tokenCounters.tokenIssued(type, userId(holder), holder.getClientId(), expiration);
+    }
+  }
+
+  private void tokenRevoked(TokenType type, AuthenticationHolderEntity holder, Date expiration) {
+    if (holder != null) {
+      tokenCounters.tokenRevoked(type, userId(holder), holder.getClientId(), expiration);
+    }
+  }
+
+  private static String userId(AuthenticationHolderEntity holder) {
+    return holder.getUserAuth() == null ? null : holder.getUserAuth().getName();
+  }
+
+  /**
+   * Copies the token user from the authentication holder to the token table, where the token
+   * listing queries can find it through an index
+   */
+  private void storeUserId(OAuth2AccessTokenEntity token) {
+    AuthenticationHolderEntity holder = token.getAuthenticationHolder();
+    if (token.getId() != null && holder != null) {
+      accessTokenRepo.updateUserId(token.getId(), userId(holder));
+    }
+  }
+
+  private void storeUserId(OAuth2RefreshTokenEntity token) {
+    AuthenticationHolderEntity holder = token.getAuthenticationHolder();
+    if (token.getId() != null && holder != null) {
+      refreshTokenRepo.updateUserId(token.getId(), userId(holder));
+    }
+  }
+
+  private void storeUserIdWithRefreshToken(OAuth2AccessTokenEntity token) {
+    storeUserId(token);
+    if (token.getRefreshToken() != null) {
+      storeUserId(token.getRefreshToken());
+    }
+  }
+
+  @Override
+  public OAuth2AccessTokenEntity saveAccessToken(OAuth2AccessTokenEntity accessToken) {
+    OAuth2AccessTokenEntity token = super.saveAccessToken(accessToken);
+    storeUserId(token);
+    return token;
+  }
+
+  @Override
+  public OAuth2RefreshTokenEntity saveRefreshToken(OAuth2RefreshTokenEntity refreshToken) {
+    OAuth2RefreshTokenEntity token = super.saveRefreshToken(refreshToken);
+    storeUserId(token);
+    return token;
+  }
+
+  @Override
+  public OAuth2AccessTokenEntity createAccessToken(OAuth2Authentication authentication) {
+    OAuth2AccessTokenEntity token = super.createAccessToken(authentication);
+    storeUserIdWithRefreshToken(token);
+
+    tokenIssued(ACCESS, token.getAuthenticationHolder(), token.getExpiration());
+
+    if (token.getRefreshToken() != null) {
+      tokenIssued(REFRESH, token.getAuthenticationHolder(),
+          token.getRefreshToken().getExpiration());
+    }
+
+    return token;
+  }
+
+  @Override
+  public OAuth2AccessTokenEntity refreshAccessToken(String refreshTokenValue,
+      TokenRequest authRequest) {
+    OAuth2AccessTokenEntity token = super.refreshAccessToken(refreshTokenValue, authRequest);
+    storeUserIdWithRefreshToken(token);
+
+    // A rotated refresh token replaces the presented one, so the refresh token counts do not
+    // change
+    tokenIssued(ACCESS, token.getAuthenticationHolder(), token.getExpiration());
+    return token;
   }
 
   @Override
@@ -69,11 +161,13 @@ public class IamTokenService extends DefaultOAuth2ProviderTokenService {
   @Override
   public void revokeAccessToken(OAuth2AccessTokenEntity accessToken) {
     accessTokenRepo.delete(accessToken);
+    tokenRevoked(ACCESS, accessToken.getAuthenticationHolder(), accessToken.getExpiration());
   }
 
   @Override
   public void revokeRefreshToken(OAuth2RefreshTokenEntity refreshToken) {
     refreshTokenRepo.delete(refreshToken);
+    tokenRevoked(REFRESH, refreshToken.getAuthenticationHolder(), refreshToken.getExpiration());
   }
 
 }
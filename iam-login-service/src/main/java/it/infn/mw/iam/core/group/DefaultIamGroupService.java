@@ -21,9 +21,11 @@ import static java.util.Objects.isNull;
 
 import java.time.Clock;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
@@ -36,16 +38,16 @@ import org.springframework.transaction.annotation.Transactional;
 import it.infn.mw.iam.audit.events.group.GroupCreatedEvent;
 import it.infn.mw.iam.audit.events.group.GroupRemovedEvent;
 import it.infn.mw.iam.audit.events.group.GroupReplacedEvent;
+import it.infn.mw.iam.audit.events.group.GroupSubtreeRemovedEvent;
 import it.infn.mw.iam.audit.events.group.label.GroupLabelRemovedEvent;
 import it.infn.mw.iam.audit.events.group.label.GroupLabelSetEvent;
 import it.infn.mw.iam.core.group.error.InvalidGroupOperationError;
 import it.infn.mw.iam.core.group.error.NoSuchGroupError;
-import it.infn.mw.iam.persistence.model.IamAccount;
 import it.infn.mw.iam.persistence.model.IamAuthority;
 import it.infn.mw.iam.persistence.model.IamGroup;
 import it.infn.mw.iam.persistence.model.IamLabel;
-import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.persistence.repository.IamAuthoritiesRepository;
+import it.infn.mw.iam.persistence.repository.IamGroupBulkDeletionResult;
 import it.infn.mw.iam.persistence.repository.IamGroupRepository;
 
 @Service
@@ -56,17 +58,15 @@ public class DefaultIamGroupService implements IamGroupService, ApplicationEvent
 
   private final IamGroupRepository groupRepo;
   private final IamAuthoritiesRepository authorityRepo;
-  private final IamAccountRepository accountRepo;
   private final Clock clock;
 
   private ApplicationEventPublisher eventPublisher;
 
   @Autowired
   public DefaultIamGroupService(IamGroupRepository groupRepo, IamAuthoritiesRepository authRepo,
-      IamAccountRepository accountRepo, Clock clock) {
+      Clock clock) {
     this.groupRepo = groupRepo;
     this.authorityRepo = authRepo;
-    this.accountRepo = accountRepo;
     this.clock = clock;
   }
 
@@ -99,12 +99,6 @@ public class DefaultIamGroupService implements IamGroupService, ApplicationEvent
     return authorityRepo.save(new IamAuthority(groupManagerAuthority(g)));
   }
 
-
-  private void deleteAccountAuthority(IamAccount account, IamAuthority auth) {
-    account.getAuthorities().removeIf(a -> a.getAuthority().equals(auth.getAuthority()));
-    accountRepo.save(account);
-  }
-
   @Override
   public IamGroup deleteGroup(IamGroup g) {
     checkNotNull(g);
@@ -140,18 +134,38 @@ public class DefaultIamGroupService implements IamGroupService, ApplicationEvent
     return deleteGroup(g);
   }
 
+  @Override
+  public IamGroup deleteGroupSubtree(IamGroup root) {
+    checkNotNull(root);
 
+    List<IamGroup> subtree = groupRepo.findSubtree(root);
+
+    List<Long> groupIds = subtree.stream().map(IamGroup::getId).collect(Collectors.toList());
+    List<String> groupNames = subtree.stream().map(IamGroup::getName).collect(Collectors.toList());
+    List<String> managerAuthorities =
+        subtree.stream().map(this::groupManagerAuthority).collect(Collectors.toList());
+
+    int managerGrants = authorityRepo.deleteAuthoritiesAndGrants(managerAuthorities);
+    IamGroupBulkDeletionResult result = groupRepo.deleteGroupsInBulk(groupIds);
+
+    groupSubtreeRemovedEvent(root, groupNames, managerGrants, result);
+    return root;
+  }
+
+  @Override
+  public IamGroup deleteGroupSubtreeByUuid(String uuid) {
+    checkNotNull(uuid);
+
+    IamGroup g = groupRepo.findByUuid(uuid)
+      .orElseThrow(noSuchGroupException(String.format("No group found for id '%s'", uuid)));
+
+    return deleteGroupSubtree(g);
+  }
 
-  private void deleteGroupManagerAuthority(IamGroup group) {
-    String authorityString = groupManagerAuthority(group);
 
-    Optional<IamAuthority> auth = authorityRepo.findByAuthority(authorityString);
 
-    auth.ifPresent(authority -> {
-      accountRepo.findByAuthority(authorityString)
-        .forEach(account -> deleteAccountAuthority(account, authority));
-      authorityRepo.delete(authority);
-    });
+  private void deleteGroupManagerAuthority(IamGroup group) {
+    authorityRepo.deleteAuthoritiesAndGrants(List.of(groupManagerAuthority(group)));
   }
 
   @Override
@@ -178,6 +192,15 @@ public class DefaultIamGroupService implements IamGroupService, ApplicationEvent
         new GroupRemovedEvent(this, g, String.format("Group %s has been removed", g.getName())));
   }
 
+  private void groupSubtreeRemovedEvent(IamGroup root, List<String> groupNames,
+      int managerGrants, IamGroupBulkDeletionResult result) {
+    eventPublisher.publishEvent(new GroupSubtreeRemovedEvent(this, root,
+        String.format("Group %s has been removed together with %d subgroups", root.getName(),
+            result.getGroups() - 1),
+        groupNames, result.getMemberships(), managerGrants, result.getScopePolicies(),
+        result.getLabels(), result.getAttributes(), result.getGroupRequests()));
+  }
+
   private void groupReplacedEvent(IamGroup oldGroup, IamGroup newGroup) {
     eventPublisher.publishEvent(new GroupReplacedEvent(this, newGroup, oldGroup, String
       .format("Replaced group %s with new group %s", oldGroup.getName(), newGroup.getName())));
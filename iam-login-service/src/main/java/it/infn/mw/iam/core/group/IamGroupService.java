@@ -46,6 +46,18 @@ public interface IamGroupService {
   IamGroup deleteGroupByUuid(String uuid);
   
   IamGroup deleteGroup(IamGroup g);
+
+  /**
+   * Deletes a group together with all its subgroups, their memberships, group manager
+   * authorities, scope policies, labels, attributes and membership requests, using bulk
+   * statements. A single audit event summarizing the deletion is published.
+   *
+   * @param root the root of the subtree to be deleted
+   * @return the deleted root group
+   */
+  IamGroup deleteGroupSubtree(IamGroup root);
+
+  IamGroup deleteGroupSubtreeByUuid(String uuid);
   
   IamGroup addLabel(IamGroup g, IamLabel l);
   
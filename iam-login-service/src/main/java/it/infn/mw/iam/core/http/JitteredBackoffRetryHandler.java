@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries idempotent requests, and requests that could not be sent, that failed with an I/O error,
+ * waiting for an exponentially increasing, randomized delay ("full jitter") before each attempt, so
+ * that clients failing at the same time do not retry in lockstep against a struggling remote host.
+ * 
+ * Timeouts, unknown hosts and TLS errors are not retried.
+ */
+public class JitteredBackoffRetryHandler extends DefaultHttpRequestRetryHandler {
+
+  public static final Logger LOG = LoggerFactory.getLogger(JitteredBackoffRetryHandler.class);
+
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+
+  public JitteredBackoffRetryHandler(int maxRetries, long initialBackoffMillis,
+      long maxBackoffMillis) {
+    super(maxRetries, false,
+        List.of(InterruptedIOException.class, UnknownHostException.class, SSLException.class));
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+  }
+
+  /**
+   * @param executionCount the number of attempts made so far, starting from 1
+   * @return the upper bound of the delay before the next attempt
+   */
+  public long maxBackoffMillis(int executionCount) {
+    int shift = Math.min(executionCount - 1, 30);
+    return Math.min(maxBackoffMillis, initialBackoffMillis << shift);
+  }
+
+  @Override
+  public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+
+    if (!super.retryRequest(exception, executionCount, context)) {
+      return false;
+    }
+
+    long backoff = ThreadLocalRandom.current().nextLong(maxBackoffMillis(executionCount) + 1);
+
+    LOG.debug("Retrying request to {} in {} msec after error: {}",
+        HttpClientContext.adapt(context).getTargetHost(), backoff, exception.getMessage());
+
+    try {
+      Thread.sleep(backoff);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+
+    return true;
+  }
+}
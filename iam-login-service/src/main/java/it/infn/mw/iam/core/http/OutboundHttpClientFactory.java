@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.MicrometerHttpRequestExecutor;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import it.infn.mw.iam.config.http.OutboundHttpProperties;
+
+/**
+ * Builds the pooled HTTP clients used for calls to external services (OpenID Connect providers,
+ * JWK set endpoints, ...).
+ * 
+ * Request latencies are recorded in the httpcomponents.httpclient.request timer, tagged with the
+ * client name and the target host; the connection pool state is exposed by the
+ * httpcomponents.httpclient.pool gauges, tagged with the client name.
+ */
+public final class OutboundHttpClientFactory {
+
+  public static final String CLIENT_TAG = "client";
+
+  private OutboundHttpClientFactory() {
+    // prevent instantiation
+  }
+
+  public static HttpRoute routeFor(String baseUrl) {
+    HttpHost host = HttpHost.create(baseUrl);
+
+    if (host.getPort() < 0) {
+      int port = "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80;
+      host = new HttpHost(host.getHostName(), port, host.getSchemeName());
+    }
+
+    return new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName()));
+  }
+
+  public static PoolingHttpClientConnectionManager connectionManager(OutboundHttpProperties properties,
+      Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+
+    connectionManager.setMaxTotal(properties.getMaxConnections());
+    connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerHost());
+    properties.getHostConnectionLimits()
+      .forEach((url, limit) -> connectionManager.setMaxPerRoute(routeFor(url), limit));
+
+    return connectionManager;
+  }
+
+  static ConnectionKeepAliveStrategy keepAliveStrategy(OutboundHttpProperties properties) {
+    final long defaultKeepAliveMillis = TimeUnit.SECONDS.toMillis(properties.getKeepAliveSecs());
+
+    return (response, context) -> {
+      long keepAlive =
+          DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return keepAlive > 0 ? Math.min(keepAlive, defaultKeepAliveMillis) : defaultKeepAliveMillis;
+    };
+  }
+
+  public static CloseableHttpClient newHttpClient(String name, OutboundHttpProperties properties,
+      Registry<ConnectionSocketFactory> socketFactoryRegistry, MeterRegistry registry) {
+
+    PoolingHttpClientConnectionManager connectionManager =
+        connectionManager(properties, socketFactoryRegistry);
+
+    new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(registry);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+      .setConnectTimeout(properties.getConnectTimeoutMillis())
+      .setSocketTimeout(properties.getReadTimeoutMillis())
+      .setConnectionRequestTimeout(properties.getConnectionRequestTimeoutMillis())
+      .build();
+
+    return HttpClientBuilder.create()
+      .useSystemProperties()
+      .setConnectionManager(connectionManager)
+      .setDefaultRequestConfig(requestConfig)
+      .setKeepAliveStrategy(keepAliveStrategy(properties))
+      .evictExpiredConnections()
+      .evictIdleConnections(properties.getIdleConnectionTimeoutSecs(), TimeUnit.SECONDS)
+      .setRetryHandler(new JitteredBackoffRetryHandler(properties.getMaxRetries(),
+          properties.getRetryInitialBackoffMillis(), properties.getRetryMaxBackoffMillis()))
+      .setRequestExecutor(MicrometerHttpRequestExecutor.builder(registry)
+        .tags(Tags.of(CLIENT_TAG, name))
+        .exportTagsForRoute(true)
+        .build())
+      .disableAuthCaching()
+      .build();
+  }
+}
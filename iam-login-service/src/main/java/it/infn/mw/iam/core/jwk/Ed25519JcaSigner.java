@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.jwk;
+
+import static com.nimbusds.jose.crypto.impl.AlgorithmSupportMessage.unsupportedJWSAlgorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Collections;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.impl.BaseJWSProvider;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+
+/**
+ * An EdDSA (Ed25519) {@link JWSSigner} backed by the JDK signature provider.
+ */
+public class Ed25519JcaSigner extends BaseJWSProvider implements JWSSigner {
+
+  private final PrivateKey privateKey;
+
+  public Ed25519JcaSigner(OctetKeyPair jwk) throws JOSEException {
+    super(Collections.singleton(JWSAlgorithm.EdDSA));
+    this.privateKey = Ed25519KeyConverter.toPrivateKey(jwk);
+  }
+
+  @Override
+  public Base64URL sign(JWSHeader header, byte[] signingInput) throws JOSEException {
+
+    if (!JWSAlgorithm.EdDSA.equals(header.getAlgorithm())) {
+      throw new JOSEException(
+          unsupportedJWSAlgorithm(header.getAlgorithm(), supportedJWSAlgorithms()));
+    }
+
+    try {
+      Signature signature = Signature.getInstance(Ed25519KeyConverter.ED25519);
+      signature.initSign(privateKey);
+      signature.update(signingInput);
+      return Base64URL.encode(signature.sign());
+    } catch (GeneralSecurityException e) {
+      throw new JOSEException("Ed25519 signature error: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.jwk;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Collections;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.impl.BaseJWSProvider;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+
+/**
+ * An EdDSA (Ed25519) {@link JWSVerifier} backed by the JDK signature provider.
+ */
+public class Ed25519JcaVerifier extends BaseJWSProvider implements JWSVerifier {
+
+  private final PublicKey publicKey;
+
+  public Ed25519JcaVerifier(OctetKeyPair jwk) throws JOSEException {
+    super(Collections.singleton(JWSAlgorithm.EdDSA));
+    this.publicKey = Ed25519KeyConverter.toPublicKey(jwk);
+  }
+
+  @Override
+  public boolean verify(JWSHeader header, byte[] signedContent, Base64URL signature)
+      throws JOSEException {
+
+    if (!JWSAlgorithm.EdDSA.equals(header.getAlgorithm())) {
+      return false;
+    }
+
+    try {
+      Signature verifier = Signature.getInstance(Ed25519KeyConverter.ED25519);
+      verifier.initVerify(publicKey);
+      verifier.update(signedContent);
+      return verifier.verify(signature.decode());
+    } catch (GeneralSecurityException e) {
+      throw new JOSEException("Ed25519 signature verification error: " + e.getMessage(), e);
+    }
+  }
+}
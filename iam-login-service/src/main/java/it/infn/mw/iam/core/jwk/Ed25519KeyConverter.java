@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.jwk;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+
+/**
+ * Converts Ed25519 {@link OctetKeyPair} JWKs to JCA keys, so that EdDSA signatures can be
+ * computed with the provider built into the JDK.
+ */
+final class Ed25519KeyConverter {
+
+  static final String ED25519 = "Ed25519";
+
+  // DER prefixes of the SubjectPublicKeyInfo and PKCS#8 encodings of an Ed25519 key (RFC 8410),
+  // to be followed by the raw 32 bytes key
+  private static final byte[] X509_PREFIX =
+      {0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+
+  private static final byte[] PKCS8_PREFIX = {0x30, 0x2e, 0x02, 0x01, 0x00, 0x30, 0x05, 0x06,
+      0x03, 0x2b, 0x65, 0x70, 0x04, 0x22, 0x04, 0x20};
+
+  private Ed25519KeyConverter() {
+    // prevent instantiation
+  }
+
+  private static byte[] concat(byte[] prefix, byte[] key) {
+    byte[] encoded = new byte[prefix.length + key.length];
+    System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+    System.arraycopy(key, 0, encoded, prefix.length, key.length);
+    return encoded;
+  }
+
+  private static void checkCurve(OctetKeyPair jwk) throws JOSEException {
+    if (!Curve.Ed25519.equals(jwk.getCurve())) {
+      throw new JOSEException("Unsupported curve for key " + jwk.getKeyID() + ": "
+          + jwk.getCurve() + ", only Ed25519 is supported");
+    }
+  }
+
+  static PublicKey toPublicKey(OctetKeyPair jwk) throws JOSEException {
+    checkCurve(jwk);
+    try {
+      return KeyFactory.getInstance(ED25519)
+        .generatePublic(new X509EncodedKeySpec(concat(X509_PREFIX, jwk.getDecodedX())));
+    } catch (GeneralSecurityException e) {
+      throw new JOSEException("Invalid Ed25519 public key: " + e.getMessage(), e);
+    }
+  }
+
+  static PrivateKey toPrivateKey(OctetKeyPair jwk) throws JOSEException {
+    checkCurve(jwk);
+    if (!jwk.isPrivate()) {
+      throw new JOSEException("Key " + jwk.getKeyID() + " is not a private key");
+    }
+    try {
+      return KeyFactory.getInstance(ED25519)
+        .generatePrivate(new PKCS8EncodedKeySpec(concat(PKCS8_PREFIX, jwk.getDecodedD())));
+    } catch (GeneralSecurityException e) {
+      throw new JOSEException("Invalid Ed25519 private key: " + e.getMessage(), e);
+    }
+  }
+}
@@ -15,8 +15,22 @@
  */
 package it.infn.mw.iam.core.jwk;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.mitre.jose.keystore.JWKSetKeyStore;
 import org.mitre.jwt.encryption.service.JWTEncryptionAndDecryptionService;
@@ -24,58 +38,127 @@ import org.mitre.jwt.signer.service.JWTSigningAndValidationService;
 import org.mitre.jwt.signer.service.impl.JWKSetCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 
+import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
 
 import it.infn.mw.iam.authn.oidc.RestTemplateFactory;
+import it.infn.mw.iam.config.crypto.JWKSetCacheProperties;
 
+/**
+ * Caches key material fetched from remote JWK set URIs.
+ *
+ * Entries are refreshed ahead of expiration on a dedicated executor, so that callers keep being
+ * served the cached copy while a refresh is in progress. The refresh interval follows the
+ * <code>Cache-Control</code> max-age returned by the remote server, when present. If a refresh
+ * fails the cached copy keeps being served until it is older than the configured maximum
+ * staleness. Validators also trigger a (rate limited) refresh when asked to validate a JWT signed
+ * with a key id that is not found in the cached JWK set, so that key rotations on the remote side
+ * are picked up without waiting for the next scheduled refresh.
+ */
 public class IamJWKSetCacheService extends JWKSetCacheService {
 
   public static final String KEY_MATERIAL_ERROR_TEMPLATE =
       "Could not retrieve key material from {}";
   public static final Logger LOG = LoggerFactory.getLogger(IamJWKSetCacheService.class);
 
-  private LoadingCache<String, JWTSigningAndValidationService> validators;
-  private LoadingCache<String, JWTEncryptionAndDecryptionService> encrypters;
+  private static final Pattern NO_CACHE_DIRECTIVE =
+      Pattern.compile("(?:^|,)\\s*(?:no-cache|no-store)\\s*(?:,|$)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern MAX_AGE_DIRECTIVE =
+      Pattern.compile("(?:^|,)\\s*max-age\\s*=\\s*\"?(\\d{1,10})\"?", Pattern.CASE_INSENSITIVE);
 
-  public IamJWKSetCacheService(RestTemplateFactory rtf, int maxCacheSize, int expirationTime,
-      TimeUnit timeUnit) {
+  private final RestTemplateFactory rtf;
+  private final Clock clock;
+  private final ExecutorService refreshExecutor;
+  private final boolean honourCacheControl;
+  private final long refreshIntervalMillis;
+  private final long minRefreshIntervalMillis;
+  private final long maxStalenessMillis;
 
-    this.validators = CacheBuilder.newBuilder()
-      .expireAfterWrite(expirationTime, timeUnit)
-      .maximumSize(maxCacheSize)
-      .build(new JWKSetVerifierFetcher(rtf));
+  private final LoadingCache<String, KeyMaterial<JWTSigningAndValidationService>> validators;
+  private final LoadingCache<String, KeyMaterial<JWTEncryptionAndDecryptionService>> encrypters;
 
-    this.encrypters = CacheBuilder.newBuilder()
-      .expireAfterWrite(expirationTime, timeUnit)
-      .maximumSize(maxCacheSize)
-      .build(new JWKSetEncryptorFetcher(rtf));
+  public IamJWKSetCacheService(RestTemplateFactory rtf, JWKSetCacheProperties properties,
+      Clock clock) {
+    this(rtf, properties, clock, Executors.newFixedThreadPool(properties.getRefreshThreads(),
+        new ThreadFactoryBuilder().setNameFormat("iam-jwks-refresh-%d").setDaemon(true).build()));
   }
 
+  public IamJWKSetCacheService(RestTemplateFactory rtf, JWKSetCacheProperties properties,
+      Clock clock, ExecutorService refreshExecutor) {
+    this.rtf = rtf;
+    this.clock = clock;
+    this.refreshExecutor = refreshExecutor;
+    this.honourCacheControl = properties.isHonourCacheControl();
+    this.refreshIntervalMillis = SECONDS.toMillis(properties.getRefreshIntervalSecs());
+    this.minRefreshIntervalMillis = SECONDS.toMillis(properties.getMinRefreshIntervalSecs());
+    this.maxStalenessMillis = SECONDS.toMillis(properties.getMaxStalenessSecs());
+
+    this.validators = newCache(properties.getMaxCacheSize(), IamJWTSigningService::new);
+    this.encrypters = newCache(properties.getMaxCacheSize(), IamJWTEncryptionService::new);
+  }
+
+  private <T> LoadingCache<String, KeyMaterial<T>> newCache(int maxCacheSize,
+      Function<JWKSetKeyStore, T> builder) {
+
+    // Using the configured clock as ticker keeps staleness and refresh computations consistent
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return MILLISECONDS.toNanos(clock.millis());
+      }
+    };
+
+    return CacheBuilder.newBuilder()
+      .ticker(ticker)
+      .expireAfterWrite(maxStalenessMillis, MILLISECONDS)
+      .maximumSize(maxCacheSize)
+      .build(new KeyMaterialLoader<>(builder));
+  }
 
   @Override
   public JWTSigningAndValidationService getValidator(String jwksUri) {
+    KeyMaterial<JWTSigningAndValidationService> material = lookup(validators, jwksUri);
 
-    try {
-      return validators.get(jwksUri);
-    } catch (UncheckedExecutionException | ExecutionException e) {
-      LOG.error(KEY_MATERIAL_ERROR_TEMPLATE, jwksUri);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(KEY_MATERIAL_ERROR_TEMPLATE, jwksUri, e);
-      }
+    if (material == null) {
       return null;
     }
+
+    return new KeyIdAwareValidator(jwksUri, material);
   }
 
   @Override
   public JWTEncryptionAndDecryptionService getEncrypter(String jwksUri) {
+    KeyMaterial<JWTEncryptionAndDecryptionService> material = lookup(encrypters, jwksUri);
+    return material == null ? null : material.service;
+  }
+
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private <T> KeyMaterial<T> lookup(LoadingCache<String, KeyMaterial<T>> cache, String jwksUri) {
     try {
-      return encrypters.get(jwksUri);
+      KeyMaterial<T> material = cache.get(jwksUri);
+
+      if (material.claimRefresh(clock.millis(), minRefreshIntervalMillis)) {
+        cache.refresh(jwksUri);
+      }
+
+      return material;
     } catch (UncheckedExecutionException | ExecutionException e) {
       LOG.error(KEY_MATERIAL_ERROR_TEMPLATE, jwksUri);
       if (LOG.isDebugEnabled()) {
@@ -85,49 +168,180 @@ public class IamJWKSetCacheService extends JWKSetCacheService {
     }
   }
 
-  public static class JWKSetEncryptorFetcher
-      extends CacheLoader<String, JWTEncryptionAndDecryptionService> {
+  KeyMaterial<JWTSigningAndValidationService> refreshForUnknownKeyId(String jwksUri,
+      KeyMaterial<JWTSigningAndValidationService> material, String keyId) {
 
-    final RestTemplateFactory rtf;
+    KeyMaterial<JWTSigningAndValidationService> current = validators.getIfPresent(jwksUri);
 
-    public JWKSetEncryptorFetcher(RestTemplateFactory rtf) {
-      this.rtf = rtf;
+    if (current != null && current != material) {
+      return current;
     }
 
-    @Override
-    public JWTEncryptionAndDecryptionService load(String key) throws Exception {
-      
-      RestTemplate rt = rtf.newRestTemplate();
-      
-      String jsonString = rt.getForObject(key, String.class);
-      JWKSet jwkSet = JWKSet.parse(jsonString);
+    if (!material.claimForcedRefresh(clock.millis(), minRefreshIntervalMillis)) {
+      LOG.debug("Unknown key id '{}' for {}, but key material was refreshed too recently", keyId,
+          jwksUri);
+      return material;
+    }
 
-      JWKSetKeyStore keyStore = new JWKSetKeyStore(jwkSet);
+    LOG.info("Unknown key id '{}' for {}, refreshing key material", keyId, jwksUri);
 
-      return new IamJWTEncryptionService(keyStore);
+    try {
+      KeyMaterial<JWTSigningAndValidationService> refreshed =
+          fetch(jwksUri, IamJWTSigningService::new);
+      validators.put(jwksUri, refreshed);
+      return refreshed;
+    } catch (Exception e) {
+      LOG.warn("Refresh of key material from {} failed: {}", jwksUri, e.getMessage());
+      return material;
     }
   }
 
-  public static class JWKSetVerifierFetcher
-      extends CacheLoader<String, JWTSigningAndValidationService> {
+  private <T> KeyMaterial<T> fetch(String jwksUri, Function<JWKSetKeyStore, T> builder)
+      throws ParseException {
 
-    final RestTemplateFactory rtf;
+    ResponseEntity<String> response = rtf.newRestTemplate().getForEntity(jwksUri, String.class);
 
-    public JWKSetVerifierFetcher(RestTemplateFactory rtf) {
-      this.rtf = rtf;
+    if (response.getBody() == null) {
+      throw new ParseException("Empty JWK set returned from " + jwksUri, 0);
+    }
+
+    JWKSet jwkSet = JWKSet.parse(response.getBody());
+    T service = builder.apply(new JWKSetKeyStore(jwkSet));
+
+    ImmutableSet.Builder<String> keyIds = ImmutableSet.builder();
+    jwkSet.getKeys().stream().map(JWK::getKeyID).filter(k -> k != null).forEach(keyIds::add);
+
+    long now = clock.millis();
+    return new KeyMaterial<>(service, keyIds.build(), now,
+        now + refreshIntervalMillis(response.getHeaders()));
+  }
+
+  long refreshIntervalMillis(HttpHeaders headers) {
+    long interval = refreshIntervalMillis;
+    String cacheControl = headers.getCacheControl();
+
+    if (honourCacheControl && cacheControl != null) {
+      Matcher maxAge = MAX_AGE_DIRECTIVE.matcher(cacheControl);
+
+      if (NO_CACHE_DIRECTIVE.matcher(cacheControl).find()) {
+        interval = 0;
+      } else if (maxAge.find()) {
+        interval = SECONDS.toMillis(Long.parseLong(maxAge.group(1)));
+      }
+    }
+
+    return Math.max(minRefreshIntervalMillis, Math.min(interval, maxStalenessMillis));
+  }
+
+  static class KeyMaterial<T> {
+
+    final T service;
+    final Set<String> keyIds;
+    final long fetchedAt;
+    final AtomicLong nextRefreshAttempt;
+    final AtomicLong lastForcedRefresh;
+
+    KeyMaterial(T service, Set<String> keyIds, long fetchedAt, long refreshAt) {
+      this.service = service;
+      this.keyIds = keyIds;
+      this.fetchedAt = fetchedAt;
+      this.nextRefreshAttempt = new AtomicLong(refreshAt);
+      this.lastForcedRefresh = new AtomicLong(fetchedAt);
+    }
+
+    /**
+     * Returns true for a single caller once the refresh time has passed; failed refreshes are
+     * retried at most once every <code>backoffMillis</code>
+     */
+    boolean claimRefresh(long now, long backoffMillis) {
+      long next = nextRefreshAttempt.get();
+      return now >= next && nextRefreshAttempt.compareAndSet(next, now + backoffMillis);
+    }
+
+    boolean claimForcedRefresh(long now, long minIntervalMillis) {
+      long last = lastForcedRefresh.get();
+      return now - last >= minIntervalMillis && lastForcedRefresh.compareAndSet(last, now);
+    }
+  }
+
+  private class KeyMaterialLoader<T> extends CacheLoader<String, KeyMaterial<T>> {
+
+    final Function<JWKSetKeyStore, T> builder;
+
+    KeyMaterialLoader(Function<JWKSetKeyStore, T> builder) {
+      this.builder = builder;
+    }
+
+    @Override
+    public KeyMaterial<T> load(String key) throws Exception {
+      return fetch(key, builder);
+    }
+
+    @Override
+    public ListenableFuture<KeyMaterial<T>> reload(String key, KeyMaterial<T> oldValue) {
+      ListenableFutureTask<KeyMaterial<T>> task = ListenableFutureTask.create(() -> {
+        try {
+          return fetch(key, builder);
+        } catch (Exception e) {
+          LOG.warn("Refresh of key material from {} failed, serving copy fetched at {}: {}", key,
+              Instant.ofEpochMilli(oldValue.fetchedAt), e.getMessage());
+          throw e;
+        }
+      });
+      refreshExecutor.execute(task);
+      return task;
+    }
+  }
+
+  private class KeyIdAwareValidator implements JWTSigningAndValidationService {
+
+    final String jwksUri;
+    final KeyMaterial<JWTSigningAndValidationService> material;
+
+    KeyIdAwareValidator(String jwksUri, KeyMaterial<JWTSigningAndValidationService> material) {
+      this.jwksUri = jwksUri;
+      this.material = material;
     }
 
     @Override
-    public JWTSigningAndValidationService load(String key) throws Exception {
-      
-      RestTemplate rt = rtf.newRestTemplate();
-      
-      String jsonString = rt.getForObject(key, String.class);
-      JWKSet jwkSet = JWKSet.parse(jsonString);
+    public boolean validateSignature(SignedJWT jwt) {
+      String keyId = jwt.getHeader().getKeyID();
+
+      if (keyId != null && !material.keyIds.contains(keyId)) {
+        return refreshForUnknownKeyId(jwksUri, material, keyId).service.validateSignature(jwt);
+      }
+
+      return material.service.validateSignature(jwt);
+    }
 
-      JWKSetKeyStore keyStore = new JWKSetKeyStore(jwkSet);
+    @Override
+    public Map<String, JWK> getAllPublicKeys() {
+      return material.service.getAllPublicKeys();
+    }
+
+    @Override
+    public void signJwt(SignedJWT jwt) {
+      material.service.signJwt(jwt);
+    }
 
-      return new IamJWTSigningService(keyStore);
+    @Override
+    public JWSAlgorithm getDefaultSigningAlgorithm() {
+      return material.service.getDefaultSigningAlgorithm();
+    }
+
+    @Override
+    public Collection<JWSAlgorithm> getAllSigningAlgsSupported() {
+      return material.service.getAllSigningAlgsSupported();
+    }
+
+    @Override
+    public void signJwt(SignedJWT jwt, JWSAlgorithm alg) {
+      material.service.signJwt(jwt, alg);
+    }
+
+    @Override
+    public String getDefaultSignerKeyId() {
+      return material.service.getDefaultSignerKeyId();
     }
   }
 }
@@ -17,14 +17,17 @@ package it.infn.mw.iam.core.jwk;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Maps.newHashMap;
-import static com.google.common.collect.Sets.newHashSet;
 import static it.infn.mw.iam.core.jwk.JWKUtils.buildSigner;
 import static it.infn.mw.iam.core.jwk.JWKUtils.buildVerifier;
 import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -57,15 +60,46 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
   private static final String VERIFIER_NOT_FOUND_MSG = "JWS verifier not found for key {}";
   private static final String KEY_INIT_ERROR_MSG = "Error initializing keys";
 
-  private final JWKSetKeyStore keystore;
+  /**
+   * Algorithms used, in order of preference, when a signing key is activated and neither the key
+   * nor the current configuration mandate a specific algorithm
+   */
+  private static final List<JWSAlgorithm> PREFERRED_ALGORITHMS = List.of(JWSAlgorithm.RS256,
+      JWSAlgorithm.ES256, JWSAlgorithm.EdDSA, JWSAlgorithm.HS256);
+
+  /**
+   * An immutable snapshot of the key material, replaced as a whole when keys are reloaded or the
+   * signing key is switched, so that readers never observe a partially updated state.
+   */
+  private static final class KeyMaterial {
+
+    final Map<String, JWK> keys;
+    final Map<String, JWSSigner> signers;
+    final Map<String, JWSVerifier> verifiers;
+    final Map<String, JWK> publicKeys;
+    final Set<JWSAlgorithm> algorithms;
+    final String signerKeyId;
+    final JWSAlgorithm signingAlgorithm;
+
+    KeyMaterial(Map<String, JWK> keys, Map<String, JWSSigner> signers,
+        Map<String, JWSVerifier> verifiers, Map<String, JWK> publicKeys,
+        Set<JWSAlgorithm> algorithms, String signerKeyId, JWSAlgorithm signingAlgorithm) {
+      this.keys = keys;
+      this.signers = signers;
+      this.verifiers = verifiers;
+      this.publicKeys = publicKeys;
+      this.algorithms = algorithms;
+      this.signerKeyId = signerKeyId;
+      this.signingAlgorithm = signingAlgorithm;
+    }
 
-  private final Set<JWSAlgorithm> allAlgorithms = newHashSet();
-  private Map<String, JWSSigner> signers = newHashMap();
-  private Map<String, JWSVerifier> verifiers = newHashMap();
-  private Map<String, JWK> allPublicKeys = newHashMap();
+    KeyMaterial withSigner(String keyId, JWSAlgorithm algorithm) {
+      return new KeyMaterial(keys, signers, verifiers, publishedKeys(publicKeys, keyId),
+          algorithms, keyId, algorithm);
+    }
+  }
 
-  private final JWSAlgorithm defaultAlgorithm;
-  private final String defaultSignerKeyId;
+  private volatile KeyMaterial keyMaterial;
 
   public IamJWTSigningService(JWKProperties properties, JWKSetKeyStore keystore) {
     checkNotNull(keystore, "null keystore");
@@ -73,11 +107,9 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
 
     checkArgument(!keystore.getKeys().isEmpty(),
         "empty keystore");
-    this.keystore = keystore;
 
-    this.defaultAlgorithm = JWSAlgorithm.parse(properties.getDefaultJwsAlgorithm());
-    this.defaultSignerKeyId = properties.getDefaultKeyId();
-    initializeSignersAndVerifiers();
+    keyMaterial = initialKeyMaterial(keystore.getKeys(), properties.getDefaultKeyId(),
+        JWSAlgorithm.parse(properties.getDefaultJwsAlgorithm()));
   }
 
   public IamJWTSigningService(JWKSetKeyStore keystore) {
@@ -88,56 +120,185 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
       String defaultAlgorithm) {
     checkNotNull(keystore, "null keystore");
     checkArgument(!keystore.getKeys().isEmpty(), "Please provide a non-empty keystore");
-    this.keystore = keystore;
-    this.defaultAlgorithm =
-        Optional.ofNullable(defaultAlgorithm).map(JWSAlgorithm::parse).orElse(null);
-    this.defaultSignerKeyId = Optional.ofNullable(defaultKeyId)
-      .orElse(keystore.getKeys().stream().findFirst().orElseThrow().getKeyID());
-    initializeSignersAndVerifiers();
-  }
 
-  private void registerVerifier(JWK jwk, JWSVerifier verifier) {
-    verifiers.put(jwk.getKeyID(), verifier);
-    allAlgorithms.addAll(verifier.supportedJWSAlgorithms());
-    allPublicKeys.put(jwk.getKeyID(), jwk.toPublicJWK());
+    keyMaterial = initialKeyMaterial(keystore.getKeys(),
+        Optional.ofNullable(defaultKeyId)
+          .orElse(keystore.getKeys().stream().findFirst().orElseThrow().getKeyID()),
+        Optional.ofNullable(defaultAlgorithm).map(JWSAlgorithm::parse).orElse(null));
   }
 
-  private void registerSigner(JWK jwk, JWSSigner signer) {
-    signers.put(jwk.getKeyID(), signer);
-    allAlgorithms.addAll(signer.supportedJWSAlgorithms());
+  private static KeyMaterial initialKeyMaterial(Collection<JWK> jwks, String signerKeyId,
+      JWSAlgorithm signingAlgorithm) {
+    try {
+      return buildKeyMaterial(jwks, signerKeyId, signingAlgorithm);
+    } catch (JOSEException e) {
+      throw new StartupError(KEY_INIT_ERROR_MSG, e);
+    }
   }
 
+  private static KeyMaterial buildKeyMaterial(Collection<JWK> jwks, String signerKeyId,
+      JWSAlgorithm signingAlgorithm) throws JOSEException {
+
+    Map<String, JWK> keys = new LinkedHashMap<>();
+    Map<String, JWSSigner> signers = new HashMap<>();
+    Map<String, JWSVerifier> verifiers = new HashMap<>();
+    Map<String, JWK> publicKeys = new LinkedHashMap<>();
+    Set<JWSAlgorithm> algorithms = new HashSet<>();
+
+    for (JWK jwk : jwks) {
+      if (Strings.isBlank(jwk.getKeyID())) {
+        continue;
+      }
+
+      keys.put(jwk.getKeyID(), jwk);
 
-  protected void buildSignerVerifier(JWK jwk) {
-    try {
       if (jwk.isPrivate()) {
-        buildSigner(jwk).ifPresent(s -> registerSigner(jwk, s));
+        Optional<JWSSigner> signer = buildSigner(jwk);
+        if (signer.isPresent()) {
+          signers.put(jwk.getKeyID(), signer.get());
+          algorithms.addAll(signer.get().supportedJWSAlgorithms());
+        }
       }
 
-      buildVerifier(jwk).ifPresent(v -> registerVerifier(jwk, v));
+      Optional<JWSVerifier> verifier = buildVerifier(jwk);
+      if (verifier.isPresent()) {
+        verifiers.put(jwk.getKeyID(), verifier.get());
+        algorithms.addAll(verifier.get().supportedJWSAlgorithms());
+        publicKeys.put(jwk.getKeyID(), jwk.toPublicJWK());
+      }
+    }
 
-    } catch (JOSEException e) {
-      throw new StartupError(KEY_INIT_ERROR_MSG, e);
+    return new KeyMaterial(Collections.unmodifiableMap(keys), Collections.unmodifiableMap(signers),
+        Collections.unmodifiableMap(verifiers), publishedKeys(publicKeys, signerKeyId),
+        Collections.unmodifiableSet(algorithms), signerKeyId, signingAlgorithm);
+  }
+
+  /**
+   * Orders the public keys so that the key currently used for signing comes first, followed by the
+   * other keys in keystore order.
+   */
+  private static Map<String, JWK> publishedKeys(Map<String, JWK> publicKeys, String signerKeyId) {
+    Map<String, JWK> ordered = new LinkedHashMap<>();
+    ofNullable(publicKeys.get(signerKeyId)).ifPresent(k -> ordered.put(signerKeyId, k));
+    ordered.putAll(publicKeys);
+    return Collections.unmodifiableMap(ordered);
+  }
+
+  private static JWSAlgorithm signingAlgorithmFor(JWK jwk, JWSSigner signer,
+      JWSAlgorithm preferred) {
+
+    Set<JWSAlgorithm> supported = signer.supportedJWSAlgorithms();
+
+    if (jwk.getAlgorithm() != null) {
+      return JWSAlgorithm.parse(jwk.getAlgorithm().getName());
+    }
+
+    if (preferred != null && supported.contains(preferred)) {
+      return preferred;
+    }
+
+    return PREFERRED_ALGORITHMS.stream()
+      .filter(supported::contains)
+      .findFirst()
+      .orElse(supported.iterator().next());
+  }
+
+  /**
+   * Replaces the keys used for signing and verification, typically after the keystore has been
+   * modified. The current signing key is retained if it is still available; otherwise, the first
+   * key that can be used for signing becomes the signing key.
+   *
+   * @param jwks the new keys
+   * @throws JOSEException if a signer or verifier cannot be built for one of the keys, in which
+   *         case the current keys are left untouched
+   */
+  public synchronized void updateKeys(Collection<JWK> jwks) throws JOSEException {
+
+    final KeyMaterial current = keyMaterial;
+    KeyMaterial updated =
+        buildKeyMaterial(jwks, current.signerKeyId, current.signingAlgorithm);
+
+    if (updated.signers.isEmpty()) {
+      throw new JOSEException("No signing key found among the updated keys");
+    }
+
+    if (!updated.signers.containsKey(current.signerKeyId)) {
+      String fallbackKeyId = updated.keys.keySet()
+        .stream()
+        .filter(updated.signers::containsKey)
+        .findFirst()
+        .orElseThrow();
+
+      LOG.warn("Signing key {} is no longer available, falling back to key {}",
+          current.signerKeyId, fallbackKeyId);
+
+      JWK fallbackKey = updated.keys.get(fallbackKeyId);
+      updated = updated.withSigner(fallbackKeyId, signingAlgorithmFor(fallbackKey,
+          updated.signers.get(fallbackKeyId), current.signingAlgorithm));
     }
+
+    keyMaterial = updated;
+  }
+
+  /**
+   * Makes the given key the default signing key. The default signing algorithm becomes the one
+   * declared by the key, if any, or the current default algorithm if supported by the key.
+   *
+   * @param keyId the id of the key
+   * @throws IllegalArgumentException if no signer is available for the key
+   */
+  public synchronized void activateSigningKey(String keyId) {
+
+    final KeyMaterial current = keyMaterial;
+    JWSSigner signer = ofNullable(current.signers.get(keyId))
+      .orElseThrow(() -> new IllegalArgumentException(format(SIGNER_NOT_FOUND_FOR_KEY_MSG, keyId)));
+
+    JWSAlgorithm algorithm =
+        signingAlgorithmFor(current.keys.get(keyId), signer, current.signingAlgorithm);
+
+    keyMaterial = current.withSigner(keyId, algorithm);
+    LOG.info("Signing key {} activated, default signing algorithm: {}", keyId, algorithm);
   }
 
-  protected void initializeSignersAndVerifiers() {
-    keystore.getKeys()
+  public boolean hasSigner(String keyId) {
+    return keyMaterial.signers.containsKey(keyId);
+  }
+
+  /**
+   * Returns the id of the key to be used to sign a JWT with the given algorithm: the default
+   * signing key if it supports the algorithm, or else the first key that does.
+   *
+   * @param algorithm the signing algorithm, or null for the default one
+   * @return the key id
+   */
+  public String getSignerKeyId(JWSAlgorithm algorithm) {
+
+    final KeyMaterial current = keyMaterial;
+
+    if (algorithm == null || ofNullable(current.signers.get(current.signerKeyId))
+      .map(s -> s.supportedJWSAlgorithms().contains(algorithm))
+      .orElse(false)) {
+      return current.signerKeyId;
+    }
+
+    return current.keys.keySet()
       .stream()
-      .filter(k -> Strings.isNotBlank(k.getKeyID()))
-      .forEach(this::buildSignerVerifier);
+      .filter(k -> current.signers.containsKey(k)
+          && current.signers.get(k).supportedJWSAlgorithms().contains(algorithm))
+      .findFirst()
+      .orElse(current.signerKeyId);
   }
 
   @Override
   public Map<String, JWK> getAllPublicKeys() {
-    return allPublicKeys;
+    return keyMaterial.publicKeys;
   }
 
   @Override
   public boolean validateSignature(SignedJWT signedJwt) {
 
     Optional<JWSVerifier> verifier =
-        Optional.ofNullable(verifiers.get(signedJwt.getHeader().getKeyID()));
+        Optional.ofNullable(keyMaterial.verifiers.get(signedJwt.getHeader().getKeyID()));
 
     if (verifier.isPresent()) {
       try {
@@ -162,8 +323,9 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
 
   private JWSSigner resolveSigner(SignedJWT jwt) {
 
-    final String key = ofNullable(jwt.getHeader().getKeyID()).orElse(defaultSignerKeyId);
-    return ofNullable(signers.get(key))
+    final KeyMaterial current = keyMaterial;
+    final String key = ofNullable(jwt.getHeader().getKeyID()).orElse(current.signerKeyId);
+    return ofNullable(current.signers.get(key))
       .orElseThrow(() -> new IllegalArgumentException(
           format(SIGNER_NOT_FOUND_FOR_KEY_MSG, jwt.getHeader().getKeyID())));
   }
@@ -175,19 +337,21 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
 
   @Override
   public JWSAlgorithm getDefaultSigningAlgorithm() {
-    return defaultAlgorithm;
+    return keyMaterial.signingAlgorithm;
   }
 
   @Override
   public Collection<JWSAlgorithm> getAllSigningAlgsSupported() {
-    return allAlgorithms;
+    return keyMaterial.algorithms;
   }
 
   @Override
   public void signJwt(SignedJWT jwt, JWSAlgorithm alg) {
 
-    Optional<JWSSigner> signer =
-        signers.values().stream().filter(s -> s.supportedJWSAlgorithms().contains(alg)).findFirst();
+    Optional<JWSSigner> signer = keyMaterial.signers.values()
+      .stream()
+      .filter(s -> s.supportedJWSAlgorithms().contains(alg))
+      .findFirst();
 
     signer.ifPresentOrElse(s -> signJwt(s, jwt),
         () -> LOG.error(SIGNER_NOT_FOUND_FOR_ALGO_MSG, alg.getName()));
@@ -195,7 +359,7 @@ public class IamJWTSigningService implements JWTSigningAndValidationService {
 
   @Override
   public String getDefaultSignerKeyId() {
-    return defaultSignerKeyId;
+    return keyMaterial.signerKeyId;
   }
 
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.jwk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+
+import it.infn.mw.iam.config.IamProperties;
+import it.infn.mw.iam.config.IamProperties.JWKRolloverProperties;
+
+/**
+ * Periodically checks the JWK keystore for changes and applies them to the signing service
+ * without a restart.
+ * 
+ * When a new private key appears in the keystore, it is published in the JWK set immediately
+ * (as the next key) and becomes the default signing key once the activation delay has elapsed,
+ * giving relying parties time to refresh their cached copy of the JWK set. The key it replaces is
+ * still published (as the previous key), and accepted for verification, as long as it is kept in
+ * the keystore. When more than one new key is found, the last one in keystore order is activated.
+ */
+@Component
+public class JWKKeystoreRolloverTask implements Runnable {
+
+  public static final Logger LOG = LoggerFactory.getLogger(JWKKeystoreRolloverTask.class);
+
+  private final IamJWTSigningService signingService;
+  private final JWKRolloverProperties properties;
+  private final Resource keystore;
+  private final Clock clock;
+
+  private byte[] keystoreDigest;
+  private String nextKeyId;
+  private Instant nextKeyPublicationTime;
+
+  @Autowired
+  public JWKKeystoreRolloverTask(IamProperties properties, IamJWTSigningService signingService,
+      ResourceLoader resourceLoader, Clock clock) {
+    this.signingService = signingService;
+    this.properties = properties.getJwk().getRollover();
+    this.keystore = resourceLoader.getResource(properties.getJwk().getKeystoreLocation());
+    this.clock = clock;
+  }
+
+  private byte[] readKeystore() throws IOException {
+    try (InputStream is = keystore.getInputStream()) {
+      return is.readAllBytes();
+    }
+  }
+
+  private static byte[] digest(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void reloadKeys(byte[] content) throws ParseException, JOSEException {
+
+    Set<String> knownKeyIds = new HashSet<>(signingService.getAllPublicKeys().keySet());
+    List<JWK> keys = JWKSet.parse(new String(content, UTF_8)).getKeys();
+
+    signingService.updateKeys(keys);
+    LOG.info("JWK keystore reloaded from {}: {} keys found", keystore, keys.size());
+
+    keys.stream()
+      .map(JWK::getKeyID)
+      .filter(k -> !knownKeyIds.contains(k) && signingService.hasSigner(k))
+      .reduce((first, second) -> second)
+      .ifPresent(this::scheduleActivation);
+
+    if (nextKeyId != null && !signingService.hasSigner(nextKeyId)) {
+      LOG.warn("Key {} has been removed from the keystore before its activation", nextKeyId);
+      nextKeyId = null;
+    }
+  }
+
+  private void scheduleActivation(String keyId) {
+    nextKeyId = keyId;
+    nextKeyPublicationTime = clock.instant();
+
+    LOG.info("Key {} published, it will become the signing key at {}", keyId,
+        nextKeyPublicationTime.plusSeconds(properties.getActivationDelaySecs()));
+  }
+
+  private void activateNextKey() {
+    Instant activationTime = nextKeyPublicationTime.plusSeconds(properties.getActivationDelaySecs());
+
+    if (!clock.instant().isBefore(activationTime)) {
+      signingService.activateSigningKey(nextKeyId);
+      nextKeyId = null;
+    }
+  }
+
+  @Override
+  public synchronized void run() {
+
+    try {
+      byte[] content = readKeystore();
+      byte[] contentDigest = digest(content);
+
+      if (keystoreDigest == null) {
+        // First run: the signing service has been initialized from this keystore at startup
+        keystoreDigest = contentDigest;
+      } else if (!Arrays.equals(keystoreDigest, contentDigest)) {
+        reloadKeys(content);
+        keystoreDigest = contentDigest;
+      }
+    } catch (IOException | ParseException | JOSEException e) {
+      LOG.error("Error reloading JWK keystore from {}: {}", keystore, e.getMessage());
+    }
+
+    if (nextKeyId != null) {
+      activateNextKey();
+    }
+  }
+
+  public String getNextKeyId() {
+    return nextKeyId;
+  }
+}
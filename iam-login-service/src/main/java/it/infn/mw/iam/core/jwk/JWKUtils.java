@@ -45,8 +45,10 @@ import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jose.crypto.impl.RSAKeyUtils;
 import com.nimbusds.jose.crypto.opts.AllowWeakRSAKey;
+import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.ECKey;
 import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetKeyPair;
 import com.nimbusds.jose.jwk.OctetSequenceKey;
 import com.nimbusds.jose.jwk.RSAKey;
 
@@ -65,6 +67,10 @@ public class JWKUtils {
     // prevent instantiation
   }
 
+  private static boolean isEd25519Key(JWK jwk) {
+    return jwk instanceof OctetKeyPair && Curve.Ed25519.equals(((OctetKeyPair) jwk).getCurve());
+  }
+
   public static Optional<JWSVerifier> buildVerifier(JWK jwk) throws JOSEException {
     final JWSVerifier verifier;
 
@@ -72,6 +78,8 @@ public class JWKUtils {
       verifier = new RSASSAVerifier((RSAKey) jwk);
     } else if (jwk instanceof ECKey) {
       verifier = new ECDSAVerifier((ECKey) jwk);
+    } else if (isEd25519Key(jwk)) {
+      verifier = new Ed25519JcaVerifier((OctetKeyPair) jwk);
     } else if (jwk instanceof OctetSequenceKey) {
       verifier = new MACVerifier((OctetSequenceKey) jwk);
     } else {
@@ -100,6 +108,8 @@ public class JWKUtils {
           Collections.singleton((JWSSignerOption) AllowWeakRSAKey.getInstance()));
     } else if (jwk instanceof ECKey) {
       signer = new ECDSASigner((ECKey) jwk);
+    } else if (isEd25519Key(jwk)) {
+      signer = new Ed25519JcaSigner((OctetKeyPair) jwk);
     } else if (jwk instanceof OctetSequenceKey) {
       signer = new MACSigner((OctetSequenceKey) jwk);
     } else {
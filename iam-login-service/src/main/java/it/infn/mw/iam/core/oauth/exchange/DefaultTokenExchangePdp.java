@@ -18,12 +18,11 @@ package it.infn.mw.iam.core.oauth.exchange;
 import static it.infn.mw.iam.core.oauth.exchange.TokenExchangePdpResult.fromPolicy;
 import static it.infn.mw.iam.core.oauth.exchange.TokenExchangePdpResult.invalidScope;
 import static it.infn.mw.iam.core.oauth.exchange.TokenExchangePdpResult.notApplicable;
-import static java.util.Comparator.comparing;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,9 +32,12 @@ import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.TokenRequest;
 import org.springframework.stereotype.Service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
-import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcher;
+import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcherIndex;
 import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcherRegistry;
 import it.infn.mw.iam.persistence.model.IamTokenExchangePolicyEntity;
 import it.infn.mw.iam.persistence.repository.IamTokenExchangePolicyRepository;
@@ -49,15 +51,16 @@ public class DefaultTokenExchangePdp implements TokenExchangePdp, InitializingBe
   public static final String NOT_APPLICABLE_ERROR_TEMPLATE =
       "No applicable policies found for clients: %s -> %s";
 
+  public static final int ORIGIN_MATCHERS_CACHE_SIZE = 1000;
+
   private final IamTokenExchangePolicyRepository repo;
 
   private final ScopeMatcherRegistry scopeMatcherRegistry;
 
-  private List<TokenExchangePolicy> policies = Lists.newArrayList();
+  private final Cache<Entry<String, Set<String>>, ScopeMatcherIndex> originMatchersCache =
+      CacheBuilder.newBuilder().maximumSize(ORIGIN_MATCHERS_CACHE_SIZE).build();
 
-  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-  private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
-  private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+  private volatile TokenExchangePolicyIndex policies = TokenExchangePolicyIndex.empty();
 
   @Autowired
   public DefaultTokenExchangePdp(IamTokenExchangePolicyRepository repo,
@@ -66,10 +69,17 @@ public class DefaultTokenExchangePdp implements TokenExchangePdp, InitializingBe
     this.scopeMatcherRegistry = scopeMatcherRegistry;
   }
 
-  Set<TokenExchangePolicy> applicablePolicies(ClientDetails origin, ClientDetails destination) {
-    return policies.stream()
-      .filter(p -> p.appicableFor(origin, destination))
-      .collect(Collectors.toSet());
+  /**
+   * The scope matchers for a client are memoized by client id and scopes, so that changes to the
+   * client configuration are picked up without explicit invalidation
+   */
+  private ScopeMatcherIndex originClientMatchers(ClientDetails origin) {
+    Entry<String, Set<String>> key =
+        new SimpleImmutableEntry<>(origin.getClientId(), ImmutableSet.copyOf(origin.getScope()));
+
+    return originMatchersCache.asMap()
+      .computeIfAbsent(key,
+          k -> ScopeMatcherIndex.of(scopeMatcherRegistry.findMatchersForClient(origin)));
   }
 
   /**
@@ -101,11 +111,11 @@ public class DefaultTokenExchangePdp implements TokenExchangePdp, InitializingBe
 
     // The requested scopes must be allowed by the origin client (destination is impersonating the
     // origin client)
-    Set<ScopeMatcher> originClientMatchers = scopeMatcherRegistry.findMatchersForClient(origin);
+    ScopeMatcherIndex originClientMatchers = originClientMatchers(origin);
 
     for (String scope : request.getScope()) {
       // Check requested scope is permitted by client configuration
-      if (originClientMatchers.stream().noneMatch(m -> m.matches(scope))) {
+      if (!originClientMatchers.matches(scope)) {
         return invalidScope(p, scope, "scope not allowed by origin client configuration");
       }
 
@@ -127,33 +137,25 @@ public class DefaultTokenExchangePdp implements TokenExchangePdp, InitializingBe
   public TokenExchangePdpResult validateTokenExchange(TokenRequest request, ClientDetails origin,
       ClientDetails destination) {
 
-    try {
-      readLock.lock();
-      return applicablePolicies(origin, destination).stream()
-        .max(comparing(TokenExchangePolicy::rank).thenComparing(TokenExchangePolicy::getRule))
-        .map(p -> verifyScopes(p, request, origin, destination))
-        .orElse(notApplicable());
-    } finally {
-      readLock.unlock();
-    }
+    return policies.findApplicablePolicy(origin, destination)
+      .map(p -> verifyScopes(p, request, origin, destination))
+      .orElse(notApplicable());
   }
 
   @Override
   public void reloadPolicies() {
 
-    try {
-      LOG.debug("Token exchange policy reload started");
-      writeLock.lock();
-      policies.clear();
+    LOG.debug("Token exchange policy reload started");
 
-      for (IamTokenExchangePolicyEntity p : repo.findAll()) {
-        policies.add(TokenExchangePolicy.builder().fromEntity(p).build());
-      }
+    List<TokenExchangePolicy> loadedPolicies = Lists.newArrayList();
 
-    } finally {
-      writeLock.unlock();
-      LOG.debug("Token exchange policy reload done");
+    for (IamTokenExchangePolicyEntity p : repo.findAll()) {
+      loadedPolicies.add(TokenExchangePolicy.builder().fromEntity(p).build());
     }
+
+    policies = TokenExchangePolicyIndex.of(loadedPolicies);
+
+    LOG.debug("Token exchange policy reload done: {} policies loaded", policies.size());
   }
 
   @Override
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.exchange;
+
+import static java.util.Comparator.comparing;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.security.oauth2.provider.ClientDetails;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An immutable index over the token exchange policies.
+ * 
+ * Policies are bucketed by their origin client matcher and, within each origin bucket, by their
+ * destination client matcher. By id matchers are keyed by client id, by scope matchers by scope
+ * and any client matchers go into a wildcard bucket, so that finding the policies applicable to
+ * an exchange only touches the buckets the two clients fall in.
+ * 
+ * Policies are stored in decreasing rank order, so the first applicable policy found in a bucket
+ * is the best one for that bucket.
+ */
+@SuppressWarnings("deprecation")
+public class TokenExchangePolicyIndex {
+
+  public static final Comparator<TokenExchangePolicy> POLICY_ORDER =
+      comparing(TokenExchangePolicy::rank).thenComparing(TokenExchangePolicy::getRule).reversed();
+
+  private static final TokenExchangePolicyIndex EMPTY =
+      new TokenExchangePolicyIndex(Lists.newArrayList());
+
+  private static class ClientBuckets<T> {
+
+    final Map<String, T> byId = Maps.newHashMap();
+    final Map<String, T> byScope = Maps.newHashMap();
+    final Map<ClientMatcher, T> other = Maps.newLinkedHashMap();
+
+    T any;
+
+    T bucketFor(ClientMatcher matcher, Supplier<T> supplier) {
+      if (matcher instanceof AnyClientMatcher) {
+        if (any == null) {
+          any = supplier.get();
+        }
+        return any;
+      } else if (matcher instanceof ByIdClientMatcher) {
+        return byId.computeIfAbsent(((ByIdClientMatcher) matcher).clientId, k -> supplier.get());
+      } else if (matcher instanceof ByScopeClientMatcher) {
+        return byScope.computeIfAbsent(((ByScopeClientMatcher) matcher).scope,
+            k -> supplier.get());
+      } else {
+        return other.computeIfAbsent(matcher, k -> supplier.get());
+      }
+    }
+
+    void forEachMatching(ClientDetails client, Consumer<T> consumer) {
+
+      if (!byId.isEmpty()) {
+        T bucket = byId.get(client.getClientId());
+        if (bucket != null) {
+          consumer.accept(bucket);
+        }
+      }
+
+      Set<String> scopes = client.getScope();
+      if (!byScope.isEmpty() && scopes != null) {
+        for (String s : scopes) {
+          T bucket = byScope.get(s);
+          if (bucket != null) {
+            consumer.accept(bucket);
+          }
+        }
+      }
+
+      other.forEach((m, bucket) -> {
+        if (m.matchesClient(client)) {
+          consumer.accept(bucket);
+        }
+      });
+
+      if (any != null) {
+        consumer.accept(any);
+      }
+    }
+  }
+
+  private final int size;
+  private final ClientBuckets<ClientBuckets<List<TokenExchangePolicy>>> buckets =
+      new ClientBuckets<>();
+
+  private TokenExchangePolicyIndex(Collection<TokenExchangePolicy> policies) {
+
+    List<TokenExchangePolicy> sortedPolicies = Lists.newArrayList(policies);
+    sortedPolicies.sort(POLICY_ORDER);
+
+    for (TokenExchangePolicy p : sortedPolicies) {
+      buckets.bucketFor(p.getOriginMatcher(), ClientBuckets::new)
+        .bucketFor(p.getDestinationMatcher(), Lists::newArrayList)
+        .add(p);
+    }
+
+    size = sortedPolicies.size();
+  }
+
+  /**
+   * Returns the highest ranked policy applicable to an exchange between the given clients
+   * 
+   * @param origin the origin client
+   * @param destination the destination client
+   * @return the applicable policy, or an empty optional if no policy applies
+   */
+  public Optional<TokenExchangePolicy> findApplicablePolicy(ClientDetails origin,
+      ClientDetails destination) {
+
+    List<TokenExchangePolicy> candidates = Lists.newArrayList();
+
+    buckets.forEachMatching(origin, destinationBuckets -> destinationBuckets
+      .forEachMatching(destination, policies -> candidates.add(policies.get(0))));
+
+    return candidates.stream().min(POLICY_ORDER);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public static TokenExchangePolicyIndex empty() {
+    return EMPTY;
+  }
+
+  public static TokenExchangePolicyIndex of(Collection<TokenExchangePolicy> policies) {
+    return new TokenExchangePolicyIndex(policies);
+  }
+}
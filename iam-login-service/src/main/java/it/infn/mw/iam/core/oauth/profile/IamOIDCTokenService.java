@@ -64,6 +64,7 @@ import com.nimbusds.jwt.SignedJWT;
 
 import it.infn.mw.iam.api.common.error.NoSuchAccountError;
 import it.infn.mw.iam.authn.util.Authorities;
+import it.infn.mw.iam.core.jwk.IamJWTSigningService;
 import it.infn.mw.iam.persistence.model.IamAccount;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 
@@ -77,7 +78,7 @@ public class IamOIDCTokenService implements OIDCTokenService {
   private final Clock clock;
   private final JWTProfileResolver profileResolver;
   private final IamAccountRepository accountRepository;
-  private final JWTSigningAndValidationService jwtService;
+  private final IamJWTSigningService jwtService;
   private final AuthenticationHolderRepository authenticationHolderRepository;
   private final ConfigurationPropertiesBean configBean;
   private final ClientKeyCacheService encrypters;
@@ -85,7 +86,7 @@ public class IamOIDCTokenService implements OIDCTokenService {
   private final OAuth2TokenEntityService tokenService;
 
   public IamOIDCTokenService(Clock clock, JWTProfileResolver profileResolver,
-      IamAccountRepository accountRepository, JWTSigningAndValidationService jwtService,
+      IamAccountRepository accountRepository, IamJWTSigningService jwtService,
       AuthenticationHolderRepository authenticationHolderRepository,
       ConfigurationPropertiesBean configBean, ClientKeyCacheService encrypters,
       SymmetricKeyJWTValidatorCacheService symmetricCacheService,
@@ -188,8 +189,8 @@ public class IamOIDCTokenService implements OIDCTokenService {
 
     } else {
 
-      JWSHeader header =
-          new JWSHeader.Builder(signingAlg).keyID(jwtService.getDefaultSignerKeyId()).build();
+      final String keyId = jwtService.getSignerKeyId(signingAlg);
+      JWSHeader header = new JWSHeader.Builder(signingAlg).keyID(keyId).build();
 
       if (JWSAlgorithm.Family.HMAC_SHA.contains(signingAlg)) {
         idToken = new SignedJWT(header, idClaims.build());
@@ -197,7 +198,7 @@ public class IamOIDCTokenService implements OIDCTokenService {
             Optional.ofNullable(symmetricCacheService.getSymmetricValidtor(client)).orElseThrow();
         signer.signJwt((SignedJWT) idToken);
       } else {
-        idClaims.claim("kid", jwtService.getDefaultSignerKeyId());
+        idClaims.claim("kid", keyId);
         idToken = new SignedJWT(header, idClaims.build());
         jwtService.signJwt((SignedJWT) idToken);
       }
@@ -278,7 +279,7 @@ public class IamOIDCTokenService implements OIDCTokenService {
 
     JWSAlgorithm signingAlg = jwtService.getDefaultSigningAlgorithm();
     JWSHeader header =
-        new JWSHeader.Builder(signingAlg).keyID(jwtService.getDefaultSignerKeyId()).build();
+        new JWSHeader.Builder(signingAlg).keyID(jwtService.getSignerKeyId(signingAlg)).build();
     SignedJWT signed = new SignedJWT(header, claims);
 
     jwtService.signJwt(signed);
@@ -32,7 +32,7 @@ public class DefaultScopeMatcherRegistry implements ScopeMatcherRegistry {
 
   public static final int DEFAULT_CACHE_SIZE = 10;
 
-  private final Set<ScopeMatcher> customMatchers;
+  private final ScopeMatcherIndex customMatchers;
 
   private final LoadingCache<String, ScopeMatcher> plainMatchersCache;
 
@@ -46,7 +46,7 @@ public class DefaultScopeMatcherRegistry implements ScopeMatcherRegistry {
         (plainMatchersCacheSize < DEFAULT_CACHE_SIZE ? DEFAULT_CACHE_SIZE : plainMatchersCacheSize);
     plainMatchersCache =
         CacheBuilder.newBuilder().maximumSize(cacheSize).build(CacheLoader.from(StringEqualsScopeMatcher::stringEqualsMatcher));
-    this.customMatchers = customMatchers;
+    this.customMatchers = ScopeMatcherIndex.of(customMatchers);
   }
 
   @Override
@@ -62,10 +62,8 @@ public class DefaultScopeMatcherRegistry implements ScopeMatcherRegistry {
 
   @Override
   public ScopeMatcher findMatcherForScope(String scope) {
-    return customMatchers.stream()
-      .filter(m -> m.matches(scope))
-      .findFirst()
-      .orElse(plainMatchersCache.getUnchecked(scope));
+    return customMatchers.findMatcher(scope)
+      .orElseGet(() -> plainMatchersCache.getUnchecked(scope));
   }
 
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.scope.matchers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A compiled view over a set of {@link ScopeMatcher}s.
+ * 
+ * Plain scopes are looked up in a hash map and structured path scopes in a character trie keyed
+ * by <code>prefix:path</code>, so that finding the matcher for a scope costs a single walk over
+ * the scope string. Only matchers of other types (e.g., regexp matchers) are evaluated one by one.
+ * 
+ * Building an index costs more than a linear scan over a few matchers, so an index should only be
+ * built for matcher sets that are reused, such as the registry matchers or the cached per-client
+ * matchers.
+ */
+public class ScopeMatcherIndex implements ScopeMatcher {
+
+  private static final class Node {
+    final Map<Character, Node> children = Maps.newHashMap();
+    StructuredPathScopeMatcher matcher;
+  }
+
+  private final Map<String, ScopeMatcher> plainMatchers = Maps.newHashMap();
+  private final Node structuredMatchers = new Node();
+  private final List<ScopeMatcher> otherMatchers = Lists.newArrayList();
+
+  private boolean hasStructuredMatchers = false;
+
+  private ScopeMatcherIndex(Collection<? extends ScopeMatcher> matchers) {
+    for (ScopeMatcher m : matchers) {
+      if (m instanceof StringEqualsScopeMatcher) {
+        plainMatchers.put(((StringEqualsScopeMatcher) m).expectedValue, m);
+      } else if (m instanceof StructuredPathScopeMatcher) {
+        addStructuredMatcher((StructuredPathScopeMatcher) m);
+      } else {
+        otherMatchers.add(m);
+      }
+    }
+  }
+
+  private void addStructuredMatcher(StructuredPathScopeMatcher m) {
+    Node node = structuredMatchers;
+    for (char c : m.toString().toCharArray()) {
+      node = node.children.computeIfAbsent(c, k -> new Node());
+    }
+    node.matcher = m;
+    hasStructuredMatchers = true;
+  }
+
+  /**
+   * Returns the most specific structured path matcher whose <code>prefix:path</code> is a prefix
+   * of the scope, if any
+   */
+  private StructuredPathScopeMatcher findStructuredMatcher(String scope) {
+
+    StructuredPathScopeMatcher match = null;
+    Node node = structuredMatchers;
+
+    for (int i = 0; i < scope.length(); i++) {
+      node = node.children.get(scope.charAt(i));
+      if (node == null) {
+        break;
+      }
+      if (node.matcher != null) {
+        match = node.matcher;
+      }
+    }
+
+    return match;
+  }
+
+  public Optional<ScopeMatcher> findMatcher(String scope) {
+    checkArgument(nonNull(scope), "scope must be non-null");
+
+    if (hasStructuredMatchers) {
+      StructuredPathScopeMatcher.checkNoRelativePathReferences(scope);
+
+      StructuredPathScopeMatcher m = findStructuredMatcher(scope);
+      if (m != null) {
+        return Optional.of(m);
+      }
+    }
+
+    for (ScopeMatcher m : otherMatchers) {
+      if (m.matches(scope)) {
+        return Optional.of(m);
+      }
+    }
+
+    return Optional.ofNullable(plainMatchers.get(scope));
+  }
+
+  @Override
+  public boolean matches(String scope) {
+    return findMatcher(scope).isPresent();
+  }
+
+  public static ScopeMatcherIndex of(Collection<? extends ScopeMatcher> matchers) {
+    checkArgument(nonNull(matchers), "matchers must be non-null");
+    return new ScopeMatcherIndex(matchers);
+  }
+}
@@ -35,14 +35,14 @@ public class ScopeMatcherOAuthRequestValidator implements OAuth2RequestValidator
   public static final String ERROR_MSG_FMT = "Scope '%s' not allowed for client '%s'";
 
   private final ScopeMatcherRegistry registry;
-  private final LoadingCache<ClientDetails, Set<ScopeMatcher>> scopeMatchersCache;
+  private final LoadingCache<ClientDetails, ScopeMatcherIndex> scopeMatchersCache;
 
   public ScopeMatcherOAuthRequestValidator(ScopeMatcherRegistry matcherRegistry, int cacheSize) {
     this.registry = matcherRegistry;
     int cs = cacheSize < DEFAULT_CACHE_SIZE ? DEFAULT_CACHE_SIZE : cacheSize;
     scopeMatchersCache = CacheBuilder.newBuilder()
       .maximumSize(cs)
-      .build(CacheLoader.from(registry::findMatchersForClient));
+      .build(CacheLoader.from(c -> ScopeMatcherIndex.of(registry.findMatchersForClient(c))));
   }
 
   public ScopeMatcherOAuthRequestValidator(ScopeMatcherRegistry matcherRegistry) {
@@ -51,9 +51,9 @@ public class ScopeMatcherOAuthRequestValidator implements OAuth2RequestValidator
 
   private void validateScope(Set<String> requestedScopes, ClientDetails client) {
 
-    Set<ScopeMatcher> scopeMatchers = scopeMatchersCache.getUnchecked(client);
+    ScopeMatcherIndex scopeMatchers = scopeMatchersCache.getUnchecked(client);
     for (String s : requestedScopes) {
-      if (scopeMatchers.stream().noneMatch(m -> m.matches(s))) {
+      if (!scopeMatchers.matches(s)) {
         throw new InvalidScopeException(String.format(ERROR_MSG_FMT, s, client.getClientId()));
       }
     }
@@ -19,9 +19,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.Objects.nonNull;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import javax.annotation.Generated;
 
 import org.slf4j.Logger;
@@ -31,45 +28,35 @@ public class StructuredPathScopeMatcher implements ScopeMatcher {
 
   public static final Logger LOG = LoggerFactory.getLogger(StructuredPathScopeMatcher.class);
 
-  private static final Pattern POINT_DIR_MATCHER = Pattern.compile("\\.\\./?");
-  
+  private static final String RELATIVE_PATH_REFERENCE = "..";
+
   private static final Character SEP = ':';
   private static final String SEP_STR = SEP.toString();
 
   private final String prefix;
   private final String path;
 
-  private final Pattern prefixMatchPattern;
-  private final Pattern pathMatchPattern;
+  private final String scopePrefix;
 
   private StructuredPathScopeMatcher(String prefix, String path) {
 
     this.prefix = prefix;
     this.path = path;
+    this.scopePrefix = prefix + SEP + path;
+  }
 
-    final String prefixMatchRegexp = String.format("^%s%c", prefix, SEP);
-    prefixMatchPattern = Pattern.compile(prefixMatchRegexp);
-    pathMatchPattern = Pattern.compile(path + ".*");
+  static void checkNoRelativePathReferences(String scope) {
+    if (scope.contains(RELATIVE_PATH_REFERENCE)) {
+      throw new IllegalArgumentException("Scope contains relative path references");
+    }
   }
 
   @Override
   public boolean matches(String scope) {
     checkArgument(nonNull(scope), "scope must be non-null");
+    checkNoRelativePathReferences(scope);
 
-    if (POINT_DIR_MATCHER.matcher(scope).find()) {
-      throw new IllegalArgumentException("Scope contains relative path references");
-    }
-
-    Matcher prefixMatcher = prefixMatchPattern.matcher(scope);
-    
-    boolean prefixMatches = prefixMatcher.find();
-    
-    if (prefixMatches) {
-      final String scopePath = scope.substring(prefix.length() + 1);
-      return pathMatchPattern.matcher(scopePath).matches(); 
-    } else {
-      return false;
-    }
+    return scope.startsWith(scopePrefix);
   }
   
   public static StructuredPathScopeMatcher fromString(String scope) {
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+import org.mitre.oauth2.model.ClientDetailsEntity;
+
+import it.infn.mw.iam.persistence.model.IamAccount;
+
+public interface BulkTokenRevocationService {
+
+  /**
+   * Removes the access and refresh tokens issued to an account, together with the authentication
+   * holders and approved sites that are left behind.
+   */
+  TokenRevocationSummary revokeTokensForAccount(IamAccount account);
+
+  /**
+   * Removes the access and refresh tokens issued to a client, except its registration and resource
+   * tokens, together with the authentication holders and approved sites that are left behind.
+   */
+  TokenRevocationSummary revokeTokensForClient(ClientDetailsEntity client);
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.ACCESS;
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.REFRESH;
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mitre.oauth2.model.ClientDetailsEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.nimbusds.jwt.JWTParser;
+
+import it.infn.mw.iam.audit.events.account.AccountTokensRevokedEvent;
+import it.infn.mw.iam.audit.events.client.ClientTokensRevokedEvent;
+import it.infn.mw.iam.persistence.model.IamAccount;
+
+/**
+ * Revokes the tokens of an account or a client with a handful of set-based DELETE statements,
+ * instead of loading and revoking each token entity.
+ * 
+ * Tokens are selected on the indexed {@code user_id} and {@code client_id} columns. Once the tokens
+ * are gone, the authentication holders that are no longer referenced by any token, authorization
+ * code or device code are removed in chunks of {@link #CHUNK_SIZE}, together with their saved user
+ * authentication. The approved sites of the account or client are removed as well.
+ * 
+ * The JWT ids of the removed tokens are passed to the registered {@link TokenRevocationListener}s
+ * once the transaction commits, and a single audit event summarizes each revocation. The removed
+ * tokens are taken out of the {@link TokenCounters} on commit as well.
+ */
+@Service
+@Transactional
+public class DefaultBulkTokenRevocationService implements BulkTokenRevocationService {
+
+  public static final Logger LOG = LoggerFactory.getLogger(DefaultBulkTokenRevocationService.class);
+
+  public static final int CHUNK_SIZE = 500;
+
+  private static final String ACCESS_TOKEN_TABLE = "access_token";
+  private static final String REFRESH_TOKEN_TABLE = "refresh_token";
+
+  private static final String USER_FILTER = "user_id = ?";
+  private static final String CLIENT_FILTER = "client_id = ?";
+  private static final String CLIENT_ACCESS_TOKEN_FILTER = "client_id = ? AND NOT EXISTS "
+      + "(SELECT s.owner_id FROM authentication_holder_scope s "
+      + "WHERE s.owner_id = access_token.auth_holder_id "
+      + "AND s.scope IN ('registration-token', 'resource-token'))";
+
+  private static final String SELECT_HOLDERS =
+      "SELECT DISTINCT auth_holder_id FROM %s WHERE %s AND auth_holder_id IS NOT NULL";
+  private static final String SELECT_TOKEN_VALUES = "SELECT token_value FROM %s WHERE %s";
+
+  private static final String DELETE_ACCESS_TOKEN_SCOPES =
+      "DELETE FROM token_scope WHERE owner_id IN (SELECT id FROM access_token WHERE %s)";
+  private static final String DELETE_ACCESS_TOKEN_PERMISSIONS =
+      "DELETE FROM access_token_permissions WHERE access_token_id IN "
+          + "(SELECT id FROM access_token WHERE %s)";
+  private static final String DELETE_TOKENS = "DELETE FROM %s WHERE %s";
+
+  private static final String UNREFERENCED_HOLDERS =
+      "SELECT h.id, h.user_auth_id FROM authentication_holder h WHERE h.id IN (%s) "
+          + "AND NOT EXISTS (SELECT a.id FROM access_token a WHERE a.auth_holder_id = h.id) "
+          + "AND NOT EXISTS (SELECT r.id FROM refresh_token r WHERE r.auth_holder_id = h.id) "
+          + "AND NOT EXISTS (SELECT c.id FROM authorization_code c WHERE c.auth_holder_id = h.id) "
+          + "AND NOT EXISTS (SELECT d.id FROM device_code d WHERE d.auth_holder_id = h.id)";
+
+  private static final String[] HOLDER_TABLES = {"authentication_holder_authority",
+      "authentication_holder_resource_id", "authentication_holder_response_type",
+      "authentication_holder_extension", "authentication_holder_scope",
+      "authentication_holder_request_parameter"};
+  private static final String[] SAVED_USER_AUTH_TABLES =
+      {"saved_user_auth_authority", "saved_user_auth_info"};
+
+  private static final String DELETE_BY_OWNER = "DELETE FROM %s WHERE owner_id IN (%s)";
+  private static final String DELETE_BY_ID = "DELETE FROM %s WHERE id IN (%s)";
+
+  private static final String DELETE_APPROVED_SITE_SCOPES =
+      "DELETE FROM approved_site_scope WHERE owner_id IN (SELECT id FROM approved_site WHERE %s)";
+  private static final String DELETE_APPROVED_SITES = "DELETE FROM approved_site WHERE %s";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+  private final ObjectProvider<TokenRevocationListener> listeners;
+  private final TokenCounters tokenCounters;
+
+  @Autowired
+  public DefaultBulkTokenRevocationService(JdbcTemplate jdbcTemplate,
+      ApplicationEventPublisher eventPublisher, ObjectProvider<TokenRevocationListener> listeners,
+      TokenCounters tokenCounters) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.eventPublisher = eventPublisher;
+    this.listeners = listeners;
+    this.tokenCounters = tokenCounters;
+  }
+
+  private static String placeholders(List<Long> ids) {
+    return String.join(",", Collections.nCopies(ids.size(), "?"));
+  }
+
+  private static void addJwtId(Set<String> jtis, String tokenValue) {
+    try {
+      String jti = JWTParser.parse(tokenValue).getJWTClaimsSet().getJWTID();
+      if (jti != null) {
+        jtis.add(jti);
+      }
+    } catch (ParseException e) {
+      LOG.debug("Cannot extract the JWT id of a revoked token: {}", e.getMessage());
+    }
+  }
+
+  private void selectJwtIds(Set<String> jtis, String table, String filter, Object param) {
+    jdbcTemplate.query(format(SELECT_TOKEN_VALUES, table, filter), rs -> {
+      addJwtId(jtis, rs.getString(1));
+    }, param);
+  }
+
+  private void selectHolders(Set<Long> holderIds, String table, String filter, Object param) {
+    holderIds
+      .addAll(jdbcTemplate.queryForList(format(SELECT_HOLDERS, table, filter), Long.class, param));
+  }
+
+  private int deleteAccessTokens(String filter, Object param) {
+    jdbcTemplate.update(format(DELETE_ACCESS_TOKEN_SCOPES, filter), param);
+    jdbcTemplate.update(format(DELETE_ACCESS_TOKEN_PERMISSIONS, filter), param);
+    return jdbcTemplate.update(format(DELETE_TOKENS, ACCESS_TOKEN_TABLE, filter), param);
+  }
+
+  private int deleteRefreshTokens(String filter, Object param) {
+    return jdbcTemplate.update(format(DELETE_TOKENS, REFRESH_TOKEN_TABLE, filter), param);
+  }
+
+  private int deleteHolders(List<Long> candidateIds) {
+
+    List<Long> holderIds = new ArrayList<>();
+    List<Long> userAuthIds = new ArrayList<>();
+
+    jdbcTemplate.query(format(UNREFERENCED_HOLDERS, placeholders(candidateIds)), rs -> {
+      holderIds.add(rs.getLong(1));
+      long userAuthId = rs.getLong(2);
+      if (!rs.wasNull()) {
+        userAuthIds.add(userAuthId);
+      }
+    }, candidateIds.toArray());
+
+    if (holderIds.isEmpty()) {
+      return 0;
+    }
+
+    for (String table : HOLDER_TABLES) {
+      jdbcTemplate.update(format(DELETE_BY_OWNER, table, placeholders(holderIds)),
+          holderIds.toArray());
+    }
+
+    int deleted = jdbcTemplate.update(
+        format(DELETE_BY_ID, "authentication_holder", placeholders(holderIds)),
+        holderIds.toArray());
+
+    if (!userAuthIds.isEmpty()) {
+      for (String table : SAVED_USER_AUTH_TABLES) {
+        jdbcTemplate.update(format(DELETE_BY_OWNER, table, placeholders(userAuthIds)),
+            userAuthIds.toArray());
+      }
+      jdbcTemplate.update(format(DELETE_BY_ID, "saved_user_auth", placeholders(userAuthIds)),
+          userAuthIds.toArray());
+    }
+
+    return deleted;
+  }
+
+  private int deleteApprovedSites(String filter, Object param) {
+    jdbcTemplate.update(format(DELETE_APPROVED_SITE_SCOPES, filter), param);
+    return jdbcTemplate.update(format(DELETE_APPROVED_SITES, filter), param);
+  }
+
+  private static void runAfterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  private static void notifyListeners(List<TokenRevocationListener> revocationListeners,
+      Set<String> jtis) {
+
+    if (jtis.isEmpty()) {
+      return;
+    }
+
+    final Set<String> revokedJtis = Collections.unmodifiableSet(jtis);
+    runAfterCommit(() -> revocationListeners.forEach(l -> l.tokensRevoked(revokedJtis)));
+  }
+
+  private TokenRevocationSummary revoke(String accessTokenFilter, String refreshTokenFilter,
+      Object tokenParam, String approvedSiteFilter, Object approvedSiteParam) {
+
+    Set<Long> holderIds = new LinkedHashSet<>();
+    selectHolders(holderIds, ACCESS_TOKEN_TABLE, accessTokenFilter, tokenParam);
+    selectHolders(holderIds, REFRESH_TOKEN_TABLE, refreshTokenFilter, tokenParam);
+
+    List<TokenRevocationListener> revocationListeners =
+        listeners.orderedStream().collect(toList());
+    Set<String> jtis = new HashSet<>();
+
+    if (!revocationListeners.isEmpty()) {
+      selectJwtIds(jtis, ACCESS_TOKEN_TABLE, accessTokenFilter, tokenParam);
+      selectJwtIds(jtis, REFRESH_TOKEN_TABLE, refreshTokenFilter, tokenParam);
+    }
+
+    Runnable accessTokenCounts =
+        tokenCounters.bulkRevocation(ACCESS, accessTokenFilter, tokenParam);
+    Runnable refreshTokenCounts =
+        tokenCounters.bulkRevocation(REFRESH, refreshTokenFilter, tokenParam);
+
+    int accessTokens = deleteAccessTokens(accessTokenFilter, tokenParam);
+    int refreshTokens = deleteRefreshTokens(refreshTokenFilter, tokenParam);
+
+    int holders = 0;
+    for (List<Long> chunk : Lists.partition(new ArrayList<>(holderIds), CHUNK_SIZE)) {
+      holders += deleteHolders(chunk);
+    }
+
+    int approvedSites = deleteApprovedSites(approvedSiteFilter, approvedSiteParam);
+
+    runAfterCommit(accessTokenCounts);
+    runAfterCommit(refreshTokenCounts);
+    notifyListeners(revocationListeners, jtis);
+
+    return new TokenRevocationSummary(accessTokens, refreshTokens, holders, approvedSites);
+  }
+
+  @Override
+  public TokenRevocationSummary revokeTokensForAccount(IamAccount account) {
+
+    TokenRevocationSummary summary = revoke(USER_FILTER, USER_FILTER, account.getUsername(),
+        USER_FILTER, account.getUsername());
+
+    if (!summary.isEmpty()) {
+      LOG.info("Revoked tokens for user {}: {}", account.getUsername(), summary);
+      eventPublisher.publishEvent(new AccountTokensRevokedEvent(this, account, summary));
+    }
+
+    return summary;
+  }
+
+  @Override
+  public TokenRevocationSummary revokeTokensForClient(ClientDetailsEntity client) {
+
+    TokenRevocationSummary summary = revoke(CLIENT_ACCESS_TOKEN_FILTER, CLIENT_FILTER,
+        client.getId(), CLIENT_FILTER, client.getClientId());
+
+    if (!summary.isEmpty()) {
+      LOG.info("Revoked tokens for client {}: {}", client.getClientId(), summary);
+      eventPublisher.publishEvent(new ClientTokensRevokedEvent(this, client, summary));
+    }
+
+    return summary;
+  }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+import static java.lang.String.format;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.config.task.TaskProperties.OrphanedTokenReaperProperties;
+import it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType;
+import it.infn.mw.iam.core.task.ManagedTask;
+
+/**
+ * Deletes the access and refresh tokens whose user no longer has an account.
+ * 
+ * The task walks the authentication holders in primary key order, one window of
+ * {@code scanSize} holders at a time, and finds the orphaned ones with an anti-join against the
+ * account table. The tokens of the orphaned holders are deleted in transactions of at most
+ * {@code chunkSize} tokens, at a rate bounded by {@code maxTokensPerSec}, and are taken out of
+ * the {@link TokenCounters} once each transaction commits. Each run stops after
+ * {@code maxRunTimeSecs}, and the next one resumes the walk from where it stopped; once the end
+ * of the table is reached, the walk starts over.
+ * 
+ * The walk position is kept in the iam_task_checkpoint table, so that when the task lease moves
+ * to another instance the walk resumes there instead of starting over. Only the holders that
+ * still have tokens are considered orphaned: the holders left over after their tokens have been
+ * deleted are not picked up again by later walks. The lease is checked before each chunk is
+ * deleted; when it is lost, the run stops without moving the walk position past the current
+ * window, which is then examined again by the new lease holder.
+ */
+@Component
+public class OrphanedTokenReaper implements Runnable {
+
+  public static final Logger LOG = LoggerFactory.getLogger(OrphanedTokenReaper.class);
+
+  public static final String DELETED_TOKENS_METRIC = "iam.token.reaper.deleted";
+  public static final String SCANNED_HOLDERS_METRIC = "iam.token.reaper.scanned";
+  public static final String ORPHANED_HOLDERS_METRIC = "iam.token.reaper.orphaned";
+
+  public static final String TASK_NAME = "orphaned-token-reaper";
+
+  private static final String SELECT_CURSOR =
+      "SELECT position FROM iam_task_checkpoint WHERE task_name = ?";
+  private static final String UPDATE_CURSOR =
+      "UPDATE iam_task_checkpoint SET position = ? WHERE task_name = ?";
+  private static final String INSERT_CURSOR =
+      "INSERT INTO iam_task_checkpoint (task_name, position) VALUES (?, ?)";
+
+  private static final String NEXT_WINDOW = "SELECT MAX(w.id), COUNT(w.id) FROM "
+      + "(SELECT id FROM authentication_holder WHERE id > ? ORDER BY id LIMIT ?) w";
+
+  private static final String ORPHANED_HOLDERS = "SELECT h.id FROM authentication_holder h "
+      + "JOIN saved_user_auth u ON u.id = h.user_auth_id "
+      + "LEFT JOIN iam_account a ON a.username = u.name "
+      + "WHERE h.id > ? AND h.id <= ? AND a.id IS NULL "
+      + "AND (EXISTS (SELECT 1 FROM access_token t WHERE t.auth_holder_id = h.id) "
+      + "OR EXISTS (SELECT 1 FROM refresh_token r WHERE r.auth_holder_id = h.id)) "
+      + "ORDER BY h.id";
+
+  private static final String ACCESS_TOKENS =
+      "SELECT id FROM access_token WHERE auth_holder_id IN (%s)";
+  private static final String REFRESH_TOKENS =
+      "SELECT id FROM refresh_token WHERE auth_holder_id IN (%s)";
+
+  private static final String DELETE_ACCESS_TOKEN_SCOPES =
+      "DELETE FROM token_scope WHERE owner_id IN (%s)";
+  private static final String DELETE_ACCESS_TOKEN_PERMISSIONS =
+      "DELETE FROM access_token_permissions WHERE access_token_id IN (%s)";
+  private static final String DELETE_ACCESS_TOKENS = "DELETE FROM access_token WHERE id IN (%s)";
+  private static final String DELETE_REFRESH_TOKENS = "DELETE FROM refresh_token WHERE id IN (%s)";
+  private static final String TOKEN_IDS = "id IN (%s)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate txTemplate;
+  private final OrphanedTokenReaperProperties properties;
+  private final Clock clock;
+  private final RateLimiter rateLimiter;
+  private final TokenCounters tokenCounters;
+
+  private final Counter deletedAccessTokens;
+  private final Counter deletedRefreshTokens;
+  private final Counter scannedHolders;
+  private final Counter orphanedHolders;
+
+  @Autowired
+  public OrphanedTokenReaper(JdbcTemplate jdbcTemplate, PlatformTransactionManager txManager,
+      TaskProperties taskProperties, Clock clock, MeterRegistry registry,
+      TokenCounters tokenCounters) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.properties = taskProperties.getOrphanedTokenReaper();
+    this.clock = clock;
+    this.rateLimiter = RateLimiter.create(properties.getMaxTokensPerSec());
+    this.tokenCounters = tokenCounters;
+
+    deletedAccessTokens = Counter.builder(DELETED_TOKENS_METRIC)
+      .description("Orphaned tokens deleted")
+      .tag("type", "access")
+      .register(registry);
+
+    deletedRefreshTokens = Counter.builder(DELETED_TOKENS_METRIC)
+      .description("Orphaned tokens deleted")
+      .tag("type", "refresh")
+      .register(registry);
+
+    scannedHolders = Counter.builder(SCANNED_HOLDERS_METRIC)
+      .description("Authentication holders examined looking for orphaned tokens")
+      .register(registry);
+
+    orphanedHolders = Counter.builder(ORPHANED_HOLDERS_METRIC)
+      .description("Orphaned authentication holders whose tokens were deleted")
+      .register(registry);
+  }
+
+  private long loadCursor() {
+    List<Long> position = jdbcTemplate.queryForList(SELECT_CURSOR, Long.class, TASK_NAME);
+    return position.isEmpty() ? 0 : position.get(0);
+  }
+
+  private void saveCursor(long cursor) {
+    if (jdbcTemplate.update(UPDATE_CURSOR, cursor, TASK_NAME) == 0) {
+      jdbcTemplate.update(INSERT_CURSOR, TASK_NAME, cursor);
+    }
+  }
+
+  private static String inClause(String template, List<Long> ids) {
+    return format(template, String.join(",", Collections.nCopies(ids.size(), "?")));
+  }
+
+  private List<Long> selectIds(String template, List<Long> ids) {
+    return jdbcTemplate.queryForList(inClause(template, ids), Long.class, ids.toArray());
+  }
+
+  private Runnable countersAdjustment(TokenType type, List<Long> ids) {
+    return tokenCounters.bulkRevocation(type, inClause(TOKEN_IDS, ids), ids.toArray());
+  }
+
+  private int deleteAccessTokens(List<Long> ids) {
+    Runnable adjustCounters = countersAdjustment(TokenType.ACCESS, ids);
+    int deleted = txTemplate.execute(status -> {
+      jdbcTemplate.update(inClause(DELETE_ACCESS_TOKEN_SCOPES, ids), ids.toArray());
+      jdbcTemplate.update(inClause(DELETE_ACCESS_TOKEN_PERMISSIONS, ids), ids.toArray());
+      return jdbcTemplate.update(inClause(DELETE_ACCESS_TOKENS, ids), ids.toArray());
+    });
+    adjustCounters.run();
+    return deleted;
+  }
+
+  private int deleteRefreshTokens(List<Long> ids) {
+    Runnable adjustCounters = countersAdjustment(TokenType.REFRESH, ids);
+    int deleted = txTemplate
+      .execute(status -> jdbcTemplate.update(inClause(DELETE_REFRESH_TOKENS, ids), ids.toArray()));
+    adjustCounters.run();
+    return deleted;
+  }
+
+  private long reapHolders(List<Long> holderIds) {
+    long deleted = 0;
+
+    for (List<Long> holders : Lists.partition(holderIds, properties.getChunkSize())) {
+
+      for (List<Long> chunk : Lists.partition(selectIds(ACCESS_TOKENS, holders),
+          properties.getChunkSize())) {
+        if (!ManagedTask.holdsLease()) {
+          return deleted;
+        }
+        rateLimiter.acquire(chunk.size());
+        int count = deleteAccessTokens(chunk);
+        deletedAccessTokens.increment(count);
+        deleted += count;
+      }
+
+      for (List<Long> chunk : Lists.partition(selectIds(REFRESH_TOKENS, holders),
+          properties.getChunkSize())) {
+        if (!ManagedTask.holdsLease()) {
+          return deleted;
+        }
+        rateLimiter.acquire(chunk.size());
+        int count = deleteRefreshTokens(chunk);
+        deletedRefreshTokens.increment(count);
+        deleted += count;
+      }
+    }
+
+    return deleted;
+  }
+
+  /**
+   * Examines the next window of authentication holders and deletes the tokens of the orphaned
+   * ones.
+   * 
+   * @return the number of deleted tokens, or -1 when the end of the table was reached and the walk
+   *         starts over
+   */
+  public synchronized long step() {
+
+    final long cursor = loadCursor();
+
+    long[] window = jdbcTemplate.queryForObject(NEXT_WINDOW,
+        (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)}, cursor,
+        properties.getScanSize());
+
+    if (window == null || window[1] == 0) {
+      saveCursor(0);
+      return -1;
+    }
+
+    final long windowEnd = window[0];
+
+    List<Long> holders =
+        jdbcTemplate.queryForList(ORPHANED_HOLDERS, Long.class, cursor, windowEnd);
+
+    long deleted = holders.isEmpty() ? 0 : reapHolders(holders);
+
+    if (!ManagedTask.holdsLease()) {
+      LOG.warn("Orphaned token reaper lease lost, window ending at holder {} left to the new "
+          + "lease holder", windowEnd);
+      return deleted;
+    }
+
+    scannedHolders.increment(window[1]);
+    orphanedHolders.increment(holders.size());
+    saveCursor(windowEnd);
+
+    return deleted;
+  }
+
+  @Override
+  public void run() {
+
+    final Instant deadline = clock.instant().plusSeconds(properties.getMaxRunTimeSecs());
+    long deleted = 0;
+
+    while (clock.instant().isBefore(deadline) && ManagedTask.holdsLease()) {
+      long stepResult = step();
+
+      if (stepResult < 0) {
+        break;
+      }
+
+      deleted += stepResult;
+    }
+
+    if (deleted > 0) {
+      LOG.info("Deleted {} orphaned tokens", deleted);
+    }
+  }
+
+  public synchronized long getCursor() {
+    return loadCursor();
+  }
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+import static java.lang.String.format;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.infn.mw.iam.config.task.TaskProperties;
+
+/**
+ * In-memory counters of the valid access and refresh tokens, in total, per user and per client.
+ * 
+ * The counters are rebuilt by an exact recount, which runs periodically on each instance, and are
+ * adjusted in between as tokens are issued and revoked through this instance, including the tokens
+ * deleted in bulk. Token expirations, and the changes made by other instances, are reflected at the
+ * next recount.
+ * 
+ * No count is returned when the counters are disabled or before the first recount completes;
+ * callers are expected to query the database in that case.
+ */
+@Component
+public class TokenCounters implements Runnable {
+
+  public static final Logger LOG = LoggerFactory.getLogger(TokenCounters.class);
+
+  public static final String VALID_TOKENS_METRIC = "iam.tokens.valid";
+  public static final String RECOUNT_METRIC = "iam.tokens.recount";
+
+  public enum TokenType {
+    ACCESS("access", "access_token", false),
+    REFRESH("refresh", "refresh_token", true);
+
+    private final String typeName;
+    private final String table;
+    private final boolean nullExpirationValid;
+
+    TokenType(String typeName, String table, boolean nullExpirationValid) {
+      this.typeName = typeName;
+      this.table = table;
+      this.nullExpirationValid = nullExpirationValid;
+    }
+
+    public String getTypeName() {
+      return typeName;
+    }
+
+    String validCondition() {
+      return nullExpirationValid ? "(t.expiration IS NULL OR t.expiration > ?)"
+          : "(t.expiration IS NOT NULL AND t.expiration > ?)";
+    }
+
+    boolean isValidAt(Date expiration, Instant instant) {
+      if (expiration == null) {
+        return nullExpirationValid;
+      }
+      return expiration.toInstant().isAfter(instant);
+    }
+  }
+
+  private static final String COUNT_ALL = "SELECT COUNT(t.id) FROM %s t WHERE %s";
+
+  private static final String COUNT_BY_USER =
+      "SELECT t.user_id, COUNT(t.id) FROM %s t WHERE %s GROUP BY t.user_id";
+
+  private static final String COUNT_BY_CLIENT = "SELECT c.client_id, COUNT(t.id) FROM %s t "
+      + "JOIN client_details c ON c.id = t.client_id WHERE %s GROUP BY c.client_id";
+
+  private static final String COUNT_MATCHING = "SELECT t.user_id, c.client_id, COUNT(t.id) FROM "
+      + "(SELECT id, user_id, client_id, expiration FROM %s WHERE %s) t "
+      + "LEFT JOIN client_details c ON c.id = t.client_id WHERE %s "
+      + "GROUP BY t.user_id, c.client_id";
+
+  private static final Runnable NO_ADJUSTMENT = () -> {
+  };
+
+  static class Counts {
+
+    final Instant timestamp;
+    final AtomicLong total = new AtomicLong();
+    final ConcurrentMap<String, Long> byUser = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, Long> byClient = new ConcurrentHashMap<>();
+
+    Counts(Instant timestamp) {
+      this.timestamp = timestamp;
+    }
+
+    private static void add(ConcurrentMap<String, Long> counts, String key, long delta) {
+      if (key != null) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+      }
+    }
+
+    void add(String userId, String clientId, long delta) {
+      total.addAndGet(delta);
+      add(byUser, userId, delta);
+      add(byClient, clientId, delta);
+    }
+
+    void addAll(Counts other) {
+      total.addAndGet(other.total.get());
+      other.byUser.forEach((k, v) -> add(byUser, k, v));
+      other.byClient.forEach((k, v) -> add(byClient, k, v));
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean enabled;
+  private final Clock clock;
+  private final Timer recountTimer;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<TokenType, Counts> counts = new EnumMap<>(TokenType.class);
+  private final Map<TokenType, Counts> pending = new EnumMap<>(TokenType.class);
+
+  @Autowired
+  public TokenCounters(JdbcTemplate jdbcTemplate, TaskProperties taskProperties, Clock clock,
+      MeterRegistry registry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.enabled = taskProperties.getTokenCounters().isEnabled();
+    this.clock = clock;
+
+    recountTimer = Timer.builder(RECOUNT_METRIC)
+      .description("Time spent recounting the valid tokens")
+      .register(registry);
+
+    for (TokenType type : TokenType.values()) {
+      Gauge.builder(VALID_TOKENS_METRIC, this, c -> c.gaugeValue(type))
+        .description("Valid tokens, as tracked by the token counters")
+        .tag("type", type.getTypeName())
+        .register(registry);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  private double gaugeValue(TokenType type) {
+    OptionalLong count = count(type);
+    return count.isPresent() ? count.getAsLong() : Double.NaN;
+  }
+
+  private static long nonNegative(Long count) {
+    return count == null ? 0 : Math.max(0, count);
+  }
+
+  private OptionalLong read(TokenType type, String key, boolean byUser) {
+    if (!enabled) {
+      return OptionalLong.empty();
+    }
+
+    lock.readLock().lock();
+    try {
+      Counts current = counts.get(type);
+      if (current == null) {
+        return OptionalLong.empty();
+      }
+
+      if (key == null) {
+        return OptionalLong.of(Math.max(0, current.total.get()));
+      }
+
+      Map<String, Long> keyCounts = byUser ? current.byUser : current.byClient;
+      return OptionalLong.of(nonNegative(keyCounts.get(key)));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public OptionalLong count(TokenType type) {
+    return read(type, null, false);
+  }
+
+  public OptionalLong countForUser(TokenType type, String userId) {
+    return read(type, userId, true);
+  }
+
+  public OptionalLong countForClient(TokenType type, String clientId) {
+    return read(type, clientId, false);
+  }
+
+  private void update(TokenType type, String userId, String clientId, Date expiration,
+      long delta) {
+    lock.readLock().lock();
+    try {
+      for (Counts c : new Counts[] {counts.get(type), pending.get(type)}) {
+        // A token is only accounted for when it was valid at the time the counts refer to
+        if (c != null && type.isValidAt(expiration, c.timestamp)) {
+          c.add(userId, clientId, delta);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void tokenIssued(TokenType type, String userId, String clientId, Date expiration) {
+    if (enabled && type.isValidAt(expiration, clock.instant())) {
+      update(type, userId, clientId, expiration, 1);
+    }
+  }
+
+  public void tokenRevoked(TokenType type, String userId, String clientId, Date expiration) {
+    if (enabled) {
+      update(type, userId, clientId, expiration, -1);
+    }
+  }
+
+  /**
+   * Counts the valid tokens that match a condition on the token table, ahead of their deletion in
+   * bulk, which bypasses {@link #tokenRevoked(TokenType, String, String, Date)}.
+   * 
+   * @param type the token type
+   * @param condition an SQL condition on the columns of the token table
+   * @param params the condition parameters
+   * @return the adjustment that removes the matching tokens from the counters, to be run once the
+   *         deletion is committed
+   */
+  public Runnable bulkRevocation(TokenType type, String condition, Object... params) {
+    if (!enabled) {
+      return NO_ADJUSTMENT;
+    }
+
+    final Instant now = clock.instant();
+    Object[] args = Arrays.copyOf(params, params.length + 1);
+    args[params.length] = Timestamp.from(now);
+
+    Counts revoked = new Counts(now);
+    jdbcTemplate.query(format(COUNT_MATCHING, type.table, condition, type.validCondition()),
+        rs -> {
+          revoked.add(rs.getString(1), rs.getString(2), -rs.getLong(3));
+        }, args);
+
+    if (revoked.total.get() == 0) {
+      return NO_ADJUSTMENT;
+    }
+
+    return () -> {
+      lock.readLock().lock();
+      try {
+        for (Counts c : new Counts[] {counts.get(type), pending.get(type)}) {
+          if (c != null) {
+            c.addAll(revoked);
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    };
+  }
+
+  private void fill(Map<String, Long> target, String query, Timestamp now) {
+    jdbcTemplate.query(query, rs -> {
+      if (rs.getString(1) != null) {
+        target.put(rs.getString(1), rs.getLong(2));
+      }
+    }, now);
+  }
+
+  private void recount(TokenType type) {
+    final Instant now = clock.instant();
+    final Timestamp nowTs = Timestamp.from(now);
+
+    // Tokens issued or revoked while the recount runs are tracked separately and added to the
+    // result, as the recount queries may not see them
+    lock.writeLock().lock();
+    try {
+      pending.put(type, new Counts(now));
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    Counts fresh = new Counts(now);
+
+    try {
+      String condition = type.validCondition();
+      Long total = jdbcTemplate.queryForObject(format(COUNT_ALL, type.table, condition),
+          Long.class, nowTs);
+      fresh.total.set(total == null ? 0 : total);
+      fill(fresh.byUser, format(COUNT_BY_USER, type.table, condition), nowTs);
+      fill(fresh.byClient, format(COUNT_BY_CLIENT, type.table, condition), nowTs);
+    } catch (RuntimeException e) {
+      lock.writeLock().lock();
+      try {
+        pending.remove(type);
+      } finally {
+        lock.writeLock().unlock();
+      }
+      throw e;
+    }
+
+    lock.writeLock().lock();
+    try {
+      fresh.addAll(pending.remove(type));
+      counts.put(type, fresh);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    LOG.debug("Recounted {} tokens: {} valid, {} users, {} clients", type.getTypeName(),
+        fresh.total.get(), fresh.byUser.size(), fresh.byClient.size());
+  }
+
+  /**
+   * Rebuilds the counters from the database.
+   */
+  public void recount() {
+    if (!enabled) {
+      return;
+    }
+
+    recountTimer.record(() -> {
+      for (TokenType type : TokenType.values()) {
+        recount(type);
+      }
+    });
+  }
+
+  @Override
+  public void run() {
+    recount();
+  }
+}
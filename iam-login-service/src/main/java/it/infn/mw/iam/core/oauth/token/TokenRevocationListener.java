@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+import java.util.Set;
+
+/**
+ * Receives the JWT ids of the tokens removed by a bulk revocation, e.g. to update an in-memory
+ * revocation set. Listeners are notified after the revoking transaction commits.
+ */
+@FunctionalInterface
+public interface TokenRevocationListener {
+
+  void tokensRevoked(Set<String> jtis);
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.oauth.token;
+
+public class TokenRevocationSummary {
+
+  private final int accessTokens;
+  private final int refreshTokens;
+  private final int authenticationHolders;
+  private final int approvedSites;
+
+  public TokenRevocationSummary(int accessTokens, int refreshTokens, int authenticationHolders,
+      int approvedSites) {
+    this.accessTokens = accessTokens;
+    this.refreshTokens = refreshTokens;
+    this.authenticationHolders = authenticationHolders;
+    this.approvedSites = approvedSites;
+  }
+
+  public int getAccessTokens() {
+    return accessTokens;
+  }
+
+  public int getRefreshTokens() {
+    return refreshTokens;
+  }
+
+  public int getAuthenticationHolders() {
+    return authenticationHolders;
+  }
+
+  public int getApprovedSites() {
+    return approvedSites;
+  }
+
+  public boolean isEmpty() {
+    return accessTokens == 0 && refreshTokens == 0 && authenticationHolders == 0
+        && approvedSites == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenRevocationSummary [accessTokens=" + accessTokens + ", refreshTokens="
+        + refreshTokens + ", authenticationHolders=" + authenticationHolders + ", approvedSites="
+        + approvedSites + "]";
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import static java.lang.String.format;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.CronTrigger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.config.task.TaskProperties;
+
+/**
+ * Schedules the IAM background tasks.
+ * 
+ * Each {@link TaskGroup} has its own, separately sized, thread pool. Tasks are registered by name
+ * and wrapped in a {@link ManagedTask}, so that they can be listed, paused, resumed and triggered
+ * at runtime.
+ * 
+ * A task lease is held for at least 90% of the task scheduling interval, so that in a cluster a
+ * task runs roughly once per interval regardless of how many instances schedule it. Tasks that
+ * maintain per-instance state are scheduled as local tasks, and run on every instance.
+ */
+public class IamTaskScheduler {
+
+  public static final Logger LOG = LoggerFactory.getLogger(IamTaskScheduler.class);
+
+  private static final long LEASE_HOLD_PERCENT = 90;
+
+  private final TaskLeaseManager leaseManager;
+  private final TaskLeaseManager localLeaseManager = new LocalTaskLeaseManager();
+  private final Clock clock;
+  private final MeterRegistry registry;
+
+  private final Map<TaskGroup, ThreadPoolTaskScheduler> schedulers = new EnumMap<>(TaskGroup.class);
+  private final Map<String, ManagedTask> tasks = Collections.synchronizedMap(new TreeMap<>());
+
+  public IamTaskScheduler(TaskProperties properties, TaskLeaseManager leaseManager, Clock clock,
+      MeterRegistry registry) {
+    this.leaseManager = leaseManager;
+    this.clock = clock;
+    this.registry = registry;
+
+    for (TaskGroup group : TaskGroup.values()) {
+      ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+      scheduler.setPoolSize(properties.getPoolSize(group));
+      scheduler.setThreadNamePrefix(format("iam-task-%s-", group.getGroupName()));
+      scheduler.setRemoveOnCancelPolicy(true);
+      scheduler.setWaitForTasksToCompleteOnShutdown(false);
+      scheduler.initialize();
+      schedulers.put(group, scheduler);
+    }
+  }
+
+  static Duration leaseHoldFor(long intervalMsec) {
+    return Duration.ofMillis(intervalMsec * LEASE_HOLD_PERCENT / 100);
+  }
+
+  private Duration leaseHoldFor(CronExpression cron) {
+    ZonedDateTime next = cron.next(ZonedDateTime.now(clock));
+    ZonedDateTime nextAfter = next == null ? null : cron.next(next);
+
+    if (nextAfter == null) {
+      return Duration.ZERO;
+    }
+
+    return leaseHoldFor(Duration.between(next, nextAfter).toMillis());
+  }
+
+  private ManagedTask register(String name, TaskGroup group, String schedule, Duration leaseHold,
+      Runnable task, TaskLeaseManager taskLeaseManager) {
+    ManagedTask managedTask =
+        new ManagedTask(name, group, schedule, leaseHold, task, taskLeaseManager, clock, registry);
+
+    if (tasks.putIfAbsent(name, managedTask) != null) {
+      throw new IllegalStateException(format("Task '%s' is already registered", name));
+    }
+
+    LOG.info("Scheduling {} task {}: {}", group.getGroupName(), name, schedule);
+    return managedTask;
+  }
+
+  public ManagedTask scheduleWithFixedDelay(String name, TaskGroup group, Runnable task,
+      long initialDelayMsec, long delayMsec) {
+
+    ManagedTask managedTask = register(name, group, format("fixed delay %d msec", delayMsec),
+        leaseHoldFor(delayMsec), task, leaseManager);
+
+    schedulers.get(group)
+      .scheduleWithFixedDelay(managedTask, clock.instant().plusMillis(initialDelayMsec),
+          Duration.ofMillis(delayMsec));
+
+    return managedTask;
+  }
+
+  /**
+   * Schedules a task that runs on every instance, without acquiring a task lease.
+   */
+  public ManagedTask scheduleLocalWithFixedDelay(String name, TaskGroup group, Runnable task,
+      long initialDelayMsec, long delayMsec) {
+
+    ManagedTask managedTask = register(name, group,
+        format("fixed delay %d msec, local", delayMsec), Duration.ZERO, task,
+        localLeaseManager);
+
+    schedulers.get(group)
+      .scheduleWithFixedDelay(managedTask, clock.instant().plusMillis(initialDelayMsec),
+          Duration.ofMillis(delayMsec));
+
+    return managedTask;
+  }
+
+  public ManagedTask scheduleAtFixedRate(String name, TaskGroup group, Runnable task,
+      long initialDelayMsec, long periodMsec) {
+
+    ManagedTask managedTask = register(name, group, format("fixed rate %d msec", periodMsec),
+        leaseHoldFor(periodMsec), task, leaseManager);
+
+    schedulers.get(group)
+      .scheduleAtFixedRate(managedTask, clock.instant().plusMillis(initialDelayMsec),
+          Duration.ofMillis(periodMsec));
+
+    return managedTask;
+  }
+
+  public ManagedTask scheduleCron(String name, TaskGroup group, Runnable task,
+      String cronSchedule) {
+
+    ManagedTask managedTask = register(name, group, format("cron %s", cronSchedule),
+        leaseHoldFor(CronExpression.parse(cronSchedule)), task, leaseManager);
+    schedulers.get(group).schedule(managedTask, new CronTrigger(cronSchedule));
+    return managedTask;
+  }
+
+  public Optional<ManagedTask> findTask(String name) {
+    return Optional.ofNullable(tasks.get(name));
+  }
+
+  public Collection<ManagedTask> getTasks() {
+    synchronized (tasks) {
+      return Collections.unmodifiableList(new ArrayList<>(tasks.values()));
+    }
+  }
+
+  /**
+   * Runs a task now, on its group thread pool, independently of its schedule and even if it is
+   * paused.
+   */
+  public void trigger(ManagedTask task) {
+    LOG.info("Triggering execution of task {}", task.getName());
+    schedulers.get(task.getGroup()).execute(task::runOnce);
+  }
+
+  public void shutdown() {
+    schedulers.values().forEach(ThreadPoolTaskScheduler::shutdown);
+  }
+}
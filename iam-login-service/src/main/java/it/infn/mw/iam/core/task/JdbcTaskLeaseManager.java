@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A {@link TaskLeaseManager} that coordinates the instances of a cluster through the
+ * iam_task_lease table, so that each task runs on at most one instance at a time.
+ * 
+ * A lease is acquired by taking over the task row when it has expired (or is already owned by
+ * this instance), or by inserting it the first time the task runs; every acquisition increments
+ * the row fencing token. While a task runs, its lease is periodically renewed, so a lease only
+ * expires when its holder stops, which lets another instance take over the task. On release, the
+ * lease is kept until the requested minimum hold time has elapsed, so that instances whose
+ * schedules are offset do not repeat work that was just done.
+ * 
+ * Lease times are computed on the instance clock, so the clocks of the cluster nodes are expected
+ * to be synchronized well within the lease duration.
+ */
+public class JdbcTaskLeaseManager implements TaskLeaseManager {
+
+  public static final Logger LOG = LoggerFactory.getLogger(JdbcTaskLeaseManager.class);
+
+  public static final String TABLE_NAME = "iam_task_lease";
+
+  public static final String LEASES_METRIC = "iam.task.leases";
+
+  private static final String TAKE_OVER_LEASE = "UPDATE " + TABLE_NAME
+      + " SET owner = ?, fencing_token = fencing_token + 1, acquired_at = ?, expires_at = ?"
+      + " WHERE task_name = ? AND (expires_at <= ? OR owner = ?)";
+
+  private static final String INSERT_LEASE = "INSERT INTO " + TABLE_NAME
+      + " (task_name, owner, fencing_token, acquired_at, expires_at) VALUES (?, ?, 1, ?, ?)";
+
+  private static final String SELECT_FENCING_TOKEN =
+      "SELECT fencing_token FROM " + TABLE_NAME + " WHERE task_name = ? AND owner = ?";
+
+  private static final String UPDATE_EXPIRATION = "UPDATE " + TABLE_NAME
+      + " SET expires_at = ? WHERE task_name = ? AND owner = ? AND fencing_token = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final Clock clock;
+  private final String owner;
+  private final Duration leaseDuration;
+
+  private final Map<String, JdbcTaskLease> heldLeases = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService renewer;
+
+  private final Counter acquired;
+  private final Counter denied;
+  private final Counter lost;
+
+  public JdbcTaskLeaseManager(JdbcTemplate jdbcTemplate, Clock clock, String owner,
+      Duration leaseDuration, MeterRegistry registry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.clock = clock;
+    this.owner = owner;
+    this.leaseDuration = leaseDuration;
+
+    acquired = leaseCounter("acquired", registry);
+    denied = leaseCounter("denied", registry);
+    lost = leaseCounter("lost", registry);
+
+    renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "iam-task-lease-renewer");
+      t.setDaemon(true);
+      return t;
+    });
+
+    final long renewalPeriodMsec = Math.max(1, leaseDuration.toMillis() / 3);
+    renewer.scheduleWithFixedDelay(this::renewLeases, renewalPeriodMsec, renewalPeriodMsec,
+        TimeUnit.MILLISECONDS);
+
+    LOG.info("Task leases are coordinated through the database: owner={}, lease duration={} sec",
+        owner, leaseDuration.getSeconds());
+  }
+
+  private Counter leaseCounter(String outcome, MeterRegistry registry) {
+    return Counter.builder(LEASES_METRIC)
+      .description("Task lease acquisition attempts and losses")
+      .tag("outcome", outcome)
+      .register(registry);
+  }
+
+  private static Timestamp ts(Instant instant) {
+    return Timestamp.from(instant);
+  }
+
+  private boolean takeOver(String taskName, Instant now) {
+    return jdbcTemplate.update(TAKE_OVER_LEASE, owner, ts(now), ts(now.plus(leaseDuration)),
+        taskName, ts(now), owner) == 1;
+  }
+
+  private boolean insert(String taskName, Instant now) {
+    try {
+      return jdbcTemplate.update(INSERT_LEASE, taskName, owner, ts(now),
+          ts(now.plus(leaseDuration))) == 1;
+    } catch (DuplicateKeyException e) {
+      // Another instance created the lease concurrently
+      return false;
+    }
+  }
+
+  @Override
+  public Optional<TaskLease> tryAcquire(String taskName, Duration holdAtLeast) {
+
+    final Instant now = clock.instant();
+
+    try {
+      if (!takeOver(taskName, now) && !insert(taskName, now)) {
+        LOG.debug("Lease for task {} is held by another instance", taskName);
+        denied.increment();
+        return Optional.empty();
+      }
+
+      long fencingToken =
+          jdbcTemplate.queryForObject(SELECT_FENCING_TOKEN, Long.class, taskName, owner);
+
+      JdbcTaskLease lease = new JdbcTaskLease(taskName, fencingToken, now.plus(holdAtLeast));
+      heldLeases.put(taskName, lease);
+      acquired.increment();
+
+      LOG.debug("Acquired lease for task {} with fencing token {}", taskName, fencingToken);
+      return Optional.of(lease);
+
+    } catch (DataAccessException e) {
+      LOG.warn("Error acquiring lease for task {}: {}", taskName, e.getMessage());
+      denied.increment();
+      return Optional.empty();
+    }
+  }
+
+  private boolean updateExpiration(JdbcTaskLease lease, Instant expiration) {
+    return jdbcTemplate.update(UPDATE_EXPIRATION, ts(expiration), lease.getTaskName(), owner,
+        lease.getFencingToken()) == 1;
+  }
+
+  void renewLeases() {
+    for (JdbcTaskLease lease : heldLeases.values()) {
+      synchronized (lease) {
+        if (!lease.isValid()) {
+          continue;
+        }
+        try {
+          if (!updateExpiration(lease, clock.instant().plus(leaseDuration))) {
+            LOG.warn("Lease for task {} (fencing token {}) was lost", lease.getTaskName(),
+                lease.getFencingToken());
+            lease.invalidate();
+            heldLeases.remove(lease.getTaskName(), lease);
+            lost.increment();
+          }
+        } catch (DataAccessException e) {
+          LOG.warn("Error renewing lease for task {}: {}", lease.getTaskName(), e.getMessage());
+        }
+      }
+    }
+  }
+
+  void release(JdbcTaskLease lease) {
+
+    heldLeases.remove(lease.getTaskName(), lease);
+
+    synchronized (lease) {
+      if (!lease.isValid()) {
+        return;
+      }
+
+      lease.invalidate();
+
+      final Instant now = clock.instant();
+      final Instant expiration = lease.holdUntil.isAfter(now) ? lease.holdUntil : now;
+
+      try {
+        if (!updateExpiration(lease, expiration)) {
+          LOG.warn("Lease for task {} (fencing token {}) was lost before release",
+              lease.getTaskName(), lease.getFencingToken());
+          lost.increment();
+        }
+      } catch (DataAccessException e) {
+        LOG.warn("Error releasing lease for task {}: {}", lease.getTaskName(), e.getMessage());
+      }
+    }
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public void shutdown() {
+    renewer.shutdownNow();
+    heldLeases.values().forEach(this::release);
+  }
+
+  class JdbcTaskLease implements TaskLease {
+
+    private final String taskName;
+    private final long fencingToken;
+    private final Instant holdUntil;
+    private volatile boolean valid = true;
+
+    JdbcTaskLease(String taskName, long fencingToken, Instant holdUntil) {
+      this.taskName = taskName;
+      this.fencingToken = fencingToken;
+      this.holdUntil = holdUntil;
+    }
+
+    @Override
+    public String getTaskName() {
+      return taskName;
+    }
+
+    @Override
+    public long getFencingToken() {
+      return fencingToken;
+    }
+
+    @Override
+    public boolean isValid() {
+      return valid;
+    }
+
+    void invalidate() {
+      valid = false;
+    }
+
+    @Override
+    public void close() {
+      release(this);
+    }
+  }
+}
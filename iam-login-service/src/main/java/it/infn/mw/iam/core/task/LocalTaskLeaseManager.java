@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TaskLeaseManager} for single instance deployments, which always grants the lease.
+ */
+public class LocalTaskLeaseManager implements TaskLeaseManager {
+
+  private final AtomicLong fencingToken = new AtomicLong();
+
+  @Override
+  public Optional<TaskLease> tryAcquire(String taskName, Duration holdAtLeast) {
+
+    final long token = fencingToken.incrementAndGet();
+
+    return Optional.of(new TaskLease() {
+
+      @Override
+      public String getTaskName() {
+        return taskName;
+      }
+
+      @Override
+      public long getFencingToken() {
+        return token;
+      }
+
+      @Override
+      public boolean isValid() {
+        return true;
+      }
+
+      @Override
+      public void close() {
+        // nothing to release
+      }
+    });
+  }
+}
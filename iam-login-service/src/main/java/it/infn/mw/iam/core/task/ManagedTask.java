@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Wraps a background task, so that it can be paused, triggered on demand and observed.
+ * 
+ * An execution is skipped when the task is paused, when a previous execution is still running on
+ * this instance, or when the {@link TaskLeaseManager} does not grant the lease. Failures are
+ * logged and recorded, and never propagate to the scheduler, so that a failing task keeps being
+ * rescheduled.
+ */
+public class ManagedTask implements Runnable {
+
+  public static final Logger LOG = LoggerFactory.getLogger(ManagedTask.class);
+
+  public static final String METRIC_PREFIX = "iam.task";
+  public static final String DURATION_METRIC = METRIC_PREFIX + ".duration";
+  public static final String SKIPPED_METRIC = METRIC_PREFIX + ".skipped";
+  public static final String LAG_METRIC = METRIC_PREFIX + ".lag";
+
+  private static final ThreadLocal<TaskLease> CURRENT_LEASE = new ThreadLocal<>();
+
+  public static final String TASK_TAG = "task";
+  public static final String GROUP_TAG = "group";
+
+  private final String name;
+  private final TaskGroup group;
+  private final String schedule;
+  private final Duration leaseHold;
+  private final Runnable delegate;
+  private final TaskLeaseManager leaseManager;
+  private final Clock clock;
+
+  private final AtomicBoolean paused = new AtomicBoolean(false);
+  private final AtomicBoolean running = new AtomicBoolean(false);
+
+  private final Timer successTimer;
+  private final Timer failureTimer;
+  private final Counter skippedPaused;
+  private final Counter skippedRunning;
+  private final Counter skippedLease;
+
+  private final Instant registrationTime;
+  private volatile Instant lastStartTime;
+  private volatile Instant lastSuccessTime;
+  private volatile Instant lastFailureTime;
+  private volatile String lastError;
+  private volatile long lastDurationMsec = -1;
+  private volatile long lastFencingToken = -1;
+
+  public ManagedTask(String name, TaskGroup group, String schedule, Duration leaseHold,
+      Runnable delegate, TaskLeaseManager leaseManager, Clock clock, MeterRegistry registry) {
+    this.name = name;
+    this.group = group;
+    this.schedule = schedule;
+    this.leaseHold = leaseHold;
+    this.delegate = delegate;
+    this.leaseManager = leaseManager;
+    this.clock = clock;
+    this.registrationTime = clock.instant();
+
+    successTimer = durationTimer("success", registry);
+    failureTimer = durationTimer("failure", registry);
+    skippedPaused = skippedCounter("paused", registry);
+    skippedRunning = skippedCounter("running", registry);
+    skippedLease = skippedCounter("lease", registry);
+
+    Gauge.builder(LAG_METRIC, this, t -> t.getLag().getSeconds())
+      .description("Seconds elapsed since the last successful execution of the task")
+      .baseUnit("seconds")
+      .tag(TASK_TAG, name)
+      .tag(GROUP_TAG, group.getGroupName())
+      .register(registry);
+  }
+
+  private Timer durationTimer(String outcome, MeterRegistry registry) {
+    return Timer.builder(DURATION_METRIC)
+      .description("Background task execution time")
+      .tag(TASK_TAG, name)
+      .tag(GROUP_TAG, group.getGroupName())
+      .tag("outcome", outcome)
+      .register(registry);
+  }
+
+  private Counter skippedCounter(String reason, MeterRegistry registry) {
+    return Counter.builder(SKIPPED_METRIC)
+      .description("Background task executions that were skipped")
+      .tag(TASK_TAG, name)
+      .tag(GROUP_TAG, group.getGroupName())
+      .tag("reason", reason)
+      .register(registry);
+  }
+
+  @Override
+  public void run() {
+
+    if (paused.get()) {
+      LOG.debug("Task {} is paused, skipping execution", name);
+      skippedPaused.increment();
+      return;
+    }
+
+    runOnce();
+  }
+
+  /**
+   * Runs the task once, even if it is paused.
+   */
+  public void runOnce() {
+
+    if (!running.compareAndSet(false, true)) {
+      LOG.debug("Task {} is already running, skipping execution", name);
+      skippedRunning.increment();
+      return;
+    }
+
+    try {
+      Optional<TaskLease> lease = leaseManager.tryAcquire(name, leaseHold);
+
+      if (!lease.isPresent()) {
+        LOG.debug("Lease for task {} not granted, skipping execution", name);
+        skippedLease.increment();
+        return;
+      }
+
+      try (TaskLease l = lease.get()) {
+        lastFencingToken = l.getFencingToken();
+        CURRENT_LEASE.set(l);
+        execute();
+        if (!l.isValid()) {
+          LOG.warn("Task {} completed after losing its lease (fencing token {})", name,
+              l.getFencingToken());
+        }
+      } finally {
+        CURRENT_LEASE.remove();
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Error handling lease for task {}: {}", name, e.getMessage(), e);
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private void execute() {
+    lastStartTime = clock.instant();
+    final long startNanos = System.nanoTime();
+
+    try {
+      delegate.run();
+      lastDurationMsec = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      successTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      lastSuccessTime = clock.instant();
+    } catch (RuntimeException e) {
+      lastDurationMsec = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      failureTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      lastFailureTime = clock.instant();
+      lastError = e.getMessage();
+      LOG.error("Task {} failed: {}", name, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the lease held by the task running on the current thread, if any. Tasks can use it to
+   * check that they still hold the lease, or to tag their writes with its fencing token, before
+   * committing long running work.
+   */
+  public static Optional<TaskLease> currentLease() {
+    return Optional.ofNullable(CURRENT_LEASE.get());
+  }
+
+  /**
+   * Tells whether the code running on the current thread may go on with its work, i.e. it is not
+   * running as a task or the task still holds its lease. Tasks that do their work in batches
+   * should check this before each batch, and stop when it returns false.
+   */
+  public static boolean holdsLease() {
+    return currentLease().map(TaskLease::isValid).orElse(true);
+  }
+
+  public void pause() {
+    paused.set(true);
+  }
+
+  public void resume() {
+    paused.set(false);
+  }
+
+  public boolean isPaused() {
+    return paused.get();
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  /**
+   * Returns the time elapsed since the last successful execution, or since the task was
+   * registered if it never completed successfully.
+   */
+  public Duration getLag() {
+    Instant reference = lastSuccessTime == null ? registrationTime : lastSuccessTime;
+    return Duration.between(reference, clock.instant());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public TaskGroup getGroup() {
+    return group;
+  }
+
+  /**
+   * Tells whether the task runs on every instance, without coordinating through a cluster lease.
+   */
+  public boolean isLocal() {
+    return leaseManager instanceof LocalTaskLeaseManager;
+  }
+
+  public TaskStatus getStatus() {
+    return new TaskStatus(name, group.getGroupName(), schedule, isPaused(), isRunning(),
+        lastStartTime, lastSuccessTime, lastFailureTime, lastError, lastDurationMsec,
+        lastFencingToken, getLag().getSeconds());
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+/**
+ * Classes of background tasks. Each group runs on its own thread pool, so that a slow task in one
+ * group does not delay the tasks of another.
+ */
+public enum TaskGroup {
+
+  HOUSEKEEPING("housekeeping"),
+  NOTIFICATION("notification"),
+  MAINTENANCE("maintenance");
+
+  private final String groupName;
+
+  TaskGroup(String groupName) {
+    this.groupName = groupName;
+  }
+
+  public String getGroupName() {
+    return groupName;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+/**
+ * The right to run a task, held for the duration of a single execution.
+ */
+public interface TaskLease extends AutoCloseable {
+
+  String getTaskName();
+
+  /**
+   * Returns the fencing token of this lease. Tokens grow monotonically with each acquisition of
+   * the lease for a given task, so that a write carrying a token older than the last one seen can
+   * be recognized as coming from a holder that lost the lease.
+   */
+  long getFencingToken();
+
+  /**
+   * Tells whether the lease is still held, i.e. it has not been released and no other instance
+   * could have taken it over.
+   */
+  boolean isValid();
+
+  /**
+   * Releases the lease.
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Decides whether this instance is allowed to run a task.
+ */
+public interface TaskLeaseManager {
+
+  /**
+   * Tries to acquire the lease for a task.
+   * 
+   * @param taskName the task name
+   * @param holdAtLeast how long, from acquisition, the lease stays unavailable to other instances
+   *        even if it is released earlier
+   * @return the lease, or an empty optional if the task must not run here now
+   */
+  Optional<TaskLease> tryAcquire(String taskName, Duration holdAtLeast);
+}
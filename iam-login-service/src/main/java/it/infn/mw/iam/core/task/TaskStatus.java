@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.core.task;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+@JsonInclude(Include.NON_NULL)
+public class TaskStatus {
+
+  private final String name;
+  private final String group;
+  private final String schedule;
+  private final boolean paused;
+  private final boolean running;
+  private final Instant lastStartTime;
+  private final Instant lastSuccessTime;
+  private final Instant lastFailureTime;
+  private final String lastError;
+  private final long lastDurationMsec;
+  private final long lastFencingToken;
+  private final long lagSecs;
+
+  public TaskStatus(String name, String group, String schedule, boolean paused, boolean running,
+      Instant lastStartTime, Instant lastSuccessTime, Instant lastFailureTime, String lastError,
+      long lastDurationMsec, long lastFencingToken, long lagSecs) {
+    this.name = name;
+    this.group = group;
+    this.schedule = schedule;
+    this.paused = paused;
+    this.running = running;
+    this.lastStartTime = lastStartTime;
+    this.lastSuccessTime = lastSuccessTime;
+    this.lastFailureTime = lastFailureTime;
+    this.lastError = lastError;
+    this.lastDurationMsec = lastDurationMsec;
+    this.lastFencingToken = lastFencingToken;
+    this.lagSecs = lagSecs;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public String getSchedule() {
+    return schedule;
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public Instant getLastStartTime() {
+    return lastStartTime;
+  }
+
+  public Instant getLastSuccessTime() {
+    return lastSuccessTime;
+  }
+
+  public Instant getLastFailureTime() {
+    return lastFailureTime;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  public long getLastDurationMsec() {
+    return lastDurationMsec;
+  }
+
+  public long getLastFencingToken() {
+    return lastFencingToken;
+  }
+
+  public long getLagSecs() {
+    return lagSecs;
+  }
+}
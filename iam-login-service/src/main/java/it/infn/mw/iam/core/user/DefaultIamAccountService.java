@@ -29,9 +29,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
-import org.mitre.oauth2.model.OAuth2AccessTokenEntity;
-import org.mitre.oauth2.model.OAuth2RefreshTokenEntity;
-import org.mitre.oauth2.service.OAuth2TokenEntityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -52,6 +49,8 @@ import it.infn.mw.iam.audit.events.account.group.GroupMembershipAddedEvent;
 import it.infn.mw.iam.audit.events.account.group.GroupMembershipRemovedEvent;
 import it.infn.mw.iam.audit.events.account.label.AccountLabelRemovedEvent;
 import it.infn.mw.iam.audit.events.account.label.AccountLabelSetEvent;
+import it.infn.mw.iam.config.lifecycle.LifecycleProperties;
+import it.infn.mw.iam.core.oauth.token.BulkTokenRevocationService;
 import it.infn.mw.iam.core.user.exception.CredentialAlreadyBoundException;
 import it.infn.mw.iam.core.user.exception.InvalidCredentialException;
 import it.infn.mw.iam.core.user.exception.UserAlreadyExistsException;
@@ -65,6 +64,7 @@ import it.infn.mw.iam.persistence.model.IamOidcId;
 import it.infn.mw.iam.persistence.model.IamSamlId;
 import it.infn.mw.iam.persistence.model.IamSshKey;
 import it.infn.mw.iam.persistence.model.IamX509Certificate;
+import it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.persistence.repository.IamAuthoritiesRepository;
 import it.infn.mw.iam.persistence.repository.IamGroupRepository;
@@ -80,14 +80,16 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
   private final IamAuthoritiesRepository authoritiesRepo;
   private final PasswordEncoder passwordEncoder;
   private ApplicationEventPublisher eventPublisher;
-  private final OAuth2TokenEntityService tokenService;
+  private final BulkTokenRevocationService tokenRevocationService;
   private final IamAccountClientRepository accountClientRepo;
+  private final LifecycleProperties lifecycleProperties;
 
   @Autowired
   public DefaultIamAccountService(Clock clock, IamAccountRepository accountRepo,
       IamGroupRepository groupRepo, IamAuthoritiesRepository authoritiesRepo,
       PasswordEncoder passwordEncoder, ApplicationEventPublisher eventPublisher,
-      OAuth2TokenEntityService tokenService, IamAccountClientRepository accountClientRepo) {
+      BulkTokenRevocationService tokenRevocationService,
+      IamAccountClientRepository accountClientRepo, LifecycleProperties lifecycleProperties) {
 
     this.clock = clock;
     this.accountRepo = accountRepo;
@@ -95,8 +97,9 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
     this.authoritiesRepo = authoritiesRepo;
     this.passwordEncoder = passwordEncoder;
     this.eventPublisher = eventPublisher;
-    this.tokenService = tokenService;
+    this.tokenRevocationService = tokenRevocationService;
     this.accountClientRepo = accountClientRepo;
+    this.lifecycleProperties = lifecycleProperties;
   }
 
   private void labelSetEvent(IamAccount account, IamLabel label) {
@@ -156,11 +159,9 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
 
     account.getAuthorities().add(roleUserAuthority);
 
-    // Credentials sanity checks
+    // Primary credentials checks
     newAccountX509CertificatesSanityChecks(account);
     newAccountSshKeysSanityChecks(account);
-    newAccountSamlIdsSanityChecks(account);
-    newAccountOidcIdsSanityChecks(account);
 
     // Set creation time for certificates
     account.getX509Certificates().forEach(c -> {
@@ -189,20 +190,7 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
 
 
   protected void deleteTokensForAccount(IamAccount account) {
-
-    Set<OAuth2AccessTokenEntity> accessTokens =
-        tokenService.getAllAccessTokensForUser(account.getUsername());
-
-    Set<OAuth2RefreshTokenEntity> refreshTokens =
-        tokenService.getAllRefreshTokensForUser(account.getUsername());
-
-    for (OAuth2AccessTokenEntity t : accessTokens) {
-      tokenService.revokeAccessToken(t);
-    }
-
-    for (OAuth2RefreshTokenEntity t : refreshTokens) {
-      tokenService.revokeRefreshToken(t);
-    }
+    tokenRevocationService.revokeTokensForAccount(account);
   }
 
   @Override
@@ -218,38 +206,64 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
     return account;
   }
 
-  private void newAccountOidcIdsSanityChecks(IamAccount account) {
+  private void newAccountSanityChecks(IamAccount account) {
+    checkArgument(!isNullOrEmpty(account.getUsername()), "Null or empty username");
+    checkNotNull(account.getUserInfo(), "Null userinfo object");
+    checkArgument(!isNullOrEmpty(account.getUserInfo().getEmail()), "Null or empty email");
+
+    account.getX509Certificates().forEach(this::x509CertificateSanityCheck);
+    account.getSshKeys().forEach(this::sshKeySanityChecks);
+    account.getSamlIds().forEach(this::samlIdSanityChecks);
     account.getOidcIds().forEach(this::oidcIdSanityChecks);
+
+    // All uniqueness checks are resolved with a single query
+    accountRepo.findCredentialConflicts(account)
+      .stream()
+      .findFirst()
+      .ifPresent(this::credentialConflict);
   }
 
+  private void credentialConflict(IamAccountCredentialConflict conflict) {
 
-  private void newAccountSamlIdsSanityChecks(IamAccount account) {
-    account.getSamlIds().forEach(this::samlIdSanityChecks);
-  }
+    switch (conflict.getType()) {
+      case USERNAME:
+        throw new UserAlreadyExistsException(
+            String.format("A user with username '%s' already exists", conflict.getCredential()));
 
-  private void newAccountSanityChecks(IamAccount account) {
-    checkArgument(!isNullOrEmpty(account.getUsername()), "Null or empty username");
-    checkNotNull(account.getUserInfo(), "Null userinfo object");
-    checkArgument(!isNullOrEmpty(account.getUserInfo().getEmail()), "Null or empty email");
+      case EMAIL:
+        throw new UserAlreadyExistsException(String
+          .format("A user linked with email '%s' already exists", conflict.getCredential()));
 
-    accountRepo.findByUsername(account.getUsername()).ifPresent(a -> {
-      throw new UserAlreadyExistsException(
-          String.format("A user with username '%s' already exists", a.getUsername()));
-    });
+      case X509_CERTIFICATE:
+        throw new CredentialAlreadyBoundException(
+            String.format("X509 certificate with subject '%s' is already bound to another user",
+                ((IamX509Certificate) conflict.getCredential()).getSubjectDn()));
 
-    accountRepo.findByEmail(account.getUserInfo().getEmail()).ifPresent(a -> {
-      throw new UserAlreadyExistsException(String
-        .format("A user linked with email '%s' already exists", a.getUserInfo().getEmail()));
-    });
+      case SSH_KEY:
+        IamSshKey sshKey = (IamSshKey) conflict.getCredential();
+        throw new CredentialAlreadyBoundException(
+            String.format("SSH key '%s' already bound to a user", sshKey.getValue()));
+
+      case SAML_ID:
+        IamSamlId samlId = (IamSamlId) conflict.getCredential();
+        throw new CredentialAlreadyBoundException(
+            String.format("SAML id '%s,%s,%s' already bound to a user", samlId.getIdpId(),
+                samlId.getAttributeId(), samlId.getUserId()));
 
+      case OIDC_ID:
+        IamOidcId oidcId = (IamOidcId) conflict.getCredential();
+        throw new CredentialAlreadyBoundException(String.format(
+            "OIDC id '%s,%s' is already bound to a user", oidcId.getIssuer(), oidcId.getSubject()));
+
+      default:
+        throw new IllegalStateException("Unknown credential type: " + conflict.getType());
+    }
   }
 
   private void newAccountSshKeysSanityChecks(IamAccount account) {
 
     if (account.hasSshKeys()) {
 
-      account.getSshKeys().forEach(this::sshKeySanityChecks);
-
       final long count = account.getSshKeys().stream().filter(IamSshKey::isPrimary).count();
 
       if (count > 1) {
@@ -266,8 +280,6 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
 
     if (account.hasX509Certificates()) {
 
-      account.getX509Certificates().forEach(this::x509CertificateSanityCheck);
-
       final long count =
           account.getX509Certificates().stream().filter(IamX509Certificate::isPrimary).count();
 
@@ -286,12 +298,6 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
     checkNotNull(oidcId, "null oidc id");
     checkArgument(!isNullOrEmpty(oidcId.getIssuer()), "null or empty oidc id issuer");
     checkArgument(!isNullOrEmpty(oidcId.getSubject()), "null or empty oidc id subject");
-
-    accountRepo.findByOidcId(oidcId.getIssuer(), oidcId.getSubject()).ifPresent(account -> {
-
-      throw new CredentialAlreadyBoundException(String.format(
-          "OIDC id '%s,%s' is already bound to a user", oidcId.getIssuer(), oidcId.getSubject()));
-    });
   }
 
   private void samlIdSanityChecks(IamSamlId samlId) {
@@ -301,23 +307,12 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
     checkArgument(!isNullOrEmpty(samlId.getIdpId()), "null or empty idpId");
     checkArgument(!isNullOrEmpty(samlId.getUserId()), "null or empty userId");
     checkArgument(!isNullOrEmpty(samlId.getAttributeId()), "null or empty attributeId");
-
-    accountRepo.findBySamlId(samlId).ifPresent(account -> {
-      throw new CredentialAlreadyBoundException(
-          String.format("SAML id '%s,%s,%s' already bound to a user", samlId.getIdpId(),
-              samlId.getAttributeId(), samlId.getUserId()));
-    });
   }
 
   private void sshKeySanityChecks(IamSshKey sshKey) {
 
     checkNotNull(sshKey, "null ssh key");
     checkArgument(!isNullOrEmpty(sshKey.getValue()), "null or empty ssh key value");
-
-    accountRepo.findBySshKeyValue(sshKey.getValue()).ifPresent(account -> {
-      throw new CredentialAlreadyBoundException(
-          String.format("SSH key '%s' already bound to a user", sshKey.getValue()));
-    });
   }
 
   private void x509CertificateSanityCheck(IamX509Certificate cert) {
@@ -326,12 +321,6 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
         "null or empty X.509 certificate subject DN");
     checkArgument(!isNullOrEmpty(cert.getIssuerDn()), "null or empty X.509 certificate issuer DN");
     checkArgument(!isNullOrEmpty(cert.getLabel()), "null or empty X.509 certificate label");
-
-    accountRepo.findByCertificateSubject(cert.getSubjectDn()).ifPresent(c -> {
-      throw new CredentialAlreadyBoundException(
-          String.format("X509 certificate with subject '%s' is already bound to another user",
-              cert.getSubjectDn()));
-    });
   }
 
   @Override
@@ -403,6 +392,10 @@ public class DefaultIamAccountService implements IamAccountService, ApplicationE
     account.touch();
     accountRepo.save(account);
     eventPublisher.publishEvent(new AccountDisabledEvent(this, account));
+
+    if (lifecycleProperties.getAccount().isRevokeTokensOnSuspension()) {
+      deleteTokensForAccount(account);
+    }
     return account;
   }
 
@@ -40,7 +40,21 @@ public class IamJWKSetPublishingEndpoint implements InitializingBean {
 
   public static final String URL = "jwk";
 
-  private String jsonKeys;
+  /**
+   * The serialized JWK set, together with the key map it was built from: the signing service
+   * replaces the map whenever keys are reloaded or rotated, which invalidates the cached JSON
+   */
+  private static final class SerializedKeys {
+    final Map<String, JWK> keys;
+    final String json;
+
+    SerializedKeys(Map<String, JWK> keys) {
+      this.keys = keys;
+      this.json = new JWKSet(new ArrayList<>(keys.values())).toString();
+    }
+  }
+
+  private volatile SerializedKeys serializedKeys;
 
   @Autowired
   private IamJWTSigningService jwtService;
@@ -51,7 +65,19 @@ public class IamJWKSetPublishingEndpoint implements InitializingBean {
   @GetMapping(value = "/" + URL, produces = MediaType.APPLICATION_JSON_VALUE)
   @ResponseBody
   public ResponseEntity<String> getJwk() {
-    return ResponseEntity.ok().cacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS).noTransform().mustRevalidate()).body(jsonKeys);
+    return ResponseEntity.ok().cacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS).noTransform().mustRevalidate()).body(jsonKeys());
+  }
+
+  private String jsonKeys() {
+    Map<String, JWK> keys = jwtService.getAllPublicKeys();
+    SerializedKeys current = serializedKeys;
+
+    if (current == null || current.keys != keys) {
+      current = new SerializedKeys(keys);
+      serializedKeys = current;
+    }
+
+    return current.json;
   }
 
   /**
@@ -70,9 +96,7 @@ public class IamJWKSetPublishingEndpoint implements InitializingBean {
 
   @Override
   public void afterPropertiesSet() throws Exception {
-
-    Map<String, JWK> keys = jwtService.getAllPublicKeys();
-    jsonKeys = new JWKSet(new ArrayList<>(keys.values())).toString();
+    serializedKeys = new SerializedKeys(jwtService.getAllPublicKeys());
   }
 
 }
@@ -25,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import it.infn.mw.iam.core.IamDeliveryStatus;
+import it.infn.mw.iam.core.task.ManagedTask;
 import it.infn.mw.iam.core.time.TimeProvider;
 import it.infn.mw.iam.notification.NotificationProperties;
 import it.infn.mw.iam.persistence.model.IamEmailNotification;
@@ -56,7 +57,7 @@ public class DefaultNotificationStoreService implements NotificationStoreService
     List<IamEmailNotification> messageList =
         repo.findByStatusWithUpdateTime(IamDeliveryStatus.DELIVERED, threshold);
 
-    if (!messageList.isEmpty()) {
+    if (!messageList.isEmpty() && ManagedTask.holdsLease()) {
       repo.deleteAll(messageList);
       LOG.info("Deleted {} messages in status {} older than {}", messageList.size(),
           IamDeliveryStatus.DELIVERED, threshold);
@@ -31,6 +31,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.google.common.collect.Lists;
 
 import it.infn.mw.iam.core.IamDeliveryStatus;
+import it.infn.mw.iam.core.task.ManagedTask;
 import it.infn.mw.iam.core.time.TimeProvider;
 import it.infn.mw.iam.notification.NotificationDelivery;
 import it.infn.mw.iam.notification.NotificationProperties;
@@ -90,6 +91,12 @@ public class JavaMailNotificationDelivery implements NotificationDelivery {
     }
 
     for (IamEmailNotification e : pendingMessages) {
+
+      if (!ManagedTask.holdsLease()) {
+        LOG.warn("Notification delivery lease lost, leaving the remaining messages pending");
+        break;
+      }
+
       SimpleMailMessage message = messageFromNotification(e);
 
       try {
@@ -25,6 +25,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import it.infn.mw.iam.core.IamDeliveryStatus;
+import it.infn.mw.iam.core.task.ManagedTask;
 import it.infn.mw.iam.core.time.TimeProvider;
 import it.infn.mw.iam.notification.NotificationDelivery;
 import it.infn.mw.iam.notification.NotificationProperties;
@@ -65,8 +66,13 @@ public class LoggingNotificationDelivery implements NotificationDelivery {
 
   @Override
   public void sendPendingNotifications() {
-    repo.findByDeliveryStatus(IamDeliveryStatus.PENDING)
-      .forEach(this::logEmailNotificationAndSetDelivered);
+    for (IamEmailNotification e : repo.findByDeliveryStatus(IamDeliveryStatus.PENDING)) {
+      if (!ManagedTask.holdsLease()) {
+        LOG.warn("Notification delivery lease lost, leaving the remaining messages pending");
+        break;
+      }
+      logEmailNotificationAndSetDelivered(e);
+    }
   }
 
 }
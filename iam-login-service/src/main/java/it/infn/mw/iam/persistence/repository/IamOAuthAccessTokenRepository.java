@@ -22,9 +22,11 @@ import java.util.Optional;
 import org.mitre.oauth2.model.OAuth2AccessTokenEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.nimbusds.jwt.JWT;
 
@@ -34,29 +36,38 @@ public interface IamOAuthAccessTokenRepository
   @Query("select t from OAuth2AccessTokenEntity t where t.jwt = :tokenValue")
   Optional<OAuth2AccessTokenEntity> findByTokenValue(@Param("tokenValue") JWT tokenValue);
 
-  @Query("select t from OAuth2AccessTokenEntity t where t.authenticationHolder.userAuth.name = :userId "
-    + "and (t.expiration is NOT NULL and t.expiration > :timestamp)")
+  @Query(value = "select * from access_token t where t.user_id = :userId "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp)", nativeQuery = true)
   List<OAuth2AccessTokenEntity> findValidAccessTokensForUser(
     @Param("userId") String userId, @Param("timestamp") Date timestamp);
 
-  @Query("select t from OAuth2AccessTokenEntity t "
-    + "where (t.authenticationHolder.userAuth.name = :userId) "
-    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration")
+  @Query(value = "select * from access_token t where t.user_id = :userId "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration",
+      countQuery = "select count(*) from access_token t where t.user_id = :userId "
+        + "and (t.expiration is NOT NULL and t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2AccessTokenEntity> findValidAccessTokensForUser(
     @Param("userId") String userId, @Param("timestamp") Date timestamp,
     Pageable op);
 
-  @Query("select t from OAuth2AccessTokenEntity t "
-    + "where (t.authenticationHolder.clientId = :clientId) "
-    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration")
+  @Query(value = "select * from access_token t "
+    + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration",
+      countQuery = "select count(*) from access_token t "
+        + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+        + "and (t.expiration is NOT NULL and t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2AccessTokenEntity> findValidAccessTokensForClient(
     @Param("clientId") String clientId, @Param("timestamp") Date timestamp,
     Pageable op);
 
-  @Query("select t from OAuth2AccessTokenEntity t "
-    + "where (t.authenticationHolder.userAuth.name = :userId) "
-    + "and (t.authenticationHolder.clientId = :clientId) "
-    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration")
+  @Query(value = "select * from access_token t where t.user_id = :userId "
+    + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp) order by t.expiration",
+      countQuery = "select count(*) from access_token t where t.user_id = :userId "
+        + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+        + "and (t.expiration is NOT NULL and t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2AccessTokenEntity> findValidAccessTokensForUserAndClient(
 
     @Param("userId") String userId, @Param("clientId") String clientId,
@@ -73,27 +84,29 @@ public interface IamOAuthAccessTokenRepository
     + "where (t.expiration is NOT NULL and t.expiration > :timestamp)")
   long countValidAccessTokens(@Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2AccessTokenEntity t "
-    + "where (t.expiration is NOT NULL and t.expiration > :timestamp) "
-    + "and (t.authenticationHolder.userAuth.name = :userId)")
+  @Query(value = "select count(*) from access_token t where t.user_id = :userId "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp)", nativeQuery = true)
   long countValidAccessTokensForUser(@Param("userId") String userId,
     @Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2AccessTokenEntity t "
-    + "where (t.expiration is NOT NULL and t.expiration > :timestamp) "
-    + "and (t.authenticationHolder.clientId = :clientId)")
+  @Query(value = "select count(*) from access_token t "
+    + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp)", nativeQuery = true)
   long countValidAccessTokensForClient(@Param("clientId") String clientId,
     @Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2AccessTokenEntity t "
-    + "where (t.expiration is NOT NULL and t.expiration > :timestamp) "
-    + "and (t.authenticationHolder.userAuth.name = :userId) "
-    + "and (t.authenticationHolder.clientId = :clientId)")
+  @Query(value = "select count(*) from access_token t where t.user_id = :userId "
+    + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+    + "and (t.expiration is NOT NULL and t.expiration > :timestamp)", nativeQuery = true)
   long countValidAccessTokensForUserAndClient(@Param("userId") String userId,
     @Param("clientId") String clientId, @Param("timestamp") Date timestamp);
 
-  @Query("select t from OAuth2AccessTokenEntity t where t.authenticationHolder.id in ("
-    + "select sua.id from SavedUserAuthentication sua where sua.name not in ("
-    + "select a.username from IamAccount a))")
+  @Query("select t from OAuth2AccessTokenEntity t join t.authenticationHolder h join h.userAuth u "
+    + "where not exists (select a.id from IamAccount a where a.username = u.name)")
   List<OAuth2AccessTokenEntity> findOrphanedTokens();
+
+  @Transactional
+  @Modifying
+  @Query(value = "update access_token set user_id = :userId where id = :id", nativeQuery = true)
+  void updateUserId(@Param("id") Long id, @Param("userId") String userId);
 }
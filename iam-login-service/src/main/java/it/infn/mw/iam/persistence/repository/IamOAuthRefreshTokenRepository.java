@@ -21,34 +21,45 @@ import java.util.List;
 import org.mitre.oauth2.model.OAuth2RefreshTokenEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface IamOAuthRefreshTokenRepository
     extends PagingAndSortingRepository<OAuth2RefreshTokenEntity, Long> {
 
-  @Query("select t from OAuth2RefreshTokenEntity t where t.authenticationHolder.userAuth.name = :userId "
-      + "and (t.expiration is NULL or t.expiration > :timestamp)")
+  @Query(value = "select * from refresh_token t where t.user_id = :userId "
+      + "and (t.expiration is NULL or t.expiration > :timestamp)", nativeQuery = true)
   List<OAuth2RefreshTokenEntity> findValidRefreshTokensForUser(@Param("userId") String userId,
       @Param("timestamp") Date timestamp);
 
-  @Query("select t from OAuth2RefreshTokenEntity t "
-      + "where (t.authenticationHolder.userAuth.name = :userId) "
-      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id")
+  @Query(value = "select * from refresh_token t where t.user_id = :userId "
+      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id",
+      countQuery = "select count(*) from refresh_token t where t.user_id = :userId "
+          + "and (t.expiration is NULL or t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2RefreshTokenEntity> findValidRefreshTokensForUser(@Param("userId") String userId,
       @Param("timestamp") Date timestamp, Pageable op);
 
-  @Query("select t from OAuth2RefreshTokenEntity t "
-      + "where (t.authenticationHolder.clientId = :clientId) "
-      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id")
+  @Query(value = "select * from refresh_token t "
+      + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id",
+      countQuery = "select count(*) from refresh_token t "
+          + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+          + "and (t.expiration is NULL or t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2RefreshTokenEntity> findValidRefreshTokensForClient(@Param("clientId") String clientId,
       @Param("timestamp") Date timestamp, Pageable op);
 
-  @Query("select t from OAuth2RefreshTokenEntity t "
-      + "where (t.authenticationHolder.userAuth.name = :userId) "
-      + "and (t.authenticationHolder.clientId = :clientId) "
-      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id")
+  @Query(value = "select * from refresh_token t where t.user_id = :userId "
+      + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+      + "and (t.expiration is NULL or t.expiration > :timestamp) order by t.expiration,t.id",
+      countQuery = "select count(*) from refresh_token t where t.user_id = :userId "
+          + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+          + "and (t.expiration is NULL or t.expiration > :timestamp)",
+      nativeQuery = true)
   Page<OAuth2RefreshTokenEntity> findValidRefreshTokensForUserAndClient(
       @Param("userId") String userId, @Param("clientId") String clientId,
       @Param("timestamp") Date timestamp, Pageable op);
@@ -62,27 +73,29 @@ public interface IamOAuthRefreshTokenRepository
       + "where (t.expiration is NULL or t.expiration > :timestamp)")
   long countValidRefreshTokens(@Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2RefreshTokenEntity t "
-      + "where (t.expiration is NULL or t.expiration > :timestamp) "
-      + "and (t.authenticationHolder.userAuth.name = :userId)")
+  @Query(value = "select count(*) from refresh_token t where t.user_id = :userId "
+      + "and (t.expiration is NULL or t.expiration > :timestamp)", nativeQuery = true)
   long countValidRefreshTokensForUser(@Param("userId") String userId,
       @Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2RefreshTokenEntity t "
-      + "where (t.expiration is NULL or t.expiration > :timestamp) "
-      + "and (t.authenticationHolder.clientId = :clientId)")
+  @Query(value = "select count(*) from refresh_token t "
+      + "where t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+      + "and (t.expiration is NULL or t.expiration > :timestamp)", nativeQuery = true)
   long countValidRefreshTokensForClient(@Param("clientId") String clientId,
       @Param("timestamp") Date timestamp);
 
-  @Query("select count(t) from OAuth2RefreshTokenEntity t "
-      + "where (t.expiration is NULL or t.expiration > :timestamp) "
-      + "and (t.authenticationHolder.userAuth.name = :userId) "
-      + "and (t.authenticationHolder.clientId = :clientId)")
+  @Query(value = "select count(*) from refresh_token t where t.user_id = :userId "
+      + "and t.client_id = (select c.id from client_details c where c.client_id = :clientId) "
+      + "and (t.expiration is NULL or t.expiration > :timestamp)", nativeQuery = true)
   long countValidRefreshTokensForUserAndClient(@Param("userId") String userId,
       @Param("clientId") String clientId, @Param("timestamp") Date timestamp);
 
-  @Query("select t from OAuth2RefreshTokenEntity t where t.authenticationHolder.id in ("
-      + "select sua.id from SavedUserAuthentication sua where sua.name not in ("
-      + "select a.username from IamAccount a))")
+  @Query("select t from OAuth2RefreshTokenEntity t join t.authenticationHolder h join h.userAuth u "
+      + "where not exists (select a.id from IamAccount a where a.username = u.name)")
   List<OAuth2RefreshTokenEntity> findOrphanedTokens();
+
+  @Transactional
+  @Modifying
+  @Query(value = "update refresh_token set user_id = :userId where id = :id", nativeQuery = true)
+  void updateUserId(@Param("id") Long id, @Param("userId") String userId);
 }
@@ -15,9 +15,9 @@
  */
 package it.infn.mw.iam.persistence.repository.client;
 
+import static it.infn.mw.iam.persistence.repository.SpecificationUtils.wildcardify;
 import static it.infn.mw.iam.persistence.repository.client.ClientSpecs.CLIENT_ID;
 import static it.infn.mw.iam.persistence.repository.client.ClientSpecs.CLIENT_NAME;
-import static it.infn.mw.iam.persistence.repository.client.ClientSpecs.wildcardify;
 
 import org.springframework.data.jpa.domain.Specification;
 
@@ -17,6 +17,7 @@ package it.infn.mw.iam.persistence.repository.client;
 
 
 
+import static it.infn.mw.iam.persistence.repository.SpecificationUtils.wildcardify;
 import static javax.persistence.criteria.JoinType.LEFT;
 
 import org.mitre.oauth2.model.ClientDetailsEntity;
@@ -48,10 +49,6 @@ public class ClientSpecs {
     // do not instantiate
   }
 
-  static String wildcardify(String filter) {
-    return "%" + filter + "%";
-  }
-
   public static Specification<ClientDetailsEntity> fromSearchForm(ClientSearchForm searchForm) {
 
     Specification<ClientDetailsEntity> spec;
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository.registration;
+
+import static it.infn.mw.iam.persistence.repository.SpecificationUtils.wildcardify;
+
+import java.util.Date;
+
+import javax.persistence.criteria.Join;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import it.infn.mw.iam.core.IamRegistrationRequestStatus;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamRegistrationRequest;
+import it.infn.mw.iam.registration.RegistrationRequestSearchForm;
+
+public class RegistrationRequestSpecs {
+
+  static final String STATUS = "status";
+  static final String CREATION_TIME = "creationTime";
+  static final String ACCOUNT = "account";
+  static final String USER_INFO = "userInfo";
+  static final String USERNAME = "username";
+  static final String EMAIL = "email";
+
+  private RegistrationRequestSpecs() {
+    // do not instantiate
+  }
+
+  public static Specification<IamRegistrationRequest> fromSearchForm(
+      RegistrationRequestSearchForm searchForm) {
+
+    Specification<IamRegistrationRequest> spec = baseSpec();
+
+    if (searchForm.getStatus() != null) {
+      spec = spec.and(hasStatus(searchForm.getStatus()));
+    }
+
+    if (searchForm.isPending()) {
+      spec = spec.and(isPending());
+    }
+
+    if (searchForm.getCreatedAfter() != null) {
+      spec = spec.and(createdAfter(searchForm.getCreatedAfter()));
+    }
+
+    if (searchForm.getCreatedBefore() != null) {
+      spec = spec.and(createdBefore(searchForm.getCreatedBefore()));
+    }
+
+    if (searchForm.getFilter() != null && !searchForm.getFilter().trim().isEmpty()) {
+      spec = spec.and(hasUsernameOrEmailLike(searchForm.getFilter().trim()));
+    }
+
+    return spec;
+  }
+
+  public static Specification<IamRegistrationRequest> baseSpec() {
+    return (root, query, builder) -> builder.conjunction();
+  }
+
+  public static Specification<IamRegistrationRequest> hasStatus(
+      IamRegistrationRequestStatus status) {
+    return (root, query, builder) -> builder.equal(root.get(STATUS), status);
+  }
+
+  public static Specification<IamRegistrationRequest> isPending() {
+    return (root, query, builder) -> root.get(STATUS)
+      .in(IamRegistrationRequestStatus.NEW, IamRegistrationRequestStatus.CONFIRMED);
+  }
+
+  public static Specification<IamRegistrationRequest> createdAfter(Date date) {
+    return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get(CREATION_TIME), date);
+  }
+
+  public static Specification<IamRegistrationRequest> createdBefore(Date date) {
+    return (root, query, builder) -> builder.lessThan(root.get(CREATION_TIME), date);
+  }
+
+  public static Specification<IamRegistrationRequest> hasUsernameOrEmailLike(String filter) {
+    return (root, query, builder) -> {
+      Join<IamRegistrationRequest, IamAccount> account = root.join(ACCOUNT);
+      String pattern = wildcardify(filter.toLowerCase());
+      return builder.or(builder.like(builder.lower(account.get(USERNAME)), pattern),
+          builder.like(builder.lower(account.join(USER_INFO).get(EMAIL)), pattern));
+    };
+  }
+}
@@ -44,6 +44,7 @@ import org.springframework.web.util.UriComponentsBuilder;
 import com.nimbusds.jwt.SignedJWT;
 
 import it.infn.mw.iam.config.IamProperties;
+import it.infn.mw.iam.rcauth.x509.KeyPairProvider;
 
 @Service
 @ConditionalOnProperty(name = "rcauth.enabled", havingValue = "true")
@@ -77,18 +78,20 @@ public class DefaultRcAuthRequestService implements RCAuthRequestService {
   final ServerConfigurationService serverConfigService;
   final RCAuthTokenRequestor tokenRequestor;
   final RCAuthCertificateRequestor certRequestor;
+  final KeyPairProvider keyPairProvider;
   final SecureRandom rng;
 
 
   @Autowired
   public DefaultRcAuthRequestService(IamProperties iamProperties, RCAuthProperties properties,
       ServerConfigurationService scs, RCAuthTokenRequestor requestor,
-      RCAuthCertificateRequestor certRequestor) {
+      RCAuthCertificateRequestor certRequestor, KeyPairProvider keyPairProvider) {
     this.iamProperties = iamProperties;
     this.properties = properties;
     this.serverConfigService = scs;
     this.tokenRequestor = requestor;
     this.certRequestor = certRequestor;
+    this.keyPairProvider = keyPairProvider;
     rng = new SecureRandom();
   }
 
@@ -186,7 +189,8 @@ public class DefaultRcAuthRequestService implements RCAuthRequestService {
 
     try {
 
-      ctxt.setCertificateRequest(buildCertificateRequest(certSubject, properties.getKeySize()));
+      ctxt.setCertificateRequest(buildCertificateRequest(certSubject,
+          keyPairProvider.getKeyPair(properties.getKeySize())));
       ctxt.setCertificate(certRequestor.getCertificate(ctxt.getTokenResponse().getAccessToken(),
           ctxt.getCertificateRequest()));
 
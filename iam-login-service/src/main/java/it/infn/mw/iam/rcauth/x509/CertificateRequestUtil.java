@@ -51,7 +51,12 @@ public class CertificateRequestUtil {
   public static CertificateRequestHolder buildCertificateRequest(String subject, int keySize)
       throws IOException, OperatorCreationException {
 
-    KeyPair kp = ProxyGeneratorHelper.generateKeyPair(keySize);
+    return buildCertificateRequest(subject, ProxyGeneratorHelper.generateKeyPair(keySize));
+  }
+
+  public static CertificateRequestHolder buildCertificateRequest(String subject, KeyPair kp)
+      throws IOException, OperatorCreationException {
+
     PKCS10CertificationRequestBuilder builder;
 
     try (ASN1InputStream is = new ASN1InputStream(kp.getPublic().getEncoded())) {
@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.InvalidKeyException;
+import java.security.KeyPair;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -35,6 +36,8 @@ import java.time.Instant;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import eu.emi.security.authn.x509.helpers.proxy.ProxyCertificateImpl;
+import eu.emi.security.authn.x509.helpers.proxy.ProxyGeneratorHelper;
 import eu.emi.security.authn.x509.impl.PEMCredential;
 import eu.emi.security.authn.x509.proxy.ProxyCertificate;
 import eu.emi.security.authn.x509.proxy.ProxyCertificateOptions;
@@ -46,10 +49,30 @@ public class DefaultProxyHelperService implements ProxyHelperService {
   public static final int DEFAULT_KEY_SIZE = 2048;
 
   final Clock clock;
+  final KeyPairProvider keyPairProvider;
 
-  @Autowired
   public DefaultProxyHelperService(Clock clock) {
+    this(clock, ProxyGeneratorHelper::generateKeyPair);
+  }
+
+  @Autowired
+  public DefaultProxyHelperService(Clock clock, KeyPairProvider keyPairProvider) {
     this.clock = clock;
+    this.keyPairProvider = keyPairProvider;
+  }
+
+  private ProxyCertificate generateProxy(ProxyCertificateOptions options, PrivateKey signingKey) {
+
+    KeyPair keyPair = keyPairProvider.getKeyPair(DEFAULT_KEY_SIZE);
+    options.setPublicKey(keyPair.getPublic());
+
+    try {
+      ProxyCertificate proxy = ProxyGenerator.generate(options, signingKey);
+      return new ProxyCertificateImpl(proxy.getCertificateChain(), keyPair.getPrivate());
+    } catch (InvalidKeyException | CertificateParsingException | SignatureException
+        | NoSuchAlgorithmException | KeyStoreException | IOException e) {
+      throw new ProxyGenerationError(e);
+    }
   }
 
   @Override
@@ -61,13 +84,7 @@ public class DefaultProxyHelperService implements ProxyHelperService {
 
     options.setValidityBounds(Date.from(clock.instant()), cert.getNotAfter());
 
-    try {
-      return ProxyGenerator.generate(options, key);
-    } catch (InvalidKeyException | CertificateParsingException | SignatureException
-        | NoSuchAlgorithmException | IOException e) {
-      throw new ProxyGenerationError(e);
-    }
-
+    return generateProxy(options, key);
   }
 
   @Override
@@ -96,12 +113,7 @@ public class DefaultProxyHelperService implements ProxyHelperService {
 
     options.setValidityBounds(Date.from(now), Date.from(eol));
 
-    try {
-      return ProxyGenerator.generate(options, proxyCredential.getKey());
-    } catch (InvalidKeyException | CertificateParsingException | SignatureException
-        | NoSuchAlgorithmException | IOException e) {
-      throw new ProxyGenerationError(e);
-    }
+    return generateProxy(options, proxyCredential.getKey());
   }
 
   @Override
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.rcauth.x509;
+
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.emi.security.authn.x509.helpers.proxy.ProxyGeneratorHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.config.crypto.KeyPairPoolProperties;
+
+/**
+ * A bounded pool of pre-generated RSA key pairs, so that proxy certificate and certificate request
+ * generation do not pay the cost of key generation on the request path.
+ * 
+ * A background thread fills the pool up to the high watermark, and starts again when the number
+ * of available key pairs drops below the low watermark. When the pool is empty, or a key size
+ * different from the configured one is requested, the key pair is generated inline.
+ */
+public class KeyPairPool implements KeyPairProvider {
+
+  public static final Logger LOG = LoggerFactory.getLogger(KeyPairPool.class);
+
+  public static final String METRIC_PREFIX = "iam.keypair.pool";
+  public static final String DEPTH_METRIC = METRIC_PREFIX + ".depth";
+  public static final String HITS_METRIC = METRIC_PREFIX + ".hits";
+  public static final String MISSES_METRIC = METRIC_PREFIX + ".misses";
+
+  private static final long ERROR_BACKOFF_MSEC = 1000;
+  private static final long SHUTDOWN_TIMEOUT_MSEC = 5000;
+
+  private final int keySize;
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final BlockingQueue<KeyPair> pool;
+  private final Object refillLock = new Object();
+
+  private final Counter hits;
+  private final Counter emptyPoolMisses;
+  private final Counter keySizeMisses;
+
+  private volatile boolean running;
+  private Thread filler;
+
+  public KeyPairPool(KeyPairPoolProperties properties, MeterRegistry registry) {
+    this.keySize = properties.getKeySize();
+    this.lowWatermark = properties.getLowWatermark();
+    this.highWatermark = properties.getHighWatermark();
+    this.pool = new ArrayBlockingQueue<>(highWatermark);
+
+    Gauge.builder(DEPTH_METRIC, pool, BlockingQueue::size)
+      .description("Number of pre-generated key pairs available")
+      .register(registry);
+
+    hits = Counter.builder(HITS_METRIC)
+      .description("Key pairs served from the pool")
+      .register(registry);
+
+    emptyPoolMisses = Counter.builder(MISSES_METRIC)
+      .description("Key pairs generated inline")
+      .tag("reason", "empty")
+      .register(registry);
+
+    keySizeMisses = Counter.builder(MISSES_METRIC)
+      .description("Key pairs generated inline")
+      .tag("reason", "key_size")
+      .register(registry);
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    filler = new Thread(this::fill, "iam-keypair-pool");
+    filler.setDaemon(true);
+    filler.start();
+
+    LOG.info("Key pair pool started: keySize={}, lowWatermark={}, highWatermark={}", keySize,
+        lowWatermark, highWatermark);
+  }
+
+  public synchronized void shutdown() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+    filler.interrupt();
+
+    try {
+      filler.join(SHUTDOWN_TIMEOUT_MSEC);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    pool.clear();
+  }
+
+  public int getAvailableKeyPairs() {
+    return pool.size();
+  }
+
+  @Override
+  public KeyPair getKeyPair(int requestedKeySize) {
+
+    if (requestedKeySize != keySize) {
+      keySizeMisses.increment();
+      return ProxyGeneratorHelper.generateKeyPair(requestedKeySize);
+    }
+
+    KeyPair keyPair = pool.poll();
+
+    if (pool.size() < lowWatermark) {
+      synchronized (refillLock) {
+        refillLock.notifyAll();
+      }
+    }
+
+    if (keyPair == null) {
+      emptyPoolMisses.increment();
+      return ProxyGeneratorHelper.generateKeyPair(keySize);
+    }
+
+    hits.increment();
+    return keyPair;
+  }
+
+  private void fill() {
+    while (running) {
+      try {
+        while (running && pool.size() < highWatermark) {
+          pool.offer(ProxyGeneratorHelper.generateKeyPair(keySize));
+        }
+
+        synchronized (refillLock) {
+          while (running && pool.size() >= lowWatermark) {
+            refillLock.wait();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        LOG.error("Key pair generation error: {}", e.getMessage(), e);
+        try {
+          Thread.sleep(ERROR_BACKOFF_MSEC);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+}
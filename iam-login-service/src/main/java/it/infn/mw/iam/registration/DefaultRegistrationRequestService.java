@@ -39,6 +39,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
@@ -46,6 +48,8 @@ import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Table;
 
 import it.infn.mw.iam.api.common.LabelDTOConverter;
+import it.infn.mw.iam.api.common.ListResponseDTO;
+import it.infn.mw.iam.api.common.PagingUtils;
 import it.infn.mw.iam.api.scim.converter.UserConverter;
 import it.infn.mw.iam.api.scim.exception.IllegalArgumentException;
 import it.infn.mw.iam.api.scim.exception.ScimResourceNotFoundException;
@@ -69,6 +73,7 @@ import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.persistence.repository.IamAupRepository;
 import it.infn.mw.iam.persistence.repository.IamAupSignatureRepository;
 import it.infn.mw.iam.persistence.repository.IamRegistrationRequestRepository;
+import it.infn.mw.iam.persistence.repository.registration.RegistrationRequestSpecs;
 import it.infn.mw.iam.registration.validation.RegistrationRequestValidationResult;
 import it.infn.mw.iam.registration.validation.RegistrationRequestValidationService;
 import it.infn.mw.iam.registration.validation.RegistrationRequestValidatorError;
@@ -79,6 +84,8 @@ public class DefaultRegistrationRequestService
 
   public static final Logger LOG = LoggerFactory.getLogger(DefaultRegistrationRequestService.class);
 
+  public static final int MAX_PAGE_SIZE = 100;
+
   @Autowired
   private IamRegistrationRequestRepository requestRepository;
 
@@ -267,6 +274,29 @@ public class DefaultRegistrationRequestService
     return requests;
   }
 
+  @Override
+  public ListResponseDTO<RegistrationRequestDto> searchRequests(
+      RegistrationRequestSearchForm searchForm) {
+
+    Sort sort = Sort.by(searchForm.getSortDirection(), searchForm.getSortBy().getProperty());
+
+    Pageable pageable = PagingUtils.buildPageRequest(searchForm.getCount(),
+        searchForm.getStartIndex(), MAX_PAGE_SIZE, sort);
+
+    Page<IamRegistrationRequest> pagedResults =
+        requestRepository.findAll(RegistrationRequestSpecs.fromSearchForm(searchForm), pageable);
+
+    ListResponseDTO.Builder<RegistrationRequestDto> resultBuilder = ListResponseDTO.builder();
+
+    return resultBuilder
+      .resources(pagedResults.getContent()
+        .stream()
+        .map(converter::fromEntity)
+        .collect(Collectors.toList()))
+      .fromPage(pagedResults, pageable)
+      .build();
+  }
+
 
   @Override
   public RegistrationRequestDto confirmRequest(String confirmationKey) {
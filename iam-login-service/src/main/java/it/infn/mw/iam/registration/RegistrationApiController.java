@@ -46,6 +46,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.ModelAndView;
 
 import it.infn.mw.iam.api.common.ErrorDTO;
+import it.infn.mw.iam.api.common.ListResponseDTO;
 import it.infn.mw.iam.api.scim.exception.ScimResourceNotFoundException;
 import it.infn.mw.iam.authn.AbstractExternalAuthenticationToken;
 import it.infn.mw.iam.authn.ExternalAuthenticationRegistrationInfo;
@@ -112,6 +113,15 @@ public class RegistrationApiController {
     return service.listPendingRequests();
   }
 
+  @PreAuthorize("#oauth2.hasScope('registration:read') or hasRole('ADMIN')")
+  @RequestMapping(value = "/registration/search", method = RequestMethod.GET)
+  @ResponseBody
+  public ListResponseDTO<RegistrationRequestDto> searchRequests(
+      @Validated RegistrationRequestSearchForm searchForm, final BindingResult validationResult) {
+    handleValidationError(validationResult);
+    return service.searchRequests(searchForm);
+  }
+
   @RequestMapping(value = "/registration/create", method = RequestMethod.POST,
       consumes = "application/json")
   public RegistrationRequestDto createRegistrationRequest(
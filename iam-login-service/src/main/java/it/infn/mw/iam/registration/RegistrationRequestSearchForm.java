@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.registration;
+
+import java.util.Date;
+
+import javax.validation.constraints.Size;
+
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+
+import it.infn.mw.iam.api.common.form.PaginatedRequestForm;
+import it.infn.mw.iam.core.IamRegistrationRequestStatus;
+
+public class RegistrationRequestSearchForm extends PaginatedRequestForm {
+
+  public enum SortBy {
+    creationTime("creationTime"),
+    lastUpdateTime("lastUpdateTime"),
+    status("status"),
+    username("account.username"),
+    email("account.userInfo.email");
+
+    private final String property;
+
+    SortBy(String property) {
+      this.property = property;
+    }
+
+    public String getProperty() {
+      return property;
+    }
+  }
+
+  private IamRegistrationRequestStatus status;
+
+  private boolean pending = false;
+
+  @DateTimeFormat(iso = ISO.DATE_TIME)
+  private Date createdAfter;
+
+  @DateTimeFormat(iso = ISO.DATE_TIME)
+  private Date createdBefore;
+
+  @Size(max = 256, message = "Please provide a filter that is at most 256 chars long")
+  private String filter;
+
+  private SortBy sortBy = SortBy.creationTime;
+
+  private Direction sortDirection = Direction.ASC;
+
+  public IamRegistrationRequestStatus getStatus() {
+    return status;
+  }
+
+  public void setStatus(IamRegistrationRequestStatus status) {
+    this.status = status;
+  }
+
+  public boolean isPending() {
+    return pending;
+  }
+
+  public void setPending(boolean pending) {
+    this.pending = pending;
+  }
+
+  public Date getCreatedAfter() {
+    return createdAfter;
+  }
+
+  public void setCreatedAfter(Date createdAfter) {
+    this.createdAfter = createdAfter;
+  }
+
+  public Date getCreatedBefore() {
+    return createdBefore;
+  }
+
+  public void setCreatedBefore(Date createdBefore) {
+    this.createdBefore = createdBefore;
+  }
+
+  public String getFilter() {
+    return filter;
+  }
+
+  public void setFilter(String filter) {
+    this.filter = filter;
+  }
+
+  public SortBy getSortBy() {
+    return sortBy;
+  }
+
+  public void setSortBy(SortBy sortBy) {
+    this.sortBy = sortBy;
+  }
+
+  public Direction getSortDirection() {
+    return sortDirection;
+  }
+
+  public void setSortDirection(Direction sortDirection) {
+    this.sortDirection = sortDirection;
+  }
+}
@@ -18,6 +18,7 @@ package it.infn.mw.iam.registration;
 import java.util.List;
 import java.util.Optional;
 
+import it.infn.mw.iam.api.common.ListResponseDTO;
 import it.infn.mw.iam.authn.ExternalAuthenticationRegistrationInfo;
 import it.infn.mw.iam.core.IamRegistrationRequestStatus;
 
@@ -30,6 +31,8 @@ public interface RegistrationRequestService {
 
   List<RegistrationRequestDto> listPendingRequests();
 
+  ListResponseDTO<RegistrationRequestDto> searchRequests(RegistrationRequestSearchForm searchForm);
+
   RegistrationRequestDto confirmRequest(String confirmationKey);
   
   RegistrationRequestDto rejectRequest(String requestUuid, Optional<String> motivation);
@@ -73,7 +73,8 @@ function RegistrationRequests(
 
   self.loaded = false;
   self.filter = '';
-  self.filtered = [];
+  self.requests = [];
+  self.totalResults = 0;
   self.busy = false;
   self.itemsPerPage = 10;
   self.currentPage = 1;
@@ -94,16 +95,10 @@ function RegistrationRequests(
   }
 
   function toggleSelectionForPageRequests() {
-    if (self.filtered.length == 0) {
-      return;
-    }
-
-    // Keep the order here in sync with what you have in the template
-    var ordered = $filter('orderBy')(self.filtered, 'creationTime', true);
-    for (var i = self.pageLeft; i <= self.pageRight; i++) {
-      var reqId = ordered[i - 1].uuid;  // pages are 1-based
-      self.selectedRequests[reqId] = self.masterCheckbox;
-    }
+    // Only the current page is loaded, so that is what gets selected
+    self.requests.forEach(function(r) {
+      self.selectedRequests[r.uuid] = self.masterCheckbox;
+    });
   }
 
 
@@ -195,13 +190,19 @@ function RegistrationRequests(
   }
 
   function listRequestSuccess(res) {
-    self.resetFilter();
-    self.filtered = self.requests = res.data;
+    self.requests = res.data.Resources;
+    self.totalResults = res.data.totalResults;
+    if (self.requests.length == 0 && self.totalResults > 0) {
+      // The last page was emptied by approvals or rejections
+      self.currentPage = Math.ceil(self.totalResults / self.itemsPerPage);
+      return loadPendingRequests();
+    }
     updatePageCounters();
-    updateRootScopeCounters(res);
+    if (!self.filter) {
+      updateRootScopeCounters(res);
+    }
     self.busy = false;
     self.loaded = true;
-    self.reqCount = self.filtered.length;
     self.selectedRequests = {};
     self.masterCheckbox = undefined;
     return res;
@@ -214,16 +215,20 @@ function RegistrationRequests(
   function updatePageCounters() {
     self.pageLeft = ((self.currentPage - 1) * self.itemsPerPage) + 1;
     self.pageRight =
-        Math.min(self.currentPage * self.itemsPerPage, self.filtered.length);
+        Math.min(self.currentPage * self.itemsPerPage, self.totalResults);
   }
 
-  $scope.$watch('$ctrl.filter', function() {
-    filterRequests();
+  $scope.$watch('$ctrl.filter', function(newValue, oldValue) {
+    if (newValue !== oldValue) {
+      filterRequests();
+    }
   });
 
   function loadPendingRequests() {
-    return RegistrationRequestService.listPending().then(
-        listRequestSuccess, errorHandler);
+    var startIndex = ((self.currentPage - 1) * self.itemsPerPage) + 1;
+    return RegistrationRequestService
+        .listPending(startIndex, self.itemsPerPage, self.filter || undefined)
+        .then(listRequestSuccess, errorHandler);
   }
 
   function refreshPendingRequests() {
@@ -237,38 +242,12 @@ function RegistrationRequests(
   }
 
   function filterRequests() {
-    self.filtered = filterFilter(self.requests, function(request) {
-      if (!self.filter) {
-        return true;
-      }
-
-      var query = self.filter.toLowerCase();
-
-      if (request.familyname.toLowerCase().indexOf(query) != -1) {
-        return true;
-      }
-      if (request.givenname.toLowerCase().indexOf(query) != -1) {
-        return true;
-      }
-      if (request.username.toLowerCase().indexOf(query) != -1) {
-        return true;
-      }
-      if (request.email.toLowerCase().indexOf(query) != -1) {
-        return true;
-      }
-      if (request.notes.toLowerCase().indexOf(query) != -1) {
-        return true;
-      }
-      return false;
-    });
-
-    if (self.filtered) {
-      updatePageCounters();
-    }
+    self.currentPage = 1;
+    loadPendingRequests();
   }
 
   self.pageChanged = function() {
-    updatePageCounters();
+    loadPendingRequests();
   };
 
 
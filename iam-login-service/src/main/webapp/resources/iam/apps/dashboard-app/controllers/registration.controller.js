@@ -103,10 +103,10 @@ function RequestManagementController($scope, $rootScope, $state, $filter, filter
 		
 			RegistrationRequestService.listPending().then(
 				function(result) {
-					requests.list = result.data;
+					requests.list = result.data.Resources;
 					requests.rebuildFilteredList();
 					$rootScope.pageLoadingProgress = 100;
-					$rootScope.loggedUser.pendingRequests = result.data;
+					$rootScope.loggedUser.pendingRequests = result.data.Resources;
 					$rootScope.requestsLoaded = true;
 					requests.loadingModal.dismiss("Cancel");
 				},
@@ -97,7 +97,7 @@
                 promises.push(UserService.updateLoggedUserInfo());
 
                 if ($rootScope.isRegistrationEnabled && Utils.isAdmin()) {
-                    promises.push(RegistrationRequestService.listPending().then(function (r) {
+                    promises.push(RegistrationRequestService.listPending(1, 1).then(function (r) {
                         $rootScope.pendingRegistrationRequests(r.data);
                     }));
                     promises.push(GroupRequestsService.getGroupRequests({
@@ -167,7 +167,7 @@
                 if (Utils.isAdmin()) {
                     var rrCount = 0;
                     if ($rootScope.pendingRequests.reg) {
-                        rrCount = $rootScope.pendingRequests.reg.length;
+                        rrCount = $rootScope.pendingRequests.reg.totalResults;
                     }
 
                     var grCount = groupRequestsCount();
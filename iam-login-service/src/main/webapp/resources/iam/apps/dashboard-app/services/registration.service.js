@@ -44,16 +44,21 @@
             return $http.post('/registration/create', request, config);
         }
 
-        function listRequests(status) {
-            return $http.get('/registration/list', {
-                params: {
-                    status: status
-                }
+        function listRequests(params) {
+            return $http.get('/registration/search', {
+                params: params
             });
         }
 
-        function listPending() {
-            return $http.get('/registration/list/pending');
+        function listPending(startIndex, count, filter) {
+            return listRequests({
+                pending: true,
+                startIndex: startIndex,
+                count: count,
+                filter: filter,
+                sortBy: 'creationTime',
+                sortDirection: 'DESC'
+            });
         }
 
         function approveRequest(req) {
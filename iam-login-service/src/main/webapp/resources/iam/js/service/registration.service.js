@@ -40,16 +40,18 @@ function RegistrationRequestService($http){
 		return $http.post('/registration/create', request, config);
 	};
 
-	function listRequests(status) {
-		return $http.get('/registration/list', {
-			params : {
-				status : status
-			}
+	function listRequests(params) {
+		return $http.get('/registration/search', {
+			params : params
 		});
 	};
 	
-	function listPending() {
-		return $http.get('/registration/list/pending');
+	function listPending(startIndex, count) {
+		return listRequests({
+			pending : true,
+			startIndex : startIndex,
+			count : count
+		});
 	};
 
 	function updateRequest(uuid, decision) {
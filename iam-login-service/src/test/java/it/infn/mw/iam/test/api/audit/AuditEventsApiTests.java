@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.api.audit;
+
+import static it.infn.mw.iam.api.audit.AuditEventsController.BASE_RESOURCE;
+import static it.infn.mw.iam.persistence.model.IamAuditEvent.partitionKeyFor;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.infn.mw.iam.audit.store.AuditEventStoreMaintenanceTask;
+import it.infn.mw.iam.config.audit.AuditStoreProperties;
+import it.infn.mw.iam.persistence.model.IamAuditEvent;
+import it.infn.mw.iam.persistence.repository.IamAuditEventRepository;
+import it.infn.mw.iam.test.api.TestSupport;
+import it.infn.mw.iam.test.util.WithAnonymousUser;
+import it.infn.mw.iam.test.util.annotation.IamMockMvcIntegrationTest;
+import it.infn.mw.iam.test.util.oauth.MockOAuth2Filter;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@IamMockMvcIntegrationTest
+@TestPropertySource(properties = {"audit.store.enabled=true"})
+public class AuditEventsApiTests extends TestSupport {
+
+  private static final String GROUP_UUID = "c617d586-54e6-411d-8e38-649677980001";
+
+  @Autowired
+  private IamAuditEventRepository repo;
+
+  @Autowired
+  private AuditStoreProperties properties;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private MockOAuth2Filter mockOAuth2Filter;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Before
+  public void setup() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  @After
+  public void cleanupOAuthUser() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  private IamAuditEvent storeEvent(Instant time, String type, String target) {
+    IamAuditEvent event = new IamAuditEvent();
+    event.setEventTime(Date.from(time));
+    event.setPartitionKey(partitionKeyFor(time));
+    event.setCategory("GROUP");
+    event.setType(type);
+    event.setPrincipal("admin");
+    event.setTarget(target);
+    event.setMessage(type + " " + target);
+    event.setData("{\"@type\":\"" + type + "\"}");
+    repo.save(event);
+    em.flush();
+    return event;
+  }
+
+  @Test
+  @WithAnonymousUser
+  public void auditEventsRequireAuthenticatedUser() throws Exception {
+    mvc.perform(get(BASE_RESOURCE)).andExpect(UNAUTHORIZED);
+  }
+
+  @Test
+  @WithMockUser(username = "test", roles = "USER")
+  public void auditEventsRequireAdminUser() throws Exception {
+    mvc.perform(get(BASE_RESOURCE)).andExpect(FORBIDDEN);
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void auditEventsAreReturnedInPagesLinkedByCursor() throws Exception {
+    Instant now = clock.instant();
+
+    IamAuditEvent first = storeEvent(now.minusSeconds(60), "GroupCreatedEvent", GROUP_UUID);
+    storeEvent(now.minusSeconds(30), "GroupCreatedEvent", "another-group");
+    IamAuditEvent last = storeEvent(now, "GroupMembershipAddedEvent", GROUP_UUID);
+
+    String response = mvc
+      .perform(get(BASE_RESOURCE).param("target", GROUP_UUID).param("count", "1"))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.events", hasSize(1)))
+      .andExpect(jsonPath("$.events[0].id", is(last.getId().intValue())))
+      .andExpect(jsonPath("$.events[0].type", is("GroupMembershipAddedEvent")))
+      .andExpect(jsonPath("$.events[0].data['@type']", is("GroupMembershipAddedEvent")))
+      .andReturn()
+      .getResponse()
+      .getContentAsString();
+
+    JsonNode page = mapper.readTree(response);
+    assertThat(page.get("nextCursor"), notNullValue());
+
+    mvc
+      .perform(get(BASE_RESOURCE).param("target", GROUP_UUID)
+        .param("count", "1")
+        .param("cursor", page.get("nextCursor").asText()))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.events", hasSize(1)))
+      .andExpect(jsonPath("$.events[0].id", is(first.getId().intValue())))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    mvc.perform(get(BASE_RESOURCE).param("type", "GroupCreatedEvent").param("principal", "admin"))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.events", hasSize(2)));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void invalidCursorIsRejected() throws Exception {
+    mvc.perform(get(BASE_RESOURCE).param("cursor", "not a cursor"))
+      .andExpect(BAD_REQUEST)
+      .andExpect(jsonPath("$.error", is("Invalid cursor: not a cursor")));
+  }
+
+  @Test
+  public void maintenanceTaskDeletesExpiredEvents() {
+    Instant now = clock.instant();
+
+    IamAuditEvent expired = storeEvent(
+        now.minus(properties.getRetentionDays() + 2L, ChronoUnit.DAYS), "GroupCreatedEvent",
+        GROUP_UUID);
+    IamAuditEvent recent = storeEvent(now, "GroupCreatedEvent", GROUP_UUID);
+
+    new AuditEventStoreMaintenanceTask(clock, properties, jdbcTemplate).run();
+
+    assertThat(repo.existsById(expired.getId()), is(false));
+    assertThat(repo.existsById(recent.getId()), is(true));
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.api.group;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import it.infn.mw.iam.audit.IamAuditEventLogger;
+import it.infn.mw.iam.audit.events.group.GroupSubtreeRemovedEvent;
+import it.infn.mw.iam.core.group.IamGroupService;
+import it.infn.mw.iam.core.user.IamAccountService;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamAuthority;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.persistence.model.IamLabel;
+import it.infn.mw.iam.persistence.repository.IamAccountRepository;
+import it.infn.mw.iam.persistence.repository.IamAuthoritiesRepository;
+import it.infn.mw.iam.persistence.repository.IamGroupRepository;
+import it.infn.mw.iam.test.util.WithAnonymousUser;
+import it.infn.mw.iam.test.util.annotation.IamMockMvcIntegrationTest;
+import it.infn.mw.iam.test.util.oauth.MockOAuth2Filter;
+
+@RunWith(SpringRunner.class)
+@IamMockMvcIntegrationTest
+@WithAnonymousUser
+public class GroupSubtreeDeletionTests {
+
+  private static final String SUBTREE_URL = "/iam/group/{id}/subtree";
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Autowired
+  private MockOAuth2Filter mockOAuth2Filter;
+
+  @Autowired
+  private IamGroupService groupService;
+
+  @Autowired
+  private IamAccountService accountService;
+
+  @Autowired
+  private IamGroupRepository groupRepo;
+
+  @Autowired
+  private IamAccountRepository accountRepo;
+
+  @Autowired
+  private IamAuthoritiesRepository authoritiesRepo;
+
+  @Autowired
+  private IamAuditEventLogger logger;
+
+  @Before
+  public void setup() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  @After
+  public void cleanupOAuthUser() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  private IamGroup createGroup(String name, IamGroup parent) {
+    IamGroup group = new IamGroup();
+    group.setName(name);
+    group.setUuid(UUID.randomUUID().toString());
+    group.setParentGroup(parent);
+    if (parent != null) {
+      parent.getChildrenGroups().add(group);
+    }
+    return groupService.createGroup(group);
+  }
+
+  @Test
+  public void subtreeDeletionRequiresAuthenticatedUser() throws Exception {
+    IamGroup root = createGroup("subtree-root", null);
+
+    mvc.perform(delete(SUBTREE_URL, root.getUuid())).andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @WithMockUser(username = "test", roles = "USER")
+  public void subtreeDeletionRequiresAdminUser() throws Exception {
+    IamGroup root = createGroup("subtree-root", null);
+
+    mvc.perform(delete(SUBTREE_URL, root.getUuid())).andExpect(status().isForbidden());
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void subtreeDeletionOfUnknownGroupFails() throws Exception {
+    mvc.perform(delete(SUBTREE_URL, UUID.randomUUID().toString()))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void subtreeDeletionRemovesGroupsAndRelatedData() throws Exception {
+    IamGroup root = createGroup("subtree-root", null);
+    IamGroup child = createGroup("subtree-root/child", root);
+    IamGroup grandChild = createGroup("subtree-root/child/grandchild", child);
+
+    IamLabel label = IamLabel.builder().name("project").value("teardown").build();
+    groupService.addLabel(root, label);
+
+    IamAccount testAccount = accountRepo.findByUsername("test")
+      .orElseThrow(() -> new AssertionError("Expected user test not found"));
+
+    accountService.addToGroup(testAccount, child);
+
+    String gmAuthority = groupService.groupManagerAuthority(grandChild);
+    IamAuthority auth = authoritiesRepo.findByAuthority(gmAuthority)
+      .orElseThrow(() -> new AssertionError("Expected authority not found"));
+    testAccount.getAuthorities().add(auth);
+    accountRepo.save(testAccount);
+
+    mvc.perform(delete(SUBTREE_URL, root.getUuid())).andExpect(status().isNoContent());
+
+    assertThat(groupRepo.findByUuid(root.getUuid()).isPresent(), is(false));
+    assertThat(groupRepo.findByUuid(child.getUuid()).isPresent(), is(false));
+    assertThat(groupRepo.findByUuid(grandChild.getUuid()).isPresent(), is(false));
+
+    assertThat(authoritiesRepo.findByAuthority(gmAuthority).isPresent(), is(false));
+    assertThat(accountRepo.findByAuthority(gmAuthority).isEmpty(), is(true));
+
+    IamAccount reloadedAccount = accountRepo.findByUsername("test")
+      .orElseThrow(() -> new AssertionError("Expected user test not found"));
+    assertThat(reloadedAccount.getGroups()
+      .stream()
+      .anyMatch(m -> m.getGroup().getUuid().equals(child.getUuid())), is(false));
+
+    assertThat(logger.getLastEvent(), instanceOf(GroupSubtreeRemovedEvent.class));
+
+    GroupSubtreeRemovedEvent event = (GroupSubtreeRemovedEvent) logger.getLastEvent();
+    assertThat(event.getGroup().getUuid(), is(root.getUuid()));
+    assertThat(event.getRemovedGroups(), containsInAnyOrder("subtree-root",
+        "subtree-root/child", "subtree-root/child/grandchild"));
+    assertThat(event.getRemovedMemberships(), is(1));
+    assertThat(event.getRevokedManagerGrants(), is(1));
+    assertThat(event.getRemovedLabels(), is(1));
+  }
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.api.imports;
+
+import static it.infn.mw.iam.api.imports.BulkImportController.GROUPS_RESOURCE;
+import static it.infn.mw.iam.api.imports.BulkImportController.NDJSON_CONTENT_TYPE;
+import static it.infn.mw.iam.api.imports.BulkImportController.USERS_RESOURCE;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+
+import it.infn.mw.iam.api.scim.model.ScimGroup;
+import it.infn.mw.iam.api.scim.model.ScimGroupRef;
+import it.infn.mw.iam.api.scim.model.ScimIndigoGroup;
+import it.infn.mw.iam.api.scim.model.ScimUser;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.persistence.repository.IamAccountRepository;
+import it.infn.mw.iam.persistence.repository.IamGroupRepository;
+import it.infn.mw.iam.test.api.TestSupport;
+import it.infn.mw.iam.test.util.WithAnonymousUser;
+import it.infn.mw.iam.test.util.annotation.IamMockMvcIntegrationTest;
+import it.infn.mw.iam.test.util.oauth.MockOAuth2Filter;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@IamMockMvcIntegrationTest
+public class BulkImportTests extends TestSupport {
+
+  @Autowired
+  private IamAccountRepository accountRepo;
+
+  @Autowired
+  private IamGroupRepository groupRepo;
+
+  @Autowired
+  private MockOAuth2Filter mockOAuth2Filter;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Before
+  public void setup() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  @After
+  public void cleanupOAuthUser() {
+    mockOAuth2Filter.cleanupSecurityContext();
+  }
+
+  private String userLine(String username, String email) throws JsonProcessingException {
+    return mapper.writeValueAsString(ScimUser.builder(username)
+      .buildEmail(email)
+      .buildName("Imported", "User")
+      .build());
+  }
+
+  @Test
+  @WithAnonymousUser
+  public void importRequiresAuthenticatedUser() throws Exception {
+    mvc
+      .perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE)
+        .content(userLine("bulk_001", "bulk_001@example.org")))
+      .andExpect(UNAUTHORIZED);
+  }
+
+  @Test
+  @WithMockUser(username = "test", roles = "USER")
+  public void importRequiresAdminUser() throws Exception {
+    mvc
+      .perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE)
+        .content(userLine("bulk_001", "bulk_001@example.org")))
+      .andExpect(FORBIDDEN);
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importUsersReportsPerRecordErrors() throws Exception {
+
+    String content = String.join("\n", userLine("bulk_001", "bulk_001@example.org"),
+        userLine(TEST_USER, "bulk_002@example.org"), "{ not json",
+        userLine("bulk_003", "bulk_001@example.org"), "",
+        userLine("bulk_004", "bulk_004@example.org"));
+
+    mvc.perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(content))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.processed", is(5)))
+      .andExpect(jsonPath("$.imported", is(2)))
+      .andExpect(jsonPath("$.failed", is(3)))
+      .andExpect(jsonPath("$.errors[0].line", is(3)))
+      .andExpect(jsonPath("$.errors[1].line", is(2)))
+      .andExpect(jsonPath("$.errors[1].message", containsString("already exists")))
+      .andExpect(jsonPath("$.errors[2].line", is(4)))
+      .andExpect(jsonPath("$.errors[2].message", containsString("bulk_001@example.org")));
+
+    IamAccount account = accountRepo.findByUsername("bulk_001")
+      .orElseThrow(() -> new AssertionError(EXPECTED_ACCOUNT_NOT_FOUND));
+
+    assertThat(account.getUserInfo().getEmail(), is("bulk_001@example.org"));
+    assertThat(accountRepo.findByUsername("bulk_004").isPresent(), is(true));
+    assertThat(accountRepo.findByUsername("bulk_003").isPresent(), is(false));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void rejectedRecordDoesNotReserveIdentifiers() throws Exception {
+
+    ScimUser unknownGroup = ScimUser.builder("bulk_006")
+      .buildEmail("bulk_006@example.org")
+      .buildName("Imported", "User")
+      .addGroupRef(ScimGroupRef.builder().value(RANDOM_UUID).display("unknown").build())
+      .build();
+
+    String content = String.join("\n", mapper.writeValueAsString(unknownGroup),
+        userLine("bulk_006", "bulk_006@example.org"));
+
+    mvc.perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(content))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(1)))
+      .andExpect(jsonPath("$.failed", is(1)))
+      .andExpect(jsonPath("$.errors[0].line", is(1)))
+      .andExpect(jsonPath("$.errors[0].message", containsString("not found")));
+
+    IamAccount account = accountRepo.findByUsername("bulk_006")
+      .orElseThrow(() -> new AssertionError(EXPECTED_ACCOUNT_NOT_FOUND));
+    assertThat(account.getGroups().isEmpty(), is(true));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importedAccountsWithoutPasswordGetARandomOne() throws Exception {
+
+    String content = String.join("\n", userLine("bulk_007", "bulk_007@example.org"),
+        userLine("bulk_008", "bulk_008@example.org"));
+
+    mvc.perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(content))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(2)));
+
+    for (String username : new String[] {"bulk_007", "bulk_008"}) {
+      IamAccount account = accountRepo.findByUsername(username)
+        .orElseThrow(() -> new AssertionError(EXPECTED_ACCOUNT_NOT_FOUND));
+      assertThat(account.getPassword(), notNullValue());
+    }
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importGroupsAndMemberships() throws Exception {
+
+    final String parentUuid = UUID.randomUUID().toString();
+    final String childUuid = UUID.randomUUID().toString();
+
+    ScimGroup parent = ScimGroup.builder("bulk-parent").id(parentUuid).build();
+    ScimGroup child = ScimGroup.builder("child")
+      .id(childUuid)
+      .indigoGroup(ScimIndigoGroup.getBuilder()
+        .parentGroup(ScimGroupRef.builder().value(parentUuid).display("bulk-parent").build())
+        .build())
+      .build();
+
+    String groups = String.join("\n", mapper.writeValueAsString(parent),
+        mapper.writeValueAsString(child));
+
+    mvc.perform(post(GROUPS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(groups))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(2)))
+      .andExpect(jsonPath("$.failed", is(0)));
+
+    IamGroup childGroup = groupRepo.findByUuid(childUuid)
+      .orElseThrow(() -> new AssertionError(EXPECTED_GROUP_NOT_FOUND));
+    assertThat(childGroup.getParentGroup().getUuid(), is(parentUuid));
+    assertThat(childGroup.getName(), is("bulk-parent/child"));
+
+    ScimUser user = ScimUser.builder("bulk_005")
+      .buildEmail("bulk_005@example.org")
+      .buildName("Imported", "User")
+      .addGroupRef(ScimGroupRef.builder().value(childUuid).display("bulk-parent/child").build())
+      .build();
+
+    mvc
+      .perform(post(USERS_RESOURCE).contentType(NDJSON_CONTENT_TYPE)
+        .content(mapper.writeValueAsString(user)))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(1)));
+
+    assertThat(groupRepo.countGroupMembersByGroupUuid(childUuid), is(1L));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importGroupWithUnknownParentFails() throws Exception {
+
+    ScimGroup orphan = ScimGroup.builder("bulk-orphan")
+      .indigoGroup(ScimIndigoGroup.getBuilder()
+        .parentGroup(ScimGroupRef.builder().value(RANDOM_UUID).display("unknown").build())
+        .build())
+      .build();
+
+    mvc
+      .perform(post(GROUPS_RESOURCE).contentType(NDJSON_CONTENT_TYPE)
+        .content(mapper.writeValueAsString(orphan)))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(0)))
+      .andExpect(jsonPath("$.errors[0].message", containsString("not found")));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importNestedGroupUnderExistingParent() throws Exception {
+
+    final String parentUuid = UUID.randomUUID().toString();
+    final String childUuid = UUID.randomUUID().toString();
+
+    ScimGroup parent = ScimGroup.builder("bulk-existing").id(parentUuid).build();
+
+    mvc
+      .perform(post(GROUPS_RESOURCE).contentType(NDJSON_CONTENT_TYPE)
+        .content(mapper.writeValueAsString(parent)))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(1)));
+
+    ScimGroup child = ScimGroup.builder("child")
+      .id(childUuid)
+      .indigoGroup(ScimIndigoGroup.getBuilder()
+        .parentGroup(ScimGroupRef.builder().value(parentUuid).display("ignored").build())
+        .build())
+      .build();
+
+    ScimGroup duplicate = ScimGroup.builder("child")
+      .indigoGroup(ScimIndigoGroup.getBuilder()
+        .parentGroup(ScimGroupRef.builder().value(parentUuid).display("bulk-existing").build())
+        .build())
+      .build();
+
+    String groups = String.join("\n", mapper.writeValueAsString(child),
+        mapper.writeValueAsString(duplicate));
+
+    mvc.perform(post(GROUPS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(groups))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(1)))
+      .andExpect(jsonPath("$.failed", is(1)))
+      .andExpect(jsonPath("$.errors[0].line", is(2)))
+      .andExpect(jsonPath("$.errors[0].message", containsString("bulk-existing/child")));
+
+    IamGroup childGroup = groupRepo.findByUuid(childUuid)
+      .orElseThrow(() -> new AssertionError(EXPECTED_GROUP_NOT_FOUND));
+    assertThat(childGroup.getName(), is("bulk-existing/child"));
+  }
+
+  @Test
+  @WithMockUser(username = "admin", roles = "ADMIN")
+  public void importGroupWithInvalidNameFails() throws Exception {
+
+    String groups = String.join("\n",
+        mapper.writeValueAsString(ScimGroup.builder("bulk/slashed").build()),
+        mapper.writeValueAsString(ScimGroup.builder(Strings.repeat("g", 51)).build()),
+        mapper.writeValueAsString(ScimGroup.builder("bulk-valid").build()));
+
+    mvc.perform(post(GROUPS_RESOURCE).contentType(NDJSON_CONTENT_TYPE).content(groups))
+      .andExpect(OK)
+      .andExpect(jsonPath("$.imported", is(1)))
+      .andExpect(jsonPath("$.failed", is(2)))
+      .andExpect(jsonPath("$.errors[0].line", is(1)))
+      .andExpect(jsonPath("$.errors[0].message", containsString("slash")))
+      .andExpect(jsonPath("$.errors[1].line", is(2)))
+      .andExpect(jsonPath("$.errors[1].message", containsString("cannot exceed 50")));
+
+    assertThat(groupRepo.findByName("bulk/slashed").isPresent(), is(false));
+    assertThat(groupRepo.findByName("bulk-valid").isPresent(), is(true));
+  }
+}
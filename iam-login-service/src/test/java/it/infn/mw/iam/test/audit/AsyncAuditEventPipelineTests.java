@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.audit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.audit.events.IamAuditApplicationEvent;
+import it.infn.mw.iam.audit.pipeline.AsyncAuditEventPipeline;
+import it.infn.mw.iam.audit.pipeline.AuditEventSink;
+import it.infn.mw.iam.audit.pipeline.NdjsonFileAuditEventSink;
+import it.infn.mw.iam.audit.pipeline.SerializedAuditEvent;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties.BackPressurePolicy;
+import it.infn.mw.iam.config.audit.AuditPipelineProperties.FileSinkProperties;
+
+public class AsyncAuditEventPipelineTests {
+
+  public static class TestEvent extends IamAuditApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    public TestEvent(String message) {
+      super(IamEventCategory.NONE, AsyncAuditEventPipelineTests.class, message);
+    }
+  }
+
+  public static class CollectingSink implements AuditEventSink {
+
+    final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release;
+
+    public CollectingSink(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public String getName() {
+      return "collecting";
+    }
+
+    @Override
+    public void write(List<SerializedAuditEvent> events) {
+      entered.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      events.forEach(e -> messages.add(e.getJson()));
+    }
+  }
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private AsyncAuditEventPipeline pipeline;
+
+  @After
+  public void teardown() {
+    if (pipeline != null) {
+      pipeline.shutdown();
+    }
+  }
+
+  private AsyncAuditEventPipeline newPipeline(AuditPipelineProperties properties,
+      AuditEventSink sink) {
+    pipeline = new AsyncAuditEventPipeline(properties, IamAuditApplicationEvent::getMessage,
+        Arrays.asList(sink), registry);
+    pipeline.start();
+    return pipeline;
+  }
+
+  @Test
+  public void testEventsAreDeliveredOnShutdown() {
+    CollectingSink sink = new CollectingSink(new CountDownLatch(0));
+    newPipeline(new AuditPipelineProperties(), sink);
+
+    for (int i = 0; i < 100; i++) {
+      pipeline.submit(new TestEvent("event-" + i));
+    }
+
+    pipeline.shutdown();
+
+    assertThat(sink.messages.size(), is(100));
+    assertThat(sink.messages.get(99), is("event-99"));
+    assertThat(
+        registry.get(AsyncAuditEventPipeline.PROCESSED_EVENTS_METRIC).counter().count(),
+        is(100.0));
+  }
+
+  @Test
+  public void testDropPolicyDropsEventsWhenBufferIsFull() throws InterruptedException {
+    AuditPipelineProperties properties = new AuditPipelineProperties();
+    properties.setCapacity(1);
+    properties.setBackPressurePolicy(BackPressurePolicy.DROP);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CollectingSink sink = new CollectingSink(release);
+    newPipeline(properties, sink);
+
+    assertThat(pipeline.submit(new TestEvent("first")), is(true));
+    sink.entered.await(10, TimeUnit.SECONDS);
+
+    assertThat(pipeline.submit(new TestEvent("second")), is(true));
+    assertThat(pipeline.submit(new TestEvent("third")), is(false));
+
+    assertThat(pipeline.getQueueDepth(), is(1));
+    assertThat(pipeline.getDroppedEvents(), is(1L));
+    assertThat(registry.get(AsyncAuditEventPipeline.QUEUE_DEPTH_METRIC).gauge().value(),
+        is(1.0));
+    assertThat(registry.get(AsyncAuditEventPipeline.DROPPED_EVENTS_METRIC)
+      .tag("reason", "full")
+      .counter()
+      .count(), is(1.0));
+
+    release.countDown();
+    pipeline.shutdown();
+
+    assertThat(sink.messages, contains("first", "second"));
+  }
+
+  @Test
+  public void testEventsAreSerializedOnThePublishingThread() throws InterruptedException {
+    AtomicReference<String> state = new AtomicReference<>("before");
+
+    CountDownLatch release = new CountDownLatch(1);
+    CollectingSink sink = new CollectingSink(release);
+
+    pipeline = new AsyncAuditEventPipeline(new AuditPipelineProperties(),
+        e -> e.getMessage() + ":" + state.get(), Arrays.asList(sink), registry);
+    pipeline.start();
+
+    pipeline.submit(new TestEvent("first"));
+    sink.entered.await(10, TimeUnit.SECONDS);
+    pipeline.submit(new TestEvent("second"));
+
+    state.set("after");
+    release.countDown();
+    pipeline.shutdown();
+
+    assertThat(sink.messages, contains("first:before", "second:before"));
+  }
+
+  @Test
+  public void testFileSinkRollsOver() throws Exception {
+    File auditFile = new File(folder.getRoot(), "audit.ndjson");
+
+    FileSinkProperties properties = new FileSinkProperties();
+    properties.setPath(auditFile.getAbsolutePath());
+    properties.setMaxFileSizeBytes(20);
+    properties.setMaxHistory(1);
+
+    try (NdjsonFileAuditEventSink sink = new NdjsonFileAuditEventSink(properties)) {
+      for (int i = 0; i < 3; i++) {
+        sink.write(Arrays
+          .asList(new SerializedAuditEvent(new TestEvent("e"), "{\"event\":" + i + "}")));
+      }
+    }
+
+    List<String> current = Files.readAllLines(auditFile.toPath(), StandardCharsets.UTF_8);
+    List<String> rolled = Files.readAllLines(new File(folder.getRoot(), "audit.ndjson.1").toPath(),
+        StandardCharsets.UTF_8);
+
+    assertThat(current, contains("{\"event\":2}"));
+    assertThat(rolled, contains("{\"event\":1}"));
+    assertThat(new File(folder.getRoot(), "audit.ndjson.2").exists(), is(false));
+    assertThat(Arrays.stream(folder.getRoot().list()).sorted().collect(Collectors.joining(",")),
+        equalTo("audit.ndjson,audit.ndjson.1"));
+  }
+}
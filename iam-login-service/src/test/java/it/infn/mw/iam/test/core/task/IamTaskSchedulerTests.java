@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.core.task;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.core.task.IamTaskScheduler;
+import it.infn.mw.iam.core.task.LocalTaskLeaseManager;
+import it.infn.mw.iam.core.task.ManagedTask;
+import it.infn.mw.iam.core.task.TaskGroup;
+import it.infn.mw.iam.core.task.TaskLease;
+import it.infn.mw.iam.core.task.TaskStatus;
+
+public class IamTaskSchedulerTests {
+
+  static final Instant NOW = Instant.parse("2022-01-01T00:00:00Z");
+  static final long ONE_HOUR_MSEC = TimeUnit.HOURS.toMillis(1);
+
+  Clock clock = Clock.fixed(NOW, ZoneId.systemDefault());
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  LocalTaskLeaseManager leaseManager = new LocalTaskLeaseManager();
+
+  IamTaskScheduler scheduler;
+
+  @Before
+  public void setup() {
+    scheduler = new IamTaskScheduler(new TaskProperties(), leaseManager, clock, registry);
+  }
+
+  @After
+  public void teardown() {
+    scheduler.shutdown();
+  }
+
+  private ManagedTask task(String name, Runnable delegate) {
+    return new ManagedTask(name, TaskGroup.HOUSEKEEPING, "test", Duration.ZERO, delegate,
+        leaseManager, clock, registry);
+  }
+
+  @Test
+  public void taskExecutionIsRecorded() {
+    AtomicInteger runs = new AtomicInteger();
+    ManagedTask task = task("test", runs::incrementAndGet);
+
+    task.run();
+
+    TaskStatus status = task.getStatus();
+    assertThat(runs.get(), is(1));
+    assertThat(status.getLastSuccessTime(), is(NOW));
+    assertThat(status.getLastFailureTime(), nullValue());
+    assertThat(status.isRunning(), is(false));
+    assertThat(registry.get(ManagedTask.DURATION_METRIC)
+      .tag(ManagedTask.TASK_TAG, "test")
+      .tag("outcome", "success")
+      .timer()
+      .count(), is(1L));
+  }
+
+  @Test
+  public void taskFailureIsRecordedAndNotPropagated() {
+    ManagedTask task = task("failing", () -> {
+      throw new IllegalStateException("boom");
+    });
+
+    task.run();
+
+    TaskStatus status = task.getStatus();
+    assertThat(status.getLastFailureTime(), is(NOW));
+    assertThat(status.getLastSuccessTime(), nullValue());
+    assertThat(status.getLastError(), is("boom"));
+    assertThat(status.isRunning(), is(false));
+    assertThat(registry.get(ManagedTask.DURATION_METRIC)
+      .tag(ManagedTask.TASK_TAG, "failing")
+      .tag("outcome", "failure")
+      .timer()
+      .count(), is(1L));
+  }
+
+  @Test
+  public void pausedTaskIsSkippedUntilResumed() {
+    AtomicInteger runs = new AtomicInteger();
+    ManagedTask task = task("paused", runs::incrementAndGet);
+
+    task.pause();
+    task.run();
+    assertThat(runs.get(), is(0));
+    assertThat(registry.get(ManagedTask.SKIPPED_METRIC)
+      .tag(ManagedTask.TASK_TAG, "paused")
+      .tag("reason", "paused")
+      .counter()
+      .count(), is(1.0));
+
+    task.runOnce();
+    assertThat(runs.get(), is(1));
+
+    task.resume();
+    task.run();
+    assertThat(runs.get(), is(2));
+  }
+
+  @Test
+  public void overlappingExecutionIsSkipped() {
+    AtomicInteger runs = new AtomicInteger();
+    ManagedTask[] holder = new ManagedTask[1];
+
+    holder[0] = task("reentrant", () -> {
+      runs.incrementAndGet();
+      holder[0].run();
+    });
+
+    holder[0].run();
+
+    assertThat(runs.get(), is(1));
+    assertThat(registry.get(ManagedTask.SKIPPED_METRIC)
+      .tag(ManagedTask.TASK_TAG, "reentrant")
+      .tag("reason", "running")
+      .counter()
+      .count(), is(1.0));
+  }
+
+  @Test
+  public void taskIsSkippedWhenLeaseIsNotGranted() {
+    AtomicInteger runs = new AtomicInteger();
+    ManagedTask task = new ManagedTask("no-lease", TaskGroup.HOUSEKEEPING, "test", Duration.ZERO,
+        runs::incrementAndGet, (name, hold) -> Optional.empty(), clock, registry);
+
+    task.run();
+
+    assertThat(runs.get(), is(0));
+    assertThat(registry.get(ManagedTask.SKIPPED_METRIC)
+      .tag(ManagedTask.TASK_TAG, "no-lease")
+      .tag("reason", "lease")
+      .counter()
+      .count(), is(1.0));
+  }
+
+  @Test
+  public void currentLeaseIsAvailableToTheRunningTask() {
+    long[] token = new long[1];
+    ManagedTask task = task("fenced", () -> token[0] =
+        ManagedTask.currentLease().map(TaskLease::getFencingToken).orElse(-1L));
+
+    task.run();
+
+    assertThat(token[0] > 0, is(true));
+    assertThat(task.getStatus().getLastFencingToken(), is(token[0]));
+    assertThat(ManagedTask.currentLease().isPresent(), is(false));
+  }
+
+  @Test
+  public void triggerRunsTaskOnItsGroupPool() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    String[] threadName = new String[1];
+
+    ManagedTask task = scheduler.scheduleWithFixedDelay("triggered", TaskGroup.NOTIFICATION, () -> {
+      threadName[0] = Thread.currentThread().getName();
+      latch.countDown();
+    }, ONE_HOUR_MSEC, ONE_HOUR_MSEC);
+
+    task.pause();
+    scheduler.trigger(task);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(threadName[0].startsWith("iam-task-notification-"), is(true));
+  }
+
+  @Test
+  public void tasksAreRegisteredByName() {
+    scheduler.scheduleWithFixedDelay("one", TaskGroup.HOUSEKEEPING, () -> {
+    }, ONE_HOUR_MSEC, ONE_HOUR_MSEC);
+    scheduler.scheduleCron("two", TaskGroup.MAINTENANCE, () -> {
+    }, "0 0 3 * * *");
+
+    assertThat(scheduler.getTasks().size(), is(2));
+    assertThat(scheduler.findTask("two").orElse(null), notNullValue());
+    assertThat(scheduler.findTask("two").get().getStatus().getSchedule(), is("cron 0 0 3 * * *"));
+    assertThat(scheduler.findTask("three").isPresent(), is(false));
+
+    assertThrows(IllegalStateException.class,
+        () -> scheduler.scheduleWithFixedDelay("one", TaskGroup.HOUSEKEEPING, () -> {
+        }, ONE_HOUR_MSEC, ONE_HOUR_MSEC));
+  }
+}
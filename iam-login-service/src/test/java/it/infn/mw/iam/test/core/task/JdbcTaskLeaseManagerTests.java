@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.core.task;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.core.task.JdbcTaskLeaseManager;
+import it.infn.mw.iam.core.task.TaskLease;
+
+public class JdbcTaskLeaseManagerTests {
+
+  static final String TASK = "token-cleanup";
+  static final Instant NOW = Instant.parse("2022-01-01T00:00:00Z");
+  static final Duration LEASE_DURATION = Duration.ofMinutes(2);
+
+  DriverManagerDataSource dataSource;
+  JdbcTemplate jdbcTemplate;
+  Clock clock = mock(Clock.class);
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  JdbcTaskLeaseManager first;
+  JdbcTaskLeaseManager second;
+
+  @Before
+  public void setup() {
+    dataSource = new DriverManagerDataSource("jdbc:h2:mem:task_leases;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V95__task_lease.sql"))
+      .execute(dataSource);
+
+    when(clock.instant()).thenReturn(NOW);
+
+    first = new JdbcTaskLeaseManager(jdbcTemplate, clock, "first", LEASE_DURATION, registry);
+    second = new JdbcTaskLeaseManager(jdbcTemplate, clock, "second", LEASE_DURATION, registry);
+  }
+
+  @After
+  public void teardown() {
+    first.shutdown();
+    second.shutdown();
+    jdbcTemplate.execute("DROP TABLE iam_task_lease");
+  }
+
+  @Test
+  public void leaseIsExclusiveWhileHeld() {
+    Optional<TaskLease> lease = first.tryAcquire(TASK, Duration.ZERO);
+
+    assertThat(lease.isPresent(), is(true));
+    assertThat(lease.get().getFencingToken(), is(1L));
+    assertThat(second.tryAcquire(TASK, Duration.ZERO).isPresent(), is(false));
+
+    lease.get().close();
+    assertThat(lease.get().isValid(), is(false));
+
+    Optional<TaskLease> other = second.tryAcquire(TASK, Duration.ZERO);
+    assertThat(other.isPresent(), is(true));
+    assertThat(other.get().getFencingToken(), is(2L));
+  }
+
+  @Test
+  public void leasesForDifferentTasksAreIndependent() {
+    assertThat(first.tryAcquire(TASK, Duration.ZERO).isPresent(), is(true));
+    assertThat(second.tryAcquire("approved-site-cleanup", Duration.ZERO).isPresent(), is(true));
+  }
+
+  @Test
+  public void releasedLeaseIsHeldForTheMinimumHoldTime() {
+    TaskLease lease = first.tryAcquire(TASK, Duration.ofMinutes(5)).get();
+    lease.close();
+
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(4)));
+    assertThat(second.tryAcquire(TASK, Duration.ZERO).isPresent(), is(false));
+
+    // the holder itself can run the task again
+    first.tryAcquire(TASK, Duration.ZERO).get().close();
+
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+    assertThat(second.tryAcquire(TASK, Duration.ZERO).isPresent(), is(true));
+  }
+
+  @Test
+  public void expiredLeaseIsTakenOverAndFencedOut() {
+    TaskLease stale = first.tryAcquire(TASK, Duration.ZERO).get();
+
+    // the first instance stops renewing its lease
+    when(clock.instant()).thenReturn(NOW.plus(LEASE_DURATION));
+
+    TaskLease lease = second.tryAcquire(TASK, Duration.ZERO).get();
+    assertThat(lease.getFencingToken() > stale.getFencingToken(), is(true));
+
+    stale.close();
+
+    assertThat(first.tryAcquire(TASK, Duration.ZERO).isPresent(), is(false));
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT owner FROM iam_task_lease WHERE task_name = ?", String.class, TASK), is("second"));
+    assertThat(registry.get(JdbcTaskLeaseManager.LEASES_METRIC)
+      .tag("outcome", "lost")
+      .counter()
+      .count(), is(1.0));
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.core.task;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.config.IamProperties;
+import it.infn.mw.iam.config.TaskConfig;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.core.jwk.JWKKeystoreRolloverTask;
+import it.infn.mw.iam.core.task.IamTaskScheduler;
+import it.infn.mw.iam.core.task.ManagedTask;
+
+public class TaskConfigTests {
+
+  IamProperties iamProperties = new IamProperties();
+  TaskConfig taskConfig = new TaskConfig();
+
+  IamTaskScheduler scheduler;
+
+  @Before
+  public void setup() {
+    // a lease manager that never grants the lease, as for a replica that is not the lease holder
+    scheduler = new IamTaskScheduler(new TaskProperties(), (name, hold) -> Optional.empty(),
+        Clock.systemUTC(), new SimpleMeterRegistry());
+
+    ReflectionTestUtils.setField(taskConfig, "iamProperties", iamProperties);
+    ReflectionTestUtils.setField(taskConfig, "jwkKeystoreRolloverTask",
+        mock(JWKKeystoreRolloverTask.class));
+  }
+
+  @After
+  public void teardown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void jwkKeystoreRolloverRunsOnEveryInstance() {
+    iamProperties.getJwk().getRollover().setEnabled(true);
+
+    taskConfig.scheduleJwkKeystoreRolloverTask(scheduler);
+
+    ManagedTask task = scheduler.findTask(TaskConfig.JWK_ROLLOVER_TASK).orElseThrow();
+    assertThat(task.isLocal(), is(true));
+  }
+
+  @Test
+  public void jwkKeystoreRolloverIsNotScheduledWhenDisabled() {
+    iamProperties.getJwk().getRollover().setEnabled(false);
+
+    taskConfig.scheduleJwkKeystoreRolloverTask(scheduler);
+
+    assertThat(scheduler.findTask(TaskConfig.JWK_ROLLOVER_TASK).isPresent(), is(false));
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.ext_authn.oidc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mitre.openid.connect.config.ServerConfiguration;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ResponseCreator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import it.infn.mw.iam.authn.oidc.service.CachingServerConfigurationService;
+import it.infn.mw.iam.config.oidc.OidcDiscoveryProperties;
+import it.infn.mw.iam.persistence.model.IamOidcProviderMetadata;
+import it.infn.mw.iam.persistence.repository.IamOidcProviderMetadataRepository;
+import it.infn.mw.iam.test.util.oidc.MockRestTemplateFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingServerConfigurationServiceTests {
+
+  private static final String ISSUER = "https://op.example";
+  private static final String DISCOVERY_URL = ISSUER + "/.well-known/openid-configuration";
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  @Mock
+  Clock clock;
+
+  @Mock
+  IamOidcProviderMetadataRepository repo;
+
+  Instant now = NOW;
+
+  MockRestTemplateFactory rtf;
+  CachingServerConfigurationService service;
+
+  @Before
+  public void setup() {
+    when(clock.millis()).thenAnswer(i -> now.toEpochMilli());
+
+    OidcDiscoveryProperties properties = new OidcDiscoveryProperties();
+    properties.setRefreshIntervalSecs(3600);
+
+    rtf = new MockRestTemplateFactory();
+    service = new CachingServerConfigurationService(rtf, repo, new ObjectMapper(), clock,
+        properties, MoreExecutors.newDirectExecutorService());
+  }
+
+  @After
+  public void teardown() {
+    service.shutdown();
+  }
+
+  private static String metadata(String tokenEndpoint) {
+    return String.format(
+        "{\"issuer\":\"%s\",\"authorization_endpoint\":\"%s/authorize\",\"token_endpoint\":\"%s\","
+            + "\"jwks_uri\":\"%s/jwk\",\"userinfo_endpoint\":\"%s/userinfo\"}",
+        ISSUER, ISSUER, tokenEndpoint, ISSUER, ISSUER);
+  }
+
+  private void expectDiscovery(ResponseCreator response) {
+    rtf.getMockServer().expect(requestTo(DISCOVERY_URL)).andRespond(response);
+  }
+
+  private void verifyDiscoveryCalls() {
+    rtf.getMockServer().verify();
+    rtf.resetTemplate();
+  }
+
+  @Test
+  public void testConfigurationIsCachedAndStored() {
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token"), MediaType.APPLICATION_JSON));
+
+    ServerConfiguration conf = service.getServerConfiguration(ISSUER);
+    assertThat(conf.getIssuer(), is(ISSUER));
+    assertThat(conf.getTokenEndpointUri(), is(ISSUER + "/token"));
+    assertThat(conf.getJwksUri(), is(ISSUER + "/jwk"));
+    assertThat(conf.getUserInfoUri(), is(ISSUER + "/userinfo"));
+
+    now = now.plusSeconds(3599);
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token"));
+    verifyDiscoveryCalls();
+
+    ArgumentCaptor<IamOidcProviderMetadata> stored =
+        ArgumentCaptor.forClass(IamOidcProviderMetadata.class);
+    verify(repo).save(stored.capture());
+    assertThat(stored.getValue().getIssuer(), is(ISSUER));
+    assertThat(stored.getValue().getMetadata(), is(metadata(ISSUER + "/token")));
+  }
+
+  @Test
+  public void testConfigurationIsRefreshedAfterInterval() {
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token"), MediaType.APPLICATION_JSON));
+    service.getServerConfiguration(ISSUER);
+    verifyDiscoveryCalls();
+
+    now = now.plusSeconds(3601);
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token2"), MediaType.APPLICATION_JSON));
+    service.getServerConfiguration(ISSUER);
+    verifyDiscoveryCalls();
+
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token2"));
+  }
+
+  @Test
+  public void testCachedConfigurationIsKeptOnRefreshErrors() {
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token"), MediaType.APPLICATION_JSON));
+    service.getServerConfiguration(ISSUER);
+    verifyDiscoveryCalls();
+
+    now = now.plusSeconds(3601);
+    expectDiscovery(withServerError());
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token"));
+    verifyDiscoveryCalls();
+
+    // The failed refresh postpones the next attempt by a refresh interval
+    now = now.plusSeconds(1800);
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token"));
+    verifyDiscoveryCalls();
+  }
+
+  @Test
+  public void testStoredMetadataIsUsedWhenProviderIsUnreachable() {
+    IamOidcProviderMetadata stored = new IamOidcProviderMetadata();
+    stored.setIssuer(ISSUER);
+    stored.setMetadata(metadata(ISSUER + "/stored-token"));
+    stored.setLastUpdateTime(Date.from(NOW.minusSeconds(86400)));
+    when(repo.findById(ISSUER)).thenReturn(Optional.of(stored));
+
+    expectDiscovery(withServerError());
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/stored-token"));
+    verifyDiscoveryCalls();
+    verify(repo, never()).save(any());
+  }
+
+  @Test
+  public void testUnreachableProviderWithoutStoredMetadata() {
+    when(repo.findById(ISSUER)).thenReturn(Optional.empty());
+
+    expectDiscovery(withServerError());
+    assertThat(service.getServerConfiguration(ISSUER), nullValue());
+    verifyDiscoveryCalls();
+
+    // Errors are not cached
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token"), MediaType.APPLICATION_JSON));
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token"));
+    verifyDiscoveryCalls();
+  }
+
+  @Test
+  public void testInvalidDocumentsDoNotReplaceStoredMetadata() {
+    IamOidcProviderMetadata stored = new IamOidcProviderMetadata();
+    stored.setIssuer(ISSUER);
+    stored.setMetadata(metadata(ISSUER + "/stored-token"));
+    stored.setLastUpdateTime(Date.from(NOW.minusSeconds(86400)));
+    when(repo.findById(ISSUER)).thenReturn(Optional.of(stored));
+
+    String[] invalidDocuments = {"{}",
+        metadata(ISSUER + "/token").replace("\"issuer\":\"" + ISSUER,
+            "\"issuer\":\"https://other.example"),
+        metadata(ISSUER + "/token").replace("\"jwks_uri\"", "\"jwks\""),
+        metadata(ISSUER + "/token").replace("\"authorization_endpoint\"", "\"authz\""),
+        metadata("")};
+
+    for (String document : invalidDocuments) {
+      service = new CachingServerConfigurationService(rtf, repo, new ObjectMapper(), clock,
+          new OidcDiscoveryProperties(), MoreExecutors.newDirectExecutorService());
+
+      expectDiscovery(withSuccess(document, MediaType.APPLICATION_JSON));
+      assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+          is(ISSUER + "/stored-token"));
+      verifyDiscoveryCalls();
+    }
+
+    verify(repo, never()).save(any());
+  }
+
+  @Test
+  public void testInvalidDocumentDoesNotReplaceCachedConfiguration() {
+    expectDiscovery(withSuccess(metadata(ISSUER + "/token"), MediaType.APPLICATION_JSON));
+    service.getServerConfiguration(ISSUER);
+    verifyDiscoveryCalls();
+
+    now = now.plusSeconds(3601);
+    expectDiscovery(withSuccess("{\"issuer\":\"" + ISSUER + "\"}", MediaType.APPLICATION_JSON));
+    assertThat(service.getServerConfiguration(ISSUER).getTokenEndpointUri(),
+        is(ISSUER + "/token"));
+    verifyDiscoveryCalls();
+  }
+}
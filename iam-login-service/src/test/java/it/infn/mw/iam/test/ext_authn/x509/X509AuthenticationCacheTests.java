@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.ext_authn.x509;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+import it.infn.mw.iam.authn.InactiveAccountAuthenticationHander;
+import it.infn.mw.iam.authn.x509.CertificateParsingError;
+import it.infn.mw.iam.authn.x509.IamX509AuthenticationUserDetailService;
+import it.infn.mw.iam.authn.x509.PEMX509CertificateChainParser;
+import it.infn.mw.iam.authn.x509.X509CertificateChainCache;
+import it.infn.mw.iam.authn.x509.X509CertificateChainParser;
+import it.infn.mw.iam.authn.x509.X509CertificateChainParsingResult;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.repository.IamAccountRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class X509AuthenticationCacheTests extends X509TestSupport {
+
+  @Mock
+  IamAccountRepository accountRepository;
+
+  @Mock
+  InactiveAccountAuthenticationHander inactiveAccountHandler;
+
+  X509CertificateChainParser parser;
+  X509CertificateChainCache chainCache;
+  IamX509AuthenticationUserDetailService userDetailsService;
+
+  @Before
+  public void setup() {
+    parser = spy(new PEMX509CertificateChainParser());
+    chainCache = new X509CertificateChainCache(parser);
+    userDetailsService =
+        new IamX509AuthenticationUserDetailService(accountRepository, inactiveAccountHandler);
+  }
+
+  private IamAccount testAccount() {
+    IamAccount account = IamAccount.newAccount();
+    account.setUuid("test-uuid");
+    account.setUsername("test");
+    account.setPassword("password");
+    account.setActive(true);
+    return account;
+  }
+
+  private UserDetails loadUser() {
+    return userDetailsService
+      .loadUserDetails(new PreAuthenticatedAuthenticationToken(TEST_0_SUBJECT, null));
+  }
+
+  @Test
+  public void chainIsParsedOnlyOnce() {
+
+    X509CertificateChainParsingResult result = chainCache.parseChainFromString(TEST_0_CERT_STRING);
+    X509CertificateChainParsingResult cachedResult =
+        chainCache.parseChainFromString(TEST_0_CERT_STRING);
+
+    verify(parser, times(1)).parseChainFromString(anyString());
+    assertThat(chainCache.size(), is(1L));
+
+    assertThat(cachedResult.getChain(), arrayWithSize(1));
+    assertThat(cachedResult.getChain(), not(sameInstance(result.getChain())));
+    assertThat(cachedResult.getChain()[0], equalTo(result.getChain()[0]));
+    assertThat(cachedResult.getPemString(), equalTo(TEST_0_CERT_STRING));
+  }
+
+  @Test
+  public void parsingErrorsAreNotCached() {
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        chainCache.parseChainFromString("48327498dsahtdsadasgyr9");
+      } catch (CertificateParsingError e) {
+        // expected
+      }
+    }
+
+    verify(parser, times(2)).parseChainFromString(anyString());
+    assertThat(chainCache.size(), is(0L));
+  }
+
+  @Test
+  public void accountIsLoadedOnEveryAuthentication() {
+    IamAccount account = testAccount();
+    IamAccount suspendedAccount = testAccount();
+    suspendedAccount.setActive(false);
+
+    when(accountRepository.findByCertificateSubject(TEST_0_SUBJECT))
+      .thenReturn(Optional.of(account), Optional.of(suspendedAccount));
+
+    loadUser();
+    loadUser();
+
+    verify(accountRepository, times(2)).findByCertificateSubject(TEST_0_SUBJECT);
+
+    ArgumentCaptor<IamAccount> checkedAccounts = ArgumentCaptor.forClass(IamAccount.class);
+    verify(inactiveAccountHandler, times(2)).handleInactiveAccount(checkedAccounts.capture());
+    assertThat(checkedAccounts.getAllValues().get(0), sameInstance(account));
+    assertThat(checkedAccounts.getAllValues().get(1), sameInstance(suspendedAccount));
+  }
+}
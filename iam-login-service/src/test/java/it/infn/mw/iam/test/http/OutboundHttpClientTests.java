@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.authn.oidc.DefaultRestTemplateFactory;
+import it.infn.mw.iam.config.http.OutboundHttpProperties;
+import it.infn.mw.iam.core.http.JitteredBackoffRetryHandler;
+import it.infn.mw.iam.core.http.OutboundHttpClientFactory;
+
+public class OutboundHttpClientTests {
+
+  HttpServer server;
+  OutboundHttpProperties properties = new OutboundHttpProperties();
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Before
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/jwk", exchange -> {
+      byte[] body = "{\"keys\":[]}".getBytes(UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void teardown() {
+    server.stop(0);
+  }
+
+  private HttpClientContext contextFor(HttpRequest request, boolean sent) {
+    HttpClientContext context = HttpClientContext.create();
+    context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+    context.setAttribute(HttpCoreContext.HTTP_REQ_SENT, sent);
+    return context;
+  }
+
+  @Test
+  public void requestsAreTimedPerHost() throws IOException {
+
+    try (CloseableHttpClient client = OutboundHttpClientFactory.newHttpClient("test", properties,
+        RegistryBuilder.<ConnectionSocketFactory>create()
+          .register("http", PlainConnectionSocketFactory.getSocketFactory())
+          .build(),
+        registry)) {
+
+      RestTemplate rt = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
+      String url = String.format("http://localhost:%d/jwk", server.getAddress().getPort());
+
+      assertThat(rt.getForObject(url, String.class), is("{\"keys\":[]}"));
+      assertThat(rt.getForObject(url, String.class), is("{\"keys\":[]}"));
+    }
+
+    Timer timer = registry.find("httpcomponents.httpclient.request")
+      .tag(OutboundHttpClientFactory.CLIENT_TAG, "test")
+      .tag("target.host", "localhost")
+      .tag("status", "200")
+      .timer();
+
+    assertThat(timer, notNullValue());
+    assertThat(timer.count(), is(2L));
+    assertThat(registry.get("httpcomponents.httpclient.pool.total.max").gauge().value(),
+        is((double) properties.getMaxConnections()));
+  }
+
+  @Test
+  public void perHostConnectionLimitsAreApplied() {
+    properties.getHostConnectionLimits().put("https://idp.example.org", 5);
+    properties.getHostConnectionLimits().put("http://jwk.example.org:8080", 2);
+
+    PoolingHttpClientConnectionManager cm = OutboundHttpClientFactory.connectionManager(properties,
+        RegistryBuilder.<ConnectionSocketFactory>create()
+          .register("http", PlainConnectionSocketFactory.getSocketFactory())
+          .build());
+
+    assertThat(cm.getMaxPerRoute(OutboundHttpClientFactory.routeFor("https://idp.example.org:443")),
+        is(5));
+    assertThat(cm.getMaxPerRoute(OutboundHttpClientFactory.routeFor("http://jwk.example.org:8080")),
+        is(2));
+    assertThat(cm.getMaxPerRoute(OutboundHttpClientFactory.routeFor("https://other.example.org")),
+        is(properties.getMaxConnectionsPerHost()));
+    cm.close();
+  }
+
+  @Test
+  public void retriesAreLimitedToRecoverableErrors() {
+    JitteredBackoffRetryHandler handler = new JitteredBackoffRetryHandler(2, 1, 1);
+    HttpGet get = new HttpGet("http://localhost/jwk");
+
+    assertThat(handler.retryRequest(new ConnectException(), 1, contextFor(get, false)), is(true));
+    assertThat(handler.retryRequest(new ConnectException(), 2, contextFor(get, true)), is(true));
+    assertThat(handler.retryRequest(new ConnectException(), 3, contextFor(get, true)), is(false));
+
+    assertThat(handler.retryRequest(new SocketTimeoutException(), 1, contextFor(get, true)),
+        is(false));
+    assertThat(handler.retryRequest(new UnknownHostException(), 1, contextFor(get, false)),
+        is(false));
+
+    HttpPost post = new HttpPost("http://localhost/token");
+    assertThat(handler.retryRequest(new ConnectException(), 1, contextFor(post, false)), is(true));
+    assertThat(handler.retryRequest(new IOException(), 1, contextFor(post, true)), is(false));
+  }
+
+  @Test
+  public void backoffGrowsExponentiallyUpToTheMaximum() {
+    JitteredBackoffRetryHandler handler = new JitteredBackoffRetryHandler(10, 100, 1000);
+
+    assertThat(handler.maxBackoffMillis(1), is(100L));
+    assertThat(handler.maxBackoffMillis(2), is(200L));
+    assertThat(handler.maxBackoffMillis(4), is(800L));
+    assertThat(handler.maxBackoffMillis(5), is(1000L));
+    assertThat(handler.maxBackoffMillis(100), lessThanOrEqualTo(1000L));
+  }
+
+  @Test
+  public void restTemplatesShareTheRequestFactoryButNotTheInterceptors() {
+
+    HttpComponentsClientHttpRequestFactory requestFactory =
+        new HttpComponentsClientHttpRequestFactory();
+    DefaultRestTemplateFactory factory = new DefaultRestTemplateFactory(requestFactory);
+
+    RestTemplate first = factory.newRestTemplate();
+    first.getInterceptors().add((request, body, execution) -> execution.execute(request, body));
+
+    RestTemplate second = factory.newRestTemplate();
+
+    assertThat(second, not(sameInstance(first)));
+    assertThat(second.getInterceptors(), empty());
+    assertThat(second.getRequestFactory(), sameInstance(requestFactory));
+  }
+}
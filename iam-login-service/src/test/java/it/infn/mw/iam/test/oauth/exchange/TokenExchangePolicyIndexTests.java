@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.exchange;
+
+import static it.infn.mw.iam.persistence.model.PolicyRule.DENY;
+import static it.infn.mw.iam.persistence.model.PolicyRule.PERMIT;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.lenient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.security.oauth2.provider.ClientDetails;
+
+import com.google.common.collect.Sets;
+
+import it.infn.mw.iam.core.oauth.exchange.AnyClientMatcher;
+import it.infn.mw.iam.core.oauth.exchange.ByIdClientMatcher;
+import it.infn.mw.iam.core.oauth.exchange.ByScopeClientMatcher;
+import it.infn.mw.iam.core.oauth.exchange.ClientMatcher;
+import it.infn.mw.iam.core.oauth.exchange.TokenExchangePolicy;
+import it.infn.mw.iam.core.oauth.exchange.TokenExchangePolicyIndex;
+import it.infn.mw.iam.persistence.model.PolicyRule;
+
+@SuppressWarnings("deprecation")
+@RunWith(MockitoJUnitRunner.class)
+public class TokenExchangePolicyIndexTests {
+
+  @Mock
+  ClientDetails origin;
+
+  @Mock
+  ClientDetails destination;
+
+  @Before
+  public void setup() {
+    lenient().when(origin.getClientId()).thenReturn("origin");
+    lenient().when(origin.getScope()).thenReturn(Sets.newHashSet("openid", "exchange"));
+    lenient().when(destination.getClientId()).thenReturn("destination");
+    lenient().when(destination.getScope()).thenReturn(Sets.newHashSet("openid", "storage"));
+  }
+
+  private TokenExchangePolicy policy(long id, PolicyRule rule, ClientMatcher originMatcher,
+      ClientMatcher destinationMatcher) {
+    return TokenExchangePolicy.builder()
+      .withId(id)
+      .withRule(rule)
+      .withOriginMatcher(originMatcher)
+      .withDestionationMatcher(destinationMatcher)
+      .build();
+  }
+
+  private Optional<Long> applicablePolicyId(List<TokenExchangePolicy> policies) {
+    return TokenExchangePolicyIndex.of(policies)
+      .findApplicablePolicy(origin, destination)
+      .map(TokenExchangePolicy::getId);
+  }
+
+  @Test
+  public void emptyIndexHasNoApplicablePolicy() {
+    assertThat(TokenExchangePolicyIndex.empty().findApplicablePolicy(origin, destination),
+        is(Optional.empty()));
+  }
+
+  @Test
+  public void highestRankedPolicyWins() {
+    List<TokenExchangePolicy> policies = Arrays.asList(
+        policy(1L, PERMIT, new AnyClientMatcher(), new AnyClientMatcher()),
+        policy(2L, DENY, new ByScopeClientMatcher("exchange"), new AnyClientMatcher()),
+        policy(3L, PERMIT, new ByIdClientMatcher("origin"), new ByScopeClientMatcher("storage")),
+        policy(4L, PERMIT, new ByIdClientMatcher("other"), new ByIdClientMatcher("destination")));
+
+    assertThat(applicablePolicyId(policies), is(Optional.of(3L)));
+  }
+
+  @Test
+  public void denyWinsOnRankTies() {
+    List<TokenExchangePolicy> policies = Arrays.asList(
+        policy(1L, PERMIT, new ByIdClientMatcher("origin"), new AnyClientMatcher()),
+        policy(2L, DENY, new AnyClientMatcher(), new ByIdClientMatcher("destination")));
+
+    assertThat(applicablePolicyId(policies), is(Optional.of(2L)));
+  }
+
+  @Test
+  public void nonApplicablePoliciesAreIgnored() {
+    List<TokenExchangePolicy> policies = Arrays.asList(
+        policy(1L, PERMIT, new ByScopeClientMatcher("storage"), new AnyClientMatcher()),
+        policy(2L, PERMIT, new AnyClientMatcher(), new ByIdClientMatcher("origin")));
+
+    assertThat(applicablePolicyId(policies), is(Optional.empty()));
+  }
+
+  @Test
+  public void customMatchersAreEvaluated() {
+    ClientMatcher custom = new ClientMatcher() {
+      @Override
+      public boolean matchesClient(ClientDetails client) {
+        return client.getClientId().startsWith("dest");
+      }
+
+      @Override
+      public int rank() {
+        return 3;
+      }
+    };
+
+    List<TokenExchangePolicy> policies =
+        Arrays.asList(policy(1L, PERMIT, new ByIdClientMatcher("origin"), new AnyClientMatcher()),
+            policy(2L, DENY, new AnyClientMatcher(), custom));
+
+    assertThat(applicablePolicyId(policies), is(Optional.of(2L)));
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.jwk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mitre.jose.keystore.JWKSetKeyStore;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+
+import it.infn.mw.iam.config.IamProperties;
+import it.infn.mw.iam.core.jwk.IamJWTSigningService;
+import it.infn.mw.iam.core.jwk.JWKKeystoreRolloverTask;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JWKKeystoreRolloverTaskTests implements JWKTestSupport {
+
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+  private static final long ACTIVATION_DELAY_SECS = 3600;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock
+  Clock clock;
+
+  File keystoreFile;
+  IamJWTSigningService signingService;
+  JWKKeystoreRolloverTask task;
+
+  private void writeKeystore(List<JWK> keys) throws IOException {
+    Files.write(keystoreFile.toPath(),
+        new JWKSet(keys).toString(false).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private List<JWK> ks1Keys() throws IOException, ParseException {
+    return new ArrayList<>(loadJWKSet(KS1_LOCATION).getKeys());
+  }
+
+  @Before
+  public void setup() throws IOException, ParseException {
+    keystoreFile = folder.newFile("keystore.jwks");
+    writeKeystore(ks1Keys());
+
+    IamProperties properties = new IamProperties();
+    properties.getJwk().setKeystoreLocation("file:" + keystoreFile.getAbsolutePath());
+    properties.getJwk().getRollover().setActivationDelaySecs(ACTIVATION_DELAY_SECS);
+
+    signingService = new IamJWTSigningService(new JWKSetKeyStore(new JWKSet(ks1Keys())));
+    task = new JWKKeystoreRolloverTask(properties, signingService, new DefaultResourceLoader(),
+        clock);
+
+    when(clock.instant()).thenReturn(NOW);
+    task.run();
+  }
+
+  @Test
+  public void unchangedKeystoreIsNotReloaded() {
+    Object keys = signingService.getAllPublicKeys();
+    task.run();
+    assertThat(signingService.getAllPublicKeys() == keys, is(true));
+  }
+
+  @Test
+  public void newKeyIsPublishedAndActivatedAfterDelay()
+      throws IOException, ParseException, JOSEException {
+
+    List<JWK> keys = ks1Keys();
+    keys.add(new ECKeyGenerator(Curve.P_256).keyID("next").generate());
+    writeKeystore(keys);
+
+    task.run();
+
+    assertThat(task.getNextKeyId(), is("next"));
+    assertThat(signingService.getDefaultSignerKeyId(), is("iam1"));
+    assertThat(signingService.getAllPublicKeys().keySet(), contains("iam1", "iam2", "next"));
+
+    when(clock.instant()).thenReturn(NOW.plusSeconds(ACTIVATION_DELAY_SECS - 1));
+    task.run();
+    assertThat(signingService.getDefaultSignerKeyId(), is("iam1"));
+
+    when(clock.instant()).thenReturn(NOW.plusSeconds(ACTIVATION_DELAY_SECS));
+    task.run();
+
+    assertThat(task.getNextKeyId(), nullValue());
+    assertThat(signingService.getDefaultSignerKeyId(), is("next"));
+    assertThat(signingService.getAllPublicKeys().keySet(), contains("next", "iam1", "iam2"));
+  }
+
+  @Test
+  public void keyRemovedBeforeActivationIsNotActivated()
+      throws IOException, ParseException, JOSEException {
+
+    List<JWK> keys = ks1Keys();
+    keys.add(new ECKeyGenerator(Curve.P_256).keyID("next").generate());
+    writeKeystore(keys);
+    task.run();
+
+    writeKeystore(ks1Keys());
+    task.run();
+
+    assertThat(task.getNextKeyId(), nullValue());
+    assertThat(signingService.getAllPublicKeys().keySet(), contains("iam1", "iam2"));
+  }
+
+  @Test
+  public void invalidKeystoreIsIgnored() throws IOException {
+
+    Files.write(keystoreFile.toPath(), "{ not a keystore".getBytes(StandardCharsets.UTF_8));
+    task.run();
+
+    assertThat(signingService.getDefaultSignerKeyId(), is("iam1"));
+    assertThat(signingService.getAllPublicKeys().keySet(), contains("iam1", "iam2"));
+  }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.jwk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mitre.jwt.signer.service.JWTSigningAndValidationService;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.response.DefaultResponseCreator;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import it.infn.mw.iam.config.crypto.JWKSetCacheProperties;
+import it.infn.mw.iam.core.jwk.IamJWKSetCacheService;
+import it.infn.mw.iam.test.util.oidc.MockRestTemplateFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JWKSetCacheRefreshTests {
+
+  private static final String JWK_URL = "https://iam.example/jwk";
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  @Mock
+  Clock clock;
+
+  Instant now = NOW;
+
+  static RSAKey k1;
+  static RSAKey k2;
+  static RSAKey k3;
+
+  MockRestTemplateFactory rtf;
+  IamJWKSetCacheService service;
+
+  @Before
+  public void setup() throws JOSEException {
+    if (k1 == null) {
+      k1 = new RSAKeyGenerator(2048).keyID("k1").generate();
+      k2 = new RSAKeyGenerator(2048).keyID("k2").generate();
+      k3 = new RSAKeyGenerator(2048).keyID("k3").generate();
+    }
+
+    when(clock.millis()).thenAnswer(i -> now.toEpochMilli());
+
+    JWKSetCacheProperties properties = new JWKSetCacheProperties();
+    properties.setRefreshIntervalSecs(3600);
+    properties.setMinRefreshIntervalSecs(60);
+    properties.setMaxStalenessSecs(86400);
+
+    rtf = new MockRestTemplateFactory();
+    service = new IamJWKSetCacheService(rtf, properties, clock,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  @After
+  public void teardown() {
+    service.shutdown();
+  }
+
+  private void advanceSecs(long secs) {
+    now = now.plusSeconds(secs);
+  }
+
+  private void expectFetch(DefaultResponseCreator response) {
+    rtf.getMockServer().expect(requestTo(JWK_URL)).andRespond(response);
+  }
+
+  private DefaultResponseCreator jwkSet(String cacheControl, JWK... keys) {
+    DefaultResponseCreator response = withSuccess(
+        new JWKSet(Arrays.asList(keys)).toPublicJWKSet().toString(),
+        MediaType.APPLICATION_JSON);
+
+    if (cacheControl != null) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.setCacheControl(cacheControl);
+      response.headers(headers);
+    }
+
+    return response;
+  }
+
+  private void verifyFetches() {
+    rtf.getMockServer().verify();
+    rtf.resetTemplate();
+  }
+
+  private SignedJWT signedWith(RSAKey key) throws JOSEException {
+    SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID())
+      .build(), new JWTClaimsSet.Builder().subject("test").build());
+    jwt.sign(new RSASSASigner(key));
+    return jwt;
+  }
+
+  @Test
+  public void testRefreshHonoursCacheControlMaxAge() throws JOSEException {
+    expectFetch(jwkSet("public, max-age=300", k1));
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k1)), is(true));
+    verifyFetches();
+
+    advanceSecs(299);
+    assertThat(service.getValidator(JWK_URL), notNullValue());
+    verifyFetches();
+
+    advanceSecs(1);
+    expectFetch(jwkSet(null, k2));
+    JWTSigningAndValidationService validator = service.getValidator(JWK_URL);
+    verifyFetches();
+
+    // The caller that triggered the refresh is still served the cached copy
+    assertThat(validator.getAllPublicKeys().containsKey("k1"), is(true));
+    assertThat(service.getValidator(JWK_URL).getAllPublicKeys().containsKey("k2"), is(true));
+  }
+
+  @Test
+  public void testNoStoreIsBoundedByMinimumRefreshInterval() {
+    expectFetch(jwkSet("no-store", k1));
+    assertThat(service.getValidator(JWK_URL), notNullValue());
+    verifyFetches();
+
+    advanceSecs(59);
+    assertThat(service.getValidator(JWK_URL), notNullValue());
+    verifyFetches();
+
+    advanceSecs(1);
+    expectFetch(jwkSet(null, k1));
+    assertThat(service.getValidator(JWK_URL), notNullValue());
+    verifyFetches();
+  }
+
+  @Test
+  public void testStaleCopyIsServedOnRefreshErrorsUntilMaxStaleness() throws JOSEException {
+    expectFetch(jwkSet(null, k1));
+    assertThat(service.getValidator(JWK_URL), notNullValue());
+    verifyFetches();
+
+    advanceSecs(3600);
+    expectFetch(withServerError());
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k1)), is(true));
+    verifyFetches();
+
+    // Failed refreshes are retried at most once per minimum refresh interval
+    advanceSecs(30);
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k1)), is(true));
+    verifyFetches();
+
+    advanceSecs(30);
+    expectFetch(withServerError());
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k1)), is(true));
+    verifyFetches();
+
+    advanceSecs(86400);
+    expectFetch(withServerError());
+    assertThat(service.getValidator(JWK_URL), nullValue());
+    verifyFetches();
+  }
+
+  @Test
+  public void testUnknownKeyIdTriggersRateLimitedRefresh() throws JOSEException {
+    expectFetch(jwkSet(null, k1));
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k2)), is(false));
+    verifyFetches();
+
+    advanceSecs(60);
+    expectFetch(jwkSet(null, k1, k2));
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k2)), is(true));
+    verifyFetches();
+
+    assertThat(service.getValidator(JWK_URL).validateSignature(signedWith(k3)), is(false));
+    verifyFetches();
+  }
+}
@@ -19,11 +19,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.text.ParseException;
+import java.util.Arrays;
 
 import org.mitre.jose.keystore.JWKSetKeyStore;
 
+import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
 
 import it.infn.mw.iam.core.web.jwk.IamJWKSetPublishingEndpoint;
 
@@ -52,4 +59,21 @@ public interface JWKTestSupport {
     return new JWKSetKeyStore(loadJWKSet(location));
   }
 
+  /**
+   * Generates an Ed25519 key with the JDK provider, as the nimbus generator requires Tink; the raw
+   * key bytes are the last 32 bytes of the X.509 and PKCS#8 encodings
+   */
+  default OctetKeyPair generateEd25519Key(String keyId) throws GeneralSecurityException {
+    KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+
+    byte[] x = keyPair.getPublic().getEncoded();
+    byte[] d = keyPair.getPrivate().getEncoded();
+
+    return new OctetKeyPair.Builder(Curve.Ed25519,
+        Base64URL.encode(Arrays.copyOfRange(x, x.length - 32, x.length)))
+          .d(Base64URL.encode(Arrays.copyOfRange(d, d.length - 32, d.length)))
+          .keyID(keyId)
+          .build();
+  }
+
 }
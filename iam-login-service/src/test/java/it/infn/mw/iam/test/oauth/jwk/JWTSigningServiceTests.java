@@ -20,12 +20,17 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.contains;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +45,10 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSObject.State;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
@@ -252,4 +261,103 @@ public class JWTSigningServiceTests implements JWKTestSupport {
 
   }
 
+  private SignedJWT signWithDefaultKey(IamJWTSigningService signer) {
+    JWSAlgorithm algorithm = Optional.ofNullable(signer.getDefaultSigningAlgorithm())
+      .orElse(JWSAlgorithm.RS256);
+    JWSHeader header =
+        new JWSHeader.Builder(algorithm).keyID(signer.getDefaultSignerKeyId()).build();
+    SignedJWT signedJwt =
+        new SignedJWT(header, new JWTClaimsSet.Builder().subject("sub").build());
+    signer.signJwt(signedJwt);
+    return signedJwt;
+  }
+
+  @Test
+  public void ecAndEdDSASignatureAndVerificationWorks()
+      throws IOException, ParseException, JOSEException, GeneralSecurityException {
+
+    List<JWK> keys = new ArrayList<>(loadJWKSet(KS1_LOCATION).getKeys());
+    keys.add(new ECKeyGenerator(Curve.P_256).keyID("ec").generate());
+    keys.add(generateEd25519Key("ed"));
+
+    service = new IamJWTSigningService(new JWKSetKeyStore(new JWKSet(keys)));
+    assertThat(service.getAllSigningAlgsSupported(),
+        hasItems(JWSAlgorithm.RS256, JWSAlgorithm.ES256, JWSAlgorithm.EdDSA));
+
+    for (String keyId : List.of("ec", "ed")) {
+      service.activateSigningKey(keyId);
+      SignedJWT signedJwt = signWithDefaultKey(service);
+
+      assertThat(signedJwt.getState(), is(State.SIGNED));
+      assertThat(signedJwt.getHeader().getKeyID(), is(keyId));
+      assertThat(service.validateSignature(signedJwt), is(true));
+    }
+
+    assertThat(service.getDefaultSigningAlgorithm(), is(JWSAlgorithm.EdDSA));
+    assertThat(service.getSignerKeyId(JWSAlgorithm.ES256), is("ec"));
+    assertThat(service.getSignerKeyId(JWSAlgorithm.RS256), is("iam1"));
+    assertThat(service.getSignerKeyId(JWSAlgorithm.EdDSA), is("ed"));
+  }
+
+  @Test
+  public void updatedKeysArePublishedAndActivatedOnDemand()
+      throws IOException, ParseException, JOSEException {
+
+    service = new IamJWTSigningService(loadKeystore(KS1_LOCATION));
+    SignedJWT oldToken = signWithDefaultKey(service);
+
+    List<JWK> keys = new ArrayList<>(loadJWKSet(KS1_LOCATION).getKeys());
+    keys.add(new ECKeyGenerator(Curve.P_256).keyID("next").generate());
+    service.updateKeys(keys);
+
+    assertThat(service.getDefaultSignerKeyId(), is("iam1"));
+    assertThat(service.getAllPublicKeys().keySet(), contains("iam1", "iam2", "next"));
+
+    service.activateSigningKey("next");
+
+    assertThat(service.getDefaultSignerKeyId(), is("next"));
+    assertThat(service.getDefaultSigningAlgorithm(), is(JWSAlgorithm.ES256));
+    assertThat(service.getAllPublicKeys().keySet(), contains("next", "iam1", "iam2"));
+    assertThat(service.validateSignature(signWithDefaultKey(service)), is(true));
+    assertThat(service.validateSignature(oldToken), is(true));
+  }
+
+  @Test
+  public void removingTheSigningKeyFallsBackToAnotherKey()
+      throws IOException, ParseException, JOSEException {
+
+    service = new IamJWTSigningService(loadKeystore(KS1_LOCATION));
+    SignedJWT oldToken = signWithDefaultKey(service);
+
+    service.updateKeys(List.of(loadJWKSet(KS1_LOCATION).getKeyByKeyId("iam2")));
+
+    assertThat(service.getDefaultSignerKeyId(), is("iam2"));
+    assertThat(service.getAllPublicKeys().keySet(), contains("iam2"));
+    assertThat(service.validateSignature(oldToken), is(false));
+  }
+
+  @Test(expected = JOSEException.class)
+  public void keysWithoutSignersAreNotAccepted() throws IOException, ParseException, JOSEException {
+
+    service = new IamJWTSigningService(loadKeystore(KS1_LOCATION));
+    try {
+      service.updateKeys(loadJWKSet(KS1_LOCATION).toPublicJWKSet().getKeys());
+    } finally {
+      assertThat(service.getDefaultSignerKeyId(), is("iam1"));
+      assertThat(service.getAllPublicKeys(), aMapWithSize(2));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void activatingUnknownKeyIsNotAllowed() throws IOException, ParseException {
+
+    service = new IamJWTSigningService(loadKeystore(KS1_LOCATION));
+    try {
+      service.activateSigningKey("unknown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), is("Signer not found for key unknown"));
+      throw e;
+    }
+  }
+
 }
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.scope;
+
+import static it.infn.mw.iam.core.oauth.scope.matchers.RegexpScopeMatcher.regexpMatcher;
+import static it.infn.mw.iam.core.oauth.scope.matchers.StringEqualsScopeMatcher.stringEqualsMatcher;
+import static it.infn.mw.iam.core.oauth.scope.matchers.StructuredPathScopeMatcher.structuredPathMatcher;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import it.infn.mw.iam.core.oauth.scope.matchers.DefaultScopeMatcherRegistry;
+import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcher;
+import it.infn.mw.iam.core.oauth.scope.matchers.ScopeMatcherIndex;
+
+public class ScopeMatcherIndexTests {
+
+  ScopeMatcher readRoot = structuredPathMatcher("storage.read", "/");
+  ScopeMatcher readPath = structuredPathMatcher("storage.read", "/path");
+  ScopeMatcher wlcg = regexpMatcher("^wlcg(:1.0)?$");
+  ScopeMatcher openid = stringEqualsMatcher("openid");
+
+  ScopeMatcherIndex index = ScopeMatcherIndex.of(Sets.newHashSet(readRoot, readPath, wlcg, openid));
+
+  @Test
+  public void plainScopesAreMatchedExactly() {
+    assertThat(index.findMatcher("openid"), is(Optional.of(openid)));
+    assertThat(index.matches("openid2"), is(false));
+    assertThat(index.matches("profile"), is(false));
+  }
+
+  @Test
+  public void mostSpecificStructuredMatcherIsReturned() {
+    assertThat(index.findMatcher("storage.read:/"), is(Optional.of(readRoot)));
+    assertThat(index.findMatcher("storage.read:/other"), is(Optional.of(readRoot)));
+    assertThat(index.findMatcher("storage.read:/path"), is(Optional.of(readPath)));
+    assertThat(index.findMatcher("storage.read:/path/sub"), is(Optional.of(readPath)));
+    assertThat(index.matches("storage.read"), is(false));
+    assertThat(index.matches("storage.read:path"), is(false));
+    assertThat(index.matches("storageXread:/"), is(false));
+    assertThat(index.matches("storage.write:/"), is(false));
+  }
+
+  @Test
+  public void indexAgreesWithMatchers() {
+    String[] scopes = {"storage.read:/", "storage.read:/pa", "storage.read:/path#x", "wlcg",
+        "wlcg:1.0", "wlcg:2.0", "openid", "storage.read:", ""};
+
+    for (String s : scopes) {
+      boolean expected =
+          readRoot.matches(s) || readPath.matches(s) || wlcg.matches(s) || openid.matches(s);
+      assertThat(s, index.matches(s), is(expected));
+    }
+  }
+
+  @Test
+  public void otherMatchersAreEvaluated() {
+    assertThat(index.findMatcher("wlcg:1.0"), is(Optional.of(wlcg)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void relativePathReferencesAreRejected() {
+    index.matches("storage.read:/path/../other");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullIsNotAllowed() {
+    index.matches(null);
+  }
+
+  @Test
+  public void registryFallsBackToPlainMatchers() {
+    DefaultScopeMatcherRegistry registry =
+        new DefaultScopeMatcherRegistry(Sets.newHashSet(readRoot, readPath, wlcg));
+
+    assertThat(registry.findMatcherForScope("storage.read:/path/sub"), is(readPath));
+    assertThat(registry.findMatcherForScope("wlcg"), is(wlcg));
+    assertThat(registry.findMatcherForScope("openid"), is(openid));
+  }
+}
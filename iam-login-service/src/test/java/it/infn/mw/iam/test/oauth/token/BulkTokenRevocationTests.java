@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.token;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.ACCESS;
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.REFRESH;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.oauth2.model.ClientDetailsEntity;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.audit.events.account.AccountTokensRevokedEvent;
+import it.infn.mw.iam.audit.events.client.ClientTokensRevokedEvent;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.core.oauth.token.DefaultBulkTokenRevocationService;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
+import it.infn.mw.iam.core.oauth.token.TokenRevocationListener;
+import it.infn.mw.iam.core.oauth.token.TokenRevocationSummary;
+import it.infn.mw.iam.persistence.model.IamAccount;
+
+public class BulkTokenRevocationTests {
+
+  static final long CLIENT_ID = 1000;
+  static final String CLIENT = "client";
+
+  DriverManagerDataSource dataSource;
+  JdbcTemplate jdbcTemplate;
+
+  List<Object> events = new ArrayList<>();
+  List<Set<String>> revokedJtis = new ArrayList<>();
+  TaskProperties taskProperties = new TaskProperties();
+  StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+  DefaultBulkTokenRevocationService service;
+
+  long nextId = 1;
+
+  @Before
+  public void setup() {
+    dataSource = new DriverManagerDataSource("jdbc:h2:mem:bulk_revocation;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+
+    jdbcTemplate.execute("CREATE TABLE access_token (id BIGINT PRIMARY KEY, "
+        + "token_value VARCHAR(4096), client_id BIGINT, user_id VARCHAR(256), "
+        + "auth_holder_id BIGINT, expiration TIMESTAMP)");
+    jdbcTemplate.execute("CREATE TABLE refresh_token (id BIGINT PRIMARY KEY, "
+        + "token_value VARCHAR(4096), client_id BIGINT, user_id VARCHAR(256), "
+        + "auth_holder_id BIGINT, expiration TIMESTAMP)");
+    jdbcTemplate.execute(
+        "CREATE TABLE client_details (id BIGINT PRIMARY KEY, client_id VARCHAR(256))");
+    jdbcTemplate.update("INSERT INTO client_details VALUES (?, ?)", CLIENT_ID, CLIENT);
+    jdbcTemplate.execute("CREATE TABLE token_scope (owner_id BIGINT, scope VARCHAR(256))");
+    jdbcTemplate.execute(
+        "CREATE TABLE access_token_permissions (access_token_id BIGINT, permission_id BIGINT)");
+    jdbcTemplate.execute(
+        "CREATE TABLE authentication_holder (id BIGINT PRIMARY KEY, user_auth_id BIGINT)");
+    jdbcTemplate.execute("CREATE TABLE authentication_holder_scope (owner_id BIGINT, "
+        + "scope VARCHAR(2048))");
+    for (String table : new String[] {"authentication_holder_authority",
+        "authentication_holder_resource_id", "authentication_holder_response_type",
+        "authentication_holder_extension", "authentication_holder_request_parameter",
+        "saved_user_auth_authority", "saved_user_auth_info", "approved_site_scope"}) {
+      jdbcTemplate.execute("CREATE TABLE " + table + " (owner_id BIGINT)");
+    }
+    jdbcTemplate
+      .execute("CREATE TABLE saved_user_auth (id BIGINT PRIMARY KEY, name VARCHAR(1024))");
+    jdbcTemplate.execute(
+        "CREATE TABLE authorization_code (id BIGINT PRIMARY KEY, auth_holder_id BIGINT)");
+    jdbcTemplate
+      .execute("CREATE TABLE device_code (id BIGINT PRIMARY KEY, auth_holder_id BIGINT)");
+    jdbcTemplate.execute("CREATE TABLE approved_site (id BIGINT PRIMARY KEY, "
+        + "user_id VARCHAR(256), client_id VARCHAR(256))");
+
+    beanFactory.addBean("listener", (TokenRevocationListener) revokedJtis::add);
+
+    service = newService(newCounters());
+  }
+
+  private TokenCounters newCounters() {
+    return new TokenCounters(jdbcTemplate, taskProperties, Clock.systemUTC(),
+        new SimpleMeterRegistry());
+  }
+
+  private DefaultBulkTokenRevocationService newService(TokenCounters counters) {
+    return new DefaultBulkTokenRevocationService(jdbcTemplate, events::add,
+        beanFactory.getBeanProvider(TokenRevocationListener.class), counters);
+  }
+
+  @After
+  public void teardown() {
+    jdbcTemplate.execute("DROP ALL OBJECTS");
+  }
+
+  private static String tokenValue(String jti) {
+    return new PlainJWT(new JWTClaimsSet.Builder().jwtID(jti).build()).serialize();
+  }
+
+  private long holder(String username, String... scopes) {
+    long userAuthId = nextId++;
+    jdbcTemplate.update("INSERT INTO saved_user_auth VALUES (?, ?)", userAuthId, username);
+    jdbcTemplate.update("INSERT INTO saved_user_auth_authority VALUES (?)", userAuthId);
+
+    long holderId = nextId++;
+    jdbcTemplate.update("INSERT INTO authentication_holder VALUES (?, ?)", holderId, userAuthId);
+    jdbcTemplate.update("INSERT INTO authentication_holder_authority VALUES (?)", holderId);
+    for (String scope : scopes) {
+      jdbcTemplate.update("INSERT INTO authentication_holder_scope VALUES (?, ?)", holderId,
+          scope);
+    }
+    return holderId;
+  }
+
+  private void accessToken(String jti, String username, long holderId) {
+    long id = nextId++;
+    jdbcTemplate.update("INSERT INTO access_token VALUES (?, ?, ?, ?, ?, ?)", id, tokenValue(jti),
+        CLIENT_ID, username, holderId, Timestamp.from(Instant.now().plusSeconds(3600)));
+    jdbcTemplate.update("INSERT INTO token_scope VALUES (?, 'openid')", id);
+    jdbcTemplate.update("INSERT INTO access_token_permissions VALUES (?, 1)", id);
+  }
+
+  private void refreshToken(String jti, String username, long holderId) {
+    jdbcTemplate.update("INSERT INTO refresh_token VALUES (?, ?, ?, ?, ?, NULL)", nextId++,
+        tokenValue(jti), CLIENT_ID, username, holderId);
+  }
+
+  private void approvedSite(String username, String clientId) {
+    long id = nextId++;
+    jdbcTemplate.update("INSERT INTO approved_site VALUES (?, ?, ?)", id, username, clientId);
+    jdbcTemplate.update("INSERT INTO approved_site_scope VALUES (?)", id);
+  }
+
+  private long count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+  }
+
+  private static IamAccount account(String username) {
+    IamAccount account = new IamAccount();
+    account.setUsername(username);
+    return account;
+  }
+
+  private static ClientDetailsEntity client() {
+    ClientDetailsEntity client = new ClientDetailsEntity();
+    client.setId(CLIENT_ID);
+    client.setClientId(CLIENT);
+    return client;
+  }
+
+  @Test
+  public void accountTokensAreRevoked() {
+    long testHolder = holder("test");
+    accessToken("at1", "test", testHolder);
+    accessToken("at2", "test", testHolder);
+    refreshToken("rt1", "test", testHolder);
+
+    long codeHolder = holder("test");
+    accessToken("at3", "test", codeHolder);
+    jdbcTemplate.update("INSERT INTO authorization_code VALUES (?, ?)", nextId++, codeHolder);
+
+    long otherHolder = holder("other");
+    accessToken("at4", "other", otherHolder);
+    refreshToken("rt2", "other", otherHolder);
+
+    approvedSite("test", CLIENT);
+    approvedSite("other", CLIENT);
+
+    TokenRevocationSummary summary = service.revokeTokensForAccount(account("test"));
+
+    assertThat(summary.getAccessTokens(), is(3));
+    assertThat(summary.getRefreshTokens(), is(1));
+    assertThat(summary.getAuthenticationHolders(), is(1));
+    assertThat(summary.getApprovedSites(), is(1));
+
+    assertThat(count("access_token"), is(1L));
+    assertThat(count("refresh_token"), is(1L));
+    assertThat(count("token_scope"), is(1L));
+    assertThat(count("access_token_permissions"), is(1L));
+    assertThat(count("authentication_holder"), is(2L));
+    assertThat(count("authentication_holder_authority"), is(2L));
+    assertThat(count("saved_user_auth"), is(2L));
+    assertThat(count("saved_user_auth_authority"), is(2L));
+    assertThat(count("approved_site"), is(1L));
+    assertThat(count("approved_site_scope"), is(1L));
+
+    assertThat(revokedJtis, hasSize(1));
+    assertThat(revokedJtis.get(0), containsInAnyOrder("at1", "at2", "at3", "rt1"));
+
+    assertThat(events, hasSize(1));
+    assertThat(events.get(0), instanceOf(AccountTokensRevokedEvent.class));
+    AccountTokensRevokedEvent event = (AccountTokensRevokedEvent) events.get(0);
+    assertThat(event.getRevokedAccessTokens(), is(3));
+    assertThat(event.getRevokedRefreshTokens(), is(1));
+  }
+
+  @Test
+  public void clientTokensAreRevokedExceptRegistrationTokens() {
+    long userHolder = holder("test", "openid");
+    accessToken("at1", "test", userHolder);
+    refreshToken("rt1", "test", userHolder);
+
+    long registrationHolder = holder("client", "registration-token");
+    accessToken("rat", null, registrationHolder);
+
+    approvedSite("test", CLIENT);
+    approvedSite("test", "another-client");
+
+    TokenRevocationSummary summary = service.revokeTokensForClient(client());
+
+    assertThat(summary.getAccessTokens(), is(1));
+    assertThat(summary.getRefreshTokens(), is(1));
+    assertThat(summary.getAuthenticationHolders(), is(1));
+    assertThat(summary.getApprovedSites(), is(1));
+
+    assertThat(count("access_token"), is(1L));
+    assertThat(count("refresh_token"), is(0L));
+    assertThat(count("authentication_holder"), is(1L));
+    assertThat(count("authentication_holder_scope"), is(1L));
+    assertThat(count("approved_site"), is(1L));
+
+    assertThat(revokedJtis.get(0), containsInAnyOrder("at1", "rt1"));
+    assertThat(events.get(0), instanceOf(ClientTokensRevokedEvent.class));
+  }
+
+  @Test
+  public void nothingToRevokeIsNotAudited() {
+    long otherHolder = holder("other");
+    accessToken("at1", "other", otherHolder);
+
+    TokenRevocationSummary summary = service.revokeTokensForAccount(account("test"));
+
+    assertThat(summary.isEmpty(), is(true));
+    assertThat(count("access_token"), is(1L));
+    assertThat(revokedJtis, empty());
+    assertThat(events, empty());
+  }
+
+  @Test
+  public void revokedTokensAreRemovedFromTokenCounters() {
+    taskProperties.getTokenCounters().setEnabled(true);
+    TokenCounters counters = newCounters();
+    service = newService(counters);
+
+    long testHolder = holder("test");
+    accessToken("at1", "test", testHolder);
+    accessToken("at2", "test", testHolder);
+    refreshToken("rt1", "test", testHolder);
+
+    long otherHolder = holder("other");
+    accessToken("at3", "other", otherHolder);
+
+    counters.recount();
+    service.revokeTokensForAccount(account("test"));
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(1)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(0)));
+    assertThat(counters.countForUser(ACCESS, "other"), is(OptionalLong.of(1)));
+    assertThat(counters.countForClient(ACCESS, CLIENT), is(OptionalLong.of(1)));
+    assertThat(counters.count(REFRESH), is(OptionalLong.of(0)));
+
+    service.revokeTokensForClient(client());
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(0)));
+    assertThat(counters.countForUser(ACCESS, "other"), is(OptionalLong.of(0)));
+    assertThat(counters.countForClient(ACCESS, CLIENT), is(OptionalLong.of(0)));
+  }
+}
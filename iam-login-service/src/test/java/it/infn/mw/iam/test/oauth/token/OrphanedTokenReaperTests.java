@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.token;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.core.oauth.token.OrphanedTokenReaper;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
+import it.infn.mw.iam.core.task.ManagedTask;
+import it.infn.mw.iam.core.task.TaskGroup;
+import it.infn.mw.iam.core.task.TaskLease;
+
+public class OrphanedTokenReaperTests {
+
+  DriverManagerDataSource dataSource;
+  JdbcTemplate jdbcTemplate;
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  TaskProperties properties = new TaskProperties();
+
+  OrphanedTokenReaper reaper;
+
+  long nextId = 1;
+
+  @Before
+  public void setup() {
+    dataSource = new DriverManagerDataSource("jdbc:h2:mem:orphaned_tokens;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+
+    jdbcTemplate
+      .execute("CREATE TABLE iam_account (id BIGINT PRIMARY KEY, username VARCHAR(128))");
+    jdbcTemplate
+      .execute("CREATE TABLE saved_user_auth (id BIGINT PRIMARY KEY, name VARCHAR(1024))");
+    jdbcTemplate.execute(
+        "CREATE TABLE authentication_holder (id BIGINT PRIMARY KEY, user_auth_id BIGINT)");
+    jdbcTemplate
+      .execute("CREATE TABLE access_token (id BIGINT PRIMARY KEY, auth_holder_id BIGINT)");
+    jdbcTemplate
+      .execute("CREATE TABLE refresh_token (id BIGINT PRIMARY KEY, auth_holder_id BIGINT)");
+    jdbcTemplate.execute("CREATE TABLE token_scope (owner_id BIGINT, scope VARCHAR(256))");
+    jdbcTemplate.execute(
+        "CREATE TABLE access_token_permissions (access_token_id BIGINT, permission_id BIGINT)");
+    jdbcTemplate.execute(
+        "CREATE TABLE iam_task_checkpoint (task_name VARCHAR(128) PRIMARY KEY, position BIGINT)");
+
+    properties.getOrphanedTokenReaper().setScanSize(3);
+    properties.getOrphanedTokenReaper().setChunkSize(2);
+
+    reaper = newReaper();
+  }
+
+  private OrphanedTokenReaper newReaper() {
+    return new OrphanedTokenReaper(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+        properties, Clock.systemUTC(), registry,
+        new TokenCounters(jdbcTemplate, properties, Clock.systemUTC(), registry));
+  }
+
+  @After
+  public void teardown() {
+    jdbcTemplate.execute("DROP ALL OBJECTS");
+  }
+
+  private void account(String username) {
+    jdbcTemplate.update("INSERT INTO iam_account VALUES (?, ?)", nextId++, username);
+  }
+
+  private long holder(String username, int accessTokens, int refreshTokens) {
+    long userAuthId = 0;
+
+    if (username != null) {
+      userAuthId = nextId++;
+      jdbcTemplate.update("INSERT INTO saved_user_auth VALUES (?, ?)", userAuthId, username);
+    }
+
+    long holderId = nextId++;
+    jdbcTemplate.update("INSERT INTO authentication_holder VALUES (?, ?)", holderId,
+        username == null ? null : userAuthId);
+
+    for (int i = 0; i < accessTokens; i++) {
+      long tokenId = nextId++;
+      jdbcTemplate.update("INSERT INTO access_token VALUES (?, ?)", tokenId, holderId);
+      jdbcTemplate.update("INSERT INTO token_scope VALUES (?, 'openid')", tokenId);
+    }
+
+    for (int i = 0; i < refreshTokens; i++) {
+      jdbcTemplate.update("INSERT INTO refresh_token VALUES (?, ?)", nextId++, holderId);
+    }
+
+    return holderId;
+  }
+
+  private long count(String table, long holderId) {
+    return jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM " + table + " WHERE auth_holder_id = ?", Long.class, holderId);
+  }
+
+  @Test
+  public void orphanedTokensAreDeleted() {
+    account("test");
+
+    long[] owned = new long[3];
+    long[] orphaned = new long[3];
+
+    for (int i = 0; i < 3; i++) {
+      owned[i] = holder("test", 2, 1);
+      orphaned[i] = holder("deleted", 3, 2);
+    }
+
+    long clientHolder = holder(null, 1, 0);
+
+    reaper.run();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(count("access_token", owned[i]), is(2L));
+      assertThat(count("refresh_token", owned[i]), is(1L));
+      assertThat(count("access_token", orphaned[i]), is(0L));
+      assertThat(count("refresh_token", orphaned[i]), is(0L));
+    }
+
+    assertThat(count("access_token", clientHolder), is(1L));
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM token_scope", Long.class),
+        is(7L));
+
+    assertThat(registry.get(OrphanedTokenReaper.DELETED_TOKENS_METRIC)
+      .tag("type", "access")
+      .counter()
+      .count(), is(9.0));
+    assertThat(registry.get(OrphanedTokenReaper.DELETED_TOKENS_METRIC)
+      .tag("type", "refresh")
+      .counter()
+      .count(), is(6.0));
+    assertThat(registry.get(OrphanedTokenReaper.SCANNED_HOLDERS_METRIC).counter().count(),
+        is(7.0));
+  }
+
+  @Test
+  public void walkProceedsInWindowsAndStartsOver() {
+    long first = holder("deleted", 1, 0);
+    holder("deleted", 1, 0);
+    holder("deleted", 1, 0);
+    long fourth = holder("deleted", 1, 0);
+
+    assertThat(reaper.step(), is(3L));
+    assertThat(count("access_token", first), is(0L));
+    assertThat(count("access_token", fourth), is(1L));
+
+    assertThat(reaper.step(), is(1L));
+    assertThat(reaper.getCursor(), is(fourth));
+
+    assertThat(reaper.step(), is(-1L));
+    assertThat(reaper.getCursor(), is(0L));
+  }
+
+  @Test
+  public void walkResumesOnAnotherInstance() {
+    holder("deleted", 1, 0);
+    holder("deleted", 1, 0);
+    long third = holder("deleted", 1, 0);
+    long fourth = holder("deleted", 1, 0);
+
+    assertThat(reaper.step(), is(3L));
+    assertThat(reaper.getCursor(), is(third));
+
+    OrphanedTokenReaper other = newReaper();
+    assertThat(other.getCursor(), is(third));
+    assertThat(other.step(), is(1L));
+    assertThat(count("access_token", fourth), is(0L));
+    assertThat(reaper.getCursor(), is(fourth));
+  }
+
+  @Test
+  public void reapedHoldersAreNotFoundAgain() {
+    holder("deleted", 2, 1);
+    holder("deleted", 0, 0);
+    holder("deleted", 1, 0);
+
+    reaper.run();
+    reaper.run();
+
+    assertThat(registry.get(OrphanedTokenReaper.ORPHANED_HOLDERS_METRIC).counter().count(),
+        is(2.0));
+    assertThat(registry.get(OrphanedTokenReaper.SCANNED_HOLDERS_METRIC).counter().count(),
+        is(6.0));
+  }
+
+  @Test
+  public void runStopsWhenLeaseIsLost() {
+    long first = holder("deleted", 3, 0);
+    long second = holder("deleted", 1, 0);
+
+    TaskLease lease = mock(TaskLease.class);
+    // Valid for the run loop and the first chunk, lost before the second chunk
+    when(lease.isValid()).thenReturn(true, true, false);
+
+    ManagedTask task = new ManagedTask(OrphanedTokenReaper.TASK_NAME, TaskGroup.HOUSEKEEPING,
+        "test", Duration.ZERO, reaper, (name, hold) -> Optional.of(lease), Clock.systemUTC(),
+        registry);
+
+    task.run();
+
+    assertThat(count("access_token", first), is(1L));
+    assertThat(count("access_token", second), is(1L));
+    assertThat(reaper.getCursor(), is(0L));
+
+    reaper.run();
+
+    assertThat(count("access_token", first), is(0L));
+    assertThat(count("access_token", second), is(0L));
+  }
+}
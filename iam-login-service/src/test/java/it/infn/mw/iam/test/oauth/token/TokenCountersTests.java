@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.oauth.token;
+
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.ACCESS;
+import static it.infn.mw.iam.core.oauth.token.TokenCounters.TokenType.REFRESH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.OptionalLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.config.task.TaskProperties;
+import it.infn.mw.iam.core.oauth.token.TokenCounters;
+
+public class TokenCountersTests {
+
+  static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+  static final Date VALID = Date.from(NOW.plusSeconds(3600));
+  static final Date EXPIRED = Date.from(NOW.minusSeconds(60));
+
+  DriverManagerDataSource dataSource;
+  JdbcTemplate jdbcTemplate;
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  TaskProperties properties = new TaskProperties();
+  Clock clock = Clock.fixed(NOW, ZoneId.systemDefault());
+
+  TokenCounters counters;
+
+  long nextId = 1;
+
+  @Before
+  public void setup() {
+    dataSource = new DriverManagerDataSource("jdbc:h2:mem:token_counters;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+
+    jdbcTemplate.execute(
+        "CREATE TABLE client_details (id BIGINT PRIMARY KEY, client_id VARCHAR(256))");
+    jdbcTemplate.execute("CREATE TABLE access_token (id BIGINT PRIMARY KEY, "
+        + "expiration TIMESTAMP, user_id VARCHAR(256), client_id BIGINT)");
+    jdbcTemplate.execute("CREATE TABLE refresh_token (id BIGINT PRIMARY KEY, "
+        + "expiration TIMESTAMP, user_id VARCHAR(256), client_id BIGINT)");
+
+    jdbcTemplate.update("INSERT INTO client_details VALUES (1, 'client'), (2, 'other-client')");
+
+    properties.getTokenCounters().setEnabled(true);
+    counters = new TokenCounters(jdbcTemplate, properties, clock, registry);
+  }
+
+  @After
+  public void teardown() {
+    jdbcTemplate.execute("DROP ALL OBJECTS");
+  }
+
+  private void token(String table, String username, String clientId, Date expiration) {
+    Long clientKey = jdbcTemplate.queryForObject(
+        "SELECT id FROM client_details WHERE client_id = ?", Long.class, clientId);
+    jdbcTemplate.update("INSERT INTO " + table + " VALUES (?, ?, ?, ?)", nextId++,
+        expiration == null ? null : new Timestamp(expiration.getTime()), username, clientKey);
+  }
+
+  @Test
+  public void noCountsBeforeRecountOrWhenDisabled() {
+    assertThat(counters.count(ACCESS), is(OptionalLong.empty()));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.empty()));
+
+    properties.getTokenCounters().setEnabled(false);
+    TokenCounters disabled =
+        new TokenCounters(jdbcTemplate, properties, clock, new SimpleMeterRegistry());
+    disabled.recount();
+
+    assertThat(disabled.count(ACCESS), is(OptionalLong.empty()));
+  }
+
+  @Test
+  public void recountMatchesDatabase() {
+    token("access_token", "test", "client", VALID);
+    token("access_token", "test", "client", VALID);
+    token("access_token", "test", "other-client", EXPIRED);
+    token("access_token", "test-100", "client", VALID);
+    token("access_token", null, "client", VALID);
+    token("access_token", "test", "client", null);
+
+    token("refresh_token", "test", "client", null);
+    token("refresh_token", "test", "client", EXPIRED);
+
+    counters.recount();
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(4)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(2)));
+    assertThat(counters.countForUser(ACCESS, "test-100"), is(OptionalLong.of(1)));
+    assertThat(counters.countForUser(ACCESS, "unknown"), is(OptionalLong.of(0)));
+    assertThat(counters.countForClient(ACCESS, "client"), is(OptionalLong.of(4)));
+    assertThat(counters.countForClient(ACCESS, "other-client"), is(OptionalLong.of(0)));
+
+    assertThat(counters.count(REFRESH), is(OptionalLong.of(1)));
+    assertThat(counters.countForUser(REFRESH, "test"), is(OptionalLong.of(1)));
+
+    assertThat(
+        registry.get(TokenCounters.VALID_TOKENS_METRIC).tag("type", "access").gauge().value(),
+        is(4.0));
+    assertThat(
+        registry.get(TokenCounters.VALID_TOKENS_METRIC).tag("type", "refresh").gauge().value(),
+        is(1.0));
+  }
+
+  @Test
+  public void issuanceAndRevocationUpdateCounts() {
+    token("access_token", "test", "client", VALID);
+    counters.recount();
+
+    counters.tokenIssued(ACCESS, "test", "client", VALID);
+    counters.tokenIssued(ACCESS, null, "client", VALID);
+    counters.tokenIssued(ACCESS, "test", "client", EXPIRED);
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(3)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(2)));
+    assertThat(counters.countForClient(ACCESS, "client"), is(OptionalLong.of(3)));
+
+    counters.tokenRevoked(ACCESS, "test", "client", VALID);
+    counters.tokenRevoked(ACCESS, "test", "client", EXPIRED);
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(2)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(1)));
+    assertThat(counters.countForClient(ACCESS, "client"), is(OptionalLong.of(2)));
+
+    counters.tokenRevoked(ACCESS, "test", "client", VALID);
+    counters.tokenRevoked(ACCESS, "test", "client", VALID);
+
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(0)));
+
+    counters.recount();
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(1)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(1)));
+  }
+
+  @Test
+  public void bulkRevocationIsAppliedOnRequest() {
+    token("access_token", "test", "client", VALID);
+    token("access_token", "test", "other-client", VALID);
+    token("access_token", "test", "client", EXPIRED);
+    token("access_token", "test-100", "client", VALID);
+    counters.recount();
+
+    Runnable adjustment = counters.bulkRevocation(ACCESS, "user_id = ?", "test");
+    jdbcTemplate.update("DELETE FROM access_token WHERE user_id = ?", "test");
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(3)));
+
+    adjustment.run();
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(1)));
+    assertThat(counters.countForUser(ACCESS, "test"), is(OptionalLong.of(0)));
+    assertThat(counters.countForUser(ACCESS, "test-100"), is(OptionalLong.of(1)));
+    assertThat(counters.countForClient(ACCESS, "client"), is(OptionalLong.of(1)));
+    assertThat(counters.countForClient(ACCESS, "other-client"), is(OptionalLong.of(0)));
+
+    counters.recount();
+
+    assertThat(counters.count(ACCESS), is(OptionalLong.of(1)));
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.test.rcauth;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.infn.mw.iam.config.crypto.KeyPairPoolProperties;
+import it.infn.mw.iam.rcauth.x509.KeyPairPool;
+
+public class KeyPairPoolTests {
+
+  private static final int KEY_SIZE = 512;
+  private static final long FILL_TIMEOUT_MSEC = TimeUnit.SECONDS.toMillis(30);
+
+  private MeterRegistry registry;
+  private KeyPairPool pool;
+
+  @Before
+  public void setup() {
+    KeyPairPoolProperties properties = new KeyPairPoolProperties();
+    properties.setKeySize(KEY_SIZE);
+    properties.setLowWatermark(1);
+    properties.setHighWatermark(3);
+
+    registry = new SimpleMeterRegistry();
+    pool = new KeyPairPool(properties, registry);
+  }
+
+  @After
+  public void teardown() {
+    pool.shutdown();
+  }
+
+  private void awaitAvailableKeyPairs(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + FILL_TIMEOUT_MSEC;
+    while (pool.getAvailableKeyPairs() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(pool.getAvailableKeyPairs(), is(count));
+  }
+
+  private double count(String name, String... tags) {
+    return registry.get(name).tags(tags).counter().count();
+  }
+
+  @Test
+  public void poolIsFilledUpToHighWatermark() throws Exception {
+    pool.start();
+    awaitAvailableKeyPairs(3);
+
+    KeyPair first = pool.getKeyPair(KEY_SIZE);
+    KeyPair second = pool.getKeyPair(KEY_SIZE);
+
+    assertThat(first, notNullValue());
+    assertThat(first, not(sameInstance(second)));
+    assertThat(((RSAPublicKey) first.getPublic()).getModulus().bitLength(), is(KEY_SIZE));
+    assertThat(registry.get(KeyPairPool.DEPTH_METRIC).gauge().value(), is(1.0));
+
+    pool.getKeyPair(KEY_SIZE);
+    assertThat(count(KeyPairPool.HITS_METRIC), is(3.0));
+
+    // Dropping below the low watermark triggers a refill
+    awaitAvailableKeyPairs(3);
+  }
+
+  @Test
+  public void emptyPoolFallsBackToInlineGeneration() {
+    KeyPair keyPair = pool.getKeyPair(KEY_SIZE);
+
+    assertThat(keyPair, notNullValue());
+    assertThat(count(KeyPairPool.MISSES_METRIC, "reason", "empty"), is(1.0));
+  }
+
+  @Test
+  public void differentKeySizeIsGeneratedInline() throws Exception {
+    pool.start();
+    awaitAvailableKeyPairs(3);
+
+    KeyPair keyPair = pool.getKeyPair(1024);
+
+    assertThat(((RSAPublicKey) keyPair.getPublic()).getModulus().bitLength(), is(1024));
+    assertThat(count(KeyPairPool.MISSES_METRIC, "reason", "key_size"), is(1.0));
+    assertThat(pool.getAvailableKeyPairs(), is(3));
+  }
+}
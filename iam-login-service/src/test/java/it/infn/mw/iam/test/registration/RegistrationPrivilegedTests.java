@@ -24,6 +24,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -198,6 +199,104 @@ public class RegistrationPrivilegedTests {
     // @formatter:on
   }
 
+  @Test
+  @WithMockOAuthUser(clientId = "registration-client", scopes = {"registration:read"})
+  public void testSearchRequestsIsPaged() throws Exception {
+
+    createRegistrationRequest("test_search_1");
+    createRegistrationRequest("test_search_2");
+    createRegistrationRequest("test_search_3");
+
+    // @formatter:off
+    mvc.perform(get("/registration/search")
+        .param("sortBy", "username")
+        .param("count", "2")
+        .param("startIndex", "1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(3)))
+      .andExpect(jsonPath("$.itemsPerPage", is(2)))
+      .andExpect(jsonPath("$.startIndex", is(1)))
+      .andExpect(jsonPath("$.Resources", hasSize(2)))
+      .andExpect(jsonPath("$.Resources[0].username", is("test_search_1")));
+
+    mvc.perform(get("/registration/search")
+        .param("sortBy", "username")
+        .param("count", "2")
+        .param("startIndex", "3"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(3)))
+      .andExpect(jsonPath("$.Resources", hasSize(1)))
+      .andExpect(jsonPath("$.Resources[0].username", is("test_search_3")));
+    // @formatter:on
+  }
+
+  @Test
+  @WithMockOAuthUser(clientId = "registration-client",
+      scopes = {"registration:read", "registration:write"})
+  public void testSearchRequestsFiltersAndSorts() throws Exception {
+
+    createRegistrationRequest("alice_search");
+    createRegistrationRequest("bob_search");
+    RegistrationRequestDto carl = createRegistrationRequest("carl_search");
+    approveRequest(carl.getUuid());
+
+    // @formatter:off
+    mvc.perform(get("/registration/search")
+        .param("filter", "ALICE"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(1)))
+      .andExpect(jsonPath("$.Resources[0].username", is("alice_search")));
+
+    mvc.perform(get("/registration/search")
+        .param("filter", "bob_search@example"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(1)))
+      .andExpect(jsonPath("$.Resources[0].username", is("bob_search")));
+
+    mvc.perform(get("/registration/search")
+        .param("status", NEW.name())
+        .param("sortBy", "username")
+        .param("sortDirection", "DESC"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(2)))
+      .andExpect(jsonPath("$.Resources[0].username", is("bob_search")))
+      .andExpect(jsonPath("$.Resources[1].username", is("alice_search")));
+
+    mvc.perform(get("/registration/search")
+        .param("pending", "true")
+        .param("sortBy", "username"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(2)))
+      .andExpect(jsonPath("$.Resources[0].username", is("alice_search")))
+      .andExpect(jsonPath("$.Resources[1].username", is("bob_search")));
+
+    mvc.perform(get("/registration/search")
+        .param("createdAfter", "2100-01-01T00:00:00.000Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(0)));
+
+    mvc.perform(get("/registration/search")
+        .param("createdBefore", "2100-01-01T00:00:00.000Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.totalResults", is(3)));
+    // @formatter:on
+  }
+
+  @Test
+  @WithMockOAuthUser(clientId = "registration-client", scopes = {"registration:read"})
+  public void testSearchRequestsRejectsInvalidParameters() throws Exception {
+
+    // @formatter:off
+    mvc.perform(get("/registration/search")
+        .param("sortBy", "password"))
+      .andExpect(status().isBadRequest());
+
+    mvc.perform(get("/registration/search")
+        .param("count", "-1"))
+      .andExpect(status().isBadRequest());
+    // @formatter:on
+  }
+
   @Test
   @WithMockOAuthUser(clientId = "registration-client", scopes = {"registration:write"})
   public void testApproveRequest() throws Exception {
@@ -16,7 +16,14 @@
 package it.infn.mw.iam.test.repository;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.OIDC_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.SAML_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.USERNAME;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.util.List;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,7 +32,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import it.infn.mw.iam.authn.saml.util.Saml2Attribute;
 import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamOidcId;
 import it.infn.mw.iam.persistence.model.IamSamlId;
+import it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.test.util.annotation.IamNoMvcTest;
 
@@ -49,4 +58,41 @@ public class IamAccountRepositoryTests {
     assertThat(testUserAccount.getUsername(), equalTo("test"));
   }
 
+  @Test
+  public void testCredentialConflictsAreResolvedInOneQuery() {
+
+    IamAccount testUserAccount = repo.findByUsername("test")
+      .orElseThrow(() -> new AssertionError("Could not lookup test user by username"));
+
+    IamAccount account = IamAccount.newAccount();
+    account.setUsername("test");
+    account.getUserInfo().setEmail("not-bound@example.org");
+    account.getOidcIds().add(new IamOidcId("urn:test-oidc-issuer", "test-user"));
+    account.getOidcIds().add(new IamOidcId("urn:test-oidc-issuer", "not-bound"));
+    account.getSamlIds().add(TEST_USER_ID);
+
+    List<IamAccountCredentialConflict> conflicts = repo.findCredentialConflicts(account);
+
+    assertThat(conflicts, hasSize(3));
+    assertThat(conflicts.get(0).getType(), equalTo(USERNAME));
+    assertThat(conflicts.get(0).getCredential(), equalTo("test"));
+    assertThat(conflicts.get(1).getType(), equalTo(SAML_ID));
+    assertThat(conflicts.get(1).getCredential(), equalTo(TEST_USER_ID));
+    assertThat(conflicts.get(2).getType(), equalTo(OIDC_ID));
+    assertThat(conflicts.get(2).getCredential(),
+        equalTo(new IamOidcId("urn:test-oidc-issuer", "test-user")));
+
+    conflicts.forEach(
+        c -> assertThat(c.getAccountUuid(), equalTo(testUserAccount.getUuid())));
+  }
+
+  @Test
+  public void testCredentialsOfTheCheckedAccountAreNotConflicts() {
+
+    IamAccount testUserAccount = repo.findByUsername("test")
+      .orElseThrow(() -> new AssertionError("Could not lookup test user by username"));
+
+    assertThat(repo.findCredentialConflicts(testUserAccount), empty());
+  }
+
 }
@@ -18,10 +18,13 @@ package it.infn.mw.iam.test.service;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Optional;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,11 +32,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import it.infn.mw.iam.api.account.AccountUtils;
 import it.infn.mw.iam.persistence.model.IamAccount;
@@ -59,6 +68,27 @@ public class AccountUtilsTests {
   public void setup() {
     SecurityContextHolder.clearContext();
   }
+
+  @After
+  public void teardown() {
+    RequestContextHolder.resetRequestAttributes();
+    TransactionSynchronizationManager.setActualTransactionActive(false);
+  }
+
+  private void startRequest() {
+    RequestContextHolder
+      .setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  private void authenticateTestUser() {
+    when(repo.findByUsername("test")).thenReturn(Optional.of(account));
+
+    UsernamePasswordAuthenticationToken token =
+        Mockito.mock(UsernamePasswordAuthenticationToken.class);
+    when(token.getName()).thenReturn("test");
+    when(securityContext.getAuthentication()).thenReturn(token);
+    SecurityContextHolder.setContext(securityContext);
+  }
  
 
   @Test
@@ -145,4 +175,45 @@ public class AccountUtilsTests {
     
     assertThat(utils.getAuthenticatedUserAccount().isPresent(), is(false)); 
   }
+
+  @Test
+  public void authenticatedUserAccountIsMemoizedWithinRequest() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    utils.setMeterRegistry(registry);
+    authenticateTestUser();
+
+    startRequest();
+    assertThat(utils.getAuthenticatedUserAccount().get(), is(account));
+    assertThat(utils.getAuthenticatedUserAccount().get(), is(account));
+    verify(repo, times(1)).findByUsername("test");
+
+    startRequest();
+    assertThat(utils.getAuthenticatedUserAccount().get(), is(account));
+    verify(repo, times(2)).findByUsername("test");
+
+    assertThat(registry.counter(AccountUtils.LOOKUPS_METRIC, "source", "request").count(),
+        is(1.0));
+    assertThat(registry.counter(AccountUtils.LOOKUPS_METRIC, "source", "repository").count(),
+        is(2.0));
+  }
+
+  @Test
+  public void authenticatedUserAccountIsNotMemoizedOutsideRequests() {
+    authenticateTestUser();
+
+    utils.getAuthenticatedUserAccount();
+    utils.getAuthenticatedUserAccount();
+    verify(repo, times(2)).findByUsername("test");
+  }
+
+  @Test
+  public void authenticatedUserAccountIsNotMemoizedInsideTransactions() {
+    authenticateTestUser();
+    startRequest();
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+
+    utils.getAuthenticatedUserAccount();
+    utils.getAuthenticatedUserAccount();
+    verify(repo, times(2)).findByUsername("test");
+  }
 }
@@ -15,6 +15,12 @@
  */
 package it.infn.mw.iam.test.service;
 
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.EMAIL;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.OIDC_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.SAML_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.SSH_KEY;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.USERNAME;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.X509_CERTIFICATE;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.hamcrest.CoreMatchers.containsString;
@@ -28,7 +34,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -44,9 +50,6 @@ import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mitre.oauth2.model.OAuth2AccessTokenEntity;
-import org.mitre.oauth2.model.OAuth2RefreshTokenEntity;
-import org.mitre.oauth2.service.OAuth2TokenEntityService;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -56,9 +59,9 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
-import com.google.common.collect.Sets;
-
 import it.infn.mw.iam.audit.events.account.AccountEndTimeUpdatedEvent;
+import it.infn.mw.iam.config.lifecycle.LifecycleProperties;
+import it.infn.mw.iam.core.oauth.token.BulkTokenRevocationService;
 import it.infn.mw.iam.core.time.TimeProvider;
 import it.infn.mw.iam.core.user.DefaultIamAccountService;
 import it.infn.mw.iam.core.user.exception.CredentialAlreadyBoundException;
@@ -69,6 +72,7 @@ import it.infn.mw.iam.persistence.model.IamOidcId;
 import it.infn.mw.iam.persistence.model.IamSamlId;
 import it.infn.mw.iam.persistence.model.IamSshKey;
 import it.infn.mw.iam.persistence.model.IamX509Certificate;
+import it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.iam.persistence.repository.IamAuthoritiesRepository;
 import it.infn.mw.iam.persistence.repository.IamGroupRepository;
@@ -101,7 +105,9 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
   private TimeProvider timeProvider;
 
   @Mock
-  private OAuth2TokenEntityService tokenService;
+  private BulkTokenRevocationService tokenRevocationService;
+
+  private LifecycleProperties lifecycleProperties = new LifecycleProperties();
 
   private Clock clock = Clock.fixed(NOW, ZoneId.systemDefault());
 
@@ -115,20 +121,14 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
 
     when(accountRepo.findProvisionedAccountsWithLastLoginTimeBeforeTimestamp(any()))
       .thenReturn(emptyList());
-    when(accountRepo.findByCertificateSubject(anyString())).thenReturn(Optional.empty());
-    when(accountRepo.findBySshKeyValue(anyString())).thenReturn(Optional.empty());
-    when(accountRepo.findBySamlId(any())).thenReturn(Optional.empty());
-    when(accountRepo.findByOidcId(anyString(), anyString())).thenReturn(Optional.empty());
-    when(accountRepo.findByUsername(anyString())).thenReturn(Optional.empty());
-    when(accountRepo.findByEmail(anyString())).thenReturn(Optional.empty());
-    when(accountRepo.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(TEST_ACCOUNT));
-    when(accountRepo.findByEmail(TEST_EMAIL)).thenReturn(Optional.of(TEST_ACCOUNT));
+    when(accountRepo.findCredentialConflicts(any())).thenReturn(emptyList());
     when(authoritiesRepo.findByAuthority(anyString())).thenReturn(Optional.empty());
     when(authoritiesRepo.findByAuthority("ROLE_USER")).thenReturn(Optional.of(ROLE_USER_AUTHORITY));
     when(passwordEncoder.encode(any())).thenReturn(PASSWORD);
 
     accountService = new DefaultIamAccountService(clock, accountRepo, groupRepo, authoritiesRepo,
-        passwordEncoder, eventPublisher, tokenService, accountClientRepo);
+        passwordEncoder, eventPublisher, tokenRevocationService, accountClientRepo,
+        lifecycleProperties);
   }
 
   @Test(expected = NullPointerException.class)
@@ -210,6 +210,9 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
     account.setUsername(TEST_USERNAME);
     account.getUserInfo().setEmail("cicciopaglia@test.org");
 
+    when(accountRepo.findCredentialConflicts(account)).thenReturn(
+        asList(new IamAccountCredentialConflict(USERNAME, TEST_USERNAME, TEST_ACCOUNT.getUuid())));
+
     try {
       accountService.createAccount(account);
     } catch (UserAlreadyExistsException e) {
@@ -226,6 +229,9 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
     account.setUsername("ciccio");
     account.getUserInfo().setEmail(TEST_EMAIL);
 
+    when(accountRepo.findCredentialConflicts(account)).thenReturn(
+        asList(new IamAccountCredentialConflict(EMAIL, TEST_EMAIL, TEST_ACCOUNT.getUuid())));
+
     try {
       accountService.createAccount(account);
     } catch (UserAlreadyExistsException e) {
@@ -405,8 +411,9 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
   @Test(expected = CredentialAlreadyBoundException.class)
   public void testBoundSamlIdIsNotAccepted() {
     IamAccount account = cloneAccount(CICCIO_ACCOUNT);
-    when(accountRepo.findBySamlId(TEST_SAML_ID)).thenReturn(Optional.of(TEST_ACCOUNT));
     account.linkSamlIds(asList(TEST_SAML_ID));
+    when(accountRepo.findCredentialConflicts(account)).thenReturn(
+        asList(new IamAccountCredentialConflict(SAML_ID, TEST_SAML_ID, TEST_ACCOUNT.getUuid())));
     accountService.createAccount(account);
   }
 
@@ -490,10 +497,10 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
   @Test(expected = CredentialAlreadyBoundException.class)
   public void testBoundOidcIdIsNotAccepted() {
     IamAccount account = cloneAccount(CICCIO_ACCOUNT);
-    when(accountRepo.findByOidcId(TEST_OIDC_ID_ISSUER, TEST_OIDC_ID_SUBJECT))
-      .thenReturn(Optional.of(TEST_ACCOUNT));
-
     account.linkOidcIds(asList(TEST_OIDC_ID));
+    when(accountRepo.findCredentialConflicts(account)).thenReturn(
+        asList(new IamAccountCredentialConflict(OIDC_ID, TEST_OIDC_ID, TEST_ACCOUNT.getUuid())));
+
     accountService.createAccount(account);
   }
 
@@ -550,7 +557,8 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
   public void testBoundSshKeyIsNotAccepted() {
     IamAccount account = cloneAccount(CICCIO_ACCOUNT);
     account.linkSshKeys(asList(TEST_SSH_KEY_1));
-    when(accountRepo.findBySshKeyValue(TEST_SSH_KEY_VALUE_1)).thenReturn(Optional.of(TEST_ACCOUNT));
+    when(accountRepo.findCredentialConflicts(account)).thenReturn(
+        asList(new IamAccountCredentialConflict(SSH_KEY, TEST_SSH_KEY_1, TEST_ACCOUNT.getUuid())));
     accountService.createAccount(account);
   }
 
@@ -636,8 +644,9 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
     IamAccount account = cloneAccount(CICCIO_ACCOUNT);
     account.linkX509Certificates(asList(TEST_X509_CERTIFICATE_1));
 
-    when(accountRepo.findByCertificateSubject(TEST_X509_CERTIFICATE_SUBJECT_1))
-      .thenReturn(Optional.of(TEST_ACCOUNT));
+    when(accountRepo.findCredentialConflicts(account))
+      .thenReturn(asList(new IamAccountCredentialConflict(X509_CERTIFICATE,
+          TEST_X509_CERTIFICATE_1, TEST_ACCOUNT.getUuid())));
 
     accountService.createAccount(account);
   }
@@ -789,18 +798,21 @@ public class IamAccountServiceTests extends IamAccountServiceTestSupport {
 
   @Test
   public void testTokensAreRemovedWhenAccountIsRemoved() {
-    OAuth2AccessTokenEntity accessToken = mock(OAuth2AccessTokenEntity.class);
-    OAuth2RefreshTokenEntity refreshToken = mock(OAuth2RefreshTokenEntity.class);
-
-    when(tokenService.getAllAccessTokensForUser(CICCIO_USERNAME))
-      .thenReturn(Sets.newHashSet(accessToken));
-    when(tokenService.getAllRefreshTokensForUser(CICCIO_USERNAME))
-      .thenReturn(Sets.newHashSet(refreshToken));
+    accountService.deleteAccount(CICCIO_ACCOUNT);
+    verify(tokenRevocationService).revokeTokensForAccount(CICCIO_ACCOUNT);
+  }
 
+  @Test
+  public void testTokensAreKeptWhenAccountIsDisabled() {
+    accountService.disableAccount(CICCIO_ACCOUNT);
+    verify(tokenRevocationService, never()).revokeTokensForAccount(any());
+  }
 
-    accountService.deleteAccount(CICCIO_ACCOUNT);
-    verify(tokenService).revokeAccessToken(Mockito.eq(accessToken));
-    verify(tokenService).revokeRefreshToken(Mockito.eq(refreshToken));
+  @Test
+  public void testTokensAreRemovedWhenAccountIsDisabledIfConfigured() {
+    lifecycleProperties.getAccount().setRevokeTokensOnSuspension(true);
+    accountService.disableAccount(CICCIO_ACCOUNT);
+    verify(tokenRevocationService).revokeTokensForAccount(CICCIO_ACCOUNT);
   }
 
   @Test(expected = NullPointerException.class)
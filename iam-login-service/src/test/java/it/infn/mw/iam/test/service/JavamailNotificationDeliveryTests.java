@@ -24,10 +24,15 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItemInArray;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -41,7 +46,11 @@ import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.infn.mw.iam.core.IamDeliveryStatus;
+import it.infn.mw.iam.core.task.ManagedTask;
+import it.infn.mw.iam.core.task.TaskGroup;
+import it.infn.mw.iam.core.task.TaskLease;
 import it.infn.mw.iam.core.time.TimeProvider;
 import it.infn.mw.iam.notification.NotificationProperties;
 import it.infn.mw.iam.notification.service.JavaMailNotificationDelivery;
@@ -160,4 +169,32 @@ public class JavamailNotificationDeliveryTests {
     assertThat(statusArgumentCaptor.getValue(), is(IamDeliveryStatus.DELIVERY_ERROR));
   }
 
+  @Test
+  public void testDeliveryStopsWhenLeaseIsLost() {
+    IamEmailNotification delivered = mock(IamEmailNotification.class);
+    IamEmailNotification leftPending = mock(IamEmailNotification.class);
+    IamNotificationReceiver receiver = mock(IamNotificationReceiver.class);
+    TaskLease lease = mock(TaskLease.class);
+
+    when(receiver.getEmailAddress()).thenReturn(TEST_0_EMAIL);
+    when(delivered.getReceivers()).thenReturn(asList(receiver));
+
+    when(notificationRepo.findByDeliveryStatus(IamDeliveryStatus.PENDING))
+      .thenReturn(asList(delivered, leftPending));
+
+    // The lease is lost after the first message has been sent
+    when(lease.isValid()).thenReturn(true, false);
+
+    ManagedTask task = new ManagedTask("notification-delivery", TaskGroup.NOTIFICATION, "test",
+        Duration.ZERO, delivery::sendPendingNotifications, (name, hold) -> Optional.of(lease),
+        Clock.systemUTC(), new SimpleMeterRegistry());
+
+    task.run();
+
+    verify(mailSender, times(1)).send(messageArgumentCaptor.capture());
+    assertThat(messageArgumentCaptor.getValue().getTo(), hasItemInArray(TEST_0_EMAIL));
+    verify(delivered).setDeliveryStatus(IamDeliveryStatus.DELIVERED);
+    verifyNoInteractions(leftPending);
+  }
+
 }
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * An audit event stored in the audit event store.
+ * 
+ * Rows are written in batches by the audit pipeline database sink; the partition key is the UTC day
+ * of the event, encoded as yyyymmdd, and is used to drop expired events by partition.
+ */
+@Entity
+@Table(name = "iam_audit_event")
+public class IamAuditEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "event_time", nullable = false)
+  private Date eventTime;
+
+  @Column(name = "partition_key", nullable = false)
+  private int partitionKey;
+
+  @Column(nullable = false, length = 32)
+  private String category;
+
+  @Column(nullable = false, length = 128)
+  private String type;
+
+  @Column(length = 256)
+  private String principal;
+
+  @Column(length = 256)
+  private String target;
+
+  @Lob
+  @Column(name = "message")
+  private String message;
+
+  @Lob
+  @Column(name = "data", nullable = false)
+  private String data;
+
+  public IamAuditEvent() {
+    // empty constructor
+  }
+
+  /**
+   * Computes the partition key for an event that happened at the given instant
+   * 
+   * @param instant the event time
+   * @return the UTC day of the event, as a yyyymmdd integer
+   */
+  public static int partitionKeyFor(Instant instant) {
+    ZonedDateTime utc = instant.atZone(ZoneOffset.UTC);
+    return utc.getYear() * 10000 + utc.getMonthValue() * 100 + utc.getDayOfMonth();
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public Date getEventTime() {
+    return eventTime;
+  }
+
+  public void setEventTime(Date eventTime) {
+    this.eventTime = eventTime;
+  }
+
+  public int getPartitionKey() {
+    return partitionKey;
+  }
+
+  public void setPartitionKey(int partitionKey) {
+    this.partitionKey = partitionKey;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  public void setCategory(String category) {
+    this.category = category;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getPrincipal() {
+    return principal;
+  }
+
+  public void setPrincipal(String principal) {
+    this.principal = principal;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public void setTarget(String target) {
+    this.target = target;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public String getData() {
+    return data;
+  }
+
+  public void setData(String data) {
+    this.data = data;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((id == null) ? 0 : id.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    IamAuditEvent other = (IamAuditEvent) obj;
+    if (id == null) {
+      if (other.id != null)
+        return false;
+    } else if (!id.equals(other.id))
+      return false;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "IamAuditEvent [id=" + id + ", eventTime=" + eventTime + ", type=" + type
+        + ", principal=" + principal + ", target=" + target + "]";
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * The last discovery metadata successfully fetched from an external OpenID Connect provider.
+ * 
+ * The metadata is stored as the JSON document returned by the provider, and is used when the
+ * provider cannot be reached to resolve its configuration.
+ */
+@Entity
+@Table(name = "iam_oidc_provider_metadata")
+public class IamOidcProviderMetadata implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  @Column(nullable = false, length = 256)
+  private String issuer;
+
+  @Lob
+  @Column(nullable = false)
+  private String metadata;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "last_update", nullable = false)
+  private Date lastUpdateTime;
+
+  public IamOidcProviderMetadata() {
+    // empty constructor
+  }
+
+  public String getIssuer() {
+    return issuer;
+  }
+
+  public void setIssuer(String issuer) {
+    this.issuer = issuer;
+  }
+
+  public String getMetadata() {
+    return metadata;
+  }
+
+  public void setMetadata(String metadata) {
+    this.metadata = metadata;
+  }
+
+  public Date getLastUpdateTime() {
+    return lastUpdateTime;
+  }
+
+  public void setLastUpdateTime(Date lastUpdateTime) {
+    this.lastUpdateTime = lastUpdateTime;
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+/**
+ * A credential (or account identifier) that is already bound to an account different from the one
+ * being checked.
+ */
+public class IamAccountCredentialConflict {
+
+  public enum CredentialType {
+    USERNAME,
+    EMAIL,
+    X509_CERTIFICATE,
+    SSH_KEY,
+    SAML_ID,
+    OIDC_ID
+  }
+
+  private final CredentialType type;
+  private final Object credential;
+  private final String accountUuid;
+
+  public IamAccountCredentialConflict(CredentialType type, Object credential,
+      String accountUuid) {
+    this.type = type;
+    this.credential = credential;
+    this.accountUuid = accountUuid;
+  }
+
+  public CredentialType getType() {
+    return type;
+  }
+
+  /**
+   * The conflicting credential, as found on the account being checked, i.e. a {@link String} for
+   * username and email, or the {@link it.infn.mw.iam.persistence.model.IamOidcId},
+   * {@link it.infn.mw.iam.persistence.model.IamSamlId},
+   * {@link it.infn.mw.iam.persistence.model.IamSshKey} or
+   * {@link it.infn.mw.iam.persistence.model.IamX509Certificate} object
+   */
+  public Object getCredential() {
+    return credential;
+  }
+
+  /**
+   * The uuid of the account the credential is already bound to
+   */
+  public String getAccountUuid() {
+    return accountUuid;
+  }
+
+  @Override
+  public String toString() {
+    return "IamAccountCredentialConflict [type=" + type + ", credential=" + credential
+        + ", accountUuid=" + accountUuid + "]";
+  }
+}
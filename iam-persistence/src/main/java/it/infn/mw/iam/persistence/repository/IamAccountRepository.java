@@ -15,6 +15,7 @@
  */
 package it.infn.mw.iam.persistence.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -27,6 +28,8 @@ import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
 import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamOidcId;
+import it.infn.mw.iam.persistence.model.IamSamlId;
 
 
 public interface IamAccountRepository
@@ -141,6 +144,26 @@ public interface IamAccountRepository
   @Query("select a from IamAccount a where a.active = TRUE")
   Page<IamAccount> findActiveAccounts(Pageable op);
 
+  @Query("select a.uuid from IamAccount a where a.uuid in :uuids")
+  List<String> findExistingUuids(@Param("uuids") Collection<String> uuids);
+
+  @Query("select a.username from IamAccount a where a.username in :usernames")
+  List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+  @Query("select ui.email from IamUserInfo ui where ui.email in :emails")
+  List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+  @Query("select new it.infn.mw.iam.persistence.model.IamOidcId(oi.issuer, oi.subject) from IamOidcId oi where oi.subject in :subjects")
+  List<IamOidcId> findExistingOidcIdsBySubject(@Param("subjects") Collection<String> subjects);
+
+  @Query("select new it.infn.mw.iam.persistence.model.IamSamlId(si.idpId, si.attributeId, si.userId) from IamSamlId si where si.userId in :userIds")
+  List<IamSamlId> findExistingSamlIdsByUserId(@Param("userIds") Collection<String> userIds);
+
+  @Query("select sk.value from IamSshKey sk where sk.value in :values")
+  List<String> findExistingSshKeyValues(@Param("values") Collection<String> values);
+
+  @Query("select c.subjectDn from IamX509Certificate c where c.subjectDn in :subjects")
+  List<String> findExistingCertificateSubjects(@Param("subjects") Collection<String> subjects);
 
   @Modifying
   @Query("delete from IamAccountGroupMembership")
@@ -15,6 +15,7 @@
  */
 package it.infn.mw.iam.persistence.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import it.infn.mw.iam.persistence.model.IamAccount;
@@ -24,5 +25,17 @@ public interface IamAccountRepositoryCustom {
   
   Optional<IamAccount> findBySamlId(IamSamlId samlId);  
   void touchLastLoginTimeForUserWithUsername(String username);
+
+  /**
+   * Looks up, in a single database round trip, all the identifiers and credentials of the given
+   * account (username, email, X.509 certificate subjects, SSH keys, SAML and OpenID Connect ids)
+   * that are already bound to other accounts. Null or empty identifiers are ignored, as well as
+   * matches on the account itself (identified by its uuid, when set).
+   *
+   * @param account the account to check
+   * @return the list of conflicts, in the order of the credential types listed above; empty if no
+   *         conflict is found
+   */
+  List<IamAccountCredentialConflict> findCredentialConflicts(IamAccount account);
   
 }
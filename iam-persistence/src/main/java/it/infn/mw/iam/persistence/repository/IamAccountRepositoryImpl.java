@@ -15,22 +15,65 @@
  */
 package it.infn.mw.iam.persistence.repository;
 
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.EMAIL;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.OIDC_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.SAML_ID;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.SSH_KEY;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.USERNAME;
+import static it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType.X509_CERTIFICATE;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamOidcId;
 import it.infn.mw.iam.persistence.model.IamSamlId;
+import it.infn.mw.iam.persistence.model.IamSshKey;
+import it.infn.mw.iam.persistence.model.IamX509Certificate;
+import it.infn.mw.iam.persistence.repository.IamAccountCredentialConflict.CredentialType;
 
 @Component
 public class IamAccountRepositoryImpl implements IamAccountRepositoryCustom {
 
+  private static final String USERNAME_BRANCH =
+      "select %d, a.uuid from iam_account a where a.username = ?";
+
+  private static final String EMAIL_BRANCH =
+      "select %d, a.uuid from iam_account a join iam_user_info ui on a.user_info_id = ui.id "
+          + "where ui.email = ?";
+
+  private static final String X509_BRANCH =
+      "select %d, a.uuid from iam_account a join iam_x509_cert c on c.account_id = a.id "
+          + "where c.subject_dn = ?";
+
+  private static final String SSH_KEY_BRANCH =
+      "select %d, a.uuid from iam_account a join iam_ssh_key k on k.account_id = a.id "
+          + "where k.val = ?";
+
+  private static final String SAML_ID_BRANCH =
+      "select %d, a.uuid from iam_account a join iam_saml_id s on s.account_id = a.id "
+          + "where s.idpid = ? and s.attribute_id = ? and s.userid = ?";
+
+  private static final String OIDC_ID_BRANCH =
+      "select %d, a.uuid from iam_account a join iam_oidc_id o on o.account_id = a.id "
+          + "where o.issuer = ? and o.subject = ?";
+
   @Autowired
   IamAccountRepository repo;
 
+  @PersistenceContext
+  EntityManager em;
+
   @Override
   public Optional<IamAccount> findBySamlId(IamSamlId samlId) {
     return repo.findBySamlId(samlId.getIdpId(), samlId.getAttributeId(), 
@@ -46,4 +89,90 @@ public class IamAccountRepositoryImpl implements IamAccountRepositoryCustom {
     });
   }
 
+  @Override
+  public List<IamAccountCredentialConflict> findCredentialConflicts(IamAccount account) {
+
+    ConflictQueryBuilder builder = new ConflictQueryBuilder();
+
+    builder.add(USERNAME, account.getUsername(), USERNAME_BRANCH, account.getUsername());
+
+    if (account.getUserInfo() != null) {
+      String email = account.getUserInfo().getEmail();
+      builder.add(EMAIL, email, EMAIL_BRANCH, email);
+    }
+
+    for (IamX509Certificate cert : account.getX509Certificates()) {
+      builder.add(X509_CERTIFICATE, cert, X509_BRANCH, cert.getSubjectDn());
+    }
+
+    for (IamSshKey key : account.getSshKeys()) {
+      builder.add(SSH_KEY, key, SSH_KEY_BRANCH, key.getValue());
+    }
+
+    for (IamSamlId samlId : account.getSamlIds()) {
+      builder.add(SAML_ID, samlId, SAML_ID_BRANCH, samlId.getIdpId(), samlId.getAttributeId(),
+          samlId.getUserId());
+    }
+
+    for (IamOidcId oidcId : account.getOidcIds()) {
+      builder.add(OIDC_ID, oidcId, OIDC_ID_BRANCH, oidcId.getIssuer(), oidcId.getSubject());
+    }
+
+    return builder.execute(account.getUuid());
+  }
+
+  private class ConflictQueryBuilder {
+
+    final List<CredentialType> types = new ArrayList<>();
+    final List<Object> credentials = new ArrayList<>();
+    final List<String> branches = new ArrayList<>();
+    final List<Object> parameters = new ArrayList<>();
+
+    void add(CredentialType type, Object credential, String branch, Object... values) {
+      for (Object v : values) {
+        if (v == null || v.toString().isEmpty()) {
+          return;
+        }
+      }
+
+      branches.add(String.format(branch, types.size()));
+      types.add(type);
+      credentials.add(credential);
+      Collections.addAll(parameters, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<IamAccountCredentialConflict> execute(String accountUuid) {
+
+      if (branches.isEmpty()) {
+        return Collections.emptyList();
+      }
+
+      Query query = em.createNativeQuery(String.join(" union all ", branches));
+
+      for (int i = 0; i < parameters.size(); i++) {
+        query.setParameter(i + 1, parameters.get(i));
+      }
+
+      List<Object[]> rows = new ArrayList<>(query.getResultList());
+      rows.sort((r1, r2) -> Integer.compare(((Number) r1[0]).intValue(),
+          ((Number) r2[0]).intValue()));
+
+      List<IamAccountCredentialConflict> conflicts = new ArrayList<>();
+
+      for (Object[] row : rows) {
+        int index = ((Number) row[0]).intValue();
+        String uuid = (String) row[1];
+
+        if (uuid.equals(accountUuid)) {
+          continue;
+        }
+
+        conflicts.add(
+            new IamAccountCredentialConflict(types.get(index), credentials.get(index), uuid));
+      }
+
+      return conflicts;
+    }
+  }
 }
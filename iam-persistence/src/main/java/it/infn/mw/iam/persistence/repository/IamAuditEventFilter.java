@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import java.util.Date;
+
+/**
+ * Filter for audit event store queries. Null fields are ignored.
+ * 
+ * Results are returned in reverse id (i.e. insertion) order; pages are linked by passing the id of
+ * the last event of a page as the {@code beforeId} of the next query.
+ */
+public class IamAuditEventFilter {
+
+  private String principal;
+  private String target;
+  private String type;
+  private String category;
+  private Date from;
+  private Date to;
+  private Long beforeId;
+
+  public String getPrincipal() {
+    return principal;
+  }
+
+  public void setPrincipal(String principal) {
+    this.principal = principal;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public void setTarget(String target) {
+    this.target = target;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  public void setCategory(String category) {
+    this.category = category;
+  }
+
+  public Date getFrom() {
+    return from;
+  }
+
+  public void setFrom(Date from) {
+    this.from = from;
+  }
+
+  public Date getTo() {
+    return to;
+  }
+
+  public void setTo(Date to) {
+    this.to = to;
+  }
+
+  public Long getBeforeId() {
+    return beforeId;
+  }
+
+  public void setBeforeId(Long beforeId) {
+    this.beforeId = beforeId;
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import static it.infn.mw.iam.persistence.model.IamAuditEvent.partitionKeyFor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.stereotype.Component;
+
+import it.infn.mw.iam.persistence.model.IamAuditEvent;
+
+@Component
+public class IamAuditEventRepositoryImpl implements IamAuditEventRepositoryCustom {
+
+  @PersistenceContext
+  EntityManager em;
+
+  @Override
+  public List<IamAuditEvent> findEvents(IamAuditEventFilter filter, int limit) {
+
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<IamAuditEvent> query = cb.createQuery(IamAuditEvent.class);
+    Root<IamAuditEvent> event = query.from(IamAuditEvent.class);
+
+    List<Predicate> predicates = new ArrayList<>();
+
+    if (filter.getPrincipal() != null) {
+      predicates.add(cb.equal(event.get("principal"), filter.getPrincipal()));
+    }
+
+    if (filter.getTarget() != null) {
+      predicates.add(cb.equal(event.get("target"), filter.getTarget()));
+    }
+
+    if (filter.getType() != null) {
+      predicates.add(cb.equal(event.get("type"), filter.getType()));
+    }
+
+    if (filter.getCategory() != null) {
+      predicates.add(cb.equal(event.get("category"), filter.getCategory()));
+    }
+
+    // Time bounds are also applied on the partition key, so that only the relevant partitions
+    // are scanned
+    if (filter.getFrom() != null) {
+      predicates.add(cb.greaterThanOrEqualTo(event.get("eventTime"), filter.getFrom()));
+      predicates.add(cb.greaterThanOrEqualTo(event.get("partitionKey"),
+          partitionKeyFor(filter.getFrom().toInstant())));
+    }
+
+    if (filter.getTo() != null) {
+      predicates.add(cb.lessThan(event.get("eventTime"), filter.getTo()));
+      predicates.add(cb.lessThanOrEqualTo(event.get("partitionKey"),
+          partitionKeyFor(filter.getTo().toInstant())));
+    }
+
+    if (filter.getBeforeId() != null) {
+      predicates.add(cb.lessThan(event.get("id"), filter.getBeforeId()));
+    }
+
+    query.select(event)
+      .where(predicates.toArray(new Predicate[0]))
+      .orderBy(cb.desc(event.get("id")));
+
+    return em.createQuery(query).setMaxResults(limit).getResultList();
+  }
+
+}
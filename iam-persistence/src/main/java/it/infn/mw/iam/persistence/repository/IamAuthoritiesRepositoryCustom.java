@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import java.util.Collection;
+
+public interface IamAuthoritiesRepositoryCustom {
+
+  /**
+   * Revokes the given authorities from all the accounts holding them and deletes the authorities,
+   * with one bulk statement per table instead of loading and saving each account.
+   *
+   * @param authorities the authority names
+   * @return the number of account grants that have been revoked
+   */
+  int deleteAuthoritiesAndGrants(Collection<String> authorities);
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class IamAuthoritiesRepositoryImpl implements IamAuthoritiesRepositoryCustom {
+
+  private static final String DELETE_GRANTS =
+      "delete from iam_account_authority where authority_id in "
+          + "(select id from iam_authority where auth in (%s))";
+
+  private static final String DELETE_AUTHORITIES = "delete from iam_authority where auth in (%s)";
+
+  @PersistenceContext
+  EntityManager em;
+
+  @Override
+  public int deleteAuthoritiesAndGrants(Collection<String> authorities) {
+
+    if (authorities.isEmpty()) {
+      return 0;
+    }
+
+    em.flush();
+
+    ArrayList<String> names = new ArrayList<>(authorities);
+    int grants = InClauseBulkStatements.execute(em, DELETE_GRANTS, names);
+    InClauseBulkStatements.execute(em, DELETE_AUTHORITIES, names);
+
+    return grants;
+  }
+
+}
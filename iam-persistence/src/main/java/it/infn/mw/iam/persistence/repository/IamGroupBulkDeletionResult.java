@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+/**
+ * Number of rows removed by {@link IamGroupRepositoryCustom#deleteGroupsInBulk(java.util.List)},
+ * per kind of group-related data.
+ */
+public class IamGroupBulkDeletionResult {
+
+  private final int groups;
+  private final int memberships;
+  private final int scopePolicies;
+  private final int labels;
+  private final int attributes;
+  private final int groupRequests;
+
+  public IamGroupBulkDeletionResult(int groups, int memberships, int scopePolicies, int labels,
+      int attributes, int groupRequests) {
+    this.groups = groups;
+    this.memberships = memberships;
+    this.scopePolicies = scopePolicies;
+    this.labels = labels;
+    this.attributes = attributes;
+    this.groupRequests = groupRequests;
+  }
+
+  public int getGroups() {
+    return groups;
+  }
+
+  public int getMemberships() {
+    return memberships;
+  }
+
+  public int getScopePolicies() {
+    return scopePolicies;
+  }
+
+  public int getLabels() {
+    return labels;
+  }
+
+  public int getAttributes() {
+    return attributes;
+  }
+
+  public int getGroupRequests() {
+    return groupRequests;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "IamGroupBulkDeletionResult [groups=%d, memberships=%d, scopePolicies=%d, labels=%d, "
+            + "attributes=%d, groupRequests=%d]",
+        groups, memberships, scopePolicies, labels, attributes, groupRequests);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package it.infn.mw.iam.persistence.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -27,7 +28,8 @@ import org.springframework.data.repository.query.Param;
 
 import it.infn.mw.iam.persistence.model.IamGroup;
 
-public interface IamGroupRepository extends PagingAndSortingRepository<IamGroup, Long> {
+public interface IamGroupRepository
+    extends PagingAndSortingRepository<IamGroup, Long>, IamGroupRepositoryCustom {
 
   Optional<IamGroup> findByUuid(@Param("uuid") String uuid);
 
@@ -45,6 +47,15 @@ public interface IamGroupRepository extends PagingAndSortingRepository<IamGroup,
 
   List<IamGroup> findByNameIgnoreCaseContaining(String name);
 
+  @Query("select g from IamGroup g where g.uuid in :uuids")
+  List<IamGroup> findByUuidIn(@Param("uuids") Collection<String> uuids);
+
+  @Query("select g.uuid from IamGroup g where g.uuid in :uuids")
+  List<String> findExistingUuids(@Param("uuids") Collection<String> uuids);
+
+  @Query("select g.name from IamGroup g where g.name in :names")
+  List<String> findExistingNames(@Param("names") Collection<String> names);
+
   @Query("select g from IamGroup g where g.uuid not in :uuids")
   List<IamGroup> findByUuidNotIn(Set<String> uuids);
 
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import java.util.List;
+
+import it.infn.mw.iam.persistence.model.IamGroup;
+
+public interface IamGroupRepositoryCustom {
+
+  /**
+   * Loads the subtree rooted at the given group, issuing one query per tree level rather than
+   * walking the children collections one group at a time.
+   *
+   * @param root the subtree root
+   * @return the root followed by its descendants, in breadth-first order
+   */
+  List<IamGroup> findSubtree(IamGroup root);
+
+  /**
+   * Deletes the groups with the given ids together with their memberships, scope policies,
+   * labels, attributes and membership requests, using a fixed number of bulk statements
+   * independent of the number of groups. Any pending change is flushed before the deletion and
+   * the persistence context is cleared afterwards, so entities loaded before the call must not be
+   * reused.
+   *
+   * @param groupIds the ids of the groups to be deleted; when a group is deleted, all its
+   *        subgroups must be included as well
+   * @return the number of rows removed, per kind of data
+   */
+  IamGroupBulkDeletionResult deleteGroupsInBulk(List<Long> groupIds);
+
+}
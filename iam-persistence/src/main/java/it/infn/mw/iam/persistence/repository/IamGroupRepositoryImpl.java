@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+
+import it.infn.mw.iam.persistence.model.IamGroup;
+
+@Component
+public class IamGroupRepositoryImpl implements IamGroupRepositoryCustom {
+
+  private static final String FIND_CHILDREN =
+      "select g from IamGroup g where g.parentGroup.id in :parentIds";
+
+  private static final String DELETE_MEMBERSHIPS =
+      "delete from iam_account_group where group_id in (%s)";
+
+  private static final String DELETE_SCOPE_POLICY_SCOPES =
+      "delete from iam_scope_policy_scope where policy_id in "
+          + "(select id from iam_scope_policy where group_id in (%s))";
+
+  private static final String DELETE_SCOPE_POLICIES =
+      "delete from iam_scope_policy where group_id in (%s)";
+
+  private static final String DELETE_LABELS = "delete from iam_group_labels where group_id in (%s)";
+
+  private static final String DELETE_ATTRIBUTES =
+      "delete from iam_group_attrs where group_id in (%s)";
+
+  private static final String DELETE_GROUP_REQUESTS =
+      "delete from iam_group_request where group_id in (%s)";
+
+  private static final String DETACH_GROUPS =
+      "update iam_group set parent_group_id = null where id in (%s)";
+
+  private static final String DELETE_GROUPS = "delete from iam_group where id in (%s)";
+
+  @PersistenceContext
+  EntityManager em;
+
+  @Override
+  public List<IamGroup> findSubtree(IamGroup root) {
+
+    List<IamGroup> subtree = new ArrayList<>();
+    List<IamGroup> level = List.of(root);
+
+    while (!level.isEmpty()) {
+      subtree.addAll(level);
+
+      List<Long> parentIds = level.stream().map(IamGroup::getId).collect(Collectors.toList());
+      List<IamGroup> nextLevel = new ArrayList<>();
+
+      for (List<Long> chunk : Lists.partition(parentIds, InClauseBulkStatements.CHUNK_SIZE)) {
+        nextLevel.addAll(em.createQuery(FIND_CHILDREN, IamGroup.class)
+          .setParameter("parentIds", chunk)
+          .getResultList());
+      }
+
+      level = nextLevel;
+    }
+
+    return subtree;
+  }
+
+  @Override
+  public IamGroupBulkDeletionResult deleteGroupsInBulk(List<Long> groupIds) {
+
+    if (groupIds.isEmpty()) {
+      return new IamGroupBulkDeletionResult(0, 0, 0, 0, 0, 0);
+    }
+
+    em.flush();
+
+    int memberships = InClauseBulkStatements.execute(em, DELETE_MEMBERSHIPS, groupIds);
+    InClauseBulkStatements.execute(em, DELETE_SCOPE_POLICY_SCOPES, groupIds);
+    int scopePolicies = InClauseBulkStatements.execute(em, DELETE_SCOPE_POLICIES, groupIds);
+    int labels = InClauseBulkStatements.execute(em, DELETE_LABELS, groupIds);
+    int attributes = InClauseBulkStatements.execute(em, DELETE_ATTRIBUTES, groupIds);
+    int groupRequests = InClauseBulkStatements.execute(em, DELETE_GROUP_REQUESTS, groupIds);
+
+    // Parent links are cleared first, so that the groups can be deleted regardless of the order
+    // in which the database checks the self-referencing foreign key
+    InClauseBulkStatements.execute(em, DETACH_GROUPS, groupIds);
+    int groups = InClauseBulkStatements.execute(em, DELETE_GROUPS, groupIds);
+
+    em.clear();
+
+    return new IamGroupBulkDeletionResult(groups, memberships, scopePolicies, labels, attributes,
+        groupRequests);
+  }
+
+}
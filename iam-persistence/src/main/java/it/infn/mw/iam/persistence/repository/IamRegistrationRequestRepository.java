@@ -18,6 +18,7 @@ package it.infn.mw.iam.persistence.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
@@ -26,7 +27,8 @@ import it.infn.mw.iam.core.IamRegistrationRequestStatus;
 import it.infn.mw.iam.persistence.model.IamRegistrationRequest;
 
 public interface IamRegistrationRequestRepository
-    extends PagingAndSortingRepository<IamRegistrationRequest, Long> {
+    extends PagingAndSortingRepository<IamRegistrationRequest, Long>,
+    JpaSpecificationExecutor<IamRegistrationRequest> {
 
   Optional<List<IamRegistrationRequest>> findByStatus(
       @Param("status") IamRegistrationRequestStatus status);
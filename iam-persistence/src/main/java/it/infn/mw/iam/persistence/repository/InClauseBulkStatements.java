@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.persistence.repository;
+
+import static java.util.Collections.nCopies;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs native bulk statements filtered by an <code>IN</code> clause, splitting the values in
+ * chunks so that the statements stay within the bind parameter limits of the database.
+ */
+final class InClauseBulkStatements {
+
+  static final int CHUNK_SIZE = 500;
+
+  private InClauseBulkStatements() {
+    // prevent instantiation
+  }
+
+  /**
+   * @param em the entity manager
+   * @param sqlTemplate the statement, where each <code>%s</code> is replaced by the
+   *        comma-separated placeholders of a chunk of values
+   * @param values the values
+   * @return the total number of rows affected
+   */
+  static int execute(EntityManager em, String sqlTemplate, List<?> values) {
+    int updated = 0;
+
+    for (List<?> chunk : Lists.partition(values, CHUNK_SIZE)) {
+      String placeholders = String.join(",", nCopies(chunk.size(), "?"));
+      Query q = em.createNativeQuery(sqlTemplate.replace("%s", placeholders));
+
+      for (int i = 0; i < chunk.size(); i++) {
+        q.setParameter(i + 1, chunk.get(i));
+      }
+
+      updated += q.executeUpdate();
+    }
+
+    return updated;
+  }
+}
@@ -0,0 +1,9 @@
+-- audit event store: target column, partition key (yyyymmdd of the event time, UTC)
+ALTER TABLE iam_audit_event ADD COLUMN target VARCHAR(256);
+ALTER TABLE iam_audit_event ADD COLUMN partition_key INT NOT NULL DEFAULT 0;
+UPDATE iam_audit_event SET partition_key = CAST(FORMATDATETIME(event_time, 'yyyyMMdd') AS INT);
+
+CREATE INDEX idx_iam_audit_event_partition_key ON iam_audit_event (partition_key);
+CREATE INDEX idx_iam_audit_event_principal ON iam_audit_event (principal, id);
+CREATE INDEX idx_iam_audit_event_target ON iam_audit_event (target, id);
+CREATE INDEX idx_iam_audit_event_type ON iam_audit_event (type, id);
@@ -0,0 +1,2 @@
+-- last known good discovery metadata of external OpenID Connect providers
+CREATE TABLE iam_oidc_provider_metadata (issuer VARCHAR(256) NOT NULL, metadata CLOB NOT NULL, last_update TIMESTAMP NOT NULL, PRIMARY KEY (issuer));
@@ -0,0 +1,11 @@
+-- token owner, denormalized from the authentication holder, and owner/client indexes for range scans
+ALTER TABLE access_token ADD COLUMN user_id VARCHAR(256);
+ALTER TABLE refresh_token ADD COLUMN user_id VARCHAR(256);
+
+UPDATE access_token t SET user_id = (SELECT LEFT(u.name, 256) FROM authentication_holder h JOIN saved_user_auth u ON u.id = h.user_auth_id WHERE h.id = t.auth_holder_id);
+UPDATE refresh_token t SET user_id = (SELECT LEFT(u.name, 256) FROM authentication_holder h JOIN saved_user_auth u ON u.id = h.user_auth_id WHERE h.id = t.auth_holder_id);
+
+CREATE INDEX at_uid_exp_idx ON access_token (user_id, expiration);
+CREATE INDEX at_cid_exp_idx ON access_token (client_id, expiration);
+CREATE INDEX rf_uid_exp_idx ON refresh_token (user_id, expiration);
+CREATE INDEX rf_cid_exp_idx ON refresh_token (client_id, expiration);
@@ -0,0 +1,6 @@
+-- indexes for the set-based deletion of approved sites and authentication holders
+CREATE INDEX as_uid_idx ON approved_site(user_id);
+CREATE INDEX as_cid_idx ON approved_site(client_id);
+CREATE INDEX ass_oi_idx ON approved_site_scope(owner_id);
+CREATE INDEX suai_oi_idx ON saved_user_auth_info(owner_id);
+CREATE INDEX dc_ahi_idx ON device_code(auth_holder_id);
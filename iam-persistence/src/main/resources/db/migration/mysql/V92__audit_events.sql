@@ -0,0 +1,3 @@
+-- audit events table
+CREATE TABLE iam_audit_event (id BIGINT AUTO_INCREMENT NOT NULL, event_time DATETIME(3) NOT NULL, category VARCHAR(32) NOT NULL, type VARCHAR(128) NOT NULL, principal VARCHAR(256), message TEXT, data LONGTEXT NOT NULL, PRIMARY KEY (id));
+CREATE INDEX idx_iam_audit_event_event_time ON iam_audit_event (event_time);
@@ -0,0 +1,13 @@
+-- audit event store: target column, partition key (yyyymmdd of the event time, UTC)
+ALTER TABLE iam_audit_event ADD COLUMN target VARCHAR(256), ADD COLUMN partition_key INT NOT NULL DEFAULT 0;
+UPDATE iam_audit_event SET partition_key = CAST(DATE_FORMAT(event_time, '%Y%m%d') AS UNSIGNED);
+
+-- the partitioning column must be part of the primary key
+ALTER TABLE iam_audit_event DROP PRIMARY KEY, ADD PRIMARY KEY (id, partition_key);
+
+-- a single catch-all partition; time partitions are split off it by the audit store maintenance task
+ALTER TABLE iam_audit_event PARTITION BY RANGE (partition_key) (PARTITION p_max VALUES LESS THAN MAXVALUE);
+
+CREATE INDEX idx_iam_audit_event_principal ON iam_audit_event (principal, id);
+CREATE INDEX idx_iam_audit_event_target ON iam_audit_event (target, id);
+CREATE INDEX idx_iam_audit_event_type ON iam_audit_event (type, id);
@@ -0,0 +1,2 @@
+-- cluster-wide leases for background tasks, with a fencing token bumped on every acquisition
+CREATE TABLE iam_task_lease (task_name VARCHAR(128) NOT NULL, owner VARCHAR(256) NOT NULL, fencing_token BIGINT NOT NULL, acquired_at DATETIME(3) NOT NULL, expires_at DATETIME(3) NOT NULL, PRIMARY KEY (task_name));
@@ -0,0 +1,2 @@
+-- progress of background tasks that walk a table across runs, shared by the cluster instances
+CREATE TABLE iam_task_checkpoint (task_name VARCHAR(128) NOT NULL, position BIGINT NOT NULL, PRIMARY KEY (task_name));
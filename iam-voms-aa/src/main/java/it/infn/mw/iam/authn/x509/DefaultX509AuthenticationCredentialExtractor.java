@@ -68,7 +68,7 @@ public class DefaultX509AuthenticationCredentialExtractor
   public static final Logger LOG =
       LoggerFactory.getLogger(DefaultX509AuthenticationCredentialExtractor.class);
 
-  private final X509CertificateChainParser certChainParser;
+  private final X509CertificateChainCache certChainCache;
 
   protected static final EnumSet<Headers> HEADERS_REQUIRED =
       EnumSet.of(EEC_SUBJECT_DN,
@@ -76,7 +76,7 @@ public class DefaultX509AuthenticationCredentialExtractor
 
   @Autowired
   public DefaultX509AuthenticationCredentialExtractor(X509CertificateChainParser chainParser) {
-    this.certChainParser = chainParser;
+    this.certChainCache = new X509CertificateChainCache(chainParser);
   }
 
   private String getHeader(HttpServletRequest request, Headers header) {
@@ -143,7 +143,7 @@ public class DefaultX509AuthenticationCredentialExtractor
     String pemCertificateString = eecHeaderContent.replace('\t', '\n');
 
     X509CertificateChainParsingResult chain =
-        certChainParser.parseChainFromString(pemCertificateString);
+        certChainCache.parseChainFromString(pemCertificateString);
 
     credBuilder.certificateChain(chain.getChain())
       .certificateChainPemString(chain.getPemString())
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.iam.authn.x509;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+/**
+ * A bounded cache of parsed certificate chains, keyed by the SHA-256 hash of their PEM
+ * representation, so that the chain presented on repeated requests by the same client is decoded
+ * only once.
+ */
+public class X509CertificateChainCache {
+
+  public static final long DEFAULT_MAX_SIZE = 1000;
+  public static final long DEFAULT_TTL_SECS = TimeUnit.HOURS.toSeconds(1);
+
+  private final X509CertificateChainParser parser;
+  private final Cache<String, X509CertificateChainParsingResult> cache;
+
+  public X509CertificateChainCache(X509CertificateChainParser parser) {
+    this(parser, DEFAULT_MAX_SIZE, DEFAULT_TTL_SECS);
+  }
+
+  public X509CertificateChainCache(X509CertificateChainParser parser, long maxSize,
+      long ttlSecs) {
+    this.parser = parser;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttlSecs, TimeUnit.SECONDS)
+      .build();
+  }
+
+  private static String hash(String pemString) {
+    return Hashing.sha256().hashString(pemString, US_ASCII).toString();
+  }
+
+  /**
+   * Parses a PEM encoded certificate chain, or returns the result of a previous parsing of the same
+   * chain. Parsing errors are not cached.
+   *
+   * @param pemString the PEM encoded chain
+   * @return the parsing result
+   * @throws CertificateParsingError if the chain cannot be parsed
+   */
+  public X509CertificateChainParsingResult parseChainFromString(String pemString) {
+
+    final String key = hash(pemString);
+    X509CertificateChainParsingResult result = cache.getIfPresent(key);
+
+    if (result == null) {
+      result = parser.parseChainFromString(pemString);
+      cache.put(key, result);
+    }
+
+    // Callers get their own copy of the chain array, certificates are immutable
+    return X509CertificateChainParsingResult.from(result.getPemString(),
+        result.getChain().clone());
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.aa;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * The VOs served by this attribute authority.
+ * 
+ * Requests are routed to a VO by name, when the client explicitly asks for one, or by the host
+ * the client contacted. When several VOs share the same host, the host is routed to the first one
+ * registered (i.e., the default VO, if it is among them).
+ */
+public class VOMSVORegistry {
+
+  public static final Logger LOG = LoggerFactory.getLogger(VOMSVORegistry.class);
+
+  private final VOMSVirtualOrganization defaultVO;
+  private final Map<String, VOMSVirtualOrganization> vosByName = Maps.newLinkedHashMap();
+  private final Map<String, VOMSVirtualOrganization> vosByHost = Maps.newHashMap();
+
+  public VOMSVORegistry(VOMSVirtualOrganization defaultVO, List<VOMSVirtualOrganization> vos) {
+    this.defaultVO = defaultVO;
+    register(defaultVO);
+    vos.forEach(this::register);
+  }
+
+  private void register(VOMSVirtualOrganization vo) {
+    if (vosByName.putIfAbsent(vo.getName(), vo) != null) {
+      throw new IllegalArgumentException("Duplicate VO configuration: " + vo.getName());
+    }
+
+    vosByHost.putIfAbsent(vo.getHost().toLowerCase(Locale.ROOT), vo);
+    LOG.info("Serving VO {}", vo);
+  }
+
+  protected static String stripPort(String hostHeader) {
+    String host = hostHeader.trim();
+
+    if (host.startsWith("[")) {
+      int end = host.indexOf(']');
+      return end > 0 ? host.substring(0, end + 1) : host;
+    }
+
+    int colon = host.indexOf(':');
+    return colon >= 0 ? host.substring(0, colon) : host;
+  }
+
+  public VOMSVirtualOrganization getDefaultVO() {
+    return defaultVO;
+  }
+
+  public Collection<VOMSVirtualOrganization> getVOs() {
+    return Collections.unmodifiableCollection(vosByName.values());
+  }
+
+  public Optional<VOMSVirtualOrganization> findByName(String voName) {
+    return Optional.ofNullable(vosByName.get(voName));
+  }
+
+  /**
+   * Resolves the VO for a request
+   * 
+   * @param requestedVO the VO name requested by the client, may be null
+   * @param hostHeader the Host header sent by the client, may be null
+   * 
+   * @return the requested VO, or an empty optional if the client requested a VO that is not
+   *         served here. When no VO is requested, the VO matching the host, or the default VO
+   */
+  public Optional<VOMSVirtualOrganization> resolve(String requestedVO, String hostHeader) {
+
+    if (!isNullOrEmpty(requestedVO)) {
+      return findByName(requestedVO);
+    }
+
+    if (!isNullOrEmpty(hostHeader)) {
+      VOMSVirtualOrganization vo = vosByHost.get(stripPort(hostHeader).toLowerCase(Locale.ROOT));
+      if (vo != null) {
+        return Optional.of(vo);
+      }
+    }
+
+    return Optional.of(defaultVO);
+  }
+
+  public void shutdown() {
+    vosByName.values().forEach(vo -> vo.getAcGenerator().shutdown());
+  }
+}
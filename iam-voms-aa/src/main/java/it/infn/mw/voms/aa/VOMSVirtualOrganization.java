@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.aa;
+
+import it.infn.mw.voms.aa.ac.ACGenerator;
+
+/**
+ * A VO served by this attribute authority, with its own AC generator (and therefore AA
+ * credential and signer pool)
+ */
+public class VOMSVirtualOrganization {
+
+  private final String name;
+  private final String host;
+  private final int port;
+  private final long maxAcLifetimeInSeconds;
+  private final ACGenerator acGenerator;
+
+  public VOMSVirtualOrganization(String name, String host, int port, long maxAcLifetimeInSeconds,
+      ACGenerator acGenerator) {
+    this.name = name;
+    this.host = host;
+    this.port = port;
+    this.maxAcLifetimeInSeconds = maxAcLifetimeInSeconds;
+    this.acGenerator = acGenerator;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public long getMaxAcLifetimeInSeconds() {
+    return maxAcLifetimeInSeconds;
+  }
+
+  public ACGenerator getAcGenerator() {
+    return acGenerator;
+  }
+
+  @Override
+  public String toString() {
+    return "VOMSVirtualOrganization [name=" + name + ", host=" + host + ", port=" + port + "]";
+  }
+}
@@ -26,4 +26,8 @@ public interface ACGenerator {
 
   public byte[] generateVOMSAC(VOMSRequestContext context) throws IOException;
 
+  public default void shutdown() {
+    // nothing to release by default
+  }
+
 }
@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.aa.ac;
+
+import static it.infn.mw.voms.aa.ac.ACGeneratorUtils.computeRandomSerialNumber;
+import static java.util.Objects.isNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AttCertIssuer;
+import org.bouncycastle.asn1.x509.Attribute;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.Holder;
+import org.bouncycastle.asn1.x509.IssuerSerial;
+import org.bouncycastle.asn1.x509.V2Form;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.italiangrid.voms.VOMSGenericAttribute;
+import org.italiangrid.voms.asn1.VOMSConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import eu.emi.security.authn.x509.impl.PEMCredential;
+import it.infn.mw.voms.aa.VOMSRequestContext;
+
+/**
+ * An {@link ACGenerator} that encodes the parts of the VOMS attribute certificate that do not
+ * depend on the request only once, when the generator is configured.
+ * 
+ * The AA issuer name, the signature algorithm identifier, and the AC certs, no revocation
+ * available and authority key identifier extensions are kept in their DER encoding; only the
+ * holder, serial number, validity, FQANs, generic attributes and targets are encoded for each
+ * request. The resulting attribute certificate is the same one produced by the VOMS API
+ * {@link org.italiangrid.voms.asn1.VOMSACGenerator}.
+ * 
+ * Signatures are computed by a fixed size pool of signer threads, each one holding its own
+ * {@link ContentSigner}, so that the number of concurrent signing operations (and signers) does
+ * not grow with the number of request threads.
+ */
+public class TemplateACGenerator implements ACGenerator, VOMSConstants {
+
+  public static final Logger LOG = LoggerFactory.getLogger(TemplateACGenerator.class);
+
+  private static final int SEQUENCE_TAG = 0x30;
+  private static final String BC_PROVIDER = "BC";
+
+  private final int signerThreads;
+  private final long signingTimeoutMillis;
+
+  private ExecutorService signerPool;
+  private ThreadLocal<ContentSigner> signer;
+
+  private byte[] encodedVersion;
+  private byte[] encodedIssuer;
+  private byte[] encodedSignatureAlgorithm;
+  private byte[] encodedInvariantExtensions;
+
+  public TemplateACGenerator(int signerThreads, long signingTimeoutMillis) {
+    this.signerThreads = signerThreads;
+    this.signingTimeoutMillis = signingTimeoutMillis;
+  }
+
+  @Override
+  public synchronized void configure(PEMCredential aaCredential) {
+
+    X509Certificate aaCert = aaCredential.getCertificate();
+
+    try {
+      JcaContentSignerBuilder signerBuilder =
+          new JcaContentSignerBuilder(aaCert.getSigAlgName()).setProvider(BC_PROVIDER);
+
+      JcaX509CertificateHolder aaCertHolder = new JcaX509CertificateHolder(aaCert);
+
+      encodedVersion = der(new ASN1Integer(1));
+      encodedIssuer = der(AttCertIssuer
+        .getInstance(new V2Form(new GeneralNames(new GeneralName(aaCertHolder.getSubject())))));
+      encodedSignatureAlgorithm =
+          der(signerBuilder.build(aaCredential.getKey()).getAlgorithmIdentifier());
+
+      ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+      extensions.write(der(new Extension(VOMS_CERTS_OID, false,
+          der(new DERSequence(new DERSequence(ASN1Primitive.fromByteArray(aaCert.getEncoded())))))));
+      extensions.write(der(new Extension(Extension.noRevAvail, false, der(DERNull.INSTANCE))));
+      extensions.write(der(new Extension(Extension.authorityKeyIdentifier, false,
+          der(new JcaX509ExtensionUtils()
+            .createAuthorityKeyIdentifier(aaCertHolder.getSubjectPublicKeyInfo())))));
+      encodedInvariantExtensions = extensions.toByteArray();
+
+      signer = ThreadLocal.withInitial(() -> {
+        try {
+          return signerBuilder.build(aaCredential.getKey());
+        } catch (OperatorCreationException e) {
+          throw new IllegalStateException("Error creating AC signer: " + e.getMessage(), e);
+        }
+      });
+
+    } catch (OperatorCreationException | CertificateEncodingException | IOException
+        | java.security.NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Error configuring AC generator: " + e.getMessage(), e);
+    }
+
+    if (isNull(signerPool)) {
+      signerPool = Executors.newFixedThreadPool(signerThreads, new ThreadFactoryBuilder()
+        .setNameFormat("voms-ac-signer-%d")
+        .setDaemon(true)
+        .build());
+    }
+
+    LOG.info("AC generator configured for AA {}, signature algorithm {}, {} signer threads",
+        aaCert.getSubjectX500Principal().getName(), aaCert.getSigAlgName(), signerThreads);
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    if (!isNull(signerPool)) {
+      signerPool.shutdownNow();
+      signerPool = null;
+    }
+  }
+
+  @Override
+  public byte[] generateVOMSAC(VOMSRequestContext context) throws IOException {
+
+    if (isNull(signerPool)) {
+      throw new IllegalStateException("AC generator is not configured!");
+    }
+
+    return generateVOMSAC(context.getResponse().getIssuedFQANs(),
+        context.getResponse().getIssuedGAs(), context.getResponse().getTargets(),
+        context.getRequest().getHolderCert(), computeRandomSerialNumber(),
+        context.getResponse().getNotBefore(), context.getResponse().getNotAfter(),
+        context.getVOName(), context.getHost(), context.getPort());
+  }
+
+  public byte[] generateVOMSAC(Collection<String> fqans, List<VOMSGenericAttribute> gas,
+      List<String> targets, X509Certificate holderCert, BigInteger serialNumber, Date notBefore,
+      Date notAfter, String voName, String host, int port) throws IOException {
+
+    GeneralName policyAuthority =
+        new GeneralName(GeneralName.uniformResourceIdentifier, buildVOURI(voName, host, port));
+
+    ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+
+    if (gas != null && !gas.isEmpty()) {
+      extensions.write(der(new Extension(VOMS_GENERIC_ATTRS_OID, false,
+          der(buildGAExtensionContent(gas, policyAuthority)))));
+    }
+
+    if (targets != null && !targets.isEmpty()) {
+      extensions.write(der(
+          new Extension(Extension.targetInformation, true, der(buildTargetsContent(targets)))));
+    }
+
+    extensions.write(encodedInvariantExtensions);
+
+    byte[] acInfo = sequence(encodedVersion, der(buildHolder(holderCert)), encodedIssuer,
+        encodedSignatureAlgorithm, der(new ASN1Integer(serialNumber)),
+        der(new DERSequence(new ASN1Encodable[] {new ASN1GeneralizedTime(notBefore),
+            new ASN1GeneralizedTime(notAfter)})),
+        der(new DERSequence(new Attribute(VOMS_FQANS_OID,
+            new DERSet(buildFQANsAttributeContent(fqans, policyAuthority))))),
+        sequence(extensions.toByteArray()));
+
+    byte[] signature = sign(acInfo);
+
+    return sequence(acInfo, encodedSignatureAlgorithm, der(new DERBitString(signature)));
+  }
+
+  private byte[] sign(byte[] acInfo) throws IOException {
+
+    Future<byte[]> result = signerPool.submit(() -> {
+      ContentSigner contentSigner = signer.get();
+      try (OutputStream os = contentSigner.getOutputStream()) {
+        os.write(acInfo);
+      }
+      return contentSigner.getSignature();
+    });
+
+    try {
+      return result.get(signingTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for AC signature");
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      throw new IOException("Timed out waiting for AC signature", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error signing AC: " + e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private static String buildVOURI(String voName, String host, int port) {
+    return String.format("%s://%s:%d", voName, host, port);
+  }
+
+  private static Holder buildHolder(X509Certificate holderCert) {
+    X500Name holderName = X500Name.getInstance(holderCert.getSubjectX500Principal().getEncoded());
+    return new Holder(new IssuerSerial(new GeneralNames(new GeneralName(holderName)),
+        new ASN1Integer(holderCert.getSerialNumber())));
+  }
+
+  private static ASN1Encodable buildFQANsAttributeContent(Collection<String> fqans,
+      GeneralName policyAuthority) {
+
+    ASN1EncodableVector container = new ASN1EncodableVector();
+    ASN1EncodableVector encodedFQANs = new ASN1EncodableVector();
+
+    container.add(new DERTaggedObject(0, policyAuthority));
+    fqans.forEach(f -> encodedFQANs.add(new DEROctetString(f.getBytes())));
+    container.add(new DERSequence(encodedFQANs));
+
+    return new DERSequence(container);
+  }
+
+  private static ASN1Encodable buildGAExtensionContent(List<VOMSGenericAttribute> gas,
+      GeneralName policyAuthority) {
+
+    ASN1EncodableVector gaSequences = new ASN1EncodableVector();
+    ASN1EncodableVector tagSequences = new ASN1EncodableVector();
+
+    for (VOMSGenericAttribute ga : gas) {
+      ASN1EncodableVector tag = new ASN1EncodableVector();
+      tag.add(new DEROctetString(ga.getName().getBytes()));
+      tag.add(new DEROctetString(ga.getValue().getBytes()));
+      tag.add(new DEROctetString(ga.getContext().getBytes()));
+      tagSequences.add(new DERSequence(tag));
+    }
+
+    gaSequences.add(new GeneralNames(policyAuthority));
+    gaSequences.add(new DERSequence(tagSequences));
+
+    return new DERSequence(new DERSequence(new DERSequence(gaSequences)));
+  }
+
+  private static ASN1Encodable buildTargetsContent(List<String> targets) {
+
+    ASN1EncodableVector targetSeq = new ASN1EncodableVector();
+
+    targets.forEach(t -> targetSeq.add(new DERSequence(new DERTaggedObject(0,
+        new GeneralName(GeneralName.uniformResourceIdentifier, t)))));
+
+    return new DERSequence(new DERSequence(targetSeq));
+  }
+
+  private static byte[] der(ASN1Encodable object) throws IOException {
+    return object.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+  }
+
+  /**
+   * Encodes a DER sequence whose elements are already DER encoded
+   */
+  private static byte[] sequence(byte[]... encodedElements) {
+
+    int contentLength = 0;
+    for (byte[] e : encodedElements) {
+      contentLength += e.length;
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength + 6);
+    out.write(SEQUENCE_TAG);
+    writeLength(out, contentLength);
+
+    for (byte[] e : encodedElements) {
+      out.write(e, 0, e.length);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static void writeLength(ByteArrayOutputStream out, int length) {
+    if (length < 0x80) {
+      out.write(length);
+      return;
+    }
+
+    int size = 1;
+    for (int val = length >>> 8; val != 0; val >>>= 8) {
+      size++;
+    }
+
+    out.write(0x80 | size);
+    for (int i = (size - 1) * 8; i >= 0; i -= 8) {
+      out.write(length >>> i);
+    }
+  }
+}
@@ -28,4 +28,6 @@ public interface VOMSResponseBuilder {
 
   public String createLegacyErrorResponse(VOMSErrorMessage errorMessage);
 
+  public String createLegacyResponse(byte[] acBytes);
+
 }
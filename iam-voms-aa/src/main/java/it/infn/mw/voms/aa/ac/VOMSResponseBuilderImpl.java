@@ -121,6 +121,18 @@ public enum VOMSResponseBuilderImpl implements VOMSResponseBuilder {
     return xmlDocAsString(response);
   }
 
+  @Override
+  public String createLegacyResponse(byte[] acBytes) {
+
+    Document response = docBuilder.newDocument();
+    VOMSResponseFragment frag = new VOMSResponseFragment(response);
+
+    frag.buildLegacyACElement(base64Encoder.encodeToString(acBytes));
+    response.appendChild(frag.getFragment());
+
+    return xmlDocAsString(response);
+  }
+
   @Override
   public String createLegacyErrorResponse(VOMSErrorMessage errorMessage) {
 
@@ -166,6 +178,21 @@ class VOMSResponseFragment {
 
   }
 
+  void buildLegacyACElement(String base64EncodedACString) {
+
+    Element root = doc.createElement("vomsans");
+    Element version = doc.createElement("version");
+    Element ac = doc.createElement("ac");
+
+    appendTextChild(version, "4");
+    appendTextChild(ac, base64EncodedACString);
+
+    root.appendChild(version);
+    root.appendChild(ac);
+
+    fragment.appendChild(root);
+  }
+
   void buildLegacyErrorElement(VOMSErrorMessage m) {
 
     Element root = doc.createElement("vomsans");
@@ -15,41 +15,51 @@
  */
 package it.infn.mw.voms.aa.impl;
 
-import static java.util.Comparator.comparing;
-
-import java.util.Set;
+import java.time.Clock;
+import java.util.Map.Entry;
 
 import org.italiangrid.voms.ac.impl.VOMSGenericAttributeImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import it.infn.mw.iam.persistence.model.IamAccount;
-import it.infn.mw.iam.persistence.model.IamAccountGroupMembership;
-import it.infn.mw.iam.persistence.model.IamAttribute;
-import it.infn.mw.iam.persistence.model.IamGroup;
 import it.infn.mw.iam.persistence.model.IamLabel;
 import it.infn.mw.voms.aa.VOMSErrorMessage;
 import it.infn.mw.voms.aa.VOMSRequestContext;
 import it.infn.mw.voms.aa.VOMSResponse.Outcome;
 import it.infn.mw.voms.api.VOMSFqan;
 import it.infn.mw.voms.properties.VomsProperties;
+import it.infn.mw.voms.properties.VomsProperties.VOMSAttributeCacheProperties;
 
 public class IamVOMSAttributeResolver implements AttributeResolver {
   public static final Logger LOG = LoggerFactory.getLogger(IamVOMSAttributeResolver.class);
 
-  private final IamLabel vomsRoleLabel;
   private final FQANEncoding fqanEncoding;
+  private final VOMSAttributeViewCache viewCache;
 
   public IamVOMSAttributeResolver(VomsProperties properties, FQANEncoding fqanEncoding) {
-    vomsRoleLabel = IamLabel.builder().name(properties.getAa().getOptionalGroupLabel()).build();
+    this(properties, fqanEncoding, Clock.systemDefaultZone());
+  }
+
+  public IamVOMSAttributeResolver(VomsProperties properties, FQANEncoding fqanEncoding,
+      Clock clock) {
+    this(fqanEncoding, newViewCache(properties, clock));
+  }
+
+  public IamVOMSAttributeResolver(FQANEncoding fqanEncoding, VOMSAttributeViewCache viewCache) {
     this.fqanEncoding = fqanEncoding;
+    this.viewCache = viewCache;
   }
 
-  protected boolean iamGroupIsVomsGroup(VOMSRequestContext context, IamGroup g) {
-    final String voName = context.getVOName();
-    final boolean nameMatches = g.getName().equals(voName) || g.getName().startsWith(voName + "/");
+  private static VOMSAttributeViewCache newViewCache(VomsProperties properties, Clock clock) {
+    IamLabel vomsRoleLabel =
+        IamLabel.builder().name(properties.getAa().getOptionalGroupLabel()).build();
+    VOMSAttributeCacheProperties cacheProperties = properties.getAttributeCache();
+    return new VOMSAttributeViewCache(vomsRoleLabel, cacheProperties.getMaxSize(),
+        cacheProperties.getTtlInSeconds(), clock);
+  }
 
-    return nameMatches && !g.getLabels().contains(vomsRoleLabel);
+  protected VOMSAttributeView attributeView(VOMSRequestContext context) {
+    return viewCache.getView(context.getIamAccount(), context.getVOName());
   }
 
   protected void noSuchUserError(VOMSRequestContext context) {
@@ -69,27 +79,9 @@ public class IamVOMSAttributeResolver implements AttributeResolver {
     context.setHandled(true);
   }
 
-
-  protected boolean iamGroupIsVomsRole(IamGroup g) {
-    return g.getLabels().contains(vomsRoleLabel);
-  }
-
-  protected boolean groupMatchesFqan(IamGroup g, VOMSFqan fqan) {
-    final String name = fqan.asIamGroupName();
-    final boolean nameMatches = name.equals(g.getName());
-    if (fqan.isRoleFqan()) {
-      return nameMatches && g.getLabels().contains(vomsRoleLabel);
-    } else {
-      return nameMatches;
-    }
-  }
-
-  protected void issueRequestedFqan(VOMSRequestContext context, VOMSFqan fqan) {
-    if (context.getIamAccount()
-      .getGroups()
-      .stream()
-      .map(IamAccountGroupMembership::getGroup)
-      .anyMatch(g -> groupMatchesFqan(g, fqan))) {
+  protected void issueRequestedFqan(VOMSRequestContext context, VOMSAttributeView view,
+      VOMSFqan fqan) {
+    if (view.hasFqan(fqan)) {
       LOG.debug("Issuing fqan: {}", fqan.getFqan());
       context.getResponse().getIssuedFQANs().add(fqanEncoding.encodeFQAN(fqan.getFqan()));
     } else {
@@ -97,59 +89,48 @@ public class IamVOMSAttributeResolver implements AttributeResolver {
     }
   }
 
-
-  protected void issueCompulsoryGroupFqan(VOMSRequestContext context, IamGroup g) {
-    final String fqan = "/" + g.getName();
+  protected void issueCompulsoryGroupFqan(VOMSRequestContext context, String fqan) {
     if (context.getResponse().getIssuedFQANs().add(fqanEncoding.encodeFQAN(fqan))) {
       LOG.debug("Issued compulsory fqan: {}", fqan);
     }
   }
 
   protected boolean requestAccountIsMemberOfGroup(VOMSRequestContext context, String groupName) {
-    IamAccount account = context.getIamAccount();
-    return account.getGroups().stream().anyMatch(g -> g.getGroup().getName().equals(groupName));
+    return attributeView(context).isMemberOf(groupName);
   }
 
-  protected void resolveRequestedFQANs(VOMSRequestContext requestContext) {
+  protected void resolveRequestedFQANs(VOMSRequestContext requestContext,
+      VOMSAttributeView view) {
     requestContext.getRequest()
       .getRequestedFQANs()
-      .forEach(f -> issueRequestedFqan(requestContext, f));
+      .forEach(f -> issueRequestedFqan(requestContext, view, f));
   }
 
-  protected void resolveCompulsoryFQANs(VOMSRequestContext requestContext) {
+  protected void resolveCompulsoryFQANs(VOMSRequestContext requestContext,
+      VOMSAttributeView view) {
 
-    requestContext.getIamAccount()
-      .getGroups()
-      .stream()
-      .sorted(comparing(gm -> gm.getGroup().getName()))
-      .filter(g -> iamGroupIsVomsGroup(requestContext, g.getGroup()))
-      .forEach(g -> issueCompulsoryGroupFqan(requestContext, g.getGroup()));
+    view.getCompulsoryFqans().forEach(f -> issueCompulsoryGroupFqan(requestContext, f));
 
     if (requestContext.getResponse().getIssuedFQANs().isEmpty()) {
       noSuchUserError(requestContext);
     }
   }
 
-
-
   @Override
   public void resolveFQANs(VOMSRequestContext requestContext) {
 
-    requestContext.getRequest()
-      .getRequestedFQANs()
-      .forEach(f -> issueRequestedFqan(requestContext, f));
-
-    resolveCompulsoryFQANs(requestContext);
+    VOMSAttributeView view = attributeView(requestContext);
 
+    resolveRequestedFQANs(requestContext, view);
+    resolveCompulsoryFQANs(requestContext, view);
   }
 
   @Override
   public void resolveGAs(VOMSRequestContext requestContext) {
 
-    Set<IamAttribute> attrs = requestContext.getIamAccount().getAttributes();
-    for (IamAttribute a : attrs) {
+    for (Entry<String, String> a : attributeView(requestContext).getAttributes()) {
       VOMSGenericAttributeImpl attr = new VOMSGenericAttributeImpl();
-      attr.setName(a.getName());
+      attr.setName(a.getKey());
       attr.setValue(a.getValue());
       attr.setContext(requestContext.getVOName());
 
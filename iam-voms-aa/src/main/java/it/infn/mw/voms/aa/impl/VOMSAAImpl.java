@@ -30,20 +30,20 @@ import it.infn.mw.voms.aa.VOMSErrorMessage;
 import it.infn.mw.voms.aa.VOMSRequest;
 import it.infn.mw.voms.aa.VOMSRequestContext;
 import it.infn.mw.voms.aa.VOMSResponse.Outcome;
-import it.infn.mw.voms.properties.VomsProperties;
+import it.infn.mw.voms.aa.VOMSVORegistry;
 
 public class VOMSAAImpl implements AttributeAuthority {
 
   private final IamVOMSAccountResolver accountResolver;
   private final AttributeResolver attributeResolver;
-  private final VomsProperties vomsProperties;
+  private final VOMSVORegistry voRegistry;
   private final Clock clock;
 
   public VOMSAAImpl(IamVOMSAccountResolver accountResolver, AttributeResolver attributeResolver,
-      VomsProperties props, Clock clock) {
+      VOMSVORegistry voRegistry, Clock clock) {
     this.accountResolver = accountResolver;
     this.attributeResolver = attributeResolver;
-    this.vomsProperties = props;
+    this.voRegistry = voRegistry;
     this.clock = clock;
   }
 
@@ -61,7 +61,9 @@ public class VOMSAAImpl implements AttributeAuthority {
 
   private void handleRequestedValidity(VOMSRequestContext context) {
 
-    final long MAX_VALIDITY = vomsProperties.getAa().getMaxAcLifetimeInSeconds();
+    final long MAX_VALIDITY = voRegistry.findByName(context.getVOName())
+      .orElse(voRegistry.getDefaultVO())
+      .getMaxAcLifetimeInSeconds();
 
     long validity = MAX_VALIDITY;
     long requestedValidity = context.getRequest().getRequestedValidity();
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.aa.impl;
+
+import static java.util.Objects.isNull;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamAccountGroupMembership;
+import it.infn.mw.iam.persistence.model.IamAttribute;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.persistence.model.IamLabel;
+import it.infn.mw.voms.api.VOMSFqan;
+
+/**
+ * A precomputed, immutable view of the VOMS attributes of an account in a given VO.
+ * 
+ * The view is stamped with a version computed from the account last update time and from the
+ * account group memberships (group id and group last update time), which are updated by IAM when
+ * memberships, group labels or account attributes change.
+ */
+public class VOMSAttributeView {
+
+  private final long version;
+  private final List<String> compulsoryFqans;
+  private final Set<String> groupNames;
+  private final Set<String> roleGroupNames;
+  private final List<Entry<String, String>> attributes;
+
+  private VOMSAttributeView(long version, List<String> compulsoryFqans, Set<String> groupNames,
+      Set<String> roleGroupNames, List<Entry<String, String>> attributes) {
+    this.version = version;
+    this.compulsoryFqans = compulsoryFqans;
+    this.groupNames = groupNames;
+    this.roleGroupNames = roleGroupNames;
+    this.attributes = attributes;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the compulsory FQANs of the account, sorted by group name
+   */
+  public List<String> getCompulsoryFqans() {
+    return compulsoryFqans;
+  }
+
+  /**
+   * @return the account attributes, as (name, value) pairs
+   */
+  public List<Entry<String, String>> getAttributes() {
+    return attributes;
+  }
+
+  public boolean isMemberOf(String groupName) {
+    return groupNames.contains(groupName);
+  }
+
+  public boolean hasFqan(VOMSFqan fqan) {
+    final String name = fqan.asIamGroupName();
+    if (fqan.isRoleFqan()) {
+      return roleGroupNames.contains(name);
+    }
+    return groupNames.contains(name);
+  }
+
+  private static long timestamp(Date date) {
+    return isNull(date) ? 0L : date.getTime();
+  }
+
+  public static long computeVersion(IamAccount account) {
+
+    long membershipsHash = 0L;
+    for (IamAccountGroupMembership m : account.getGroups()) {
+      IamGroup g = m.getGroup();
+      long h = 31L * (isNull(g.getId()) ? 0L : g.getId()) + timestamp(g.getLastUpdateTime());
+      membershipsHash += (h ^ (h >>> 29)) * 0x9E3779B97F4A7C15L;
+    }
+
+    long version = timestamp(account.getLastUpdateTime());
+    version = 31L * version + account.getGroups().size();
+    return 31L * version + membershipsHash;
+  }
+
+  public static VOMSAttributeView build(IamAccount account, String voName,
+      IamLabel vomsRoleLabel) {
+
+    final String voPrefix = voName + "/";
+
+    ImmutableSet.Builder<String> groupNames = ImmutableSet.builder();
+    ImmutableSet.Builder<String> roleGroupNames = ImmutableSet.builder();
+    List<String> vomsGroupNames = Lists.newArrayList();
+
+    for (IamAccountGroupMembership m : account.getGroups()) {
+      IamGroup g = m.getGroup();
+      groupNames.add(g.getName());
+
+      if (g.getLabels().contains(vomsRoleLabel)) {
+        roleGroupNames.add(g.getName());
+      } else if (g.getName().equals(voName) || g.getName().startsWith(voPrefix)) {
+        vomsGroupNames.add(g.getName());
+      }
+    }
+
+    ImmutableList.Builder<String> compulsoryFqans = ImmutableList.builder();
+    Ordering.natural().sortedCopy(vomsGroupNames).forEach(n -> compulsoryFqans.add("/" + n));
+
+    ImmutableList.Builder<Entry<String, String>> attributes = ImmutableList.builder();
+    for (IamAttribute a : account.getAttributes()) {
+      attributes.add(Maps.immutableEntry(a.getName(), a.getValue()));
+    }
+
+    return new VOMSAttributeView(computeVersion(account), compulsoryFqans.build(),
+        groupNames.build(), roleGroupNames.build(), attributes.build());
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.aa.impl;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamLabel;
+
+/**
+ * Caches {@link VOMSAttributeView}s per account and VO.
+ * 
+ * Each VO gets its own cache, bounded by the configured maximum size, so that a busy VO cannot
+ * evict the entries of the others.
+ * 
+ * A cached view is used only if its version matches the one computed from the account being
+ * resolved, so that changes to memberships, group labels and attributes done by IAM are
+ * picked up on the next request. Entries also expire after a configurable time.
+ */
+public class VOMSAttributeViewCache {
+
+  public static final Logger LOG = LoggerFactory.getLogger(VOMSAttributeViewCache.class);
+
+  private final IamLabel vomsRoleLabel;
+  private final long maxSize;
+  private final long ttlInSeconds;
+  private final Ticker ticker;
+
+  private final Map<String, Cache<String, VOMSAttributeView>> voCaches =
+      new ConcurrentHashMap<>();
+
+  public VOMSAttributeViewCache(IamLabel vomsRoleLabel, long maxSize, long ttlInSeconds,
+      Clock clock) {
+    this.vomsRoleLabel = vomsRoleLabel;
+    this.maxSize = maxSize;
+    this.ttlInSeconds = ttlInSeconds;
+    this.ticker = new Ticker() {
+      @Override
+      public long read() {
+        return MILLISECONDS.toNanos(clock.millis());
+      }
+    };
+  }
+
+  private Cache<String, VOMSAttributeView> newCache(String voName) {
+    return CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttlInSeconds, SECONDS)
+      .ticker(ticker)
+      .build();
+  }
+
+  private Cache<String, VOMSAttributeView> voCache(String voName) {
+    return voCaches.computeIfAbsent(voName, this::newCache);
+  }
+
+  public VOMSAttributeView getView(IamAccount account, String voName) {
+
+    final Cache<String, VOMSAttributeView> cache = voCache(voName);
+    final String key = account.getUuid();
+    final long version = VOMSAttributeView.computeVersion(account);
+
+    VOMSAttributeView view = cache.getIfPresent(key);
+
+    if (view != null && view.getVersion() == version) {
+      return view;
+    }
+
+    LOG.debug("Building VOMS attribute view for account {} in VO {}", account.getUsername(),
+        voName);
+
+    view = VOMSAttributeView.build(account, voName, vomsRoleLabel);
+    cache.put(key, view);
+    return view;
+  }
+
+  public void evict(IamAccount account, String voName) {
+    voCache(voName).invalidate(account.getUuid());
+  }
+
+  public void evictAll() {
+    voCaches.values().forEach(Cache::invalidateAll);
+  }
+
+  public long size(String voName) {
+    return voCache(voName).size();
+  }
+}
@@ -16,6 +16,7 @@
 package it.infn.mw.voms.api;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -27,6 +28,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import it.infn.mw.iam.authn.x509.IamX509AuthenticationCredential;
 import it.infn.mw.iam.persistence.model.IamAccount;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
@@ -35,9 +38,9 @@ import it.infn.mw.voms.aa.AttributeAuthority;
 import it.infn.mw.voms.aa.RequestContextFactory;
 import it.infn.mw.voms.aa.VOMSErrorMessage;
 import it.infn.mw.voms.aa.VOMSRequestContext;
-import it.infn.mw.voms.aa.ac.ACGenerator;
+import it.infn.mw.voms.aa.VOMSVORegistry;
+import it.infn.mw.voms.aa.VOMSVirtualOrganization;
 import it.infn.mw.voms.aa.ac.VOMSResponseBuilder;
-import it.infn.mw.voms.properties.VomsProperties;
 
 
 @RestController
@@ -46,25 +49,32 @@ public class VOMSController extends VOMSControllerSupport {
 
   public static final String LEGACY_VOMS_APIS_UA = "voms APIs 2.0";
 
-  private final VomsProperties vomsProperties;
+  public static final String REQUESTS_METRIC = "voms.aa.requests";
+  public static final String AC_SIGNING_METRIC = "voms.aa.ac.signing";
+
+  private final VOMSVORegistry voRegistry;
   private final AttributeAuthority aa;
-  private final ACGenerator acGenerator;
   private final VOMSResponseBuilder responseBuilder;
   private final AUPSignatureCheckService signatureCheckService;
+  private final MeterRegistry meterRegistry;
 
   @Autowired
-  public VOMSController(AttributeAuthority aa, VomsProperties props, ACGenerator acGenerator,
+  public VOMSController(AttributeAuthority aa, VOMSVORegistry voRegistry,
       VOMSResponseBuilder responseBuilder, IamAccountRepository accountRepo,
-      AUPSignatureCheckService signatureCheckService) {
+      AUPSignatureCheckService signatureCheckService, MeterRegistry meterRegistry) {
     this.aa = aa;
-    this.vomsProperties = props;
-    this.acGenerator = acGenerator;
+    this.voRegistry = voRegistry;
     this.responseBuilder = responseBuilder;
     this.signatureCheckService = signatureCheckService;
+    this.meterRegistry = meterRegistry;
+  }
+
+  private void countRequest(VOMSVirtualOrganization vo, String outcome) {
+    meterRegistry.counter(REQUESTS_METRIC, "vo", vo.getName(), "outcome", outcome).increment();
   }
 
   protected VOMSRequestContext initVomsRequestContext(IamX509AuthenticationCredential cred,
-      VOMSRequestDTO request, String userAgent) {
+      VOMSVirtualOrganization vo, VOMSRequestDTO request, String userAgent) {
     VOMSRequestContext context = RequestContextFactory.newContext();
 
     context.getRequest().setRequesterSubject(cred.getSubject());
@@ -73,9 +83,9 @@ public class VOMSController extends VOMSControllerSupport {
     context.getRequest().setHolderIssuer(cred.getIssuer());
     context.getRequest().setHolderCert(cred.getCertificateChain()[0]);
 
-    context.setHost(vomsProperties.getAa().getHost());
-    context.setPort(vomsProperties.getAa().getPort());
-    context.setVOName(vomsProperties.getAa().getVoName());
+    context.setHost(vo.getHost());
+    context.setPort(vo.getPort());
+    context.setVOName(vo.getName());
     context.setUserAgent(userAgent);
 
     context.getRequest().setRequestedFQANs(parseRequestedFqansString(request.getFqans()));
@@ -89,6 +99,7 @@ public class VOMSController extends VOMSControllerSupport {
   @GetMapping(value = "/generate-ac", produces = "text/xml; charset=utf-8")
   @PreAuthorize("hasRole('USER') and hasRole('X509')")
   public String generateAC(@RequestHeader(name = "User-Agent", required = false) String userAgent,
+      @RequestHeader(name = "Host", required = false) String host,
       @Validated VOMSRequestDTO request, BindingResult validationResult,
       Authentication authentication) throws IOException {
 
@@ -98,13 +109,24 @@ public class VOMSController extends VOMSControllerSupport {
       return responseBuilder.createErrorResponse(em);
     }
 
+    Optional<VOMSVirtualOrganization> maybeVo = voRegistry.resolve(request.getVo(), host);
+
+    if (!maybeVo.isPresent()) {
+      VOMSErrorMessage em =
+          VOMSErrorMessage.badRequest(String.format("VO %s is not served here", request.getVo()));
+      return responseBuilder.createErrorResponse(em);
+    }
+
+    VOMSVirtualOrganization vo = maybeVo.get();
+
     IamX509AuthenticationCredential cred =
         (IamX509AuthenticationCredential) authentication.getCredentials();
 
-    VOMSRequestContext context = initVomsRequestContext(cred, request, userAgent);
+    VOMSRequestContext context = initVomsRequestContext(cred, vo, request, userAgent);
 
     if (!aa.getAttributes(context)) {
 
+      countRequest(vo, "failure");
       VOMSErrorMessage em = context.getResponse().getErrorMessages().get(0);
 
       if (LEGACY_VOMS_APIS_UA.equals(userAgent)) {
@@ -115,10 +137,16 @@ public class VOMSController extends VOMSControllerSupport {
     } else {
       IamAccount user = context.getIamAccount();
       if (signatureCheckService.needsAupSignature(user)) {
+        countRequest(vo, "failure");
         VOMSErrorMessage em = VOMSErrorMessage.faildToSignAup(user.getUsername());
         return responseBuilder.createErrorResponse(em);
       }
-      byte[] acBytes = acGenerator.generateVOMSAC(context);
+
+      Timer.Sample signing = Timer.start(meterRegistry);
+      byte[] acBytes = vo.getAcGenerator().generateVOMSAC(context);
+      signing.stop(meterRegistry.timer(AC_SIGNING_METRIC, "vo", vo.getName()));
+
+      countRequest(vo, "success");
       return responseBuilder.createResponse(acBytes, context.getResponse().getWarnings());
     }
   }
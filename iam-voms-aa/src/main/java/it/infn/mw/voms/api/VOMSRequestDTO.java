@@ -31,6 +31,9 @@ public class VOMSRequestDTO {
   @Size(max=512, message="targets parameter length is limited to 512 characters")
   String targets;
 
+  @Size(max=255, message="vo parameter length is limited to 255 characters")
+  String vo;
+
   public VOMSRequestDTO() {
     // empty constructor
   }
@@ -58,4 +61,12 @@ public class VOMSRequestDTO {
   public void setTargets(String targets) {
     this.targets = targets;
   }
+
+  public String getVo() {
+    return vo;
+  }
+
+  public void setVo(String vo) {
+    this.vo = vo;
+  }
 }
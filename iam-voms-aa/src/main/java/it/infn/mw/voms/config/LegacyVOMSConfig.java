@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.config;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509KeyManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.italiangrid.voms.util.CertificateValidatorBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import eu.emi.security.authn.x509.X509CertChainValidatorExt;
+import eu.emi.security.authn.x509.impl.PEMCredential;
+import eu.emi.security.authn.x509.impl.SocketFactoryCreator;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.service.aup.AUPSignatureCheckService;
+import it.infn.mw.voms.aa.AttributeAuthority;
+import it.infn.mw.voms.aa.VOMSException;
+import it.infn.mw.voms.aa.VOMSVORegistry;
+import it.infn.mw.voms.aa.ac.VOMSResponseBuilder;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestHandler;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestParser;
+import it.infn.mw.voms.legacy.LegacyVOMSServer;
+import it.infn.mw.voms.properties.VomsProperties;
+import it.infn.mw.voms.properties.VomsProperties.TLSProperties;
+
+@Configuration
+@ConditionalOnProperty(name = "voms.legacy.enabled", havingValue = "true")
+public class LegacyVOMSConfig {
+
+  private X509CertChainValidatorExt certificateValidator(TLSProperties tls) {
+    return new CertificateValidatorBuilder().lazyAnchorsLoading(false)
+      .trustAnchorsDir(tls.getTrustAnchorsDir())
+      .trustAnchorsUpdateInterval(
+          TimeUnit.SECONDS.toMillis(tls.getTrustAnchorsRefreshIntervalSecs()))
+      .build();
+  }
+
+  private SSLContext legacySslContext(PEMCredential aaCredential, TLSProperties tls) {
+    try {
+      SSLContext context = SSLContext.getInstance("TLS");
+
+      X509KeyManager km = aaCredential.getKeyManager();
+      X509TrustManager tm = SocketFactoryCreator.getSSLTrustManager(certificateValidator(tls));
+      context.init(new X509KeyManager[] {km}, new TrustManager[] {tm}, new SecureRandom());
+
+      return context;
+    } catch (NoSuchAlgorithmException | KeyManagementException e) {
+      throw new VOMSException("Error configuring legacy VOMS TLS context", e);
+    }
+  }
+
+  @Bean
+  LegacyVOMSRequestHandler legacyRequestHandler(VOMSVORegistry voRegistry, AttributeAuthority aa,
+      AUPSignatureCheckService signatureCheckService, VOMSResponseBuilder responseBuilder,
+      TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+
+    return new LegacyVOMSRequestHandler(new LegacyVOMSRequestParser(), voRegistry, aa,
+        signatureCheckService, responseBuilder, transactionTemplate, meterRegistry);
+  }
+
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  LegacyVOMSServer legacyVomsServer(VomsProperties properties, PEMCredential aaCredential,
+      LegacyVOMSRequestHandler legacyRequestHandler) {
+
+    return new LegacyVOMSServer(properties.getLegacy(),
+        legacySslContext(aaCredential, properties.getTls()), legacyRequestHandler);
+  }
+}
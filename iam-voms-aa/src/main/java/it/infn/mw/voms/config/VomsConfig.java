@@ -15,11 +15,16 @@
  */
 package it.infn.mw.voms.config;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.KeyStoreException;
 import java.security.cert.CertificateException;
 import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -27,6 +32,7 @@ import org.springframework.security.web.firewall.HttpFirewall;
 import org.springframework.security.web.firewall.StrictHttpFirewall;
 
 import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
 
 import eu.emi.security.authn.x509.impl.PEMCredential;
 import it.infn.mw.iam.authn.x509.IamX509AuthenticationProvider;
@@ -34,8 +40,10 @@ import it.infn.mw.iam.authn.x509.IamX509AuthenticationUserDetailService;
 import it.infn.mw.iam.authn.x509.InactiveAccountAuthenticationHander;
 import it.infn.mw.iam.persistence.repository.IamAccountRepository;
 import it.infn.mw.voms.aa.AttributeAuthority;
+import it.infn.mw.voms.aa.VOMSVORegistry;
+import it.infn.mw.voms.aa.VOMSVirtualOrganization;
 import it.infn.mw.voms.aa.ac.ACGenerator;
-import it.infn.mw.voms.aa.ac.ThreadLocalACGenerator;
+import it.infn.mw.voms.aa.ac.TemplateACGenerator;
 import it.infn.mw.voms.aa.ac.VOMSResponseBuilder;
 import it.infn.mw.voms.aa.ac.VOMSResponseBuilderImpl;
 import it.infn.mw.voms.aa.impl.AttributeResolver;
@@ -47,6 +55,8 @@ import it.infn.mw.voms.aa.impl.LegacyFQANEncoding;
 import it.infn.mw.voms.aa.impl.NullFQANEncoding;
 import it.infn.mw.voms.aa.impl.VOMSAAImpl;
 import it.infn.mw.voms.properties.VomsProperties;
+import it.infn.mw.voms.properties.VomsProperties.VOMSAAProperties;
+import it.infn.mw.voms.properties.VomsProperties.VOMSVOProperties;
 
 @Configuration
 public class VomsConfig {
@@ -75,25 +85,67 @@ public class VomsConfig {
   }
 
 
-  @Bean
-  PEMCredential aaCredential(VomsProperties properties)
+  private static PEMCredential loadCredential(String privateKeyPath, String certificatePath)
       throws KeyStoreException, CertificateException, IOException {
 
-    try (FileInputStream privateKey = new FileInputStream(properties.getTls().getPrivateKeyPath());
-        FileInputStream certificate =
-            new FileInputStream(properties.getTls().getCertificatePath())) {
+    try (FileInputStream privateKey = new FileInputStream(privateKeyPath);
+        FileInputStream certificate = new FileInputStream(certificatePath)) {
       return new PEMCredential(privateKey, certificate, (char[]) null);
     }
   }
 
   @Bean
-  ACGenerator acGenerator(PEMCredential aaCredential) {
+  PEMCredential aaCredential(VomsProperties properties)
+      throws KeyStoreException, CertificateException, IOException {
 
-    ThreadLocalACGenerator generator = new ThreadLocalACGenerator();
-    generator.configure(aaCredential);
+    return loadCredential(properties.getTls().getPrivateKeyPath(),
+        properties.getTls().getCertificatePath());
+  }
+
+  private ACGenerator acGenerator(PEMCredential credential, int signerThreads,
+      VomsProperties properties) {
+
+    TemplateACGenerator generator = new TemplateACGenerator(signerThreads,
+        TimeUnit.SECONDS.toMillis(properties.getAcSigning().getSigningTimeoutInSeconds()));
+    generator.configure(credential);
     return generator;
+  }
+
+  private VOMSVirtualOrganization additionalVO(VOMSVOProperties vo, PEMCredential aaCredential,
+      VomsProperties properties) throws KeyStoreException, CertificateException, IOException {
+
+    PEMCredential credential = aaCredential;
 
+    if (!isNullOrEmpty(vo.getCertificatePath())) {
+      credential = loadCredential(vo.getPrivateKeyPath(), vo.getCertificatePath());
+    }
+
+    int signerThreads = Optional.ofNullable(vo.getSignerThreads())
+      .orElse(properties.getAcSigning().getSignerThreads());
+
+    long maxAcLifetime = Optional.ofNullable(vo.getMaxAcLifetimeInSeconds())
+      .orElse(properties.getAa().getMaxAcLifetimeInSeconds());
+
+    return new VOMSVirtualOrganization(vo.getVoName(), vo.getHost(), vo.getPort(), maxAcLifetime,
+        acGenerator(credential, signerThreads, properties));
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  VOMSVORegistry voRegistry(PEMCredential aaCredential, VomsProperties properties)
+      throws KeyStoreException, CertificateException, IOException {
+
+    VOMSAAProperties aa = properties.getAa();
+
+    VOMSVirtualOrganization defaultVO = new VOMSVirtualOrganization(aa.getVoName(), aa.getHost(),
+        aa.getPort(), aa.getMaxAcLifetimeInSeconds(),
+        acGenerator(aaCredential, properties.getAcSigning().getSignerThreads(), properties));
+
+    List<VOMSVirtualOrganization> vos = Lists.newArrayList();
+    for (VOMSVOProperties vo : properties.getVos()) {
+      vos.add(additionalVO(vo, aaCredential, properties));
+    }
 
+    return new VOMSVORegistry(defaultVO, vos);
   }
 
   @Bean
@@ -102,15 +154,16 @@ public class VomsConfig {
   }
 
   @Bean
-  AttributeResolver iamAttributeResolver(VomsProperties properties, FQANEncoding encoding) {
-    return new IamVOMSAttributeResolver(properties, encoding);
+  AttributeResolver iamAttributeResolver(VomsProperties properties, FQANEncoding encoding,
+      Clock clock) {
+    return new IamVOMSAttributeResolver(properties, encoding, clock);
   }
 
   @Bean
   AttributeAuthority aa(IamVOMSAccountResolver accountResolver, AttributeResolver attributeResolver,
-      VomsProperties props, Clock clock) {
+      VOMSVORegistry voRegistry, Clock clock) {
 
-    return new VOMSAAImpl(accountResolver, attributeResolver, props, clock);
+    return new VOMSAAImpl(accountResolver, attributeResolver, voRegistry, clock);
   }
 
   @Bean
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.legacy;
+
+import java.util.List;
+
+import it.infn.mw.voms.api.VOMSFqan;
+
+/**
+ * A request received over the legacy VOMS protocol
+ */
+public class LegacyVOMSRequest {
+
+  private final String voName;
+  private final List<VOMSFqan> requestedFqans;
+  private final List<String> targets;
+  private final long lifetime;
+
+  public LegacyVOMSRequest(String voName, List<VOMSFqan> requestedFqans, List<String> targets,
+      long lifetime) {
+    this.voName = voName;
+    this.requestedFqans = requestedFqans;
+    this.targets = targets;
+    this.lifetime = lifetime;
+  }
+
+  /**
+   * @return the VO name inferred from the request commands, or null if the request does not
+   *         name a VO
+   */
+  public String getVoName() {
+    return voName;
+  }
+
+  public List<VOMSFqan> getRequestedFqans() {
+    return requestedFqans;
+  }
+
+  public List<String> getTargets() {
+    return targets;
+  }
+
+  public long getLifetime() {
+    return lifetime;
+  }
+}
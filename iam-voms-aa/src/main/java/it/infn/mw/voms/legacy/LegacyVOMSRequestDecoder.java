@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Frames a legacy VOMS request. Legacy clients send a single XML document and then wait for the
+ * response without closing their side of the connection, so the request ends with the closing
+ * voms element.
+ */
+public class LegacyVOMSRequestDecoder extends ByteToMessageDecoder {
+
+  private static final ByteBuf REQUEST_END =
+      Unpooled.unreleasableBuffer(Unpooled.copiedBuffer("</voms>", UTF_8));
+
+  private final int maxRequestSize;
+
+  public LegacyVOMSRequestDecoder(int maxRequestSize) {
+    this.maxRequestSize = maxRequestSize;
+    setSingleDecode(true);
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+
+    int end = ByteBufUtil.indexOf(REQUEST_END.duplicate(), in);
+
+    if (end < 0) {
+      if (in.readableBytes() > maxRequestSize) {
+        in.skipBytes(in.readableBytes());
+        throw new TooLongFrameException(
+            "Legacy VOMS request exceeds " + maxRequestSize + " bytes");
+      }
+      return;
+    }
+
+    int length = end - in.readerIndex() + REQUEST_END.readableBytes();
+    out.add(in.readCharSequence(length, UTF_8).toString());
+  }
+}
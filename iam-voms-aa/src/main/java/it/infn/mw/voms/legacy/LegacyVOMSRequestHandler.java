@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Optional;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import eu.emi.security.authn.x509.impl.X500NameUtils;
+import eu.emi.security.authn.x509.proxy.ProxyUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.ssl.SslHandler;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.service.aup.AUPSignatureCheckService;
+import it.infn.mw.voms.aa.AttributeAuthority;
+import it.infn.mw.voms.aa.RequestContextFactory;
+import it.infn.mw.voms.aa.VOMSErrorMessage;
+import it.infn.mw.voms.aa.VOMSException;
+import it.infn.mw.voms.aa.VOMSNamingException;
+import it.infn.mw.voms.aa.VOMSRequestContext;
+import it.infn.mw.voms.aa.VOMSVORegistry;
+import it.infn.mw.voms.aa.VOMSVirtualOrganization;
+import it.infn.mw.voms.aa.ac.VOMSResponseBuilder;
+import it.infn.mw.voms.api.VOMSController;
+
+/**
+ * Serves legacy VOMS requests with the same attribute authority, VO registry and AC generators
+ * used by the REST endpoint.
+ * 
+ * This handler must be bound to an executor group separate from the I/O event loops, as
+ * attribute resolution hits the database.
+ */
+@Sharable
+public class LegacyVOMSRequestHandler extends SimpleChannelInboundHandler<String> {
+
+  public static final Logger LOG = LoggerFactory.getLogger(LegacyVOMSRequestHandler.class);
+
+  public static final String LEGACY_USER_AGENT = "voms legacy protocol";
+  public static final String REQUESTS_METRIC = "voms.aa.legacy.requests";
+
+  private final LegacyVOMSRequestParser parser;
+  private final VOMSVORegistry voRegistry;
+  private final AttributeAuthority aa;
+  private final AUPSignatureCheckService signatureCheckService;
+  private final VOMSResponseBuilder responseBuilder;
+  private final TransactionTemplate transactionTemplate;
+  private final MeterRegistry meterRegistry;
+
+  public LegacyVOMSRequestHandler(LegacyVOMSRequestParser parser, VOMSVORegistry voRegistry,
+      AttributeAuthority aa, AUPSignatureCheckService signatureCheckService,
+      VOMSResponseBuilder responseBuilder, TransactionTemplate transactionTemplate,
+      MeterRegistry meterRegistry) {
+    this.parser = parser;
+    this.voRegistry = voRegistry;
+    this.aa = aa;
+    this.signatureCheckService = signatureCheckService;
+    this.responseBuilder = responseBuilder;
+    this.transactionTemplate = transactionTemplate;
+    this.meterRegistry = meterRegistry;
+  }
+
+  private void countRequest(VOMSVirtualOrganization vo, String outcome) {
+    meterRegistry.counter(REQUESTS_METRIC, "vo", vo.getName(), "outcome", outcome).increment();
+  }
+
+  private String errorResponse(VOMSErrorMessage em) {
+    return responseBuilder.createLegacyErrorResponse(em);
+  }
+
+  protected VOMSRequestContext initVomsRequestContext(X509Certificate[] chain,
+      VOMSVirtualOrganization vo, LegacyVOMSRequest request) {
+
+    X509Certificate eec = ProxyUtils.getEndUserCertificate(chain);
+
+    VOMSRequestContext context = RequestContextFactory.newContext();
+
+    String subject = X500NameUtils.getReadableForm(eec.getSubjectX500Principal());
+    String issuer = X500NameUtils.getReadableForm(eec.getIssuerX500Principal());
+
+    context.getRequest().setRequesterSubject(subject);
+    context.getRequest().setRequesterIssuer(issuer);
+    context.getRequest().setHolderSubject(subject);
+    context.getRequest().setHolderIssuer(issuer);
+    context.getRequest().setHolderCert(eec);
+
+    context.setHost(vo.getHost());
+    context.setPort(vo.getPort());
+    context.setVOName(vo.getName());
+    context.setUserAgent(LEGACY_USER_AGENT);
+
+    context.getRequest().setRequestedFQANs(request.getRequestedFqans());
+    context.getRequest().setRequestedValidity(request.getLifetime());
+    context.getRequest().setTargets(request.getTargets());
+
+    return context;
+  }
+
+  private Optional<VOMSErrorMessage> resolveAttributes(VOMSRequestContext context) {
+
+    if (!aa.getAttributes(context)) {
+      return Optional.of(context.getResponse().getErrorMessages().get(0));
+    }
+
+    IamAccount user = context.getIamAccount();
+    if (signatureCheckService.needsAupSignature(user)) {
+      return Optional.of(VOMSErrorMessage.faildToSignAup(user.getUsername()));
+    }
+
+    return Optional.empty();
+  }
+
+  public String handleRequest(X509Certificate[] chain, String requestXml) {
+
+    LegacyVOMSRequest request;
+
+    try {
+      request = parser.parse(requestXml);
+    } catch (VOMSException | VOMSNamingException e) {
+      LOG.debug("Invalid legacy VOMS request: {}", e.getMessage());
+      return errorResponse(VOMSErrorMessage.badRequest(e.getMessage()));
+    }
+
+    Optional<VOMSVirtualOrganization> maybeVo = voRegistry.resolve(request.getVoName(), null);
+
+    if (!maybeVo.isPresent()) {
+      return errorResponse(VOMSErrorMessage
+        .badRequest(String.format("VO %s is not served here", request.getVoName())));
+    }
+
+    VOMSVirtualOrganization vo = maybeVo.get();
+    VOMSRequestContext context = initVomsRequestContext(chain, vo, request);
+
+    Optional<VOMSErrorMessage> error = transactionTemplate.execute(s -> resolveAttributes(context));
+
+    if (error.isPresent()) {
+      countRequest(vo, "failure");
+      return errorResponse(error.get());
+    }
+
+    try {
+      Timer.Sample signing = Timer.start(meterRegistry);
+      byte[] acBytes = vo.getAcGenerator().generateVOMSAC(context);
+      signing.stop(meterRegistry.timer(VOMSController.AC_SIGNING_METRIC, "vo", vo.getName()));
+      countRequest(vo, "success");
+      return responseBuilder.createLegacyResponse(acBytes);
+    } catch (IOException e) {
+      LOG.error("Error generating AC for {}: {}", context.getRequest().getHolderSubject(),
+          e.getMessage(), e);
+      countRequest(vo, "failure");
+      return errorResponse(VOMSErrorMessage.internalError(e.getMessage()));
+    }
+  }
+
+  private X509Certificate[] peerCertificateChain(ChannelHandlerContext ctx)
+      throws SSLPeerUnverifiedException {
+    Certificate[] certs = ctx.pipeline().get(SslHandler.class).engine().getSession()
+      .getPeerCertificates();
+    return Arrays.copyOf(certs, certs.length, X509Certificate[].class);
+  }
+
+  @Override
+  protected void channelRead0(ChannelHandlerContext ctx, String requestXml) throws Exception {
+
+    String response = handleRequest(peerCertificateChain(ctx), requestXml);
+
+    ctx.writeAndFlush(Unpooled.copiedBuffer(response, UTF_8))
+      .addListener(ChannelFutureListener.CLOSE);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    LOG.debug("Closing legacy VOMS connection from {}: {}", ctx.channel().remoteAddress(),
+        cause.getMessage());
+    ctx.close();
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.legacy;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import it.infn.mw.voms.aa.VOMSException;
+import it.infn.mw.voms.aa.VOMSNamingScheme;
+import it.infn.mw.voms.api.VOMSFqan;
+
+/**
+ * Parses the XML requests sent by clients speaking the legacy VOMS protocol, e.g.:
+ * 
+ * <pre>
+ * &lt;voms&gt;
+ *   &lt;command&gt;G/test&lt;/command&gt;
+ *   &lt;order&gt;/test,/test/group:role&lt;/order&gt;
+ *   &lt;targets&gt;host.example&lt;/targets&gt;
+ *   &lt;lifetime&gt;43200&lt;/lifetime&gt;
+ *   &lt;base64&gt;1&lt;/base64&gt;
+ *   &lt;version&gt;4&lt;/version&gt;
+ * &lt;/voms&gt;
+ * </pre>
+ * 
+ * Commands are G (group), R (role), B (group:role), A (all) and N/L (no attributes); the order
+ * element, when present, lists the requested FQANs (in the old group:role syntax) in the order
+ * in which they should be issued.
+ */
+public class LegacyVOMSRequestParser {
+
+  private static final Splitter COMMA_SPLITTER =
+      Splitter.on(',').omitEmptyStrings().trimResults();
+
+  private final DocumentBuilderFactory factory;
+
+  public LegacyVOMSRequestParser() {
+    factory = DocumentBuilderFactory.newInstance();
+    factory.setIgnoringComments(true);
+    factory.setNamespaceAware(false);
+    factory.setValidating(false);
+    factory.setExpandEntityReferences(false);
+
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    } catch (ParserConfigurationException e) {
+      throw new VOMSException(e);
+    }
+  }
+
+  private static String childText(Element root, String name) {
+    NodeList nodes = root.getElementsByTagName(name);
+    if (nodes.getLength() == 0) {
+      return null;
+    }
+    return nodes.item(0).getTextContent().trim();
+  }
+
+  private static String voNameFromGroup(String group) {
+    int end = group.indexOf('/', 1);
+    return end < 0 ? group.substring(1) : group.substring(1, end);
+  }
+
+  protected static VOMSFqan parseFqan(String fqan) {
+
+    String converted = fqan;
+
+    int colon = fqan.indexOf(':');
+    if (colon > 0) {
+      converted = String.format("%s/Role=%s", fqan.substring(0, colon), fqan.substring(colon + 1));
+    }
+
+    if (!VOMSNamingScheme.isGroup(converted) && !VOMSNamingScheme.isQualifiedRole(converted)) {
+      throw new VOMSException("Invalid FQAN: " + fqan);
+    }
+
+    return VOMSFqan.fromString(converted);
+  }
+
+  private Element parseDocument(String request) {
+    try {
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      builder.setErrorHandler(null);
+      Document doc = builder.parse(new InputSource(new StringReader(request)));
+      Element root = doc.getDocumentElement();
+
+      if (!"voms".equals(root.getNodeName())) {
+        throw new VOMSException("Unexpected request element: " + root.getNodeName());
+      }
+      return root;
+
+    } catch (ParserConfigurationException | SAXException | IOException e) {
+      throw new VOMSException("Error parsing legacy VOMS request: " + e.getMessage(), e);
+    }
+  }
+
+  public LegacyVOMSRequest parse(String request) {
+
+    Element root = parseDocument(request);
+
+    String voName = null;
+    List<VOMSFqan> commandFqans = Lists.newArrayList();
+    List<String> roles = Lists.newArrayList();
+
+    NodeList commands = root.getElementsByTagName("command");
+
+    for (int i = 0; i < commands.getLength(); i++) {
+      String command = commands.item(i).getTextContent().trim();
+
+      if (command.isEmpty()) {
+        throw new VOMSException("Empty command");
+      }
+
+      String argument = command.substring(1);
+
+      switch (command.charAt(0)) {
+        case 'G':
+          VOMSNamingScheme.checkGroup(argument);
+          if (voName == null) {
+            voName = voNameFromGroup(argument);
+          }
+          if (!argument.equals("/" + voNameFromGroup(argument))) {
+            commandFqans.add(VOMSFqan.fromString(argument));
+          }
+          break;
+
+        case 'B':
+          VOMSFqan fqan = parseFqan(argument);
+          if (voName == null) {
+            voName = voNameFromGroup(fqan.getFqan());
+          }
+          commandFqans.add(fqan);
+          break;
+
+        case 'R':
+          roles.add(argument);
+          break;
+
+        case 'A':
+        case 'N':
+        case 'L':
+          break;
+
+        default:
+          throw new VOMSException("Unsupported command: " + command);
+      }
+    }
+
+    if (voName != null) {
+      for (String r : roles) {
+        commandFqans.add(parseFqan(String.format("/%s:%s", voName, r)));
+      }
+    }
+
+    List<VOMSFqan> requestedFqans = commandFqans;
+
+    String order = childText(root, "order");
+    if (!isNullOrEmpty(order)) {
+      requestedFqans = Lists.newArrayList();
+      for (String f : COMMA_SPLITTER.split(order)) {
+        requestedFqans.add(parseFqan(f));
+      }
+    }
+
+    String targets = childText(root, "targets");
+    String lifetime = childText(root, "lifetime");
+
+    long requestedLifetime = -1;
+
+    if (!isNullOrEmpty(lifetime)) {
+      try {
+        requestedLifetime = Long.parseLong(lifetime);
+      } catch (NumberFormatException e) {
+        throw new VOMSException("Invalid lifetime: " + lifetime);
+      }
+    }
+
+    return new LegacyVOMSRequest(voName, requestedFqans,
+        isNullOrEmpty(targets) ? Lists.newArrayList() : COMMA_SPLITTER.splitToList(targets),
+        requestedLifetime);
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms.legacy;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import it.infn.mw.voms.properties.VomsProperties.VOMSLegacyProtocolProperties;
+
+/**
+ * A TLS server speaking the legacy VOMS protocol.
+ * 
+ * Connections are multiplexed on a small set of NIO event loops, which only handle TLS and request
+ * framing; requests are then served on a bounded executor group, so that a slow database or
+ * signer never stalls the I/O threads.
+ */
+public class LegacyVOMSServer {
+
+  public static final Logger LOG = LoggerFactory.getLogger(LegacyVOMSServer.class);
+
+  private final VOMSLegacyProtocolProperties properties;
+  private final SSLContext sslContext;
+  private final LegacyVOMSRequestHandler requestHandler;
+
+  private EventLoopGroup acceptorGroup;
+  private EventLoopGroup ioGroup;
+  private EventExecutorGroup requestGroup;
+  private Channel serverChannel;
+
+  public LegacyVOMSServer(VOMSLegacyProtocolProperties properties, SSLContext sslContext,
+      LegacyVOMSRequestHandler requestHandler) {
+    this.properties = properties;
+    this.sslContext = sslContext;
+    this.requestHandler = requestHandler;
+  }
+
+  private static ThreadFactoryBuilder threadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true);
+  }
+
+  private SslHandler sslHandler() {
+    SSLEngine engine = sslContext.createSSLEngine();
+    engine.setUseClientMode(false);
+    engine.setNeedClientAuth(true);
+
+    SslHandler handler = new SslHandler(engine);
+    handler.setHandshakeTimeout(properties.getHandshakeTimeoutInSeconds(), TimeUnit.SECONDS);
+    return handler;
+  }
+
+  public synchronized void start() throws InterruptedException {
+
+    acceptorGroup = new NioEventLoopGroup(1, threadFactory("voms-legacy-acceptor-%d").build());
+    ioGroup = new NioEventLoopGroup(properties.getIoThreads(),
+        threadFactory("voms-legacy-io-%d").build());
+    requestGroup = new DefaultEventExecutorGroup(properties.getRequestThreads(),
+        threadFactory("voms-legacy-request-%d").build());
+
+    ServerBootstrap bootstrap = new ServerBootstrap().group(acceptorGroup, ioGroup)
+      .channel(NioServerSocketChannel.class)
+      .option(ChannelOption.SO_BACKLOG, 1024)
+      .childOption(ChannelOption.TCP_NODELAY, true)
+      .childHandler(new ChannelInitializer<SocketChannel>() {
+        @Override
+        protected void initChannel(SocketChannel ch) {
+          ch.pipeline()
+            .addLast(sslHandler())
+            .addLast(new ReadTimeoutHandler(properties.getIdleTimeoutInSeconds(), TimeUnit.SECONDS))
+            .addLast(new LegacyVOMSRequestDecoder(properties.getMaxRequestSizeInBytes()))
+            .addLast(requestGroup, requestHandler);
+        }
+      });
+
+    serverChannel = bootstrap
+      .bind(new InetSocketAddress(properties.getBindAddress(), properties.getPort()))
+      .sync()
+      .channel();
+
+    LOG.info("Legacy VOMS protocol server listening on {}", serverChannel.localAddress());
+  }
+
+  public synchronized void stop() {
+
+    if (serverChannel != null) {
+      serverChannel.close().syncUninterruptibly();
+      serverChannel = null;
+    }
+
+    if (acceptorGroup != null) {
+      acceptorGroup.shutdownGracefully();
+      ioGroup.shutdownGracefully();
+      requestGroup.shutdownGracefully();
+    }
+  }
+
+  public synchronized int getPort() {
+    return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+  }
+}
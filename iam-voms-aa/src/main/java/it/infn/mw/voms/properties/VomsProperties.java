@@ -15,15 +15,21 @@
  */
 package it.infn.mw.voms.properties;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Positive;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import com.google.common.collect.Lists;
+
 @Configuration
 @ConfigurationProperties("voms")
 public class VomsProperties {
@@ -165,9 +171,238 @@ public class VomsProperties {
     }
   }
 
+  @Valid
+  public static class VOMSVOProperties {
+
+    @NotBlank
+    private String voName;
+
+    @NotBlank
+    private String host;
+
+    private int port = 15000;
+
+    private String certificatePath;
+
+    private String privateKeyPath;
+
+    @Positive
+    private Long maxAcLifetimeInSeconds;
+
+    @Positive
+    private Integer signerThreads;
+
+    public String getVoName() {
+      return voName;
+    }
+
+    public void setVoName(String voName) {
+      this.voName = voName;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public void setHost(String host) {
+      this.host = host;
+    }
+
+    public int getPort() {
+      return port;
+    }
+
+    public void setPort(int port) {
+      this.port = port;
+    }
+
+    public String getCertificatePath() {
+      return certificatePath;
+    }
+
+    public void setCertificatePath(String certificatePath) {
+      this.certificatePath = certificatePath;
+    }
+
+    public String getPrivateKeyPath() {
+      return privateKeyPath;
+    }
+
+    public void setPrivateKeyPath(String privateKeyPath) {
+      this.privateKeyPath = privateKeyPath;
+    }
+
+    public Long getMaxAcLifetimeInSeconds() {
+      return maxAcLifetimeInSeconds;
+    }
+
+    public void setMaxAcLifetimeInSeconds(Long maxAcLifetimeInSeconds) {
+      this.maxAcLifetimeInSeconds = maxAcLifetimeInSeconds;
+    }
+
+    public Integer getSignerThreads() {
+      return signerThreads;
+    }
+
+    public void setSignerThreads(Integer signerThreads) {
+      this.signerThreads = signerThreads;
+    }
+
+    @AssertTrue(message = "VO certificate and private key paths must be set together")
+    public boolean isCredentialConsistent() {
+      return isNullOrEmpty(certificatePath) == isNullOrEmpty(privateKeyPath);
+    }
+  }
+
+  public static class VOMSLegacyProtocolProperties {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String bindAddress = "0.0.0.0";
+
+    @Positive
+    private int port = 15001;
+
+    private int ioThreads = 0;
+
+    @Positive
+    private int requestThreads = 2 * Runtime.getRuntime().availableProcessors();
+
+    @Positive
+    private int maxRequestSizeInBytes = 16384;
+
+    @Positive
+    private long idleTimeoutInSeconds = 30;
+
+    @Positive
+    private long handshakeTimeoutInSeconds = 10;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public String getBindAddress() {
+      return bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+      this.bindAddress = bindAddress;
+    }
+
+    public int getPort() {
+      return port;
+    }
+
+    public void setPort(int port) {
+      this.port = port;
+    }
+
+    public int getIoThreads() {
+      return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+    }
+
+    public int getRequestThreads() {
+      return requestThreads;
+    }
+
+    public void setRequestThreads(int requestThreads) {
+      this.requestThreads = requestThreads;
+    }
+
+    public int getMaxRequestSizeInBytes() {
+      return maxRequestSizeInBytes;
+    }
+
+    public void setMaxRequestSizeInBytes(int maxRequestSizeInBytes) {
+      this.maxRequestSizeInBytes = maxRequestSizeInBytes;
+    }
+
+    public long getIdleTimeoutInSeconds() {
+      return idleTimeoutInSeconds;
+    }
+
+    public void setIdleTimeoutInSeconds(long idleTimeoutInSeconds) {
+      this.idleTimeoutInSeconds = idleTimeoutInSeconds;
+    }
+
+    public long getHandshakeTimeoutInSeconds() {
+      return handshakeTimeoutInSeconds;
+    }
+
+    public void setHandshakeTimeoutInSeconds(long handshakeTimeoutInSeconds) {
+      this.handshakeTimeoutInSeconds = handshakeTimeoutInSeconds;
+    }
+  }
+
+  public static class VOMSACSigningProperties {
+
+    @Positive
+    private int signerThreads = Runtime.getRuntime().availableProcessors();
+
+    @Positive
+    private long signingTimeoutInSeconds = 10;
+
+    public int getSignerThreads() {
+      return signerThreads;
+    }
+
+    public void setSignerThreads(int signerThreads) {
+      this.signerThreads = signerThreads;
+    }
+
+    public long getSigningTimeoutInSeconds() {
+      return signingTimeoutInSeconds;
+    }
+
+    public void setSigningTimeoutInSeconds(long signingTimeoutInSeconds) {
+      this.signingTimeoutInSeconds = signingTimeoutInSeconds;
+    }
+  }
+
+  public static class VOMSAttributeCacheProperties {
+
+    @Positive
+    private long maxSize = 10000;
+
+    @Positive
+    private long ttlInSeconds = TimeUnit.MINUTES.toSeconds(10);
+
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public long getTtlInSeconds() {
+      return ttlInSeconds;
+    }
+
+    public void setTtlInSeconds(long ttlInSeconds) {
+      this.ttlInSeconds = ttlInSeconds;
+    }
+  }
+
   private TLSProperties tls;
   private VOMSTrustStoreProperties trust;
   private VOMSAAProperties aa;
+  private VOMSACSigningProperties acSigning = new VOMSACSigningProperties();
+  private VOMSAttributeCacheProperties attributeCache = new VOMSAttributeCacheProperties();
+
+  @Valid
+  private List<VOMSVOProperties> vos = Lists.newArrayList();
+
+  private VOMSLegacyProtocolProperties legacy = new VOMSLegacyProtocolProperties();
 
   public TLSProperties getTls() {
     return tls;
@@ -192,4 +427,36 @@ public class VomsProperties {
   public void setAa(VOMSAAProperties aa) {
     this.aa = aa;
   }
+
+  public VOMSACSigningProperties getAcSigning() {
+    return acSigning;
+  }
+
+  public void setAcSigning(VOMSACSigningProperties acSigning) {
+    this.acSigning = acSigning;
+  }
+
+  public VOMSAttributeCacheProperties getAttributeCache() {
+    return attributeCache;
+  }
+
+  public void setAttributeCache(VOMSAttributeCacheProperties attributeCache) {
+    this.attributeCache = attributeCache;
+  }
+
+  public List<VOMSVOProperties> getVos() {
+    return vos;
+  }
+
+  public void setVos(List<VOMSVOProperties> vos) {
+    this.vos = vos;
+  }
+
+  public VOMSLegacyProtocolProperties getLegacy() {
+    return legacy;
+  }
+
+  public void setLegacy(VOMSLegacyProtocolProperties legacy) {
+    this.legacy = legacy;
+  }
 }
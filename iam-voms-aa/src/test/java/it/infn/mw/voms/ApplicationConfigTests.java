@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import it.infn.mw.voms.properties.VomsProperties;
+
+public class ApplicationConfigTests {
+
+  private StandardEnvironment loadPackagedConfig() throws IOException {
+    StandardEnvironment env = new StandardEnvironment();
+
+    for (PropertySource<?> ps : new YamlPropertySourceLoader().load("application.yml",
+        new ClassPathResource("application.yml"))) {
+      env.getPropertySources().addLast(ps);
+    }
+
+    return env;
+  }
+
+  @Test
+  public void packagedConfigurationBindsVomsProperties() throws IOException {
+
+    VomsProperties properties =
+        Binder.get(loadPackagedConfig()).bind("voms", VomsProperties.class).get();
+
+    assertThat(properties.getAa().getPort(), is(15000));
+    assertThat(properties.getAa().getVoName(), is("test"));
+    assertThat(properties.getAa().getUseLegacyFqanEncoding(), is(false));
+
+    assertThat(properties.getLegacy().isEnabled(), is(false));
+    assertThat(properties.getLegacy().getBindAddress(), is("0.0.0.0"));
+    assertThat(properties.getLegacy().getPort(), is(15001));
+    assertThat(properties.getLegacy().getIdleTimeoutInSeconds(), is(30L));
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+
+import org.italiangrid.voms.VOMSAttribute;
+import org.italiangrid.voms.request.VOMSResponse;
+import org.italiangrid.voms.request.impl.LegacyVOMSResponseParsingStrategy;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import eu.emi.security.authn.x509.impl.CertificateUtils;
+import eu.emi.security.authn.x509.impl.CertificateUtils.Encoding;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.service.aup.AUPSignatureCheckService;
+import it.infn.mw.voms.aa.AttributeAuthority;
+import it.infn.mw.voms.aa.VOMSVORegistry;
+import it.infn.mw.voms.aa.ac.VOMSResponseBuilder;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestHandler;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestParser;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+@Transactional
+public class LegacyVOMSProtocolTests extends TestSupport {
+
+  LegacyVOMSResponseParsingStrategy responseParser = new LegacyVOMSResponseParsingStrategy();
+
+  @Autowired
+  VOMSVORegistry voRegistry;
+
+  @Autowired
+  AttributeAuthority aa;
+
+  @Autowired
+  AUPSignatureCheckService signatureCheckService;
+
+  @Autowired
+  VOMSResponseBuilder responseBuilder;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  LegacyVOMSRequestHandler handler;
+
+  X509Certificate[] test0Chain;
+
+  @Before
+  public void setup() throws IOException {
+    handler = new LegacyVOMSRequestHandler(new LegacyVOMSRequestParser(), voRegistry, aa,
+        signatureCheckService, responseBuilder, transactionTemplate, meterRegistry);
+
+    try (InputStream is = getClass().getResourceAsStream(TEST_0_EEC_PATH)) {
+      test0Chain = new X509Certificate[] {CertificateUtils.loadCertificate(is, Encoding.PEM)};
+    }
+  }
+
+  private VOMSResponse handle(String request) {
+    String response = handler.handleRequest(test0Chain, request);
+    return responseParser.parse(new ByteArrayInputStream(response.getBytes(UTF_8)));
+  }
+
+  @Test
+  public void legacyRequestIsServed() throws Exception {
+    IamAccount testAccount = setupTestUser();
+    IamGroup rootGroup = createVomsRootGroup();
+    IamGroup subGroup = createChildGroup(rootGroup, "sub");
+    addAccountToGroup(testAccount, rootGroup);
+    addAccountToGroup(testAccount, subGroup);
+
+    VOMSResponse response =
+        handle("<voms><command>G/test</command><order>/test/sub,/test</order></voms>");
+
+    assertThat(response.hasErrors(), is(false));
+
+    VOMSAttribute attrs = getAttributeCertificate(response);
+    assertThat(attrs.getVO(), is(VO_NAME));
+    assertThat(attrs.getHolder().getName(), containsString("test0"));
+    assertThat(attrs.getFQANs().get(0), is("/test/sub"));
+    assertThat(attrs.getFQANs(), hasItem("/test"));
+
+    assertThat(meterRegistry
+      .counter(LegacyVOMSRequestHandler.REQUESTS_METRIC, "vo", VO_NAME, "outcome", "success")
+      .count(), is(1.0));
+  }
+
+  @Test
+  public void unknownUserGetsAnError() throws Exception {
+    VOMSResponse response = handle("<voms><command>G/test</command></voms>");
+
+    assertThat(response.hasErrors(), is(true));
+    assertThat(response.errorMessages()[0].getMessage(), containsString("User unknown to this VO"));
+  }
+
+  @Test
+  public void unknownVoGetsAnError() throws Exception {
+    VOMSResponse response = handle("<voms><command>G/unknown</command></voms>");
+
+    assertThat(response.hasErrors(), is(true));
+    assertThat(response.errorMessages()[0].getMessage(),
+        containsString("VO unknown is not served here"));
+  }
+
+  @Test
+  public void malformedRequestGetsAnError() throws Exception {
+    VOMSResponse response = handle("<voms><command>Q</command></voms>");
+
+    assertThat(response.hasErrors(), is(true));
+  }
+}
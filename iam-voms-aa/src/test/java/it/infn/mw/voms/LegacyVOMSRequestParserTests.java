@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import it.infn.mw.voms.aa.VOMSException;
+import it.infn.mw.voms.aa.VOMSNamingException;
+import it.infn.mw.voms.api.VOMSFqan;
+import it.infn.mw.voms.legacy.LegacyVOMSRequest;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestDecoder;
+import it.infn.mw.voms.legacy.LegacyVOMSRequestParser;
+
+public class LegacyVOMSRequestParserTests {
+
+  LegacyVOMSRequestParser parser = new LegacyVOMSRequestParser();
+
+  @Test
+  public void groupAndRoleCommandsAreParsed() {
+    LegacyVOMSRequest request = parser.parse("<?xml version=\"1.0\" encoding=\"US-ASCII\"?>"
+        + "<voms><command>G/test</command><command>G/test/sub</command>"
+        + "<command>B/test/sub:admin</command><command>Rproduction</command>"
+        + "<targets>a.example,b.example</targets><lifetime>3600</lifetime>"
+        + "<base64>1</base64><version>4</version></voms>");
+
+    assertThat(request.getVoName(), is("test"));
+    assertThat(request.getRequestedFqans(),
+        contains(VOMSFqan.fromString("/test/sub"), VOMSFqan.fromString("/test/sub/Role=admin"),
+            VOMSFqan.fromString("/test/Role=production")));
+    assertThat(request.getTargets(), contains("a.example", "b.example"));
+    assertThat(request.getLifetime(), is(3600L));
+  }
+
+  @Test
+  public void orderElementOverridesCommands() {
+    LegacyVOMSRequest request = parser.parse("<voms><command>G/test</command>"
+        + "<command>G/test/sub</command><order>/test/sub:admin,/test</order></voms>");
+
+    assertThat(request.getRequestedFqans(),
+        contains(VOMSFqan.fromString("/test/sub/Role=admin"), VOMSFqan.fromString("/test")));
+    assertThat(request.getLifetime(), is(-1L));
+  }
+
+  @Test
+  public void allAttributesCommandRequestsNoSpecificFqan() {
+    LegacyVOMSRequest request = parser.parse("<voms><command>A</command></voms>");
+
+    assertThat(request.getVoName(), nullValue());
+    assertThat(request.getRequestedFqans(), empty());
+  }
+
+  @Test(expected = VOMSException.class)
+  public void unknownCommandIsRejected() {
+    parser.parse("<voms><command>X/test</command></voms>");
+  }
+
+  @Test(expected = VOMSNamingException.class)
+  public void invalidGroupIsRejected() {
+    parser.parse("<voms><command>Gtest</command></voms>");
+  }
+
+  @Test(expected = VOMSException.class)
+  public void doctypeIsRejected() {
+    parser.parse("<!DOCTYPE voms [<!ENTITY x \"y\">]><voms><command>G/test</command></voms>");
+  }
+
+  @Test(expected = VOMSException.class)
+  public void wrongRootElementIsRejected() {
+    parser.parse("<vomsans><command>G/test</command></vomsans>");
+  }
+
+  @Test
+  public void decoderWaitsForTheWholeRequest() {
+    EmbeddedChannel channel = new EmbeddedChannel(new LegacyVOMSRequestDecoder(1024));
+
+    channel.writeInbound(Unpooled.copiedBuffer("<voms><command>G/te", UTF_8));
+    assertThat(channel.inboundMessages(), empty());
+
+    channel.writeInbound(Unpooled.copiedBuffer("st</command></voms>", UTF_8));
+    assertThat(channel.readInbound(), is("<voms><command>G/test</command></voms>"));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test(expected = TooLongFrameException.class)
+  public void decoderRejectsOversizedRequests() {
+    EmbeddedChannel channel = new EmbeddedChannel(new LegacyVOMSRequestDecoder(16));
+    channel.writeInbound(Unpooled.copiedBuffer("<voms><command>G/test</command>", UTF_8));
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.FileInputStream;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.X509AttributeCertificateHolder;
+import org.italiangrid.voms.VOMSGenericAttribute;
+import org.italiangrid.voms.asn1.VOMSACGenerator;
+import org.italiangrid.voms.ac.impl.VOMSGenericAttributeImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import eu.emi.security.authn.x509.impl.CertificateUtils;
+import eu.emi.security.authn.x509.impl.CertificateUtils.Encoding;
+import eu.emi.security.authn.x509.impl.PEMCredential;
+import it.infn.mw.voms.aa.RequestContextFactory;
+import it.infn.mw.voms.aa.ac.TemplateACGenerator;
+
+public class TemplateACGeneratorTests {
+
+  static final String AA_CERT = "src/test/resources/certs/voms_example.cert.pem";
+  static final String AA_KEY = "src/test/resources/certs/voms_example.key.pem";
+  static final String HOLDER_CERT = "src/test/resources/certs/test0.cert.pem";
+
+  static final String VO = "test";
+  static final String HOST = "voms.example";
+  static final int PORT = 15000;
+
+  PEMCredential aaCredential;
+  X509Certificate holderCert;
+
+  TemplateACGenerator generator;
+
+  final Date notBefore = new Date(1600000000000L);
+  final Date notAfter = new Date(1600043200000L);
+
+  @Before
+  public void setup() throws Exception {
+    CertificateUtils.configureSecProvider();
+
+    try (FileInputStream key = new FileInputStream(AA_KEY);
+        FileInputStream cert = new FileInputStream(AA_CERT);
+        FileInputStream holder = new FileInputStream(HOLDER_CERT)) {
+      aaCredential = new PEMCredential(key, cert, (char[]) null);
+      holderCert = CertificateUtils.loadCertificate(holder, Encoding.PEM);
+    }
+
+    generator = new TemplateACGenerator(2, TimeUnit.SECONDS.toMillis(10));
+    generator.configure(aaCredential);
+  }
+
+  @After
+  public void teardown() {
+    generator.shutdown();
+  }
+
+  private byte[] referenceAC(List<String> fqans, List<VOMSGenericAttribute> gas,
+      List<String> targets, BigInteger serial) throws Exception {
+
+    X509AttributeCertificateHolder ac = new VOMSACGenerator(aaCredential)
+      .generateVOMSAttributeCertificate(fqans, gas, targets, holderCert, serial, notBefore,
+          notAfter, VO, HOST, PORT);
+
+    return ac.getEncoded();
+  }
+
+  private VOMSGenericAttribute ga(String name, String value) {
+    VOMSGenericAttributeImpl attr = new VOMSGenericAttributeImpl();
+    attr.setName(name);
+    attr.setValue(value);
+    attr.setContext(VO);
+    return attr;
+  }
+
+  @Test
+  public void generatedAcMatchesVomsApiEncoding() throws Exception {
+
+    List<String> fqans = Lists.newArrayList("/test", "/test/cms", "/test/Role=VO-Admin");
+    BigInteger serial = BigInteger.valueOf(123456789L);
+
+    byte[] ac = generator.generateVOMSAC(fqans, Lists.newArrayList(), Lists.newArrayList(),
+        holderCert, serial, notBefore, notAfter, VO, HOST, PORT);
+
+    assertThat(ac, is(referenceAC(fqans, Lists.newArrayList(), Lists.newArrayList(), serial)));
+  }
+
+  @Test
+  public void generatedAcWithGasAndTargetsMatchesVomsApiEncoding() throws Exception {
+
+    List<String> fqans = Lists.newArrayList("/test");
+    List<VOMSGenericAttribute> gas = Lists.newArrayList(ga("nickname", "test0"), ga("x", "y"));
+    List<String> targets = Lists.newArrayList("target.example", "other.example");
+    BigInteger serial = new BigInteger("987654321987654321987654321");
+
+    byte[] ac = generator.generateVOMSAC(fqans, gas, targets, holderCert, serial, notBefore,
+        notAfter, VO, HOST, PORT);
+
+    assertThat(ac, is(referenceAC(fqans, gas, targets, serial)));
+  }
+
+  @Test
+  public void generatedAcIsParseable() throws Exception {
+
+    BigInteger serial = BigInteger.valueOf(42L);
+
+    byte[] ac = generator.generateVOMSAC(Lists.newArrayList("/test"), Lists.newArrayList(),
+        Lists.newArrayList(), holderCert, serial, notBefore, notAfter, VO, HOST, PORT);
+
+    X509AttributeCertificateHolder holder = new X509AttributeCertificateHolder(ac);
+    assertThat(holder.getSerialNumber(), is(serial));
+    assertThat(holder.getNotAfter(), is(notAfter));
+  }
+
+  @Test
+  public void concurrentGenerationProducesConsistentAcs() throws Exception {
+
+    List<String> fqans = Lists.newArrayList("/test", "/test/cms");
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Callable<Boolean>> tasks = Lists.newArrayList();
+
+      for (int i = 0; i < 64; i++) {
+        BigInteger serial = BigInteger.valueOf(1000L + i);
+        tasks.add(() -> {
+          byte[] ac = generator.generateVOMSAC(fqans, Lists.newArrayList(),
+              Lists.newArrayList(), holderCert, serial, notBefore, notAfter, VO, HOST, PORT);
+          return Arrays.equals(ac,
+              referenceAC(fqans, Lists.newArrayList(), Lists.newArrayList(), serial));
+        });
+      }
+
+      for (Future<Boolean> f : clients.invokeAll(tasks)) {
+        assertThat(f.get(), is(true));
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void unconfiguredGeneratorFails() throws Exception {
+    TemplateACGenerator unconfigured = new TemplateACGenerator(1, 1000);
+    unconfigured.generateVOMSAC(RequestContextFactory.newContext());
+  }
+}
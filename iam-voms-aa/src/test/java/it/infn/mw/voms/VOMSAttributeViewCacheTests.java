@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.google.common.collect.Lists;
+
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.iam.persistence.model.IamAccountGroupMembership;
+import it.infn.mw.iam.persistence.model.IamAttribute;
+import it.infn.mw.iam.persistence.model.IamGroup;
+import it.infn.mw.iam.persistence.model.IamLabel;
+import it.infn.mw.voms.aa.RequestContextFactory;
+import it.infn.mw.voms.aa.VOMSRequestContext;
+import it.infn.mw.voms.aa.impl.IamVOMSAttributeResolver;
+import it.infn.mw.voms.aa.impl.NullFQANEncoding;
+import it.infn.mw.voms.aa.impl.VOMSAttributeView;
+import it.infn.mw.voms.aa.impl.VOMSAttributeViewCache;
+import it.infn.mw.voms.api.VOMSFqan;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VOMSAttributeViewCacheTests {
+
+  static final String VO = "test";
+  static final IamLabel ROLE_LABEL = IamLabel.builder().name("voms.role").build();
+
+  @Mock
+  Clock clock;
+
+  VOMSAttributeViewCache cache;
+  IamAccount account;
+
+  long groupId = 1;
+
+  @Before
+  public void setup() {
+    when(clock.millis()).thenReturn(0L);
+    cache = new VOMSAttributeViewCache(ROLE_LABEL, 100, 600, clock);
+
+    account = IamAccount.newAccount();
+    account.setUuid(UUID.randomUUID().toString());
+    account.setUsername("test");
+    account.setLastUpdateTime(new Date(1000L));
+
+    addGroup("test/sub", false);
+    addGroup("test", false);
+    addGroup("test/VO-Admin", true);
+    addGroup("other", false);
+    account.getAttributes().add(IamAttribute.newInstance("nickname", "tester"));
+  }
+
+  private IamGroup addGroup(String name, boolean role) {
+    IamGroup g = new IamGroup();
+    g.setId(groupId++);
+    g.setUuid(UUID.randomUUID().toString());
+    g.setName(name);
+    g.setLastUpdateTime(new Date(1000L));
+    if (role) {
+      g.getLabels().add(ROLE_LABEL);
+    }
+    account.getGroups().add(IamAccountGroupMembership.forAccountAndGroup(account, g));
+    return g;
+  }
+
+  @Test
+  public void viewContainsSortedCompulsoryFqansRolesAndAttributes() {
+    VOMSAttributeView view = cache.getView(account, VO);
+
+    assertThat(view.getCompulsoryFqans(), contains("/test", "/test/sub"));
+    assertThat(view.hasFqan(VOMSFqan.fromString("/test/Role=VO-Admin")), is(true));
+    assertThat(view.hasFqan(VOMSFqan.fromString("/test/sub/Role=VO-Admin")), is(false));
+    assertThat(view.hasFqan(VOMSFqan.fromString("/test/sub")), is(true));
+    assertThat(view.isMemberOf("other"), is(true));
+    assertThat(view.getAttributes(), hasSize(1));
+  }
+
+  @Test
+  public void viewIsReusedWhileAccountIsUnchanged() {
+    VOMSAttributeView view = cache.getView(account, VO);
+    assertThat(cache.getView(account, VO), sameInstance(view));
+  }
+
+  @Test
+  public void viewIsRebuiltOnMembershipChange() {
+    VOMSAttributeView view = cache.getView(account, VO);
+    addGroup("test/new", false);
+
+    VOMSAttributeView newView = cache.getView(account, VO);
+    assertThat(newView, not(sameInstance(view)));
+    assertThat(newView.getCompulsoryFqans(), contains("/test", "/test/new", "/test/sub"));
+  }
+
+  @Test
+  public void viewIsRebuiltOnGroupLabelChange() {
+    IamGroup g = addGroup("test/Production", false);
+    assertThat(cache.getView(account, VO).getCompulsoryFqans(),
+        contains("/test", "/test/Production", "/test/sub"));
+
+    g.getLabels().add(ROLE_LABEL);
+    g.setLastUpdateTime(new Date(2000L));
+
+    VOMSAttributeView view = cache.getView(account, VO);
+    assertThat(view.hasFqan(VOMSFqan.fromString("/test/Role=Production")), is(true));
+    assertThat(view.getCompulsoryFqans(), contains("/test", "/test/sub"));
+  }
+
+  @Test
+  public void viewIsRebuiltOnAccountUpdate() {
+    cache.getView(account, VO);
+
+    account.getAttributes().add(IamAttribute.newInstance("other", "value"));
+    account.setLastUpdateTime(new Date(2000L));
+
+    assertThat(cache.getView(account, VO).getAttributes(), hasSize(2));
+  }
+
+  @Test
+  public void viewExpires() {
+    VOMSAttributeView view = cache.getView(account, VO);
+    when(clock.millis()).thenReturn(601000L);
+    assertThat(cache.getView(account, VO), not(sameInstance(view)));
+  }
+
+  @Test
+  public void resolverIssuesFqansFromView() {
+    IamVOMSAttributeResolver resolver =
+        new IamVOMSAttributeResolver(new NullFQANEncoding(), cache);
+
+    VOMSRequestContext context = RequestContextFactory.newContext();
+    context.setVOName(VO);
+    context.setIamAccount(account);
+    context.getRequest()
+      .setRequestedFQANs(Lists.newArrayList(VOMSFqan.fromString("/test/Role=VO-Admin")));
+
+    resolver.resolveFQANs(context);
+    resolver.resolveGAs(context);
+
+    assertThat(context.getResponse().getIssuedFQANs(),
+        contains("/test/Role=VO-Admin", "/test", "/test/sub"));
+    assertThat(context.getResponse().getIssuedGAs(), hasSize(1));
+    assertThat(context.isHandled(), is(false));
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) Istituto Nazionale di Fisica Nucleare (INFN). 2016-2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.infn.mw.voms;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import org.italiangrid.voms.VOMSAttribute;
+import org.italiangrid.voms.request.VOMSResponse;
+import org.italiangrid.voms.request.impl.RESTVOMSResponseParsingStrategy;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.infn.mw.iam.persistence.model.IamAccount;
+import it.infn.mw.voms.api.VOMSController;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+@Transactional
+@TestPropertySource(properties = {"voms.vos[0].vo-name=other", "voms.vos[0].host=other.example",
+    "voms.vos[0].port=15001", "voms.vos[0].max-ac-lifetime-in-seconds=3600"})
+public class VomsMultiVOTests extends TestSupport {
+
+  static final String OTHER_VO = "other";
+
+  RESTVOMSResponseParsingStrategy parser = new RESTVOMSResponseParsingStrategy();
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  private VOMSResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+    byte[] xmlResponse = mvc.perform(request.headers(test0VOMSHeaders()))
+      .andExpect(status().isOk())
+      .andReturn()
+      .getResponse()
+      .getContentAsByteArray();
+
+    return parser.parse(new ByteArrayInputStream(xmlResponse));
+  }
+
+  private void setupMemberships() {
+    IamAccount testAccount = setupTestUser();
+    addAccountToGroup(testAccount, createVomsRootGroup());
+    addAccountToGroup(testAccount, createGroup(OTHER_VO));
+  }
+
+  @Test
+  public void requestedVoIsServed() throws Exception {
+    setupMemberships();
+
+    VOMSResponse response = perform(get("/generate-ac").param("vo", OTHER_VO));
+    assertThat(response.hasErrors(), is(false));
+
+    VOMSAttribute attrs = getAttributeCertificate(response);
+    assertThat(attrs.getVO(), is(OTHER_VO));
+    assertThat(attrs.getHost(), is("other.example"));
+    assertThat(attrs.getPort(), is(15001));
+    assertThat(attrs.getFQANs(), hasItem("/other"));
+    assertThat(attrs.getFQANs(), not(hasItem("/test")));
+    assertThat(attrs.getNotAfter(), lessThanOrEqualTo(Date.from(NOW_PLUS_1_HOUR)));
+
+    assertThat(meterRegistry.counter(VOMSController.REQUESTS_METRIC, "vo", OTHER_VO, "outcome",
+        "success").count(), is(1.0));
+  }
+
+  @Test
+  public void voIsRoutedByHost() throws Exception {
+    setupMemberships();
+
+    VOMSResponse response = perform(get("/generate-ac").header("Host", "other.example:443"));
+    assertThat(response.hasErrors(), is(false));
+    assertThat(getAttributeCertificate(response).getVO(), is(OTHER_VO));
+  }
+
+  @Test
+  public void defaultVoIsServedWhenNoVoIsRequested() throws Exception {
+    setupMemberships();
+
+    VOMSResponse response = perform(get("/generate-ac"));
+    assertThat(response.hasErrors(), is(false));
+
+    VOMSAttribute attrs = getAttributeCertificate(response);
+    assertThat(attrs.getVO(), is(VO_NAME));
+    assertThat(attrs.getFQANs(), hasItem("/test"));
+    assertThat(attrs.getFQANs(), not(hasItem("/other")));
+  }
+
+  @Test
+  public void userNotInRequestedVoGetsNoSuchUserError() throws Exception {
+    IamAccount testAccount = setupTestUser();
+    addAccountToGroup(testAccount, createVomsRootGroup());
+
+    VOMSResponse response = perform(get("/generate-ac").param("vo", OTHER_VO));
+    assertThat(response.hasErrors(), is(true));
+    assertThat(response.errorMessages()[0].getMessage(), containsString("User unknown to this VO"));
+  }
+
+  @Test
+  public void unknownVoIsRejected() throws Exception {
+    setupMemberships();
+
+    VOMSResponse response = perform(get("/generate-ac").param("vo", "unknown"));
+    assertThat(response.hasErrors(), is(true));
+    assertThat(response.errorMessages()[0].getMessage(),
+        containsString("VO unknown is not served here"));
+  }
+}